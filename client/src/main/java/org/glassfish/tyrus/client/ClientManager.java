@@ -40,6 +40,7 @@
 package org.glassfish.tyrus.client;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
@@ -47,12 +48,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.AbstractExecutorService;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -196,6 +199,15 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
     private final ComponentProviderService componentProvider;
     private final Map<String, Object> properties = new HashMap<String, Object>();
     private final ClientActivityListener clientActivityListener;
+    /**
+     * Annotated client endpoints which passed validation, used as templates for all connections of the same endpoint
+     * class.
+     * <p/>
+     * Only the validated callbacks are shared, every connection gets its own endpoint configuration. Classes are weakly
+     * referenced and templates softly referenced, so the cache does not prevent unloading of endpoint classes.
+     */
+    private final Map<Class<?>, SoftReference<AnnotatedEndpoint>> annotatedEndpoints =
+            new WeakHashMap<Class<?>, SoftReference<AnnotatedEndpoint>>();
 
     private volatile long defaultAsyncSendTimeout;
     private volatile long defaultMaxSessionIdleTimeout;
@@ -278,23 +290,31 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
 
             private final AtomicInteger activeClientCounter = new AtomicInteger(0);
 
+            /* a connection cannot be initiated while the executors are being shut down, otherwise it could obtain
+            an executor which is about to be shut down */
+            private final Object shutdownLock = new Object();
+
             @Override
             public void onConnectionInitiated() {
-                activeClientCounter.incrementAndGet();
+                synchronized (shutdownLock) {
+                    activeClientCounter.incrementAndGet();
+                }
             }
 
             @Override
             public void onConnectionTerminated() {
-                // if this is the last active client it needs to destroy the container executors
-                if (activeClientCounter.decrementAndGet() == 0) {
-                    ClientManager.this.shutdown(new ShutDownCondition() {
-                        @Override
-                        public boolean evaluate() {
-                            /* the condition is evaluated in synchronized block -> check that nothing changed while
-                            the thread was waiting for the lock */
-                            return activeClientCounter.get() == 0;
-                        }
-                    });
+                synchronized (shutdownLock) {
+                    // if this is the last active client it needs to destroy the container executors
+                    if (activeClientCounter.decrementAndGet() == 0) {
+                        ClientManager.this.shutdown(new ShutDownCondition() {
+                            @Override
+                            public boolean evaluate() {
+                                /* the condition is evaluated in synchronized block -> check that nothing changed while
+                                the thread was waiting for the lock */
+                                return activeClientCounter.get() == 0;
+                            }
+                        });
+                    }
                 }
             }
         };
@@ -521,7 +541,7 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                             endpoint = ReflectionHelper.getInstance(((Class<Endpoint>) o), collector);
                             config = configuration == null ? ClientEndpointConfig.Builder.create().build() : configuration;
                         } else if ((((Class<?>) o).getAnnotation(ClientEndpoint.class) != null)) {
-                            endpoint = AnnotatedEndpoint.fromClass((Class) o, componentProvider, false, incomingBufferSize, collector, EndpointEventListener.NO_OP);
+                            endpoint = getAnnotatedEndpoint((Class<?>) o, incomingBufferSize, collector);
                             config = (ClientEndpointConfig) ((AnnotatedEndpoint) endpoint).getEndpointConfig();
                         } else {
                             collector.addException(new DeploymentException(String.format("Class %s in not Endpoint descendant and does not have @ClientEndpoint", ((Class<?>) o).getName())));
@@ -553,118 +573,97 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
                                     new RetryAfterReconnectHandler(userReconnectHandler) :
                                     userReconnectHandler;
 
+                    /**
+                     * Start one connection attempt. Does not wait for the handshake response; the attempt is completed
+                     * by the handshake listener or by the handshake timeout.
+                     */
                     @Override
                     public void run() {
+                        final DebugContext debugContext = new DebugContext();
 
-                        do {
-                            final CountDownLatch responseLatch = new CountDownLatch(1);
-                            final DebugContext debugContext = new DebugContext();
-
-                            final ClientManagerHandshakeListener listener = new ClientManagerHandshakeListener() {
-
-                                private volatile Session session;
-                                private volatile Throwable throwable;
+                        final HandshakeListener listener = new HandshakeListener() {
 
-                                @Override
-                                public void onSessionCreated(Session session) {
-                                    this.session = session;
+                            @Override
+                            public void onSessionCreated(Session session) {
+                                if (complete()) {
                                     debugContext.flush();
-                                    responseLatch.countDown();
+                                    future.setResult(session);
                                 }
+                            }
 
-                                @Override
-                                public void onError(Throwable exception) {
-                                    throwable = exception;
+                            @Override
+                            public void onError(Throwable exception) {
+                                if (complete()) {
                                     debugContext.flush();
-                                    responseLatch.countDown();
+                                    if (exception instanceof DeploymentException) {
+                                        onConnectFailure((DeploymentException) exception);
+                                    } else {
+                                        onConnectFailure(new DeploymentException("Handshake error.", exception));
+                                    }
                                 }
+                            }
+                        };
 
-                                @Override
-                                public Session getSession() {
-                                    return session;
-                                }
+                        try {
+                            final Runnable that = this;
 
-                                @Override
-                                public Throwable getThrowable() {
-                                    return throwable;
-                                }
-                            };
+                            TyrusEndpointWrapper clientEndpoint = new TyrusEndpointWrapper(endpoint, config, componentProvider,
+                                    webSocketContainer == null ? ClientManager.this : webSocketContainer, url, null, new TyrusEndpointWrapper.SessionListener() {
 
-                            try {
-                                final Runnable that = this;
-
-                                TyrusEndpointWrapper clientEndpoint = new TyrusEndpointWrapper(endpoint, config, componentProvider,
-                                        webSocketContainer == null ? ClientManager.this : webSocketContainer, url, null, new TyrusEndpointWrapper.SessionListener() {
-
-                                    @Override
-                                    public void onClose(TyrusSession session, CloseReason closeReason) {
-                                        if (reconnectHandler != null && reconnectHandler.onDisconnect(closeReason)) {
-                                            long delay = reconnectHandler.getDelay();
-                                            if (delay <= 0) {
-                                                run();
-                                            } else {
-                                                getScheduledExecutorService().schedule(that, delay, TimeUnit.SECONDS);
-                                            }
-                                        } else {
-                                            clientActivityListener.onConnectionTerminated();
-                                        }
+                                @Override
+                                public void onClose(TyrusSession session, CloseReason closeReason) {
+                                    if (reconnectHandler != null && reconnectHandler.onDisconnect(closeReason)) {
+                                        reconnect(that, reconnectHandler.getDelay());
+                                    } else {
+                                        clientActivityListener.onConnectionTerminated();
                                     }
-                                }, null, null, null
-                                );
-
-                                final URI uri;
-                                try {
-                                    uri = new URI(url);
-                                } catch (URISyntaxException e) {
-                                    throw new DeploymentException("Invalid URI.", e);
                                 }
+                            }, null, null, null
+                            );
 
-                                TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties, uri, debugContext);
-
-                                container.openClientSocket(config, copiedProperties, clientEngine);
+                            final URI uri;
+                            try {
+                                uri = new URI(url);
+                            } catch (URISyntaxException e) {
+                                throw new DeploymentException("Invalid URI.", e);
+                            }
 
-                                try {
-                                    final boolean countedDown = responseLatch.await(handshakeTimeout, TimeUnit.MILLISECONDS);
-                                    if (countedDown) {
-                                        final Throwable exception = listener.getThrowable();
-                                        if (exception != null) {
-                                            if (exception instanceof DeploymentException) {
-                                                throw (DeploymentException) exception;
-                                            } else {
-                                                throw new DeploymentException("Handshake error.", exception);
-                                            }
-                                        }
+                            final TyrusClientEngine clientEngine = new TyrusClientEngine(clientEndpoint, listener, copiedProperties, uri, debugContext);
 
-                                        future.setResult(listener.getSession());
-                                        return;
-                                    } else {
-                                        // timeout!
+                            listener.setTimeout(getScheduledExecutorService().schedule(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (listener.complete()) {
                                         final ClientEngine.TimeoutHandler timeoutHandler = clientEngine.getTimeoutHandler();
                                         if (timeoutHandler != null) {
                                             timeoutHandler.handleTimeout();
                                         }
-                                    }
-                                } catch (DeploymentException e) {
-                                    throw e;
-                                } catch (Exception e) {
-                                    throw new DeploymentException("Handshake response not received.", e);
-                                }
 
-                                throw new DeploymentException("Handshake response not received.");
-                            } catch (Exception e) {
-                                if (reconnectHandler == null || !reconnectHandler.onConnectFailure(e)) {
-                                    future.setFailure(e);
-                                    return;
-                                } else {
-                                    long delay = reconnectHandler.getDelay();
-                                    if (delay > 0) {
-                                        getScheduledExecutorService().schedule(this, delay, TimeUnit.SECONDS);
-                                        return;
+                                        onConnectFailure(new DeploymentException("Handshake response not received."));
                                     }
                                 }
+                            }, handshakeTimeout, TimeUnit.MILLISECONDS));
+
+                            container.openClientSocket(config, copiedProperties, clientEngine);
+                        } catch (Exception e) {
+                            if (listener.complete()) {
+                                onConnectFailure(e);
                             }
                         }
-                        while (true);
+                    }
+
+                    /**
+                     * Complete the future with the failure or start another attempt if the reconnect handler
+                     * says so.
+                     *
+                     * @param e failure of the connection attempt.
+                     */
+                    private void onConnectFailure(Exception e) {
+                        if (reconnectHandler == null || !reconnectHandler.onConnectFailure(e)) {
+                            future.setFailure(e);
+                        } else {
+                            reconnect(this, reconnectHandler.getDelay());
+                        }
                     }
                 };
 
@@ -675,6 +674,39 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         return future;
     }
 
+    /**
+     * Get annotated client endpoint for given class.
+     * <p/>
+     * Endpoint class is validated only for the first connection, endpoints with errors are not cached. Returned endpoint
+     * always has a new {@link ClientEndpointConfig}.
+     *
+     * @param annotatedClass     class annotated with {@link ClientEndpoint}.
+     * @param incomingBufferSize size limit of the incoming buffer.
+     * @param collector          error collector.
+     * @return annotated endpoint.
+     */
+    AnnotatedEndpoint getAnnotatedEndpoint(Class<?> annotatedClass, int incomingBufferSize, ErrorCollector collector) {
+        AnnotatedEndpoint template;
+        synchronized (annotatedEndpoints) {
+            final SoftReference<AnnotatedEndpoint> reference = annotatedEndpoints.get(annotatedClass);
+            template = reference == null ? null : reference.get();
+        }
+
+        if (template == null) {
+            final AnnotatedEndpoint endpoint = AnnotatedEndpoint.fromClass(annotatedClass, componentProvider, false, incomingBufferSize, collector, EndpointEventListener.NO_OP);
+            if (!collector.isEmpty()) {
+                return endpoint;
+            }
+
+            synchronized (annotatedEndpoints) {
+                annotatedEndpoints.put(annotatedClass, new SoftReference<AnnotatedEndpoint>(endpoint));
+            }
+            template = endpoint;
+        }
+
+        return AnnotatedEndpoint.fromTemplate(template, collector);
+    }
+
     private int getHandshakeTimeout() {
         final Object o = properties.get(ClientProperties.HANDSHAKE_TIMEOUT);
         if (o != null && o instanceof Integer) {
@@ -685,10 +717,59 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         }
     }
 
-    private interface ClientManagerHandshakeListener extends TyrusClientEngine.ClientHandshakeListener {
-        Session getSession();
+    /**
+     * Schedule another connection attempt. No thread waits for the attempt to start.
+     *
+     * @param connector connection attempt.
+     * @param delay     delay in seconds, the attempt is submitted to the executor service when not positive.
+     */
+    private void reconnect(Runnable connector, long delay) {
+        if (delay <= 0) {
+            getExecutorService().submit(connector);
+        } else {
+            getScheduledExecutorService().schedule(connector, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Handshake listener of one connection attempt.
+     * <p/>
+     * The attempt is completed exactly once - by the handshake response, by an error or by the handshake timeout,
+     * whichever comes first. Only the caller of {@link #complete()} which returned {@code true} can act on it.
+     */
+    abstract static class HandshakeListener implements TyrusClientEngine.ClientHandshakeListener {
+
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeout;
+
+        /**
+         * Set the handshake timeout task, which is cancelled when the attempt completes.
+         *
+         * @param timeout scheduled handshake timeout.
+         */
+        void setTimeout(ScheduledFuture<?> timeout) {
+            this.timeout = timeout;
+            if (completed.get()) {
+                timeout.cancel(false);
+            }
+        }
 
-        Throwable getThrowable();
+        /**
+         * Mark the attempt as completed.
+         *
+         * @return {@code true} if the attempt has not been completed before.
+         */
+        boolean complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return false;
+            }
+
+            final ScheduledFuture<?> localTimeout = timeout;
+            if (localTimeout != null) {
+                localTimeout.cancel(false);
+            }
+            return true;
+        }
     }
 
     @Override
@@ -789,6 +870,11 @@ public class ClientManager extends BaseContainer implements WebSocketContainer {
         return properties;
     }
 
+    @Override
+    protected boolean isVirtualThreadsEnabled() {
+        return Utils.getProperty(properties, ClientProperties.VIRTUAL_THREADS_ENABLED, Boolean.class, false);
+    }
+
     /**
      * Executor service which just executes provided {@link Runnable} in the very same thread.
      */
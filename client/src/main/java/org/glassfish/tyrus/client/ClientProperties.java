@@ -146,6 +146,17 @@ public final class ClientProperties {
      */
     public static final String INCOMING_BUFFER_SIZE = "org.glassfish.tyrus.incomingBufferSize";
 
+    /**
+     * When set to {@code true} ({@link Boolean} value), tasks submitted to the executor service of the
+     * {@link ClientManager} are run on virtual threads, if the runtime supports them.
+     * <p/>
+     * The value is read when the executor service is first needed, so it has to be set before the first connection
+     * is opened.
+     *
+     * @see org.glassfish.tyrus.core.BaseContainer#VIRTUAL_THREADS_ENABLED
+     */
+    public static final String VIRTUAL_THREADS_ENABLED = "org.glassfish.tyrus.virtualThreadsEnabled";
+
     /**
      * When set to {@code true} (boolean value), client runtime preserves used container and reuses it for outgoing
      * connections.
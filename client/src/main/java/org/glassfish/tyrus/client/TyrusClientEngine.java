@@ -66,6 +66,7 @@ import org.glassfish.tyrus.client.auth.AuthConfig;
 import org.glassfish.tyrus.client.auth.AuthenticationException;
 import org.glassfish.tyrus.client.auth.Authenticator;
 import org.glassfish.tyrus.client.auth.Credentials;
+import org.glassfish.tyrus.core.ByteBufferPool;
 import org.glassfish.tyrus.core.DebugContext;
 import org.glassfish.tyrus.core.Handshake;
 import org.glassfish.tyrus.core.HandshakeException;
@@ -104,8 +105,12 @@ public class TyrusClientEngine implements ClientEngine {
 
     private static final Logger LOGGER = Logger.getLogger(TyrusClientEngine.class.getName());
 
+    /**
+     * Pool of buffers for incomplete incoming frames, shared by all client connections.
+     */
+    private static final ByteBufferPool BUFFER_POOL = new ByteBufferPool();
+
     private static final Version DEFAULT_VERSION = Version.DRAFT17;
-    private static final int BUFFER_STEP_SIZE = 256;
     private static final int DEFAULT_REDIRECT_THRESHOLD = 5;
 
     private final ProtocolHandler protocolHandler;
@@ -632,6 +637,7 @@ public class TyrusClientEngine implements ClientEngine {
             this.extensionContext = extensionContext;
 
             protocolHandler.setExtensionContext(extensionContext);
+            protocolHandler.setIncomingBufferSize(incomingBufferSize);
         }
 
         @Override
@@ -639,24 +645,35 @@ public class TyrusClientEngine implements ClientEngine {
             try {
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException("Buffer overflow.");
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
+                    // incoming data are parsed directly; only unprocessed rest (incomplete frame) is copied.
+                    final boolean buffered = (buffer != null);
+                    if (buffered) {
+                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_POOL);
+                        // data is the only reference to the buffer now (original one might have been released).
+                        buffer = null;
                     }
 
                     do {
                         Frame frame = handler.unframe(data);
                         if (frame == null) {
-                            buffer = data;
+                            if (!data.hasRemaining()) {
+                                // no incomplete frame, no buffer is held.
+                                if (buffered) {
+                                    BUFFER_POOL.release(data);
+                                }
+                            } else if (buffered) {
+                                buffer = data;
+                            } else {
+                                int newSize = data.remaining();
+                                if (newSize > incomingBufferSize) {
+                                    throw new IllegalArgumentException("Buffer overflow.");
+                                } else {
+                                    final ByteBuffer result = BUFFER_POOL.acquire(newSize);
+                                    result.put(data);
+                                    result.flip();
+                                    buffer = result;
+                                }
+                            }
                             break;
                         } else {
                             for (Extension extension : negotiatedExtensions) {
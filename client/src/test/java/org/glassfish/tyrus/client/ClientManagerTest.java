@@ -40,16 +40,57 @@
 package org.glassfish.tyrus.client;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.websocket.ClientEndpoint;
 import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
 import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.HandshakeResponse;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
 
+import org.glassfish.tyrus.core.AnnotatedEndpoint;
+import org.glassfish.tyrus.core.Base64Utils;
+import org.glassfish.tyrus.core.ErrorCollector;
 import org.glassfish.tyrus.spi.ClientContainer;
 import org.glassfish.tyrus.spi.ClientEngine;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.UpgradeResponse;
+import org.glassfish.tyrus.spi.Writer;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -81,6 +122,292 @@ public class ClientManagerTest {
 
     }
 
+    @Test
+    public void virtualThreadsEnabled() throws Exception {
+        final ClientManager clientManager = createClientManager();
+        clientManager.getProperties().put(ClientProperties.VIRTUAL_THREADS_ENABLED, true);
+
+        try {
+            final Thread thread = clientManager.getExecutorService().submit(new Callable<Thread>() {
+                @Override
+                public Thread call() {
+                    return Thread.currentThread();
+                }
+            }).get();
+
+            // runtime without virtual threads falls back to pooled platform threads.
+            boolean virtualThreadsSupported;
+            try {
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                virtualThreadsSupported = true;
+            } catch (NoSuchMethodException e) {
+                virtualThreadsSupported = false;
+            }
+
+            if (virtualThreadsSupported) {
+                final Method isVirtual = Thread.class.getMethod("isVirtual");
+                assertEquals(true, isVirtual.invoke(thread));
+            } else {
+                assertFalse(thread == Thread.currentThread());
+            }
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void annotatedEndpointConfigNotShared() {
+        final ClientManager clientManager = createClientManager();
+        final ErrorCollector collector = new ErrorCollector();
+
+        final AnnotatedEndpoint first = clientManager.getAnnotatedEndpoint(AnnotatedClient.class, Integer.MAX_VALUE, collector);
+        final AnnotatedEndpoint second = clientManager.getAnnotatedEndpoint(AnnotatedClient.class, Integer.MAX_VALUE, collector);
+        assertTrue(collector.isEmpty());
+
+        final ClientEndpointConfig firstConfig = (ClientEndpointConfig) first.getEndpointConfig();
+        final ClientEndpointConfig secondConfig = (ClientEndpointConfig) second.getEndpointConfig();
+        assertNotSame(firstConfig, secondConfig);
+        assertNotSame(firstConfig.getConfigurator(), secondConfig.getConfigurator());
+        assertTrue(firstConfig.getConfigurator() instanceof AnnotatedClientConfigurator);
+
+        firstConfig.getUserProperties().put("key", "value");
+        assertNull(secondConfig.getUserProperties().get("key"));
+    }
+
+    @Test
+    public void handshakeTimeout() throws Exception {
+        final ClientManager clientManager = createHandshakeClientManager(200, null);
+
+        try {
+            final Future<Session> future = clientManager.asyncConnectToServer(new TestEndpoint(), URI.create("ws://localhost/test"));
+            final HandshakeAttempt attempt = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(attempt);
+
+            assertHandshakeTimedOut(future);
+            assertEquals(1, attempt.timeouts.get());
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void handshakeCompletedAfterTimeout() throws Exception {
+        final ClientManager clientManager = createHandshakeClientManager(200, null);
+
+        try {
+            final Future<Session> future = clientManager.asyncConnectToServer(new TestEndpoint(), URI.create("ws://localhost/test"));
+            final HandshakeAttempt attempt = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(attempt);
+            assertHandshakeTimedOut(future);
+
+            // late response does not change the outcome of the attempt.
+            attempt.completeHandshake();
+            assertHandshakeTimedOut(future);
+            assertEquals(1, attempt.timeouts.get());
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void handshakeCompletedBeforeTimeout() throws Exception {
+        final ClientManager clientManager = createHandshakeClientManager(300, null);
+
+        try {
+            final TestEndpoint endpoint = new TestEndpoint();
+            final Future<Session> future = clientManager.asyncConnectToServer(endpoint, URI.create("ws://localhost/test"));
+            final HandshakeAttempt attempt = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(attempt);
+
+            attempt.completeHandshake();
+            final Session session = future.get(5, TimeUnit.SECONDS);
+            assertNotNull(session);
+            assertEquals(0, endpoint.openLatch.getCount());
+
+            // the cancelled timeout does not fire.
+            Thread.sleep(600);
+            assertEquals(0, attempt.timeouts.get());
+            assertTrue(session.isOpen());
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void reconnectWithoutDelay() throws Exception {
+        final CountingReconnectHandler reconnectHandler = new CountingReconnectHandler(0);
+        final ClientManager clientManager = createHandshakeClientManager(30000, reconnectHandler);
+
+        try {
+            final Future<Session> future = clientManager.asyncConnectToServer(new TestEndpoint(), URI.create("ws://localhost/test"));
+            final HandshakeAttempt first = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+
+            final long failed = System.nanoTime();
+            first.engine.processError(new IOException("first attempt failed"));
+
+            // submitted right away, not scheduled after the default reconnect delay.
+            final HandshakeAttempt second = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(second);
+            assertTrue(System.nanoTime() - failed < TimeUnit.SECONDS.toNanos(1));
+            assertEquals(1, reconnectHandler.failures.get());
+
+            second.completeHandshake();
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void reconnectWithDelay() throws Exception {
+        final CountingReconnectHandler reconnectHandler = new CountingReconnectHandler(1);
+        final ClientManager clientManager = createHandshakeClientManager(30000, reconnectHandler);
+
+        try {
+            final Future<Session> future = clientManager.asyncConnectToServer(new TestEndpoint(), URI.create("ws://localhost/test"));
+            final HandshakeAttempt first = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(first);
+
+            final long failed = System.nanoTime();
+            first.engine.processError(new IOException("first attempt failed"));
+
+            // the next attempt is scheduled after the delay, the future stays incomplete meanwhile.
+            assertNull(HandshakeContainer.ATTEMPTS.poll(500, TimeUnit.MILLISECONDS));
+            assertFalse(future.isDone());
+            final HandshakeAttempt second = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(second);
+            assertTrue(System.nanoTime() - failed >= TimeUnit.MILLISECONDS.toNanos(900));
+
+            second.completeHandshake();
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+            assertEquals(1, reconnectHandler.failures.get());
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void errorAfterTimeoutNotReported() throws Exception {
+        final CountingReconnectHandler reconnectHandler = new CountingReconnectHandler(-1);
+        final ClientManager clientManager = createHandshakeClientManager(200, reconnectHandler);
+
+        try {
+            final Future<Session> future = clientManager.asyncConnectToServer(new TestEndpoint(), URI.create("ws://localhost/test"));
+            final HandshakeAttempt attempt = HandshakeContainer.ATTEMPTS.poll(5, TimeUnit.SECONDS);
+            assertNotNull(attempt);
+            assertHandshakeTimedOut(future);
+
+            attempt.engine.processError(new IOException("late error"));
+            assertEquals(1, reconnectHandler.failures.get());
+            assertHandshakeTimedOut(future);
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    @Test
+    public void handshakeListenerCompletedOnce() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            final ClientManager.HandshakeListener listener = new ClientManager.HandshakeListener() {
+                @Override
+                public void onSessionCreated(Session session) {
+                }
+
+                @Override
+                public void onError(Throwable exception) {
+                }
+            };
+
+            final int threads = 4;
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger completed = new AtomicInteger();
+            final List<Thread> completingThreads = new ArrayList<Thread>();
+            for (int j = 0; j < threads; j++) {
+                completingThreads.add(new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        if (listener.complete()) {
+                            completed.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            for (Thread thread : completingThreads) {
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : completingThreads) {
+                thread.join();
+            }
+
+            assertEquals(1, completed.get());
+        }
+    }
+
+    @Test
+    public void handshakeListenerCancelsTimeout() throws Exception {
+        final ClientManager clientManager = createClientManager();
+
+        try {
+            final ClientManager.HandshakeListener listener = new ClientManager.HandshakeListener() {
+                @Override
+                public void onSessionCreated(Session session) {
+                }
+
+                @Override
+                public void onError(Throwable exception) {
+                }
+            };
+            final Runnable noop = new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+
+            final ScheduledFuture<?> timeout = clientManager.getScheduledExecutorService().schedule(noop, 1, TimeUnit.HOURS);
+            listener.setTimeout(timeout);
+            assertTrue(listener.complete());
+            assertTrue(timeout.isCancelled());
+            assertFalse(listener.complete());
+
+            // timeout set after the attempt has completed is cancelled right away.
+            final ScheduledFuture<?> lateTimeout = clientManager.getScheduledExecutorService().schedule(noop, 1, TimeUnit.HOURS);
+            listener.setTimeout(lateTimeout);
+            assertTrue(lateTimeout.isCancelled());
+        } finally {
+            clientManager.shutdown();
+        }
+    }
+
+    private static void assertHandshakeTimedOut(Future<Session> future) throws InterruptedException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Handshake timeout expected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeploymentException);
+            assertEquals("Handshake response not received.", e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            fail("Connection attempt not completed.");
+        }
+    }
+
+    private ClientManager createHandshakeClientManager(int handshakeTimeout, ClientManager.ReconnectHandler reconnectHandler) {
+        HandshakeContainer.ATTEMPTS.clear();
+
+        final ClientManager clientManager = ClientManager.createClient(HandshakeContainer.class.getName());
+        clientManager.getProperties().put(ClientProperties.HANDSHAKE_TIMEOUT, handshakeTimeout);
+        if (reconnectHandler != null) {
+            clientManager.getProperties().put(ClientProperties.RECONNECT_HANDLER, reconnectHandler);
+        }
+        return clientManager;
+    }
+
     private ClientManager createClientManager() {
         return ClientManager.createClient(NoopContainer.class.getName());
     }
@@ -93,4 +420,143 @@ public class ClientManagerTest {
                                      ClientEngine clientEngine) throws DeploymentException, IOException {
         }
     }
+
+    /**
+     * Container which does not connect anywhere, it only records the client engines of connection attempts, so that
+     * tests can complete or fail the handshake.
+     */
+    public static class HandshakeContainer implements ClientContainer {
+
+        static final BlockingQueue<HandshakeAttempt> ATTEMPTS = new LinkedBlockingQueue<HandshakeAttempt>();
+
+        @Override
+        public void openClientSocket(ClientEndpointConfig cec,
+                                     Map<String, Object> properties,
+                                     ClientEngine clientEngine) throws DeploymentException, IOException {
+            final HandshakeAttempt attempt = new HandshakeAttempt(clientEngine);
+            attempt.request = clientEngine.createUpgradeRequest(new ClientEngine.TimeoutHandler() {
+                @Override
+                public void handleTimeout() {
+                    attempt.timeouts.incrementAndGet();
+                }
+            });
+            ATTEMPTS.add(attempt);
+        }
+    }
+
+    static class HandshakeAttempt {
+
+        final ClientEngine engine;
+        final AtomicInteger timeouts = new AtomicInteger();
+        volatile UpgradeRequest request;
+
+        HandshakeAttempt(ClientEngine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * Process a successful handshake response and create the connection.
+         */
+        void completeHandshake() throws Exception {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((request.getHeader(HandshakeRequest.SEC_WEBSOCKET_KEY) + UpgradeRequest.SERVER_KEY_HASH).getBytes("UTF-8"));
+
+            final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+            headers.put(UpgradeRequest.CONNECTION, Collections.singletonList(UpgradeRequest.UPGRADE));
+            headers.put(UpgradeRequest.UPGRADE, Collections.singletonList(UpgradeRequest.WEBSOCKET));
+            headers.put(HandshakeResponse.SEC_WEBSOCKET_ACCEPT, Collections.singletonList(Base64Utils.encodeToString(digest.digest(), false)));
+
+            final ClientEngine.ClientUpgradeInfo upgradeInfo = engine.processResponse(new UpgradeResponse() {
+                @Override
+                public int getStatus() {
+                    return 101;
+                }
+
+                @Override
+                public void setStatus(int status) {
+                }
+
+                @Override
+                public void setReasonPhrase(String reason) {
+                }
+
+                @Override
+                public Map<String, List<String>> getHeaders() {
+                    return headers;
+                }
+            }, new Writer() {
+                @Override
+                public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                    if (completionHandler != null) {
+                        completionHandler.completed(buffer);
+                    }
+                }
+
+                @Override
+                public void close() {
+                }
+            }, new Connection.CloseListener() {
+                @Override
+                public void close(CloseReason reason) {
+                }
+            });
+            assertEquals(ClientEngine.ClientUpgradeStatus.SUCCESS, upgradeInfo.getUpgradeStatus());
+
+            final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+            connectionProperties.put(Connection.ConnectionProperties.LOCAL_ADDRESS, "127.0.0.1");
+            connectionProperties.put(Connection.ConnectionProperties.LOCAL_HOSTNAME, "localhost");
+            connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 1);
+            connectionProperties.put(Connection.ConnectionProperties.REMOTE_ADDRESS, "127.0.0.1");
+            connectionProperties.put(Connection.ConnectionProperties.REMOTE_HOSTNAME, "localhost");
+            connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 80);
+            upgradeInfo.createConnection(connectionProperties);
+        }
+    }
+
+    /**
+     * Reconnects after the first connection failure.
+     */
+    static class CountingReconnectHandler extends ClientManager.ReconnectHandler {
+
+        final AtomicInteger failures = new AtomicInteger();
+        private final long delay;
+
+        /**
+         * @param delay reconnect delay in seconds, negative value means that the client does not reconnect at all.
+         */
+        CountingReconnectHandler(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public boolean onConnectFailure(Exception exception) {
+            return failures.incrementAndGet() == 1 && delay >= 0;
+        }
+
+        @Override
+        public long getDelay() {
+            return delay;
+        }
+    }
+
+    public static class TestEndpoint extends Endpoint {
+
+        final CountDownLatch openLatch = new CountDownLatch(1);
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            openLatch.countDown();
+        }
+    }
+
+    public static class AnnotatedClientConfigurator extends ClientEndpointConfig.Configurator {
+    }
+
+    @ClientEndpoint(configurator = AnnotatedClientConfigurator.class)
+    public static class AnnotatedClient {
+
+        @OnMessage
+        public void onMessage(String message) {
+        }
+    }
 }
@@ -51,6 +51,7 @@ import javax.websocket.server.ServerEndpointConfig;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
+import org.glassfish.tyrus.core.BaseContainer;
 import org.glassfish.tyrus.core.DebugContext;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.Utils;
@@ -117,6 +118,7 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
         final Boolean parallelBroadcastEnabled = Utils.getProperty(localProperties, TyrusWebSocketEngine.PARALLEL_BROADCAST_ENABLED, Boolean.class);
         final DebugContext.TracingType tracingType = Utils.getProperty(localProperties, TyrusWebSocketEngine.TRACING_TYPE, DebugContext.TracingType.class, DebugContext.TracingType.OFF);
         final DebugContext.TracingThreshold tracingThreshold = Utils.getProperty(localProperties, TyrusWebSocketEngine.TRACING_THRESHOLD, DebugContext.TracingThreshold.class, DebugContext.TracingThreshold.TRACE);
+        final Boolean virtualThreadsEnabled = Utils.getProperty(localProperties, BaseContainer.VIRTUAL_THREADS_ENABLED, Boolean.class, false);
 
         return new TyrusServerContainer((Set<Class<?>>) null) {
 
@@ -149,6 +151,11 @@ public class GrizzlyServerContainer extends ServerContainerFactory {
                 return engine;
             }
 
+            @Override
+            protected boolean isVirtualThreadsEnabled() {
+                return virtualThreadsEnabled;
+            }
+
             @Override
             public void start(final String rootPath, int port) throws IOException, DeploymentException {
                 contextPath = rootPath;
@@ -59,6 +59,7 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.HandlesTypes;
 
+import org.glassfish.tyrus.core.BaseContainer;
 import org.glassfish.tyrus.core.DebugContext;
 import org.glassfish.tyrus.core.TyrusWebSocketEngine;
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
@@ -99,6 +100,7 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
         final Boolean parallelBroadcastEnabled = getBooleanContextParam(ctx, TyrusWebSocketEngine.PARALLEL_BROADCAST_ENABLED);
         final DebugContext.TracingType tracingType = getEnumContextParam(ctx, TyrusWebSocketEngine.TRACING_TYPE, DebugContext.TracingType.class, DebugContext.TracingType.OFF);
         final DebugContext.TracingThreshold tracingThreshold = getEnumContextParam(ctx, TyrusWebSocketEngine.TRACING_THRESHOLD, DebugContext.TracingThreshold.class, DebugContext.TracingThreshold.TRACE);
+        final Boolean virtualThreadsEnabled = getBooleanContextParam(ctx, BaseContainer.VIRTUAL_THREADS_ENABLED);
 
         final ApplicationEventListener applicationEventListener = createApplicationEventListener(ctx);
         final TyrusServerContainer serverContainer = new TyrusServerContainer(classes) {
@@ -127,6 +129,11 @@ public class TyrusServletContainerInitializer implements ServletContainerInitial
             public WebSocketEngine getWebSocketEngine() {
                 return engine;
             }
+
+            @Override
+            protected boolean isVirtualThreadsEnabled() {
+                return virtualThreadsEnabled != null && virtualThreadsEnabled;
+            }
         };
         ctx.setAttribute(ServerContainer.class.getName(), serverContainer);
         Boolean wsadlEnabled = getBooleanContextParam(ctx, TyrusWebSocketEngine.WSADL_SUPPORT);
@@ -41,8 +41,11 @@ package org.glassfish.tyrus.servlet;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,25 +57,55 @@ import org.glassfish.tyrus.spi.Writer;
 
 /**
  * {@link org.glassfish.tyrus.spi.Writer} implementation used in Servlet integration.
+ * <p/>
+ * Frames are put into a queue by any thread calling {@link #write(java.nio.ByteBuffer, CompletionHandler)}. The thread
+ * which succeeds in becoming the drainer writes all queued frames to the {@link ServletOutputStream}, flushes it once
+ * and invokes completion handlers after it stopped draining. Other threads just leave their frames in the queue.
+ * <p/>
+ * The stream is written and flushed only while it is ready (containers throw {@link IllegalStateException} otherwise).
+ * When it is not ready, writing and flushing continues from {@link #onWritePossible()} and completion handlers of
+ * frames which have been written, but not flushed, are invoked only after the flush.
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
 class TyrusServletWriter extends Writer implements WriteListener {
 
-    private final TyrusHttpUpgradeHandler tyrusHttpUpgradeHandler;
-    private final Deque<QueuedFrame> queue = new LinkedList<QueuedFrame>();
+    /**
+     * Maximal size of data of a direct buffer copied to the shared array.
+     * <p/>
+     * Small writes are copied to the output buffer of the container, larger ones might be referenced by the container
+     * until they are written to the network, so they have to be copied to a new array.
+     */
+    static final int MAX_SCRATCH_SIZE = 4096;
 
-    private static final Logger LOGGER = Logger.getLogger(TyrusServletWriter.class.getName());
+    private final TyrusHttpUpgradeHandler tyrusHttpUpgradeHandler;
+    private final Queue<QueuedFrame> queue = new ConcurrentLinkedQueue<QueuedFrame>();
+    /**
+     * Frames written to the {@link ServletOutputStream}, which wait for a flush.
+     */
+    private final Queue<QueuedFrame> unflushed = new ConcurrentLinkedQueue<QueuedFrame>();
 
     /**
-     * ServletOutputStream is not thread safe, must be synchronized.
+     * {@code true} while a thread is writing queued frames.
      * <p/>
-     * Access synchronized via "this" - Tyrus creates one instance of TyrusServletWriter per WebSocket connection,
-     * so that should be ok.
+     * ServletOutputStream is not thread safe, it is accessed only by the thread which set this flag.
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean isListenerSet = new AtomicBoolean(false);
+    /**
+     * Set by {@link #onWritePossible()}, so that the draining thread knows the stream might have become ready while it
+     * was still draining.
      */
-    private ServletOutputStream servletOutputStream = null;
+    private final AtomicBoolean writePossible = new AtomicBoolean(false);
+
+    private static final Logger LOGGER = Logger.getLogger(TyrusServletWriter.class.getName());
 
-    private boolean isListenerSet;
+    private volatile ServletOutputStream servletOutputStream = null;
+
+    /**
+     * Array used for copying data of direct buffers, accessed only by the draining thread.
+     */
+    private byte[] scratch = null;
 
     private static class QueuedFrame {
         public final CompletionHandler<ByteBuffer> completionHandler;
@@ -94,34 +127,37 @@ class TyrusServletWriter extends Writer implements WriteListener {
     }
 
     @Override
-    public synchronized void onWritePossible() throws IOException {
+    public void onWritePossible() throws IOException {
         LOGGER.log(Level.FINEST, "OnWritePossible called");
 
-        while (!queue.isEmpty() && servletOutputStream.isReady()) {
-            final QueuedFrame queuedFrame = queue.poll();
-            assert queuedFrame != null;
-
-            _write(queuedFrame.dataFrame, queuedFrame.completionHandler);
-        }
+        writePossible.set(true);
+        drain();
     }
 
     @Override
-    public synchronized void onError(Throwable t) {
+    public void onError(Throwable t) {
         LOGGER.log(Level.WARNING, "TyrusServletWriter.onError", t);
 
         QueuedFrame queuedFrame;
+        while ((queuedFrame = unflushed.poll()) != null) {
+            if (queuedFrame.completionHandler != null) {
+                queuedFrame.completionHandler.failed(t);
+            }
+        }
         while ((queuedFrame = queue.poll()) != null) {
-            queuedFrame.completionHandler.failed(t);
+            if (queuedFrame.completionHandler != null) {
+                queuedFrame.completionHandler.failed(t);
+            }
         }
     }
 
     @Override
-    public synchronized void write(final ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+    public void write(final ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
 
         // first write
         if (servletOutputStream == null) {
             try {
-                servletOutputStream = tyrusHttpUpgradeHandler.getWebConnection().getOutputStream();
+                initOutputStream();
             } catch (IOException e) {
                 LOGGER.log(Level.CONFIG, "ServletOutputStream cannot be obtained", e);
                 completionHandler.failed(e);
@@ -129,42 +165,109 @@ class TyrusServletWriter extends Writer implements WriteListener {
             }
         }
 
-        if (queue.isEmpty() && servletOutputStream.isReady()) {
-            _write(buffer, completionHandler);
-        } else {
-            final QueuedFrame queuedFrame = new QueuedFrame(completionHandler, buffer);
-            queue.offer(queuedFrame);
+        queue.offer(new QueuedFrame(completionHandler, buffer));
+        drain();
+    }
 
-            if (!isListenerSet) {
-                isListenerSet = true;
-                servletOutputStream.setWriteListener(this);
-            }
+    private synchronized void initOutputStream() throws IOException {
+        if (servletOutputStream == null) {
+            servletOutputStream = tyrusHttpUpgradeHandler.getWebConnection().getOutputStream();
         }
     }
 
-    private void _write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+    /**
+     * Write queued frames if no other thread does so.
+     * <p/>
+     * Frames are written while the output stream is ready; the stream is flushed once per drain cycle if it is still
+     * ready. When the stream is not ready, remaining frames are written and the flush is done from
+     * {@link #onWritePossible()}.
+     */
+    private void drain() {
+        final ServletOutputStream outputStream = servletOutputStream;
 
-        try {
-            if (buffer.hasArray()) {
-                byte[] array = buffer.array();
-                servletOutputStream.write(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
-            } else {
-                final int remaining = buffer.remaining();
-                final byte[] array = new byte[remaining];
-                buffer.get(array);
-                servletOutputStream.write(array);
-            }
+        while ((!queue.isEmpty() || !unflushed.isEmpty()) && draining.compareAndSet(false, true)) {
+            // readiness signalled before this point is observed by isReady() below.
+            writePossible.set(false);
+            final List<QueuedFrame> flushed = new ArrayList<QueuedFrame>();
+            final List<QueuedFrame> failed = new ArrayList<QueuedFrame>();
+            Exception failure = null;
+            boolean ready;
+
+            try {
+                QueuedFrame queuedFrame;
+                while ((ready = outputStream.isReady()) && (queuedFrame = queue.poll()) != null) {
+                    try {
+                        _write(outputStream, queuedFrame.dataFrame);
+                        unflushed.offer(queuedFrame);
+                    } catch (Exception e) {
+                        failure = e;
+                        failed.add(queuedFrame);
+                    }
+                }
+
+                // the queue is empty and the stream was ready, otherwise the flush waits for onWritePossible().
+                if (ready && !unflushed.isEmpty()) {
+                    Exception flushFailure = null;
+                    try {
+                        outputStream.flush();
+                    } catch (Exception e) {
+                        flushFailure = e;
+                        failure = e;
+                    }
 
-            servletOutputStream.flush();
+                    final List<QueuedFrame> flushResult = (flushFailure == null) ? flushed : failed;
+                    while ((queuedFrame = unflushed.poll()) != null) {
+                        flushResult.add(queuedFrame);
+                    }
+                }
 
-            if (completionHandler != null) {
-                completionHandler.completed(buffer);
+                if (!ready && isListenerSet.compareAndSet(false, true)) {
+                    outputStream.setWriteListener(this);
+                }
+            } finally {
+                draining.set(false);
             }
-        } catch (Exception e) {
-            if (completionHandler != null) {
-                completionHandler.failed(e);
+
+            for (QueuedFrame queuedFrame : flushed) {
+                if (queuedFrame.completionHandler != null) {
+                    queuedFrame.completionHandler.completed(queuedFrame.dataFrame);
+                }
+            }
+            for (QueuedFrame queuedFrame : failed) {
+                if (queuedFrame.completionHandler != null) {
+                    queuedFrame.completionHandler.failed(failure);
+                }
             }
+
+            // onWritePossible() might have been called while this thread was still draining; the stream is not
+            // touched here, since another thread might be draining already.
+            if (!ready && !writePossible.get()) {
+                return;
+            }
+        }
+    }
+
+    private void _write(ServletOutputStream outputStream, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            outputStream.write(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            final int remaining = buffer.remaining();
+            final byte[] array = getScratch(remaining);
+            buffer.get(array, 0, remaining);
+            outputStream.write(array, 0, remaining);
+        }
+    }
+
+    private byte[] getScratch(int length) {
+        if (length > MAX_SCRATCH_SIZE) {
+            return new byte[length];
+        }
+
+        if (scratch == null) {
+            scratch = new byte[MAX_SCRATCH_SIZE];
         }
+        return scratch;
     }
 
     @Override
@@ -0,0 +1,352 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.WebConnection;
+
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TyrusServletWriter} against an output stream which, like the ones of servlet containers, does not allow
+ * to be written or flushed when it is not ready.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class TyrusServletWriterTest {
+
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        final TestOutputStream outputStream = new TestOutputStream();
+        writeConcurrently(outputStream);
+    }
+
+    @Test
+    public void testConcurrentWritersWithNotReadyStream() throws InterruptedException {
+        final TestOutputStream outputStream = new TestOutputStream();
+        outputStream.notReadyEvery = 7;
+
+        // simulates the container, which calls onWritePossible() when the stream becomes ready again.
+        final Thread containerThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        outputStream.readinessChanges.acquire();
+                        outputStream.ready = true;
+                        final WriteListener listener = outputStream.listener;
+                        if (listener != null) {
+                            listener.onWritePossible();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // test finished.
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        containerThread.setDaemon(true);
+        containerThread.start();
+
+        try {
+            writeConcurrently(outputStream);
+        } finally {
+            containerThread.interrupt();
+        }
+    }
+
+    private static void writeConcurrently(TestOutputStream outputStream) throws InterruptedException {
+        final int threads = 4;
+        final int frames = 500;
+
+        final TyrusServletWriter writer = new TyrusServletWriter(new TestUpgradeHandler(outputStream));
+        final CountingHandler handler = new CountingHandler(threads * frames);
+
+        final List<Thread> writerThreads = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final byte id = (byte) i;
+            writerThreads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < frames; j++) {
+                        writer.write(ByteBuffer.wrap(new byte[]{id, (byte) (j >> 8), (byte) j}), handler);
+                    }
+                }
+            });
+        }
+        for (Thread thread : writerThreads) {
+            thread.start();
+        }
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+
+        assertTrue(handler.completedLatch.await(5, TimeUnit.SECONDS));
+        assertNull(handler.failure.get());
+        assertFalse(outputStream.concurrentAccess);
+
+        // frames are not interleaved and frames of each writer are written in order.
+        final byte[] written = outputStream.written.toByteArray();
+        assertEquals(threads * frames * 3, written.length);
+        final int[] next = new int[threads];
+        for (int i = 0; i < written.length; i += 3) {
+            final int id = written[i];
+            final int sequence = ((written[i + 1] & 0xff) << 8) | (written[i + 2] & 0xff);
+            assertEquals(next[id]++, sequence);
+        }
+        for (int i = 0; i < threads; i++) {
+            assertEquals(frames, next[i]);
+        }
+    }
+
+    @Test
+    public void testNotReadyHandoff() throws IOException {
+        final TestOutputStream outputStream = new TestOutputStream();
+        final TyrusServletWriter writer = new TyrusServletWriter(new TestUpgradeHandler(outputStream));
+        final CountingHandler first = new CountingHandler(1);
+        final CountingHandler second = new CountingHandler(1);
+
+        // the stream stops being ready after the first write.
+        outputStream.writesUntilNotReady = 1;
+        writer.write(ByteBuffer.wrap(new byte[]{1, 2}), first);
+        writer.write(ByteBuffer.wrap(new byte[]{3}), second);
+
+        // nothing is flushed and completed until the stream is ready again.
+        assertSame(writer, outputStream.listener);
+        assertEquals(0, outputStream.flushes);
+        assertEquals(1, first.completedLatch.getCount());
+        assertEquals(1, second.completedLatch.getCount());
+        assertArrayEquals(new byte[]{1, 2}, outputStream.written.toByteArray());
+
+        outputStream.ready = true;
+        writer.onWritePossible();
+
+        assertEquals(1, outputStream.flushes);
+        assertEquals(0, first.completedLatch.getCount());
+        assertEquals(0, second.completedLatch.getCount());
+        assertNull(first.failure.get());
+        assertNull(second.failure.get());
+        assertArrayEquals(new byte[]{1, 2, 3}, outputStream.written.toByteArray());
+    }
+
+    @Test
+    public void testDirectBuffers() throws IOException {
+        final TestOutputStream outputStream = new TestOutputStream();
+        final TyrusServletWriter writer = new TyrusServletWriter(new TestUpgradeHandler(outputStream));
+
+        final int[] sizes = new int[]{10, TyrusServletWriter.MAX_SCRATCH_SIZE, 20, TyrusServletWriter.MAX_SCRATCH_SIZE + 1, 30};
+        final CountingHandler handler = new CountingHandler(sizes.length);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        // frames are queued while the stream is not ready, so that all of them are written in one drain cycle.
+        outputStream.ready = false;
+        writer.write(ByteBuffer.wrap(new byte[0]), null);
+        for (int i = 0; i < sizes.length; i++) {
+            final byte[] data = new byte[sizes[i]];
+            Arrays.fill(data, (byte) i);
+            expected.write(data);
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(sizes[i] + 2);
+            buffer.position(1);
+            buffer.put(data);
+            buffer.flip();
+            buffer.position(1);
+            writer.write(buffer, handler);
+        }
+
+        outputStream.ready = true;
+        writer.onWritePossible();
+
+        assertEquals(0, handler.completedLatch.getCount());
+        assertNull(handler.failure.get());
+        assertArrayEquals(expected.toByteArray(), outputStream.written.toByteArray());
+    }
+
+    private static class CountingHandler extends CompletionHandler<ByteBuffer> {
+
+        private final CountDownLatch completedLatch;
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        CountingHandler(int count) {
+            completedLatch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void completed(ByteBuffer result) {
+            completedLatch.countDown();
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            failure.set(throwable);
+        }
+    }
+
+    /**
+     * Output stream which fails writes and flushes when it is not ready and records concurrent access.
+     */
+    private static class TestOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private final AtomicInteger active = new AtomicInteger();
+
+        // released when the stream becomes not ready or the listener is set.
+        private final Semaphore readinessChanges = new Semaphore(0);
+
+        private volatile boolean ready = true;
+        private volatile int writesUntilNotReady = -1;
+        private volatile int notReadyEvery = 0;
+        private volatile int writes = 0;
+        private volatile boolean concurrentAccess = false;
+        private volatile int flushes = 0;
+        private volatile WriteListener listener;
+
+        @Override
+        public boolean isReady() {
+            if (active.incrementAndGet() != 1) {
+                concurrentAccess = true;
+            }
+            try {
+                return ready;
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+            readinessChanges.release();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            enter();
+            try {
+                written.write(b, off, len);
+                if (--writesUntilNotReady == 0) {
+                    ready = false;
+                }
+                if (notReadyEvery > 0 && ++writes % notReadyEvery == 0) {
+                    ready = false;
+                    readinessChanges.release();
+                }
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            enter();
+            try {
+                flushes++;
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        private void enter() {
+            if (active.incrementAndGet() != 1) {
+                concurrentAccess = true;
+            }
+            if (!ready) {
+                active.decrementAndGet();
+                throw new IllegalStateException("Not ready.");
+            }
+        }
+    }
+
+    private static class TestUpgradeHandler extends TyrusHttpUpgradeHandler {
+
+        private final WebConnection webConnection;
+
+        TestUpgradeHandler(final ServletOutputStream outputStream) {
+            webConnection = new WebConnection() {
+                @Override
+                public ServletInputStream getInputStream() throws IOException {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public ServletOutputStream getOutputStream() throws IOException {
+                    return outputStream;
+                }
+
+                @Override
+                public void close() throws Exception {
+                }
+            };
+        }
+
+        @Override
+        WebConnection getWebConnection() {
+            return webConnection;
+        }
+    }
+}
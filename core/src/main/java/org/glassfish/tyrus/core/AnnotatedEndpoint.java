@@ -89,12 +89,9 @@ public class AnnotatedEndpoint extends Endpoint {
 
     private final Object annotatedInstance;
     private final Class<?> annotatedClass;
-    private final Method onOpenMethod;
-    private final Method onCloseMethod;
-    private final Method onErrorMethod;
-    private final ParameterExtractor[] onOpenParameters;
-    private final ParameterExtractor[] onCloseParameters;
-    private final ParameterExtractor[] onErrorParameters;
+    private final CallbackInvoker onOpenInvoker;
+    private final CallbackInvoker onCloseInvoker;
+    private final CallbackInvoker onErrorInvoker;
     private final EndpointConfig configuration;
     private final ComponentProviderService componentProvider;
     private final EndpointEventListener endpointEventListener;
@@ -132,6 +129,30 @@ public class AnnotatedEndpoint extends Endpoint {
                 incomingBufferSize, collector, EndpointEventListener.NO_OP);
     }
 
+    /**
+     * Create {@link AnnotatedEndpoint} which shares validated callbacks of given client endpoint, but has its own
+     * {@link EndpointConfig}, {@link javax.websocket.ClientEndpointConfig.Configurator} and user properties.
+     *
+     * @param template  annotated client endpoint created by {@link #fromClass} without any errors.
+     * @param collector error collector.
+     * @return new instance.
+     */
+    public static AnnotatedEndpoint fromTemplate(AnnotatedEndpoint template, ErrorCollector collector) {
+        return new AnnotatedEndpoint(template, template.createEndpointConfig(template.annotatedClass, false, collector));
+    }
+
+    private AnnotatedEndpoint(AnnotatedEndpoint template, EndpointConfig configuration) {
+        this.configuration = configuration;
+        this.annotatedInstance = template.annotatedInstance;
+        this.annotatedClass = template.annotatedClass;
+        this.endpointEventListener = template.endpointEventListener;
+        this.componentProvider = template.componentProvider;
+        this.onOpenInvoker = template.onOpenInvoker;
+        this.onCloseInvoker = template.onCloseInvoker;
+        this.onErrorInvoker = template.onErrorInvoker;
+        this.messageHandlerFactories.addAll(template.messageHandlerFactories);
+    }
+
     private AnnotatedEndpoint(Class<?> annotatedClass, Object instance, ComponentProviderService componentProvider,
                               Boolean isServerEndpoint, int incomingBufferSize, ErrorCollector collector, EndpointEventListener endpointEventListener) {
         this.configuration = createEndpointConfig(annotatedClass, isServerEndpoint, collector);
@@ -220,7 +241,7 @@ public class AnnotatedEndpoint extends Endpoint {
                     if (unknownParams.size() == 1) {
                         Map.Entry<Integer, Class<?>> entry = unknownParams.entrySet().iterator().next();
                         extractors[entry.getKey()] = new ParamValue(0);
-                        handlerFactory = new WholeHandler(componentProvider.getInvocableMethod(m), extractors, entry.getValue(), maxMessageSize);
+                        handlerFactory = new WholeHandler(new CallbackInvoker(componentProvider.getInvocableMethod(m), extractors), entry.getValue(), maxMessageSize);
                         messageHandlerFactories.add(handlerFactory);
                         validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                     } else if (unknownParams.size() == 2) {
@@ -236,7 +257,7 @@ public class AnnotatedEndpoint extends Endpoint {
                         extractors[message.getKey()] = new ParamValue(0);
                         extractors[last.getKey()] = new ParamValue(1);
                         if (last.getValue() == boolean.class || last.getValue() == Boolean.class) {
-                            handlerFactory = new PartialHandler(componentProvider.getInvocableMethod(m), extractors, message.getValue(), maxMessageSize);
+                            handlerFactory = new PartialHandler(new CallbackInvoker(componentProvider.getInvocableMethod(m), extractors), message.getValue(), maxMessageSize);
                             messageHandlerFactories.add(handlerFactory);
                             validityChecker.checkOnMessageParams(m, handlerFactory.create(null));
                         } else {
@@ -249,12 +270,9 @@ public class AnnotatedEndpoint extends Endpoint {
             }
         }
 
-        this.onOpenMethod = onOpen == null ? null : componentProvider.getInvocableMethod(onOpen);
-        this.onErrorMethod = onError == null ? null : componentProvider.getInvocableMethod(onError);
-        this.onCloseMethod = onClose == null ? null : componentProvider.getInvocableMethod(onClose);
-        this.onOpenParameters = onOpenParameters;
-        this.onErrorParameters = onErrorParameters;
-        this.onCloseParameters = onCloseParameters;
+        this.onOpenInvoker = onOpen == null ? null : new CallbackInvoker(componentProvider.getInvocableMethod(onOpen), onOpenParameters);
+        this.onErrorInvoker = onError == null ? null : new CallbackInvoker(componentProvider.getInvocableMethod(onError), onErrorParameters);
+        this.onCloseInvoker = onClose == null ? null : new CallbackInvoker(componentProvider.getInvocableMethod(onClose), onCloseParameters);
     }
 
     private EndpointConfig createEndpointConfig(Class<?> annotatedClass, boolean isServerEndpoint, ErrorCollector collector) {
@@ -444,42 +462,41 @@ public class AnnotatedEndpoint extends Endpoint {
         return null;
     }
 
-    private Object callMethod(Method method, ParameterExtractor[] extractors, Session session, boolean callOnError, Object... params) {
-        ErrorCollector collector = new ErrorCollector();
-        Object[] paramValues = new Object[extractors.length];
-
+    private Object callMethod(CallbackInvoker invoker, Session session, boolean callOnError, Object... params) {
         try {
-            final Object endpoint = annotatedInstance != null ? annotatedInstance :
-                    componentProvider.getInstance(annotatedClass, session, collector);
+            final Object endpoint;
 
-            // TYRUS-325: Server do not close session properly if non-instantiable endpoint class is provided
-            if (callOnError && endpoint == null) {
-                if (!collector.isEmpty()) {
-                    Throwable t = collector.composeComprehensiveException();
-                    LOGGER.log(Level.FINE, t.getMessage(), t);
-                }
-                try {
-                    session.close(CloseReasons.UNEXPECTED_CONDITION.getCloseReason());
-                } catch (Exception e) {
-                    LOGGER.log(Level.FINEST, e.getMessage(), e);
+            if (annotatedInstance != null) {
+                endpoint = annotatedInstance;
+            } else {
+                ErrorCollector collector = new ErrorCollector();
+                endpoint = componentProvider.getInstance(annotatedClass, session, collector);
+
+                // TYRUS-325: Server do not close session properly if non-instantiable endpoint class is provided
+                if (callOnError && endpoint == null) {
+                    if (!collector.isEmpty()) {
+                        Throwable t = collector.composeComprehensiveException();
+                        LOGGER.log(Level.FINE, t.getMessage(), t);
+                    }
+                    try {
+                        session.close(CloseReasons.UNEXPECTED_CONDITION.getCloseReason());
+                    } catch (Exception e) {
+                        LOGGER.log(Level.FINEST, e.getMessage(), e);
+                    }
+                    return null;
                 }
-                return null;
-            }
 
-            if (!collector.isEmpty()) {
-                throw collector.composeComprehensiveException();
-            }
-
-            for (int i = 0; i < paramValues.length; i++) {
-                paramValues[i] = extractors[i].value(session, params);
+                if (!collector.isEmpty()) {
+                    throw collector.composeComprehensiveException();
+                }
             }
 
-            return method.invoke(endpoint, paramValues);
+            return invoker.invoke(endpoint, session, params);
         } catch (Exception e) {
             if (callOnError) {
                 onError(session, (e instanceof InvocationTargetException ? e.getCause() : e));
             } else {
-                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(method), e);
+                LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_EXCEPTION_FROM_ON_ERROR(invoker.method), e);
             }
         }
 
@@ -488,8 +505,8 @@ public class AnnotatedEndpoint extends Endpoint {
 
     void onClose(CloseReason closeReason, Session session) {
         try {
-            if (onCloseMethod != null) {
-                callMethod(onCloseMethod, onCloseParameters, session, true, closeReason);
+            if (onCloseInvoker != null) {
+                callMethod(onCloseInvoker, session, true, closeReason);
             }
         } finally {
             componentProvider.removeSession(session);
@@ -503,8 +520,8 @@ public class AnnotatedEndpoint extends Endpoint {
 
     @Override
     public void onError(Session session, Throwable thr) {
-        if (onErrorMethod != null) {
-            callMethod(onErrorMethod, onErrorParameters, session, false, thr);
+        if (onErrorInvoker != null) {
+            callMethod(onErrorInvoker, session, false, thr);
         } else {
             LOGGER.log(Level.INFO, LocalizationMessages.ENDPOINT_UNHANDLED_EXCEPTION(annotatedClass.getCanonicalName()), thr);
         }
@@ -522,8 +539,8 @@ public class AnnotatedEndpoint extends Endpoint {
             session.addMessageHandler(f.create(session));
         }
 
-        if (onOpenMethod != null) {
-            callMethod(onOpenMethod, onOpenParameters, session, true);
+        if (onOpenInvoker != null) {
+            callMethod(onOpenInvoker, session, true);
         }
     }
 
@@ -544,15 +561,67 @@ public class AnnotatedEndpoint extends Endpoint {
         }
     }
 
+    /**
+     * Endpoint callback resolved at deployment time.
+     * <p/>
+     * Access checks are suppressed once and the way how extracted values map to method parameters is computed in
+     * advance, so that invocation of the callback does not repeat this work for every message.
+     */
+    private static final class CallbackInvoker {
+        private static final Object[] NO_ARGUMENTS = new Object[0];
+
+        private final Method method;
+        private final ParameterExtractor[] extractors;
+        // true iff method parameters are exactly the values passed to the invocation, in the same order.
+        private final boolean passThrough;
+
+        CallbackInvoker(Method method, ParameterExtractor[] extractors) {
+            this.method = method;
+            this.extractors = extractors;
+
+            boolean passThrough = true;
+            for (int i = 0; i < extractors.length; i++) {
+                if (!(extractors[i] instanceof ParamValue) || ((ParamValue) extractors[i]).index != i) {
+                    passThrough = false;
+                    break;
+                }
+            }
+            this.passThrough = passThrough;
+
+            if (!method.isAccessible()) {
+                try {
+                    method.setAccessible(true);
+                } catch (SecurityException e) {
+                    LOGGER.log(Level.FINEST, e.getMessage(), e);
+                }
+            }
+        }
+
+        Object invoke(Object endpoint, Session session, Object... params) throws Exception {
+            final Object[] arguments;
+
+            if (extractors.length == 0) {
+                arguments = NO_ARGUMENTS;
+            } else if (passThrough && params.length == extractors.length) {
+                arguments = params;
+            } else {
+                arguments = new Object[extractors.length];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = extractors[i].value(session, params);
+                }
+            }
+
+            return method.invoke(endpoint, arguments);
+        }
+    }
+
     private abstract class MessageHandlerFactory {
-        final Method method;
-        final ParameterExtractor[] extractors;
+        final CallbackInvoker invoker;
         final Class<?> type;
         final long maxMessageSize;
 
-        MessageHandlerFactory(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            this.method = method;
-            this.extractors = extractors;
+        MessageHandlerFactory(CallbackInvoker invoker, Class<?> type, long maxMessageSize) {
+            this.invoker = invoker;
             this.type = (PrimitivesToWrappers.getPrimitiveWrapper(type) == null) ? type : PrimitivesToWrappers.getPrimitiveWrapper(type);
             this.maxMessageSize = maxMessageSize;
         }
@@ -561,8 +630,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class WholeHandler extends MessageHandlerFactory {
-        WholeHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        WholeHandler(CallbackInvoker invoker, Class<?> type, long maxMessageSize) {
+            super(invoker, type, maxMessageSize);
         }
 
         @Override
@@ -570,7 +639,7 @@ public class AnnotatedEndpoint extends Endpoint {
             return new BasicMessageHandler() {
                 @Override
                 public void onMessage(Object message) {
-                    Object result = callMethod(method, extractors, session, true, message);
+                    Object result = callMethod(invoker, session, true, message);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
@@ -594,8 +663,8 @@ public class AnnotatedEndpoint extends Endpoint {
     }
 
     private class PartialHandler extends MessageHandlerFactory {
-        PartialHandler(Method method, ParameterExtractor[] extractors, Class<?> type, long maxMessageSize) {
-            super(method, extractors, type, maxMessageSize);
+        PartialHandler(CallbackInvoker invoker, Class<?> type, long maxMessageSize) {
+            super(invoker, type, maxMessageSize);
         }
 
         @Override
@@ -604,7 +673,7 @@ public class AnnotatedEndpoint extends Endpoint {
 
                 @Override
                 public void onMessage(Object partialMessage, boolean last) {
-                    Object result = callMethod(method, extractors, session, true, partialMessage, last);
+                    Object result = callMethod(invoker, session, true, partialMessage, last);
                     if (result != null) {
                         try {
                             session.getBasicRemote().sendObject(result);
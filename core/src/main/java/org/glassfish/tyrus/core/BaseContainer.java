@@ -50,6 +50,8 @@ import java.util.logging.Logger;
 
 import javax.websocket.WebSocketContainer;
 
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
 /**
  * Base WebSocket container.
  * <p/>
@@ -59,6 +61,20 @@ import javax.websocket.WebSocketContainer;
  */
 public abstract class BaseContainer extends ExecutorServiceProvider implements WebSocketContainer {
 
+    /**
+     * Container property which makes the container use a new virtual thread for each task submitted to
+     * {@link #getExecutorService()} instead of a pool of platform threads.
+     * <p/>
+     * Tasks run on that executor include blocking sends through {@link javax.websocket.RemoteEndpoint.Basic} issued
+     * from asynchronous contexts, consumers of streamed ({@link java.io.Reader}, {@link java.io.InputStream}) messages
+     * and parallel broadcast. The property is ignored when the runtime does not support virtual threads or when
+     * a container-managed executor service is available.
+     * <p/>
+     * Server-side value is read from the properties passed to the server container, client-side value from
+     * {@code ClientManager#getProperties()}. Value is expected to be {@link Boolean}, default value is {@code false}.
+     */
+    public static final String VIRTUAL_THREADS_ENABLED = "org.glassfish.tyrus.virtualThreadsEnabled";
+
     private static final Logger LOGGER = Logger.getLogger(BaseContainer.class.getName());
 
     private final ExecutorService managedExecutorService;
@@ -72,6 +88,7 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
 
     private volatile ExecutorService executorService = null;
     private volatile ScheduledExecutorService scheduledExecutorService = null;
+    private volatile TimingWheel timingWheel = null;
 
     public BaseContainer() {
         this.managedExecutorService = lookupManagedExecutorService();
@@ -91,6 +108,9 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
      * {@code java:comp/DefaultManagedExecutorService} or if the lookup has failed, it returns a
      * {@link java.util.concurrent.ExecutorService} created and managed by this instance of
      * {@link org.glassfish.tyrus.core.BaseContainer}.
+     * <p/>
+     * The created executor service starts a virtual thread for each task when {@link #isVirtualThreadsEnabled()}
+     * returns {@code true} and the runtime supports it.
      *
      * @return executor service.
      */
@@ -103,7 +123,8 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         if (executorService == null) {
             synchronized (EXECUTORS_CLEAN_UP_LOCK) {
                 if (executorService == null) {
-                    executorService = Executors.newCachedThreadPool(threadFactory);
+                    final ExecutorService virtualThreadExecutor = isVirtualThreadsEnabled() ? createVirtualThreadExecutor() : null;
+                    executorService = virtualThreadExecutor != null ? virtualThreadExecutor : Executors.newCachedThreadPool(threadFactory);
                 }
             }
         }
@@ -116,6 +137,9 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
      * {@code java:comp/DefaultManagedScheduledExecutorService} or if the lookup has failed it returns a
      * {@link java.util.concurrent.ScheduledExecutorService} created and managed by this instance of
      * {@link org.glassfish.tyrus.core.BaseContainer}.
+     * <p/>
+     * Scheduled tasks are short (timeouts, reconnect attempts), so the created executor service always uses a small
+     * pool of platform threads, regardless of {@link #VIRTUAL_THREADS_ENABLED}.
      *
      * @return scheduled executor service.
      */
@@ -136,11 +160,47 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         return scheduledExecutorService;
     }
 
+    /**
+     * Whether {@link #getExecutorService()} should create virtual threads.
+     * <p/>
+     * Containers which support {@link #VIRTUAL_THREADS_ENABLED} override this method. The value is evaluated once,
+     * when the executor service is created.
+     *
+     * @return {@code true} iff virtual threads should be used, default implementation returns {@code false}.
+     */
+    protected boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
+    /**
+     * Get the {@link TimingWheel} shared by all sessions of this container.
+     * <p/>
+     * The wheel is advanced by a task running on {@link #getScheduledExecutorService()}.
+     *
+     * @return timing wheel used for scheduling session timeouts.
+     */
+    TimingWheel getTimingWheel() {
+        if (timingWheel == null) {
+            synchronized (EXECUTORS_CLEAN_UP_LOCK) {
+                if (timingWheel == null) {
+                    timingWheel = new TimingWheel(getScheduledExecutorService());
+                }
+            }
+        }
+
+        return timingWheel;
+    }
+
     /**
      * Release executor services managed by this instance. Executor services obtained via JNDI lookup won't be
      * shut down.
      */
     public void shutdown() {
+        if (timingWheel != null) {
+            timingWheel.stop();
+            timingWheel = null;
+        }
+
         if (executorService != null) {
             executorService.shutdown();
             executorService = null;
@@ -169,6 +229,18 @@ public abstract class BaseContainer extends ExecutorServiceProvider implements W
         }
     }
 
+    private ExecutorService createVirtualThreadExecutor() {
+        // Tyrus has to run on runtimes without virtual threads, so the factory method is looked up reflectively.
+        try {
+            final Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (Exception e) {
+            LOGGER.log(Level.CONFIG, LocalizationMessages.VIRTUAL_THREADS_NOT_SUPPORTED(), e);
+        }
+
+        return null;
+    }
+
     private ExecutorService lookupManagedExecutorService() {
         // Get the default ManagedExecutorService, if available
         try {
@@ -0,0 +1,208 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.SharedProcessingExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+
+/**
+ * Framed representations of one broadcasted message.
+ * <p/>
+ * Sessions are grouped by negotiated extensions and their outgoing processing keys (see
+ * {@link SharedProcessingExtension}); the message is processed by extensions and framed only once per group and all
+ * sessions in the group share the resulting bytes. Extensions of the other sessions in the group are notified by
+ * {@link SharedProcessingExtension#onSharedOutgoing(ExtendedExtension.ExtensionContext, Frame, Frame)}. Sessions which
+ * cannot share outgoing processing (client side masking, stateful extensions) get the message framed separately.
+ * <p/>
+ * Instances are thread safe, so one instance can be used from all threads executing the broadcast.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+final class BroadcastFrames {
+
+    private static final Logger LOGGER = Logger.getLogger(BroadcastFrames.class.getName());
+    private static final List<Object> NO_EXTENSIONS = Collections.emptyList();
+
+    private final Frame frame;
+    private final ConcurrentMap<List<Object>, SharedFrame> sharedFrames = new ConcurrentHashMap<List<Object>, SharedFrame>();
+
+    /**
+     * Constructor.
+     *
+     * @param frame data frame to be broadcasted.
+     */
+    BroadcastFrames(Frame frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * Get broadcasted frame serialized for a connection represented by given {@link ProtocolHandler}.
+     * <p/>
+     * Returned buffer must not be modified, only its position and limit can be changed. Buffers shared by more
+     * connections are duplicates backed by the same content.
+     *
+     * @param protocolHandler protocol handler of the connection.
+     * @return serialized frame.
+     */
+    ByteBuffer getFrame(ProtocolHandler protocolHandler) {
+        final List<Object> key = getSharingKey(protocolHandler);
+        if (key == null) {
+            return protocolHandler.frame(frame);
+        }
+
+        SharedFrame shared = sharedFrames.get(key);
+        if (shared == null) {
+            // more threads can frame the message concurrently; first one wins, the outputs are identical anyway.
+            final List<Frame> processedFrames = new ArrayList<Frame>();
+            final SharedFrame framed = new SharedFrame(protocolHandler.frame(frame, processedFrames), processedFrames);
+            shared = sharedFrames.putIfAbsent(key, framed);
+            if (shared == null) {
+                shared = framed;
+            }
+            // extensions of this connection processed the frame even when the output of another thread is used.
+        } else if (!key.isEmpty()) {
+            notifyExtensions(protocolHandler, shared.processedFrames);
+        }
+
+        // duplicate (not read-only buffer) keeps backing array accessible to the writers.
+        return shared.buffer.duplicate();
+    }
+
+    /**
+     * Let extensions of a connection sharing a frame processed for another connection know about the processing.
+     *
+     * @param protocolHandler protocol handler of the connection.
+     * @param processedFrames output of each extension which processed the shared frame.
+     */
+    private void notifyExtensions(ProtocolHandler protocolHandler, List<Frame> processedFrames) {
+        final ExtendedExtension.ExtensionContext extensionContext = protocolHandler.getExtensionContext();
+        Frame input = frame;
+        int index = 0;
+
+        // sharing key guarantees all the extended extensions are shared processing ones, in the same order.
+        for (Extension extension : protocolHandler.getExtensions()) {
+            if (extension instanceof SharedProcessingExtension) {
+                final Frame processed = processedFrames.get(index++);
+                try {
+                    ((SharedProcessingExtension) extension).onSharedOutgoing(extensionContext, input, processed);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
+                }
+                input = processed;
+            }
+        }
+    }
+
+    /**
+     * Number of distinct serialized frames shared by connections.
+     *
+     * @return number of groups of connections sharing one serialized frame.
+     */
+    int getSharedFrameCount() {
+        return sharedFrames.size();
+    }
+
+    /**
+     * Get key identifying connections which produce identical serialized frame.
+     *
+     * @param protocolHandler protocol handler of the connection.
+     * @return sharing key or {@code null} if the frame has to be serialized separately for this connection.
+     */
+    private static List<Object> getSharingKey(ProtocolHandler protocolHandler) {
+        if (protocolHandler.isClient()) {
+            // each frame sent by client has to have its own masking key.
+            return null;
+        }
+
+        if (!protocolHandler.hasExtensions()) {
+            return NO_EXTENSIONS;
+        }
+
+        final List<Extension> extensions = protocolHandler.getExtensions();
+        final List<Object> key = new ArrayList<Object>(extensions.size() * 2);
+
+        for (Extension extension : extensions) {
+            if (extension instanceof SharedProcessingExtension) {
+                final Object processingKey = ((SharedProcessingExtension) extension).getOutgoingProcessingKey(
+                        protocolHandler.getExtensionContext());
+                if (processingKey == null) {
+                    return null;
+                }
+                // server side extensions are usually wrapped per handshake, so the name identifies the extension.
+                key.add(extension.getName());
+                key.add(processingKey);
+            } else if (extension instanceof ExtendedExtension) {
+                // outgoing processing might depend on the connection state.
+                return null;
+            }
+            // other extensions don't process frames.
+        }
+
+        return key;
+    }
+
+    /**
+     * Serialized frame shared by a group of connections.
+     */
+    private static final class SharedFrame {
+
+        private final ByteBuffer buffer;
+        private final List<Frame> processedFrames;
+
+        SharedFrame(ByteBuffer buffer, List<Frame> processedFrames) {
+            this.buffer = buffer;
+            this.processedFrames = processedFrames;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TyrusFrame;
+import org.glassfish.tyrus.core.l10n.LocalizationMessages;
+import org.glassfish.tyrus.spi.CompletionHandler;
+
+/**
+ * Sends one broadcasted frame to a snapshot of sessions.
+ * <p/>
+ * When executed in parallel, workers submitted to an {@link ExecutorService} claim small batches of sessions from
+ * a shared index until all sessions are processed, so a slow batch does not delay the others and the thread which
+ * started the broadcast is never blocked. Completion of the whole broadcast is signalled by an aggregate
+ * {@link Future}, per-session futures are created only when requested.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+final class BroadcastTask implements Runnable {
+
+    /**
+     * Number of sessions claimed by a worker at once. It is also the minimal number of sessions per worker.
+     */
+    static final int BATCH_SIZE = 16;
+
+    private final TyrusWebSocket[] webSockets;
+    private final TyrusSession[] sessions;
+    private final TyrusFuture<Frame>[] sessionFutures;
+    private final BroadcastFrames broadcastFrames;
+    private final TyrusFrame.FrameType frameType;
+    private final long payloadLength;
+
+    private final AtomicInteger nextIndex = new AtomicInteger(0);
+    private final AtomicInteger pending;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final TyrusFuture<Void> future = new TyrusFuture<Void>();
+
+    /**
+     * Constructor.
+     *
+     * @param webSocketToSession  sessions the frame will be sent to. Sessions which are not open are skipped.
+     * @param dataFrame           frame to be broadcasted.
+     * @param createSessionFutures {@code true} if a future should be created for every session,
+     *                            see {@link #getSessionFutures()}.
+     */
+    @SuppressWarnings("unchecked")
+    BroadcastTask(Map<TyrusWebSocket, TyrusSession> webSocketToSession, TyrusFrame dataFrame, boolean createSessionFutures) {
+        int size = webSocketToSession.size();
+        TyrusWebSocket[] webSockets = new TyrusWebSocket[size];
+        TyrusSession[] sessions = new TyrusSession[size];
+
+        int count = 0;
+        for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
+            if (e.getValue().isOpen()) {
+                if (count == webSockets.length) {
+                    // sessions added since the size was read.
+                    webSockets = Arrays.copyOf(webSockets, count * 2 + 1);
+                    sessions = Arrays.copyOf(sessions, count * 2 + 1);
+                }
+                webSockets[count] = e.getKey();
+                sessions[count] = e.getValue();
+                count++;
+            }
+        }
+
+        this.webSockets = count == webSockets.length ? webSockets : Arrays.copyOf(webSockets, count);
+        this.sessions = count == sessions.length ? sessions : Arrays.copyOf(sessions, count);
+
+        if (createSessionFutures) {
+            sessionFutures = new TyrusFuture[count];
+            for (int i = 0; i < count; i++) {
+                sessionFutures[i] = new TyrusFuture<Frame>();
+            }
+        } else {
+            sessionFutures = null;
+        }
+
+        this.broadcastFrames = new BroadcastFrames(dataFrame);
+        this.frameType = dataFrame.getFrameType();
+        this.payloadLength = dataFrame.getPayloadLength();
+        this.pending = new AtomicInteger(count);
+
+        if (count == 0) {
+            future.setResult(null);
+        }
+    }
+
+    /**
+     * Send the frame to all sessions.
+     * <p/>
+     * When {@code executor} is {@code null}, all sends are initiated from the calling thread. Otherwise the work is
+     * submitted to the executor and this method returns immediately.
+     *
+     * @param executor executor used for parallel execution or {@code null}.
+     */
+    void execute(ExecutorService executor) {
+        if (executor == null) {
+            run();
+            return;
+        }
+
+        final int sessionCount = sessions.length;
+        final int maxWorkerCount = sessionCount / BATCH_SIZE == 0 ? 1 : sessionCount / BATCH_SIZE;
+        final int workerCount = Math.min(Runtime.getRuntime().availableProcessors(), maxWorkerCount);
+
+        for (int i = 0; i < workerCount; i++) {
+            try {
+                executor.submit(this);
+            } catch (RejectedExecutionException e) {
+                // remaining sessions will be processed by already submitted workers or by the calling thread.
+                if (i == 0) {
+                    run();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Process batches of sessions until there are none left.
+     */
+    @Override
+    public void run() {
+        int from;
+        while ((from = nextIndex.getAndAdd(BATCH_SIZE)) < sessions.length) {
+            final int to = Math.min(from + BATCH_SIZE, sessions.length);
+            for (int i = from; i < to; i++) {
+                send(i);
+            }
+        }
+    }
+
+    /**
+     * Get aggregate future, which is completed when the frame was sent to all the sessions. If sending to any
+     * session fails, the future fails with the first encountered exception (after all the sends are completed).
+     *
+     * @return aggregate future of the broadcast.
+     */
+    Future<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * Get map of sessions and futures of frame sent to each session.
+     *
+     * @return map of sessions and futures. The map is empty if the task was not created with per-session futures.
+     */
+    Map<Session, Future<?>> getSessionFutures() {
+        final Map<Session, Future<?>> result = new HashMap<Session, Future<?>>();
+        if (sessionFutures != null) {
+            for (int i = 0; i < sessions.length; i++) {
+                result.put(sessions[i], sessionFutures[i]);
+            }
+        }
+
+        return result;
+    }
+
+    private void send(int index) {
+        final TyrusWebSocket webSocket = webSockets[index];
+        final SessionCompletionHandler completionHandler =
+                new SessionCompletionHandler(sessionFutures == null ? null : sessionFutures[index]);
+
+        try {
+            webSocket.sendRawFrame(broadcastFrames.getFrame(webSocket.getProtocolHandler()), completionHandler);
+            webSocket.getMessageEventListener().onFrameSent(frameType, payloadLength);
+        } catch (Throwable t) {
+            completionHandler.failed(t);
+        }
+    }
+
+    private void onSessionDone() {
+        if (pending.decrementAndGet() == 0) {
+            final Throwable throwable = failure.get();
+            if (throwable == null) {
+                future.setResult(null);
+            } else {
+                future.setFailure(throwable);
+            }
+        }
+    }
+
+    /**
+     * Completes per-session future (if any) and counts down pending sends. Only the first notification is taken
+     * into account.
+     */
+    private class SessionCompletionHandler extends CompletionHandler<Frame> {
+
+        private final TyrusFuture<Frame> sessionFuture;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        SessionCompletionHandler(TyrusFuture<Frame> sessionFuture) {
+            this.sessionFuture = sessionFuture;
+        }
+
+        @Override
+        public void completed(Frame result) {
+            if (done.compareAndSet(false, true)) {
+                if (sessionFuture != null) {
+                    sessionFuture.setResult(result);
+                }
+                onSessionDone();
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            failed(new RuntimeException(LocalizationMessages.FRAME_WRITE_CANCELLED()));
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            if (done.compareAndSet(false, true)) {
+                if (sessionFuture != null) {
+                    sessionFuture.setFailure(throwable);
+                }
+                failure.compareAndSet(null, throwable);
+                onSessionDone();
+            }
+        }
+    }
+}
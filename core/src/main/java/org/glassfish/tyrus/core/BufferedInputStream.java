@@ -1,7 +1,7 @@
 /*
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
  *
- * Copyright (c) 2013 Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2013-2014 Oracle and/or its affiliates. All rights reserved.
  *
  * The contents of this file are subject to the terms of either the GNU
  * General Public License Version 2 only ("GPL") or the Common Development
@@ -42,32 +42,178 @@ package org.glassfish.tyrus.core;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p/>
+ * Each instance represents one message. Received parts are kept in a queue and consumed directly from there. Appending
+ * a part never blocks, since it is done on the thread reading from the connection; the amount of buffered data is
+ * limited by the maximal binary message buffer size of the session and by {@link InputStreamBuffer#MAX_UNREAD_SIZE}
+ * (see {@link InputStreamBuffer}).
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedInputStream extends InputStream {
-    private final InputStreamBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final ArrayDeque<ByteBuffer> parts = new ArrayDeque<ByteBuffer>();
+
+    private int unread = 0;
+    private boolean receivedLast = false;
+    private boolean closed = false;
+    private boolean sessionClosed = false;
 
     /**
-     * Constructor.
+     * Append next message part.
      *
-     * @param buffer underlying buffer.
+     * @param part next part of the message.
+     * @param last should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
-    public BufferedInputStream(InputStreamBuffer buffer) {
-        this.buffer = buffer;
+    void appendMessagePart(ByteBuffer part, boolean last) {
+        lock.lock();
+        try {
+            if (!closed && part.hasRemaining()) {
+                parts.add(part);
+                unread += part.remaining();
+            }
+            receivedLast = last;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark the message as complete without appending anything.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            receivedLast = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSessionClosed() {
+        lock.lock();
+        try {
+            sessionClosed = true;
+            // wake up blocked threads
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public int read() throws IOException {
-        return buffer.getNextByte();
+        lock.lock();
+        try {
+            if (!awaitData()) {
+                return -1;
+            }
+
+            final ByteBuffer part = parts.peek();
+            final int result = part.get() & 0xFF;
+            if (!part.hasRemaining()) {
+                parts.poll();
+            }
+
+            unread--;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(byte[] destination, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        lock.lock();
+        try {
+            if (!awaitData()) {
+                return -1;
+            }
+
+            int read = 0;
+            while (read < length && !parts.isEmpty()) {
+                final ByteBuffer part = parts.peek();
+                final int size = Math.min(length - read, part.remaining());
+                part.get(destination, offset + read, size);
+                read += size;
+
+                if (!part.hasRemaining()) {
+                    parts.poll();
+                }
+            }
+
+            unread -= read;
+            return read;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        lock.lock();
+        try {
+            return unread;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void close() {
-        this.buffer.finishReading();
+        lock.lock();
+        try {
+            closed = true;
+            parts.clear();
+            unread = 0;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until there is something to read. Has to be called with the lock held.
+     *
+     * @return {@code true} iff there are bytes to be read, {@code false} when the end of the message was reached.
+     * @throws IOException when the session was closed before the whole message was received or the waiting thread was
+     *                     interrupted.
+     */
+    private boolean awaitData() throws IOException {
+        while (parts.isEmpty()) {
+            if (receivedLast || closed) {
+                return false;
+            }
+
+            // don't let the reader block on a closed session
+            if (sessionClosed) {
+                throw new IOException("Websocket session has been closed.");
+            }
+
+            try {
+                condition.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        return true;
     }
-}
\ No newline at end of file
+}
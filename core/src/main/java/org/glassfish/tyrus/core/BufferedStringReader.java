@@ -41,39 +41,161 @@
 package org.glassfish.tyrus.core;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Passed to the (@link MessageHandler.Whole} in case that partial messages are being received.
+ * <p/>
+ * Each instance represents one message. Received parts are kept in a queue and consumed directly from there, so the
+ * cost of reading does not depend on how much of the message is still buffered. Appending a part never blocks, since
+ * it is done on the thread reading from the connection; the amount of buffered data is limited by the maximal text
+ * message buffer size of the session and by {@link ReaderBuffer#MAX_UNREAD_SIZE} (see {@link ReaderBuffer}).
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
  */
 class BufferedStringReader extends Reader {
-    private final ReaderBuffer readerBuffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final ArrayDeque<String> parts = new ArrayDeque<String>();
+
+    // position in the first part of the queue.
+    private int position = 0;
+    private int unread = 0;
+    private boolean receivedLast = false;
+    private boolean closed = false;
+    private boolean sessionClosed = false;
 
     /**
-     * Constructor.
+     * Append next message part.
      *
-     * @param readerBuffer underlying buffer.
+     * @param part next part of the message.
+     * @param last should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
-    public BufferedStringReader(ReaderBuffer readerBuffer) {
-        this.readerBuffer = readerBuffer;
+    void appendMessagePart(String part, boolean last) {
+        lock.lock();
+        try {
+            if (!closed && part.length() > 0) {
+                parts.add(part);
+                unread += part.length();
+            }
+            receivedLast = last;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark the message as complete without appending anything.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            receivedLast = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onSessionClosed() {
+        lock.lock();
+        try {
+            sessionClosed = true;
+            // wake up blocked threads
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public int read(char[] destination, int offsetToStart, int numberOfChars) throws IOException {
-        char[] got = readerBuffer.getNextChars(numberOfChars);
-        if (got != null) {
-            System.arraycopy(got, 0, destination, offsetToStart, got.length);
-            return got.length;
-        } else {
-            return -1;
+        if (numberOfChars == 0) {
+            return 0;
+        }
+
+        lock.lock();
+        try {
+            while (parts.isEmpty()) {
+                if (receivedLast || closed) {
+                    return -1;
+                }
+
+                // don't let the reader block on a closed session
+                if (sessionClosed) {
+                    throw new IOException("Websocket session has been closed.");
+                }
+
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            int read = 0;
+            while (read < numberOfChars && !parts.isEmpty()) {
+                final String part = parts.peek();
+                final int size = Math.min(numberOfChars - read, part.length() - position);
+                part.getChars(position, position + size, destination, offsetToStart + read);
+                position += size;
+                read += size;
+
+                if (position == part.length()) {
+                    parts.poll();
+                    position = 0;
+                }
+            }
+
+            unread -= read;
+            return read;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get number of received characters which have not been read yet.
+     *
+     * @return number of unread characters.
+     */
+    int getUnread() {
+        lock.lock();
+        try {
+            return unread;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean ready() {
+        lock.lock();
+        try {
+            return !parts.isEmpty();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void close() {
-        this.readerBuffer.finishReading();
+        lock.lock();
+        try {
+            closed = true;
+            parts.clear();
+            position = 0;
+            unread = 0;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
     }
-}
\ No newline at end of file
+}
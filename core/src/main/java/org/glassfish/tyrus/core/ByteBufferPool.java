@@ -0,0 +1,185 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.tyrus.core.monitoring.BufferPoolStatistics;
+
+/**
+ * Pool of heap {@link ByteBuffer}s used for buffering of incoming data.
+ * <p/>
+ * Buffers are organized in size classes; every class contains buffers with the same capacity, which is a power of two
+ * between {@link #MIN_BUFFER_SIZE} and {@link #MAX_POOLED_BUFFER_SIZE}. Requests for bigger buffers are always served
+ * by a new buffer and such buffers are not retained when released. Total capacity of retained buffers is limited,
+ * buffers released over the limit are left to the garbage collector.
+ * <p/>
+ * Instances are thread safe; every size class is a lock-free queue.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class ByteBufferPool implements BufferPoolStatistics {
+
+    /**
+     * Capacity of the smallest pooled buffer.
+     */
+    static final int MIN_BUFFER_SIZE = 256;
+
+    /**
+     * Capacity of the biggest pooled buffer.
+     */
+    static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Default limit of the total capacity of retained buffers.
+     */
+    static final long DEFAULT_MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+    private static final int MIN_BUFFER_SIZE_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private final Queue<ByteBuffer>[] sizeClasses;
+    private final long maxRetainedBytes;
+
+    private final AtomicLong retainedBytes = new AtomicLong(0);
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * Create pool with default limit of retained bytes.
+     */
+    public ByteBufferPool() {
+        this(DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    /**
+     * Create pool.
+     *
+     * @param maxRetainedBytes maximal total capacity of buffers retained in the pool.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+
+        final int classCount = sizeClass(MAX_POOLED_BUFFER_SIZE) + 1;
+        sizeClasses = new Queue[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /**
+     * Get a buffer with capacity at least {@code size} bytes.
+     * <p/>
+     * Returned buffer is cleared (position is {@code 0}, limit equals to its capacity). Its content is undefined.
+     *
+     * @param size requested capacity.
+     * @return buffer with capacity bigger or equal to {@code size}.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > MAX_POOLED_BUFFER_SIZE) {
+            missCount.incrementAndGet();
+            return ByteBuffer.allocate(size);
+        }
+
+        final int sizeClass = sizeClass(size);
+        final ByteBuffer buffer = sizeClasses[sizeClass].poll();
+        if (buffer != null) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            hitCount.incrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        missCount.incrementAndGet();
+        return ByteBuffer.allocate(MIN_BUFFER_SIZE << sizeClass);
+    }
+
+    /**
+     * Return a buffer to the pool.
+     * <p/>
+     * The buffer must not be used by the caller after it has been released. Buffers not obtained from
+     * {@link #acquire(int)} are ignored.
+     *
+     * @param buffer buffer to be released.
+     */
+    public void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity > MAX_POOLED_BUFFER_SIZE || capacity < MIN_BUFFER_SIZE || Integer.bitCount(capacity) != 1
+                || !buffer.hasArray() || buffer.arrayOffset() != 0) {
+            return;
+        }
+
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+
+        sizeClasses[sizeClass(capacity)].offer(buffer);
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Index of the smallest size class with buffers of capacity at least {@code size}.
+     */
+    private static int sizeClass(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_BUFFER_SIZE_SHIFT;
+    }
+}
@@ -186,11 +186,7 @@ public class ComponentProviderService {
                     } else {
                         loaded = getInstance(c);
                         if (loaded != null) {
-                            if (loaded instanceof Encoder) {
-                                ((Encoder) loaded).init(endpointConfig);
-                            } else if (loaded instanceof Decoder) {
-                                ((Decoder) loaded).init(endpointConfig);
-                            }
+                            initCoder(loaded, endpointConfig);
                             sessionToObject.get(session).put(c, loaded);
                         }
                     }
@@ -198,11 +194,7 @@ public class ComponentProviderService {
             } else {
                 loaded = getInstance(c);
                 if (loaded != null) {
-                    if (loaded instanceof Encoder) {
-                        ((Encoder) loaded).init(endpointConfig);
-                    } else if (loaded instanceof Decoder) {
-                        ((Decoder) loaded).init(endpointConfig);
-                    }
+                    initCoder(loaded, endpointConfig);
                     final HashMap<Class<?>, Object> hashMap = new HashMap<Class<?>, Object>();
                     hashMap.put(c, loaded);
 
@@ -216,6 +208,60 @@ public class ComponentProviderService {
         return loaded;
     }
 
+    /**
+     * Create new instance of {@link javax.websocket.Encoder} or {@link javax.websocket.Decoder} descendant and call
+     * {@link javax.websocket.Encoder#init(javax.websocket.EndpointConfig)} or
+     * {@link javax.websocket.Decoder#init(javax.websocket.EndpointConfig)}.
+     * <p/>
+     * Created instance is not cached; caller is responsible for calling {@link #destroyCoderInstance(Object)} when
+     * the instance is no longer needed.
+     *
+     * @param c              {@link Class} whose instance will be provided.
+     * @param endpointConfig configuration corresponding to current context.
+     * @param collector      error collector.
+     * @param <T>            type of the provided instance.
+     * @return instance or {@code null} when the instance cannot be created (error is added to the collector).
+     * @see #getCoderInstance(Class, javax.websocket.Session, javax.websocket.EndpointConfig, ErrorCollector)
+     */
+    public <T> Object createCoderInstance(Class<T> c, EndpointConfig endpointConfig, ErrorCollector collector) {
+        try {
+            final Object loaded = getInstance(c);
+            initCoder(loaded, endpointConfig);
+            return loaded;
+        } catch (InstantiationException e) {
+            collector.addException(new DeploymentException(LocalizationMessages.COMPONENT_PROVIDER_THREW_EXCEPTION(c.getName()), e));
+            return null;
+        }
+    }
+
+    /**
+     * Destroy instance of {@link javax.websocket.Encoder} or {@link javax.websocket.Decoder} created by
+     * {@link #createCoderInstance(Class, javax.websocket.EndpointConfig, ErrorCollector)}.
+     *
+     * @param coder coder instance to be destroyed.
+     */
+    public void destroyCoderInstance(Object coder) {
+        if (coder instanceof Encoder) {
+            ((Encoder) coder).destroy();
+        } else if (coder instanceof Decoder) {
+            ((Decoder) coder).destroy();
+        }
+
+        for (ComponentProvider componentProvider : providers) {
+            if (componentProvider.destroy(coder)) {
+                break;
+            }
+        }
+    }
+
+    private static void initCoder(Object coder, EndpointConfig endpointConfig) {
+        if (coder instanceof Encoder) {
+            ((Encoder) coder).init(endpointConfig);
+        } else if (coder instanceof Decoder) {
+            ((Decoder) coder).init(endpointConfig);
+        }
+    }
+
     public Method getInvocableMethod(Method method) {
         for (ComponentProvider componentProvider : providers) {
             if (componentProvider.isApplicable(method.getDeclaringClass())) {
@@ -249,17 +295,7 @@ public class ComponentProviderService {
         if (classObjectMap != null) {
             synchronized (classObjectMap) {
                 for (Object o : classObjectMap.values()) {
-                    if (o instanceof Encoder) {
-                        ((Encoder) o).destroy();
-                    } else if (o instanceof Decoder) {
-                        ((Decoder) o).destroy();
-                    }
-
-                    for (ComponentProvider componentProvider : providers) {
-                        if (componentProvider.destroy(o)) {
-                            break;
-                        }
-                    }
+                    destroyCoderInstance(o);
                 }
             }
         }
@@ -44,8 +44,11 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.websocket.Extension;
 import javax.websocket.HandshakeResponse;
@@ -288,7 +291,8 @@ public final class Handshake {
             }
         }
 
-        final List<Extension> negotiatedExtensions = endpointWrapper.getNegotiatedExtensions(extensions);
+        final Map<Extension, List<Extension.Parameter>> responseParameters = new HashMap<Extension, List<Extension.Parameter>>();
+        final List<Extension> negotiatedExtensions = negotiateExtensions(endpointWrapper.getNegotiatedExtensions(extensions), responseParameters);
         if (!negotiatedExtensions.isEmpty()) {
             response.getHeaders().put(HandshakeRequest.SEC_WEBSOCKET_EXTENSIONS, Utils.getStringList(negotiatedExtensions, new Utils.Stringifier<Extension>() {
                 @Override
@@ -302,10 +306,7 @@ public final class Handshake {
 
                             @Override
                             public List<Parameter> getParameters() {
-                                // TODO! XXX FIXME
-                                // null is there because extension is wrapped and the original parameters are stored
-                                // in the wrapped instance.
-                                return ((ExtendedExtension) extension).onExtensionNegotiation(extensionContext, null);
+                                return responseParameters.get(extension);
                             }
                         });
                     } else {
@@ -318,4 +319,45 @@ public final class Handshake {
 
         return negotiatedExtensions;
     }
+
+    /**
+     * Negotiate parameters of extensions returned from {@link TyrusEndpointWrapper#getNegotiatedExtensions(List)}.
+     * <p/>
+     * {@link ExtendedExtension}s are asked for response parameters; offers declined by the extension (see
+     * {@link ExtendedExtension#onExtensionNegotiation(ExtendedExtension.ExtensionContext, List)}) are skipped. Client
+     * can offer one extension more times (with different parameters), only first accepted offer is used.
+     *
+     * @param extensions         extensions to be negotiated, in order of preference.
+     * @param responseParameters map to be filled with response parameters of accepted {@link ExtendedExtension}s.
+     * @return accepted extensions.
+     */
+    private List<Extension> negotiateExtensions(List<Extension> extensions,
+                                                Map<Extension, List<Extension.Parameter>> responseParameters) {
+        final List<Extension> result = new ArrayList<Extension>();
+        final Set<String> names = new HashSet<String>();
+
+        for (final Extension extension : extensions) {
+            if (names.contains(extension.getName())) {
+                continue;
+            }
+
+            if (extension instanceof ExtendedExtension) {
+                // null is there because extension is wrapped and the original parameters are stored in the wrapped
+                // instance.
+                final List<Extension.Parameter> parameters =
+                        ((ExtendedExtension) extension).onExtensionNegotiation(extensionContext, null);
+                if (parameters == null) {
+                    // offer declined.
+                    continue;
+                }
+
+                responseParameters.put(extension, parameters);
+            }
+
+            result.add(extension);
+            names.add(extension.getName());
+        }
+
+        return result;
+    }
 }
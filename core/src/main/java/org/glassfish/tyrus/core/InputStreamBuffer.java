@@ -40,14 +40,9 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,7 +53,9 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 /**
  * Buffer used for the case when partial messages are received by the {@link MessageHandler.Whole}.
  * </p>
- * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called in a new {@link Thread} to allow blocking reading of passed {@link java.io.InputStream}.
+ * For the first received message part {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to
+ * allow blocking reading of passed {@link java.io.InputStream}. Every message gets its own {@link BufferedInputStream},
+ * so a consumer which is still reading the previous message does not see parts of the next one.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -66,15 +63,20 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class InputStreamBuffer {
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
+    private static final Logger LOGGER = Logger.getLogger(InputStreamBuffer.class.getName());
 
-    private final List<ByteBuffer> bufferedFragments = new ArrayList<ByteBuffer>();
-    private final ExecutorService executorService;
+    /**
+     * Maximal number of received bytes which the consumer of a message has not read yet.
+     * <p/>
+     * Message parts are appended on the thread reading from the connection, which cannot wait for the consumer, so
+     * a message is failed with {@link MessageTooBigException} when its consumer falls behind by more than this (plus
+     * one message part), even if the whole message would fit into the buffer size set by {@link #resetBuffer(int)}.
+     */
+    static final int MAX_UNREAD_SIZE = 4 * 1024 * 1024;
 
-    private static final Logger LOGGER = Logger.getLogger(InputStreamBuffer.class.getName());
+    private final ExecutorService executorService;
 
-    private volatile boolean receivedLast = false;
+    private volatile boolean buffering = true;
     private volatile BufferedInputStream inputStream = null;
     private volatile MessageHandler.Whole<InputStream> messageHandler;
     private volatile int bufferSize;
@@ -89,98 +91,52 @@ class InputStreamBuffer {
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received bytes.
-     *
-     * @return next received bytes.
-     */
-    public int getNextByte() throws IOException {
-        lock.lock();
-        try {
-            if (this.bufferedFragments.isEmpty()) {
-                if (receivedLast) {
-                    this.inputStream = null;
-                    this.currentlyBuffered = 0;
-                    return -1;
-                } else { // there's more to come...so wait here...
-                    // don't let the reader block on a closed session
-                    checkClosedSession();
-
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-
-                            checkClosedSession();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            if (bufferedFragments.size() == 1 && !bufferedFragments.get(0).hasRemaining() && receivedLast) {
-                this.inputStream = null;
-                this.currentlyBuffered = 0;
-                return -1;
-            }
-
-            ByteBuffer firstBuffer = bufferedFragments.get(0);
-            byte result = firstBuffer.get();
-
-            if (!firstBuffer.hasRemaining()) {
-                bufferedFragments.remove(0);
-            }
-
-            return result & 0xFF;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        this.bufferedFragments.clear();
-        this.inputStream = null;
-    }
-
     /**
      * Append next message part to the buffer.
+     * <p/>
+     * Never blocks; the consumer might fall behind at most by the buffer size set by {@link #resetBuffer(int)} or
+     * by {@link #MAX_UNREAD_SIZE}, whichever is lower.
      *
      * @param message the message.
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(ByteBuffer message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.remaining();
-            if (currentlyBuffered <= bufferSize) {
-                bufferedFragments.add(message);
-            } else {
-                final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-                receivedLast = true;
-                throw messageTooBigException;
-            }
+        if (!buffering) {
+            return;
+        }
+
+        currentlyBuffered += message.remaining();
+        if (currentlyBuffered > bufferSize) {
+            overflow(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+        }
 
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        BufferedInputStream current = inputStream;
+        if (current != null && current.available() > MAX_UNREAD_SIZE) {
+            overflow(LocalizationMessages.PARTIAL_MESSAGE_UNREAD_OVERFLOW(MAX_UNREAD_SIZE));
         }
 
-        if (this.inputStream == null) {
-            this.inputStream = new BufferedInputStream(this);
+        if (current == null) {
+            current = new BufferedInputStream();
+            if (sessionClosed) {
+                current.onSessionClosed();
+            }
+            inputStream = current;
+
+            final BufferedInputStream toConsume = current;
+            final MessageHandler.Whole<InputStream> handler = messageHandler;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(inputStream);
+                    handler.onMessage(toConsume);
                 }
             });
         }
+
+        if (last) {
+            inputStream = null;
+        }
+
+        current.appendMessagePart(message, last);
     }
 
     /**
@@ -199,24 +155,34 @@ class InputStreamBuffer {
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
+        buffering = true;
         currentlyBuffered = 0;
-        bufferedFragments.clear();
+        finishMessage();
     }
 
     void onSessionClosed() {
         sessionClosed = true;
-        lock.lock();
-        try {
+
+        final BufferedInputStream current = inputStream;
+        if (current != null) {
             // wake up blocked thread
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+            current.onSessionClosed();
         }
     }
 
-    private void checkClosedSession() throws IOException {
-        if (sessionClosed) {
-            throw new IOException("Websocket session has been closed.");
+    private void overflow(String message) {
+        buffering = false;
+        finishMessage();
+        final MessageTooBigException messageTooBigException = new MessageTooBigException(message);
+        LOGGER.log(Level.FINE, message, messageTooBigException);
+        throw messageTooBigException;
+    }
+
+    private void finishMessage() {
+        final BufferedInputStream current = inputStream;
+        if (current != null) {
+            inputStream = null;
+            current.finish();
         }
     }
 }
@@ -41,64 +41,133 @@
 package org.glassfish.tyrus.core;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
-class Masker {
-    private volatile ByteBuffer buffer;
-    private volatile byte[] mask;
-    private volatile int index = 0;
+/**
+ * Utility class for masking and unmasking of frame payload (RFC 6455, chapter 5.3).
+ */
+final class Masker {
 
-    public Masker(ByteBuffer buffer) {
-        this.buffer = buffer;
+    private Masker() {
+        // no instances
     }
 
-    public Masker(int mask) {
-        this.mask = new byte[4];
-        this.mask[0] = (byte) (mask >> 24);
-        this.mask[1] = (byte) (mask >> 16);
-        this.mask[2] = (byte) (mask >> 8);
-        this.mask[3] = (byte) mask;
-    }
+    /**
+     * Copy {@code length} bytes from {@code source} to {@code target} array and mask them using provided masking key.
+     * <p/>
+     * Copying and masking is done in one pass, so no intermediate array is needed. Data from direct buffers are read
+     * and masked as {@code long} values (8 bytes at once); heap buffers are copied by {@link System#arraycopy} and
+     * masked in place, which is faster than reading {@code long} values from them.
+     *
+     * @param maskingKey   masking key (RFC 6455, chapter 5.3).
+     * @param source       source buffer. Its position will be moved by {@code length}.
+     * @param target       target array.
+     * @param targetOffset position of the first masked byte in the target array.
+     * @param length       number of bytes to be masked.
+     */
+    static void mask(int maskingKey, ByteBuffer source, byte[] target, int targetOffset, int length) {
+        final int end = targetOffset + length;
+        int i = targetOffset;
 
-    byte get() {
-        return buffer.get();
-    }
+        if (source.isDirect()) {
+            final boolean littleEndian = source.order() == ByteOrder.LITTLE_ENDIAN;
+            final long longMask = longMask(maskingKey);
 
-    byte[] get(final int size) {
-        byte[] bytes = new byte[size];
-        buffer.get(bytes);
-        return bytes;
-    }
+            for (; i + 7 < end; i += 8) {
+                long masked = source.getLong();
+                if (littleEndian) {
+                    masked = Long.reverseBytes(masked);
+                }
+                masked ^= longMask;
 
-    public byte[] unmask(int count) {
-        byte[] bytes = get(count);
-        if (mask != null) {
-            for (int i = 0; i < bytes.length; i++) {
-                bytes[i] ^= mask[index++ % ProtocolHandler.MASK_SIZE];
+                target[i] = (byte) (masked >> 56);
+                target[i + 1] = (byte) (masked >> 48);
+                target[i + 2] = (byte) (masked >> 40);
+                target[i + 3] = (byte) (masked >> 32);
+                target[i + 4] = (byte) (masked >> 24);
+                target[i + 5] = (byte) (masked >> 16);
+                target[i + 6] = (byte) (masked >> 8);
+                target[i + 7] = (byte) masked;
             }
-        }
+            source.get(target, i, end - i);
+        } else {
+            source.get(target, targetOffset, length);
 
-        return bytes;
-    }
+            final byte mask0 = (byte) (maskingKey >> 24);
+            final byte mask1 = (byte) (maskingKey >> 16);
+            final byte mask2 = (byte) (maskingKey >> 8);
+            final byte mask3 = (byte) maskingKey;
 
-    public void mask(byte[] target, int location, byte[] bytes, int length) {
-        if (bytes != null && target != null) {
-            for (int i = 0; i < length; i++) {
-                target[location + i] = mask == null
-                        ? bytes[i]
-                        : (byte) (bytes[i] ^ mask[index++ % ProtocolHandler.MASK_SIZE]);
+            for (; i + 3 < end; i += 4) {
+                target[i] ^= mask0;
+                target[i + 1] ^= mask1;
+                target[i + 2] ^= mask2;
+                target[i + 3] ^= mask3;
             }
         }
+
+        // rest of the data (less than 8 or 4 bytes), starts with the first byte of the masking key.
+        for (int j = 0; i < end; i++, j++) {
+            target[i] ^= (byte) (maskingKey >> (24 - ((j & 3) << 3)));
+        }
     }
 
-    public void setBuffer(ByteBuffer buffer) {
-        this.buffer = buffer;
+    /**
+     * Copy {@code length} bytes from {@code source} to {@code target} buffer and mask them using provided masking key.
+     * <p/>
+     * Both buffers can be heap or direct and their byte order does not matter. When the target buffer is direct,
+     * data are masked and written as {@code long} values (8 bytes at once).
+     *
+     * @param maskingKey masking key (RFC 6455, chapter 5.3).
+     * @param source     source buffer. Its position will be moved by {@code length}.
+     * @param target     target buffer. Its position will be moved by {@code length}.
+     * @param length     number of bytes to be masked.
+     */
+    static void mask(int maskingKey, ByteBuffer source, ByteBuffer target, int length) {
+        if (target.hasArray()) {
+            final int position = target.position();
+            mask(maskingKey, source, target.array(), target.arrayOffset() + position, length);
+            target.position(position + length);
+            return;
+        }
+
+        final boolean swap = source.order() != target.order();
+        long longMask = longMask(maskingKey);
+        if (source.order() == ByteOrder.LITTLE_ENDIAN) {
+            longMask = Long.reverseBytes(longMask);
+        }
+
+        int i = 0;
+        for (; i + 7 < length; i += 8) {
+            final long masked = source.getLong() ^ longMask;
+            target.putLong(swap ? Long.reverseBytes(masked) : masked);
+        }
+        for (; i < length; i++) {
+            target.put((byte) (source.get() ^ (maskingKey >> (24 - ((i & 3) << 3)))));
+        }
     }
 
-    public byte[] getMask() {
-        return mask;
+    /**
+     * Masking key repeated twice in one {@code long} (big endian).
+     */
+    private static long longMask(int maskingKey) {
+        return ((long) maskingKey << 32) | (maskingKey & 0xFFFFFFFFL);
     }
 
-    public void readMask() {
-        mask = get(ProtocolHandler.MASK_SIZE);
+    /**
+     * Copy and (un)mask part of a payload, which does not start at the beginning of the payload.
+     * <p/>
+     * Used when the payload is processed in more parts; {@code maskOffset} is the position of the first processed byte
+     * in the whole payload (modulo {@link ProtocolHandler#MASK_SIZE}).
+     *
+     * @param maskingKey   masking key (RFC 6455, chapter 5.3).
+     * @param maskOffset   index of masking key byte which will be applied to the first processed byte.
+     * @param source       source buffer. Its position will be moved by {@code length}.
+     * @param target       target array.
+     * @param targetOffset position of the first masked byte in the target array.
+     * @param length       number of bytes to be masked.
+     */
+    static void mask(int maskingKey, int maskOffset, ByteBuffer source, byte[] target, int targetOffset, int length) {
+        mask(Integer.rotateLeft(maskingKey, 8 * maskOffset), source, target, targetOffset, length);
     }
 }
@@ -43,10 +43,19 @@ package org.glassfish.tyrus.core;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -81,6 +90,37 @@ public final class ProtocolHandler {
      */
     public static final int MASK_SIZE = 4;
 
+    /**
+     * Size of the pending batch (in bytes) which triggers flushing of batched frames.
+     *
+     * @see #setBatchingAllowed(boolean, java.util.concurrent.ScheduledExecutorService)
+     */
+    static final int BATCH_FLUSH_THRESHOLD = 16384;
+
+    /**
+     * Maximal time (in milliseconds) for which a frame can stay in the pending batch.
+     *
+     * @see #setBatchingAllowed(boolean, java.util.concurrent.ScheduledExecutorService)
+     */
+    static final long BATCH_FLUSH_DELAY = 10;
+
+    /**
+     * Minimal payload length of a data frame which can be passed further in parts, as its data are received.
+     * <p/>
+     * Smaller frames and all frames of connections with negotiated extensions are always returned from
+     * {@link #unframe(java.nio.ByteBuffer)} as a whole.
+     */
+    static final int STREAMING_THRESHOLD = 8192;
+
+    /**
+     * Minimal length of a part of a streamed frame, except for the last one.
+     * <p/>
+     * Every part gets its own payload array, so small reads are accumulated instead of producing tiny parts.
+     *
+     * @see #STREAMING_THRESHOLD
+     */
+    static final int STREAMED_PART_MIN_LENGTH = 4096;
+
     private static final Logger LOGGER = Logger.getLogger(ProtocolHandler.class.getName());
 
     private final boolean client;
@@ -99,6 +139,33 @@ public final class ProtocolHandler {
     private volatile ByteBuffer remainder = null;
     private volatile boolean hasExtensions = false;
     private volatile MessageEventListener messageEventListener = MessageEventListener.NO_OP;
+    private volatile int incomingBufferSize = Integer.MAX_VALUE;
+
+    private final Object batchLock = new Object();
+    private volatile boolean batchingAllowed = false;
+    private volatile ScheduledExecutorService batchFlushService = null;
+    private List<ByteBuffer> batchedFrames = new ArrayList<ByteBuffer>();
+    private List<CompletionHandler<ByteBuffer>> batchedHandlers = new ArrayList<CompletionHandler<ByteBuffer>>();
+    private int batchedBytes = 0;
+    // writes decided while holding batchLock, passed to the writer in the same order by drainQueuedWrites().
+    private final Queue<QueuedWrite> queuedWrites = new ConcurrentLinkedQueue<QueuedWrite>();
+    private final AtomicBoolean drainingQueuedWrites = new AtomicBoolean(false);
+
+    /*
+     * Write queue accounting; see setWriteQueueLimits(...). Bytes passed to the batch or the writer are counted in
+     * writeQueueSize until the writer reports the write as finished. The remaining fields are used only when
+     * writeQueueLimited is true and they are modified only while holding writeQueueLock.
+     */
+    private final AtomicLong writeQueueSize = new AtomicLong(0);
+    private final Object writeQueueLock = new Object();
+    private final ArrayDeque<CompletionHandlerWrapper> heldWrites = new ArrayDeque<CompletionHandlerWrapper>();
+    private volatile boolean writeQueueLimited = false;
+    private volatile boolean writable = true;
+    private volatile long heldBytes = 0;
+    private boolean draining = false;
+    private long highWatermark = Long.MAX_VALUE;
+    private long lowWatermark = Long.MAX_VALUE;
+    private WriteQueueOverflowPolicy overflowPolicy = WriteQueueOverflowPolicy.FAIL;
 
     /**
      * Constructor.
@@ -200,6 +267,34 @@ public final class ProtocolHandler {
      */
     public void setExtensionContext(ExtendedExtension.ExtensionContext extensionContext) {
         this.extensionContext = extensionContext;
+        exposeMessageEventListener();
+    }
+
+    boolean isClient() {
+        return client;
+    }
+
+    ExtendedExtension.ExtensionContext getExtensionContext() {
+        return extensionContext;
+    }
+
+    /**
+     * Set maximal payload length of incoming frame.
+     * <p/>
+     * {@link #unframe(java.nio.ByteBuffer)} throws {@link IllegalArgumentException} as soon as it reads a frame
+     * header declaring longer payload. The value is also available to extensions as
+     * {@link TyrusWebSocketEngine#INCOMING_BUFFER_SIZE} property of the extension context.
+     *
+     * @param incomingBufferSize maximal payload length in bytes.
+     */
+    public void setIncomingBufferSize(int incomingBufferSize) {
+        this.incomingBufferSize = incomingBufferSize;
+
+        final ExtendedExtension.ExtensionContext context = extensionContext;
+        if (context != null) {
+            // extensions changing payload length (decompression) can enforce the limit as well.
+            context.getProperties().put(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE, incomingBufferSize);
+        }
     }
 
     /**
@@ -219,6 +314,115 @@ public final class ProtocolHandler {
      */
     public void setMessageEventListener(MessageEventListener messageEventListener) {
         this.messageEventListener = messageEventListener;
+        exposeMessageEventListener();
+    }
+
+    /**
+     * Make message event listener accessible to extensions (see
+     * {@link MessageEventListener#EXTENSION_CONTEXT_PROPERTY}).
+     */
+    private void exposeMessageEventListener() {
+        final ExtendedExtension.ExtensionContext context = extensionContext;
+        if (context != null && messageEventListener != MessageEventListener.NO_OP) {
+            context.getProperties().put(MessageEventListener.EXTENSION_CONTEXT_PROPERTY, messageEventListener);
+        }
+    }
+
+    /**
+     * Enable or disable batching of outgoing data frames.
+     * <p/>
+     * When batching is allowed, framed data messages are not passed to the {@link Writer} immediately; they are kept
+     * in a per-connection batch and written together in one {@link Writer#write(ByteBuffer, CompletionHandler)} call
+     * when the batch reaches {@value #BATCH_FLUSH_THRESHOLD} bytes, when {@value #BATCH_FLUSH_DELAY} ms elapse after
+     * the first frame was added, when a control frame is sent or when {@link #flushBatch()} is invoked. Completion
+     * handlers and futures are still completed per message.
+     * <p/>
+     * Disabling batching flushes all pending frames.
+     *
+     * @param batchingAllowed   {@code true} when outgoing frames can be batched, {@code false} otherwise.
+     * @param flushService      executor used for scheduling of the delayed flush. When {@code null}, pending frames
+     *                          are flushed only when the threshold is reached or when flushed explicitly.
+     */
+    void setBatchingAllowed(boolean batchingAllowed, ScheduledExecutorService flushService) {
+        synchronized (batchLock) {
+            this.batchFlushService = flushService;
+            // pending frames are queued before writers can see that batching is disabled.
+            if (!batchingAllowed) {
+                flushBatchInternal();
+            }
+            this.batchingAllowed = batchingAllowed;
+        }
+        drainQueuedWrites();
+    }
+
+    /**
+     * Get information whether batching of outgoing frames is enabled.
+     *
+     * @return {@code true} when batching is allowed, {@code false} otherwise.
+     * @see #setBatchingAllowed(boolean, java.util.concurrent.ScheduledExecutorService)
+     */
+    boolean isBatchingAllowed() {
+        return batchingAllowed;
+    }
+
+    /**
+     * Write all batched frames to the {@link Writer}.
+     * <p/>
+     * Does nothing when there are no pending frames.
+     */
+    void flushBatch() {
+        synchronized (batchLock) {
+            flushBatchInternal();
+        }
+        drainQueuedWrites();
+    }
+
+    /**
+     * Set limits of the write queue.
+     * <p/>
+     * The write queue contains framed data passed to the {@link Writer} (or to the pending batch) and not yet reported
+     * as written. When its size reaches {@code highWatermark} bytes, whole data messages are handled according to
+     * {@code policy} until the size drops to {@code lowWatermark} bytes. Control frames and parts of fragmented
+     * messages are never held back or dropped.
+     *
+     * @param highWatermark size of the write queue in bytes which triggers the overflow policy. {@link Long#MAX_VALUE}
+     *                      means no limit.
+     * @param lowWatermark  size of the write queue in bytes which ends the overflow.
+     * @param policy        what to do with messages sent while the write queue is over its limit.
+     * @see WriteQueueOverflowPolicy
+     */
+    void setWriteQueueLimits(long highWatermark, long lowWatermark, WriteQueueOverflowPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException(LocalizationMessages.ARGUMENT_NOT_NULL("policy"));
+        }
+        if (highWatermark < 1 || lowWatermark < 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException(LocalizationMessages.WRITE_QUEUE_LIMITS_INVALID(highWatermark, lowWatermark));
+        }
+
+        final boolean drain;
+        synchronized (writeQueueLock) {
+            this.highWatermark = highWatermark;
+            this.lowWatermark = lowWatermark;
+            this.overflowPolicy = policy;
+            this.writable = writeQueueSize.get() < highWatermark;
+            this.writeQueueLimited = highWatermark != Long.MAX_VALUE;
+            drain = startDraining();
+        }
+
+        if (drain) {
+            drainHeldWrites();
+        }
+    }
+
+    /**
+     * Get the size of the write queue.
+     *
+     * @return number of bytes of outgoing frames which have not been written yet, including messages held back
+     * because of {@link WriteQueueOverflowPolicy#DROP_OLDEST}.
+     * @see #setWriteQueueLimits(long, long, WriteQueueOverflowPolicy)
+     */
+    long getWriteQueueSize() {
+        return writeQueueSize.get() + heldBytes;
     }
 
     public final Future<Frame> send(TyrusFrame frame, boolean useTimeout) {
@@ -319,6 +523,8 @@ public final class ProtocolHandler {
             outgoingCloseFrame = new CloseFrame(closeReason);
         }
 
+        // held messages cannot be sent after the close frame.
+        discardHeldWrites();
         final Future<Frame> send = send(outgoingCloseFrame, null, false);
 
         webSocket.onClose(new CloseFrame(closeReason));
@@ -335,7 +541,8 @@ public final class ProtocolHandler {
         }
 
         final ByteBuffer byteBuffer = frame(frame);
-        localWriter.write(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame));
+        final boolean wholeMessage = !frame.isControlFrame() && frame.isFin() && frame.getOpcode() != 0;
+        enqueueWrite(byteBuffer, new CompletionHandlerWrapper(completionHandler, future, frame, byteBuffer.remaining(), wholeMessage));
         messageEventListener.onFrameSent(frame.getFrameType(), frame.getPayloadLength());
 
         return future;
@@ -349,48 +556,314 @@ public final class ProtocolHandler {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
-        localWriter.write(frame, new CompletionHandlerWrapper(completionHandler, future, null));
+        // raw frames are pre-framed broadcast messages.
+        enqueueWrite(frame, new CompletionHandlerWrapper(completionHandler, future, null, frame.remaining(), true));
 
         return future;
     }
 
     /**
-     * Convert a byte[] to a long. Used for rebuilding payload length.
+     * Apply write queue limits and pass the framed data further or hold them back.
      *
-     * @param bytes byte array to be converted.
-     * @return converted byte array.
+     * @param byteBuffer framed data.
+     * @param handler    completion handler of the write operation.
      */
-    long decodeLength(byte[] bytes) {
-        return Utils.toLong(bytes, 0, bytes.length);
+    private void enqueueWrite(ByteBuffer byteBuffer, CompletionHandlerWrapper handler) {
+        if (!writeQueueLimited) {
+            account(handler);
+            writeAccounted(byteBuffer, handler);
+            return;
+        }
+
+        boolean write = false;
+        List<CompletionHandlerWrapper> dropped = null;
+        synchronized (writeQueueLock) {
+            final boolean controlFrame = handler.frame != null && handler.frame.isControlFrame();
+            if (controlFrame || (writable && heldWrites.isEmpty() && !draining)) {
+                account(handler);
+                write = true;
+            } else if (overflowPolicy == WriteQueueOverflowPolicy.DROP_OLDEST) {
+                // parts of fragmented messages are held as well to keep the order, but they are never dropped.
+                handler.heldFrame = byteBuffer;
+                heldWrites.add(handler);
+                heldBytes += handler.length;
+                dropped = dropOldestHeldWrites();
+            } else if (handler.wholeMessage) {
+                dropped = Collections.singletonList(handler);
+            } else {
+                account(handler);
+                write = true;
+            }
+        }
+
+        if (write) {
+            writeAccounted(byteBuffer, handler);
+        } else if (dropped != null) {
+            failDropped(dropped);
+        }
     }
 
     /**
-     * Converts the length given to the appropriate framing data: <ol> <li>0-125 one element that is the payload length.
-     * <li>up to 0xFFFF, 3 element array starting with 126 with the following 2 bytes interpreted as a 16 bit unsigned
-     * integer showing the payload length. <li>else 9 element array starting with 127 with the following 8 bytes
-     * interpreted as a 64-bit unsigned integer (the high bit must be 0) showing the payload length. </ol>
+     * Count the write to the write queue size. Has to be called while holding {@code writeQueueLock} when the write
+     * queue is limited.
      *
-     * @param length the payload size
-     * @return the array
-     */
-    byte[] encodeLength(final long length) {
-        byte[] lengthBytes;
-        if (length <= 125) {
-            lengthBytes = new byte[1];
-            lengthBytes[0] = (byte) length;
-        } else {
-            byte[] b = Utils.toArray(length);
-            if (length <= 0xFFFF) {
-                lengthBytes = new byte[3];
-                lengthBytes[0] = 126;
-                System.arraycopy(b, 6, lengthBytes, 1, 2);
+     * @param handler completion handler representing the write.
+     */
+    private void account(CompletionHandlerWrapper handler) {
+        handler.queued = true;
+        final long size = writeQueueSize.addAndGet(handler.length);
+        if (writeQueueLimited && size >= highWatermark) {
+            writable = false;
+        }
+        notifyWriteQueueSizeChanged(size);
+    }
+
+    /**
+     * Notify the message event listener about the write queue size.
+     * <p/>
+     * Nothing is done when no listener is set, so unlimited write queue costs just the counter update per write.
+     *
+     * @param size size of the write queue without held messages.
+     */
+    private void notifyWriteQueueSizeChanged(long size) {
+        final MessageEventListener listener = messageEventListener;
+        if (listener != MessageEventListener.NO_OP) {
+            listener.onWriteQueueSizeChanged(size + heldBytes);
+        }
+    }
+
+    /**
+     * Pass the counted data to the writer or to the pending batch.
+     *
+     * @param byteBuffer framed data.
+     * @param handler    completion handler of the write operation.
+     */
+    private void writeAccounted(ByteBuffer byteBuffer, CompletionHandlerWrapper handler) {
+        final Writer localWriter = writer;
+        if (localWriter == null) {
+            handler.failed(new IllegalStateException(LocalizationMessages.CONNECTION_NULL()));
+            return;
+        }
+
+        writeOrBatch(localWriter, byteBuffer, handler, handler.frame == null || !handler.frame.isControlFrame());
+    }
+
+    /**
+     * Called when the writer has finished writing of the data counted in the write queue.
+     *
+     * @param length number of bytes which are not in the write queue anymore.
+     */
+    private void onWriteFinished(int length) {
+        final long size = writeQueueSize.addAndGet(-length);
+        notifyWriteQueueSizeChanged(size);
+
+        if (writeQueueLimited && !writable && size <= lowWatermark) {
+            boolean drain = false;
+            synchronized (writeQueueLock) {
+                if (!writable && writeQueueSize.get() <= lowWatermark) {
+                    writable = true;
+                    drain = startDraining();
+                }
+            }
+
+            if (drain) {
+                drainHeldWrites();
+            }
+        }
+    }
+
+    /**
+     * Check whether held messages should be written and mark that they are being written. Has to be called while
+     * holding {@code writeQueueLock}.
+     *
+     * @return {@code true} iff the caller is responsible for calling {@link #drainHeldWrites()}.
+     */
+    private boolean startDraining() {
+        if (draining || heldWrites.isEmpty()) {
+            return false;
+        }
+
+        draining = true;
+        return true;
+    }
+
+    /**
+     * Write held messages while the write queue is below its limit.
+     * <p/>
+     * Messages are passed to the writer without holding {@code writeQueueLock}; messages sent meanwhile are held, so
+     * the order is preserved.
+     */
+    private void drainHeldWrites() {
+        while (true) {
+            final CompletionHandlerWrapper handler;
+            final ByteBuffer byteBuffer;
+
+            synchronized (writeQueueLock) {
+                if (heldWrites.isEmpty() || (!writable && writeQueueLimited && overflowPolicy == WriteQueueOverflowPolicy.DROP_OLDEST)) {
+                    draining = false;
+                    return;
+                }
+
+                handler = heldWrites.poll();
+                byteBuffer = handler.heldFrame;
+                handler.heldFrame = null;
+                heldBytes -= handler.length;
+                account(handler);
+            }
+
+            writeAccounted(byteBuffer, handler);
+        }
+    }
+
+    /**
+     * Drop the oldest held messages so that the held messages do not exceed the high watermark. Has to be called
+     * while holding {@code writeQueueLock}.
+     *
+     * @return handlers of dropped messages or {@code null} when nothing was dropped.
+     */
+    private List<CompletionHandlerWrapper> dropOldestHeldWrites() {
+        List<CompletionHandlerWrapper> dropped = null;
+
+        final Iterator<CompletionHandlerWrapper> iterator = heldWrites.iterator();
+        while (heldBytes > highWatermark && iterator.hasNext()) {
+            final CompletionHandlerWrapper handler = iterator.next();
+            if (!handler.wholeMessage) {
+                continue;
+            }
+
+            iterator.remove();
+            handler.heldFrame = null;
+            heldBytes -= handler.length;
+
+            if (dropped == null) {
+                dropped = new ArrayList<CompletionHandlerWrapper>();
+            }
+            dropped.add(handler);
+        }
+
+        return dropped;
+    }
+
+    private void failDropped(List<CompletionHandlerWrapper> dropped) {
+        final WriteQueueOverflowException exception = new WriteQueueOverflowException(LocalizationMessages.WRITE_QUEUE_OVERFLOW(highWatermark));
+        for (CompletionHandlerWrapper handler : dropped) {
+            messageEventListener.onMessageDropped(handler.length);
+            handler.failed(exception);
+        }
+    }
+
+    /**
+     * Fail all messages held back by {@link WriteQueueOverflowPolicy#DROP_OLDEST}.
+     */
+    private void discardHeldWrites() {
+        if (heldBytes == 0) {
+            return;
+        }
+
+        final List<CompletionHandlerWrapper> discarded;
+        synchronized (writeQueueLock) {
+            discarded = new ArrayList<CompletionHandlerWrapper>(heldWrites);
+            heldWrites.clear();
+            heldBytes = 0;
+        }
+
+        final IOException exception = new IOException(LocalizationMessages.CONNECTION_HAS_BEEN_CLOSED());
+        for (CompletionHandlerWrapper handler : discarded) {
+            handler.heldFrame = null;
+            handler.failed(exception);
+        }
+    }
+
+    /**
+     * Pass the framed data to the writer or add them to the pending batch.
+     *
+     * @param localWriter       writer to be used.
+     * @param byteBuffer        framed data.
+     * @param completionHandler completion handler of the write operation.
+     * @param batchable         {@code false} when the frame cannot be batched (control frames). All pending frames are
+     *                          flushed before such frame is written.
+     */
+    private void writeOrBatch(Writer localWriter, ByteBuffer byteBuffer, CompletionHandler<ByteBuffer> completionHandler, boolean batchable) {
+        // flushed frames might still wait in the queue; they have to be written first.
+        if (!batchingAllowed && queuedWrites.isEmpty() && !drainingQueuedWrites.get()) {
+            localWriter.write(byteBuffer, completionHandler);
+            return;
+        }
+
+        synchronized (batchLock) {
+            if (batchingAllowed && batchable) {
+                final boolean firstInBatch = batchedFrames.isEmpty();
+
+                batchedFrames.add(byteBuffer);
+                batchedHandlers.add(completionHandler);
+                batchedBytes += byteBuffer.remaining();
+
+                if (batchedBytes >= BATCH_FLUSH_THRESHOLD) {
+                    flushBatchInternal();
+                } else if (firstInBatch) {
+                    scheduleBatchFlush();
+                }
             } else {
-                lengthBytes = new byte[9];
-                lengthBytes[0] = 127;
-                System.arraycopy(b, 0, lengthBytes, 1, 8);
+                // preserve ordering - pending frames have to be written first.
+                flushBatchInternal();
+                queuedWrites.add(new QueuedWrite(localWriter, Collections.singletonList(byteBuffer), byteBuffer.remaining(), completionHandler));
+            }
+        }
+
+        drainQueuedWrites();
+    }
+
+    private void scheduleBatchFlush() {
+        final ScheduledExecutorService flushService = batchFlushService;
+        if (flushService != null) {
+            try {
+                flushService.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushBatch();
+                    }
+                }, BATCH_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // executor might be already shut down; batch will be flushed explicitly or by the size threshold.
+                LOGGER.log(Level.FINE, "Batch flush could not be scheduled.", e);
+            }
+        }
+    }
+
+    /**
+     * Move all pending frames to the queue of writes. Has to be called while holding {@code batchLock}, the frames are
+     * written by {@link #drainQueuedWrites()} after the lock is released.
+     */
+    private void flushBatchInternal() {
+        if (batchedFrames.isEmpty()) {
+            return;
+        }
+
+        queuedWrites.add(new QueuedWrite(writer, batchedFrames, batchedBytes, new BatchCompletionHandler(batchedHandlers)));
+
+        batchedFrames = new ArrayList<ByteBuffer>();
+        batchedHandlers = new ArrayList<CompletionHandler<ByteBuffer>>();
+        batchedBytes = 0;
+    }
+
+    /**
+     * Pass queued writes to the writer. Must not be called while holding {@code batchLock}.
+     * <p/>
+     * Only one thread writes at a time, so the order in which the writes were queued is kept. Writes queued while
+     * another thread is draining the queue (including writes triggered from completion handlers) are written by that
+     * thread.
+     */
+    private void drainQueuedWrites() {
+        while (!queuedWrites.isEmpty() && drainingQueuedWrites.compareAndSet(false, true)) {
+            try {
+                QueuedWrite queuedWrite;
+                while ((queuedWrite = queuedWrites.poll()) != null) {
+                    queuedWrite.write();
+                }
+            } finally {
+                drainingQueuedWrites.set(false);
             }
         }
-        return lengthBytes;
     }
 
     void validate(final byte fragmentType, byte opcode) {
@@ -430,6 +903,8 @@ public final class ProtocolHandler {
             throw new IllegalStateException(LocalizationMessages.CONNECTION_NULL());
         }
 
+        discardHeldWrites();
+
         try {
             localWriter.close();
         } catch (IOException e) {
@@ -437,10 +912,39 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Create raw websocket frame.
+     * <p/>
+     * Negotiated extensions are applied and the frame is masked (client side). Frame header is written directly to
+     * the resulting buffer and the payload is copied (and masked, if needed) only once.
+     *
+     * @param frame frame to be serialized.
+     * @return buffer containing the frame, ready to be passed to {@link Writer}.
+     */
     public ByteBuffer frame(Frame frame) {
+        return frame(frame, null);
+    }
+
+    /**
+     * Create raw websocket frame and record the frame returned by each applied {@link ExtendedExtension}.
+     *
+     * @param frame           frame to be serialized.
+     * @param processedFrames list to which the output of each {@link ExtendedExtension} is added, in order of
+     *                        negotiated extensions; {@code null} if not needed.
+     * @return buffer containing the frame, ready to be passed to {@link Writer}.
+     * @see #frame(Frame)
+     */
+    ByteBuffer frame(Frame frame, List<Frame> processedFrames) {
+
+        int maskingKey = 0;
 
         if (client) {
-            frame = Frame.builder(frame).maskingKey(maskingKeyGenerator.nextInt()).mask(true).build();
+            if (hasExtensions) {
+                // extensions can access (and change) the masking key.
+                frame = Frame.builder(frame).maskingKey(maskingKeyGenerator.nextInt()).mask(true).build();
+            } else {
+                maskingKey = maskingKeyGenerator.nextInt();
+            }
         }
 
         if (extensions != null && extensions.size() > 0) {
@@ -452,8 +956,21 @@ public final class ProtocolHandler {
                         // TODO: define ExtendedExtension exception handling.
                         LOGGER.log(Level.FINE, LocalizationMessages.EXTENSION_EXCEPTION(extension.getName(), t.getMessage()), t);
                     }
+                    if (processedFrames != null) {
+                        processedFrames.add(frame);
+                    }
                 }
             }
+
+            if (client) {
+                final Integer frameMaskingKey = frame.getMaskingKey();
+                if (frameMaskingKey == null) {
+                    // TODO: improve validation/exception handling
+                    // TODO: related to ExtendedExtension
+                    throw new ProtocolException("Masking key cannot be null when sending message from client to server.");
+                }
+                maskingKey = frameMaskingKey;
+            }
         }
 
         byte opcode = checkForLastFrame(frame);
@@ -467,49 +984,66 @@ public final class ProtocolHandler {
             opcode |= 0x10;
         }
 
-        final byte[] bytes = frame.getPayloadData();
-        final byte[] lengthBytes = encodeLength(frame.getPayloadLength());
-
         // TODO - length limited to int, it should be long (see RFC 9788, chapter 5.2)
         // TODO - in that case, we will need to NOT store dataframe inmemory - introduce maskingByteStream or
         // TODO   maskingByteBuffer
         final int payloadLength = (int) frame.getPayloadLength();
-        int length = 1 + lengthBytes.length + payloadLength + (client ? MASK_SIZE : 0);
-        int payloadStart = 1 + lengthBytes.length + (client ? MASK_SIZE : 0);
-        final byte[] packet = new byte[length];
+        final int lengthBytes = payloadLength <= 125 ? 0 : (payloadLength <= 0xFFFF ? 2 : 8);
+        final int payloadStart = 2 + lengthBytes + (client ? MASK_SIZE : 0);
+        final byte[] packet = new byte[payloadStart + payloadLength];
+
         packet[0] = opcode;
-        System.arraycopy(lengthBytes, 0, packet, 1, lengthBytes.length);
+        if (lengthBytes == 0) {
+            packet[1] = (byte) payloadLength;
+        } else {
+            packet[1] = (byte) (lengthBytes == 2 ? 126 : 127);
+            // payload length in network byte order; the most significant bit must be 0.
+            long length = payloadLength;
+            for (int i = 1 + lengthBytes; i > 1; i--) {
+                packet[i] = (byte) length;
+                length >>>= 8;
+            }
+        }
+
+        final ByteBuffer payload = frame.getPayloadBuffer();
+
         // if client, then we need to mask data.
         if (client) {
-            Integer maskingKey = frame.getMaskingKey();
-            if (maskingKey == null) {
-                // TODO: improve validation/exception handling
-                // TODO: related to ExtendedExtension
-                throw new ProtocolException("Masking key cannot be null when sending message from client to server.");
-            }
-            Masker masker = new Masker(maskingKey);
             packet[1] |= 0x80;
-            masker.mask(packet, payloadStart, bytes, payloadLength);
-            System.arraycopy(masker.getMask(), 0, packet, payloadStart - MASK_SIZE,
-                    MASK_SIZE);
+            packet[payloadStart - 4] = (byte) (maskingKey >> 24);
+            packet[payloadStart - 3] = (byte) (maskingKey >> 16);
+            packet[payloadStart - 2] = (byte) (maskingKey >> 8);
+            packet[payloadStart - 1] = (byte) maskingKey;
+            Masker.mask(maskingKey, payload, packet, payloadStart, payloadLength);
         } else {
-            System.arraycopy(bytes, 0, packet, payloadStart, payloadLength);
+            payload.get(packet, payloadStart, payloadLength);
         }
+
         return ByteBuffer.wrap(packet);
     }
 
     /**
-     * TODO!
+     * Parse a frame from received data.
+     * <p/>
+     * Data frames with payload of at least {@value #STREAMING_THRESHOLD} bytes are not buffered as a whole: when only
+     * a part of the payload is available, it is returned as a separate frame (first part with the original opcode, the
+     * rest as continuation frames, only the last one with the FIN bit of the original frame), so the caller does not
+     * need to keep the whole frame in the buffer. This is done only when no extension has been negotiated, because
+     * extensions (like per-message deflate) process whole frames.
+     * <p/>
+     * Parsing state is kept between calls, so this method must not be called concurrently; subsequent calls can be made
+     * from different threads.
      *
-     * @param buffer TODO.
-     * @return TODO.
+     * @param buffer received data, position is moved past the parsed data. Data of incomplete frame header (or frame
+     *               which cannot be streamed) are left in the buffer.
+     * @return parsed frame (or its part) or {@code null} when more data are needed.
      */
     public Frame unframe(ByteBuffer buffer) {
 
         try {
             // this do { .. } while cycle was forced by findbugs check - complained about missing break statements.
             do {
-                switch (state.state.get()) {
+                switch (state.state) {
                     case 0:
                         if (buffer.remaining() < 2) {
                             // Don't have enough bytes to read opcode and lengthCode
@@ -529,13 +1063,12 @@ public final class ProtocolHandler {
                         byte lengthCode = buffer.get();
 
                         state.masked = (lengthCode & 0x80) == 0x80;
-                        state.masker = new Masker(buffer);
                         if (state.masked) {
                             lengthCode ^= 0x80;
                         }
                         state.lengthCode = lengthCode;
 
-                        state.state.incrementAndGet();
+                        state.state++;
                         break;
                     case 1:
                         if (state.lengthCode <= 125) {
@@ -550,10 +1083,14 @@ public final class ProtocolHandler {
                                 // Don't have enough bytes to read length
                                 return null;
                             }
-                            state.masker.setBuffer(buffer);
-                            state.length = decodeLength(state.masker.unmask(lengthBytes));
+                            state.length = lengthBytes == 2 ? (buffer.getShort() & 0xFFFF) : buffer.getLong();
+                        }
+
+                        // payload is never materialized as a whole, but the limit still applies to single frame.
+                        if (state.length < 0 || state.length > incomingBufferSize) {
+                            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
                         }
-                        state.state.incrementAndGet();
+                        state.state++;
                         break;
                     case 2:
                         if (state.masked) {
@@ -561,33 +1098,43 @@ public final class ProtocolHandler {
                                 // Don't have enough bytes to read mask
                                 return null;
                             }
-                            state.masker.setBuffer(buffer);
-                            state.masker.readMask();
+                            state.maskingKey = buffer.getInt();
                         }
-                        state.state.incrementAndGet();
+                        state.state++;
                         break;
                     case 3:
-                        if (buffer.remaining() < state.length) {
+                        final long remaining = state.length - state.payloadOffset;
+                        final boolean complete = buffer.remaining() >= remaining;
+
+                        if (!complete && !isStreamable(buffer)) {
                             return null;
                         }
 
-                        state.masker.setBuffer(buffer);
-                        final byte[] data = state.masker.unmask((int) state.length);
-                        if (data.length != state.length) {
-                            throw new ProtocolException(LocalizationMessages.DATA_UNEXPECTED_LENGTH(data.length, state.length));
+                        final int length = complete ? (int) remaining : buffer.remaining();
+                        final byte[] data = new byte[length];
+                        if (state.masked) {
+                            Masker.mask(state.maskingKey, (int) (state.payloadOffset % MASK_SIZE), buffer, data, 0, length);
+                        } else {
+                            buffer.get(data);
                         }
 
+                        // first part of streamed frame keeps the original opcode, the rest are continuation frames.
+                        final byte frameOpcode = state.payloadOffset == 0 ? (byte) (state.opcode & 0xf) : 0;
+                        state.payloadOffset += length;
+
                         final Frame frame = Frame.builder()
-                                .fin(state.finalFragment)
+                                .fin(complete && state.finalFragment)
                                 .rsv1(isBitSet(state.opcode, 6))
                                 .rsv2(isBitSet(state.opcode, 5))
                                 .rsv3(isBitSet(state.opcode, 4))
-                                .opcode((byte) (state.opcode & 0xf))
-                                .payloadLength(state.length)
+                                .opcode(frameOpcode)
+                                .payloadLength(length)
                                 .payloadData(data)
                                 .build();
 
-                        state.recycle();
+                        if (complete) {
+                            state.recycle();
+                        }
 
                         return frame;
                     default:
@@ -601,6 +1148,21 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Check whether the payload of currently parsed frame can be passed further before it is fully read.
+     * <p/>
+     * Only big enough data frames are streamed and only when there is no negotiated extension, since extensions
+     * (like per-message deflate) might need to see the whole frame. Parts shorter than
+     * {@value #STREAMED_PART_MIN_LENGTH} bytes are not returned, unless they complete the frame.
+     *
+     * @param buffer buffer containing (part of) the frame payload.
+     * @return {@code true} when available part of the payload can be returned as a separate frame.
+     */
+    private boolean isStreamable(ByteBuffer buffer) {
+        return buffer.remaining() >= STREAMED_PART_MIN_LENGTH && !state.controlFrame && !hasExtensions
+                && state.length >= STREAMING_THRESHOLD;
+    }
+
     /**
      * TODO.
      * <p/>
@@ -673,21 +1235,42 @@ public final class ProtocolHandler {
 
     /**
      * Handler passed to the {@link org.glassfish.tyrus.spi.Writer}.
+     * <p/>
+     * Also represents the write in the write queue accounting.
      */
-    private static class CompletionHandlerWrapper extends CompletionHandler<ByteBuffer> {
+    private class CompletionHandlerWrapper extends CompletionHandler<ByteBuffer> {
 
         private final CompletionHandler<Frame> frameCompletionHandler;
         private final TyrusFuture<Frame> future;
         private final Frame frame;
+        private final int length;
+        private final boolean wholeMessage;
 
-        private CompletionHandlerWrapper(CompletionHandler<Frame> frameCompletionHandler, TyrusFuture<Frame> future, Frame frame) {
+        // true when counted in the write queue size.
+        private volatile boolean queued = false;
+        // framed data of a message held back by the overflow policy, guarded by writeQueueLock.
+        private ByteBuffer heldFrame = null;
+
+        private CompletionHandlerWrapper(CompletionHandler<Frame> frameCompletionHandler, TyrusFuture<Frame> future,
+                                         Frame frame, int length, boolean wholeMessage) {
             this.frameCompletionHandler = frameCompletionHandler;
             this.future = future;
             this.frame = frame;
+            this.length = length;
+            this.wholeMessage = wholeMessage;
+        }
+
+        private void finished() {
+            if (queued) {
+                queued = false;
+                onWriteFinished(length);
+            }
         }
 
         @Override
         public void cancelled() {
+            finished();
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.cancelled();
             }
@@ -699,6 +1282,8 @@ public final class ProtocolHandler {
 
         @Override
         public void failed(Throwable throwable) {
+            finished();
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.failed(throwable);
             }
@@ -710,6 +1295,8 @@ public final class ProtocolHandler {
 
         @Override
         public void completed(ByteBuffer result) {
+            finished();
+
             if (frameCompletionHandler != null) {
                 frameCompletionHandler.completed(frame);
             }
@@ -727,23 +1314,109 @@ public final class ProtocolHandler {
         }
     }
 
+    /**
+     * Frames which are going to be written in one {@link Writer#write(ByteBuffer, CompletionHandler)} call.
+     */
+    private static class QueuedWrite {
+
+        private final Writer writer;
+        private final List<ByteBuffer> frames;
+        private final int length;
+        private final CompletionHandler<ByteBuffer> completionHandler;
+
+        private QueuedWrite(Writer writer, List<ByteBuffer> frames, int length, CompletionHandler<ByteBuffer> completionHandler) {
+            this.writer = writer;
+            this.frames = frames;
+            this.length = length;
+            this.completionHandler = completionHandler;
+        }
+
+        private void write() {
+            if (writer == null) {
+                completionHandler.failed(new IllegalStateException(LocalizationMessages.CONNECTION_NULL()));
+                return;
+            }
+
+            final ByteBuffer buffer;
+            if (frames.size() == 1) {
+                buffer = frames.get(0);
+            } else {
+                buffer = ByteBuffer.allocate(length);
+                for (ByteBuffer frame : frames) {
+                    buffer.put(frame);
+                }
+                buffer.flip();
+            }
+
+            try {
+                writer.write(buffer, completionHandler);
+            } catch (RuntimeException e) {
+                // the write might have been queued by another thread, which is not the one draining the queue.
+                completionHandler.failed(e);
+            }
+        }
+    }
+
+    /**
+     * Handler passed to the {@link org.glassfish.tyrus.spi.Writer} when writing a batch of frames.
+     * <p/>
+     * Delegates all events to the completion handlers of individual batched frames.
+     */
+    private static class BatchCompletionHandler extends CompletionHandler<ByteBuffer> {
+
+        private final List<CompletionHandler<ByteBuffer>> handlers;
+
+        private BatchCompletionHandler(List<CompletionHandler<ByteBuffer>> handlers) {
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void cancelled() {
+            for (CompletionHandler<ByteBuffer> handler : handlers) {
+                handler.cancelled();
+            }
+        }
+
+        @Override
+        public void failed(Throwable throwable) {
+            for (CompletionHandler<ByteBuffer> handler : handlers) {
+                handler.failed(throwable);
+            }
+        }
+
+        @Override
+        public void completed(ByteBuffer result) {
+            for (CompletionHandler<ByteBuffer> handler : handlers) {
+                handler.completed(result);
+            }
+        }
+    }
+
+    /**
+     * State of the incoming frame parser, kept between {@link #unframe(java.nio.ByteBuffer)} calls.
+     * <p/>
+     * Accessed only from the thread processing incoming data of the connection. Subsequent reads might be processed
+     * by different threads, but the transport orders the hand-off between them, so no synchronization is needed.
+     */
     private static class ParsingState {
-        final AtomicInteger state = new AtomicInteger(0);
-        volatile byte opcode = (byte) -1;
-        volatile long length = -1;
-        volatile boolean masked;
-        volatile Masker masker;
-        volatile boolean finalFragment;
-        volatile boolean controlFrame;
-        volatile private byte lengthCode = -1;
+        int state = 0;
+        byte opcode = (byte) -1;
+        long length = -1;
+        long payloadOffset = 0;
+        boolean masked;
+        int maskingKey;
+        boolean finalFragment;
+        boolean controlFrame;
+        private byte lengthCode = -1;
 
         void recycle() {
-            state.set(0);
+            state = 0;
             opcode = (byte) -1;
             length = -1;
+            payloadOffset = 0;
             lengthCode = -1;
             masked = false;
-            masker = null;
+            maskingKey = 0;
             finalFragment = false;
             controlFrame = false;
         }
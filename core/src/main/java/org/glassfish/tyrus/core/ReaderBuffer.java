@@ -40,12 +40,8 @@
 
 package org.glassfish.tyrus.core;
 
-import java.io.IOException;
 import java.io.Reader;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,7 +52,9 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 /**
  * Buffer used for the case when partial messages are received by the {@link MessageHandler.Whole}.
  * </p>
- * For the first received message {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to allow blocking reading of passed {@link Reader}.
+ * For the first received message part {@link MessageHandler.Whole#onMessage(Object)} is called within a new executor to
+ * allow blocking reading of passed {@link Reader}. Every message gets its own {@link BufferedStringReader}, so a
+ * consumer which is still reading the previous message does not see parts of the next one.
  *
  * @author Danny Coward (danny.coward at oracle.com)
  * @author Stepan Kopriva (stepan.kopriva at oracle.com)
@@ -64,17 +62,22 @@ import org.glassfish.tyrus.core.l10n.LocalizationMessages;
  */
 class ReaderBuffer {
 
-    private final AtomicBoolean buffering = new AtomicBoolean(true);
-    private final ExecutorService executorService;
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition condition = lock.newCondition();
-
     private static final Logger LOGGER = Logger.getLogger(ReaderBuffer.class.getName());
 
-    private volatile boolean receivedLast = false;
+    /**
+     * Maximal number of received characters which the consumer of a message has not read yet.
+     * <p/>
+     * Message parts are appended on the thread reading from the connection, which cannot wait for the consumer, so
+     * a message is failed with {@link MessageTooBigException} when its consumer falls behind by more than this (plus
+     * one message part), even if the whole message would fit into the buffer size set by {@link #resetBuffer(int)}.
+     */
+    static final int MAX_UNREAD_SIZE = 4 * 1024 * 1024;
+
+    private final ExecutorService executorService;
+
+    private volatile boolean buffering = true;
     private volatile int bufferSize;
     private volatile int currentlyBuffered;
-    private volatile StringBuffer buffer;
     private volatile BufferedStringReader reader = null;
     private volatile MessageHandler.Whole<Reader> messageHandler;
     private volatile boolean sessionClosed = false;
@@ -83,100 +86,56 @@ class ReaderBuffer {
      * Constructor.
      */
     public ReaderBuffer(ExecutorService executorService) {
-        this.buffer = new StringBuffer();
         this.executorService = executorService;
         currentlyBuffered = 0;
     }
 
-    /**
-     * Get next received chars.
-     *
-     * @return next received chars.
-     */
-    public char[] getNextChars(int number) throws IOException {
-        lock.lock();
-        try {
-            if (buffer.length() == 0) {
-                if (receivedLast) {
-                    this.reader = null;
-                    buffering.set(true);
-                    this.currentlyBuffered = 0;
-                    return null;
-                } else { // there's more to come...so wait here...
-                    // don't let the reader block on a closed session
-                    checkClosedSession();
-
-                    boolean interrupted;
-                    do {
-                        interrupted = false;
-                        try {
-                            condition.await();
-
-                            checkClosedSession();
-                        } catch (InterruptedException e) {
-                            interrupted = true;
-                        }
-                    } while (interrupted);
-                }
-            }
-
-            int size = number > buffer.length() ? buffer.length() : number;
-
-            char[] result = new char[size];
-            buffer.getChars(0, size, result, 0);
-            buffer.delete(0, size);
-
-            return result;
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    /**
-     * Finish reading of the buffer.
-     */
-    public void finishReading() {
-        buffer = new StringBuffer();
-        reader = null;
-    }
-
     /**
      * Append next message part to the buffer.
+     * <p/>
+     * Never blocks; the consumer might fall behind at most by the buffer size set by {@link #resetBuffer(int)} or
+     * by {@link #MAX_UNREAD_SIZE}, whichever is lower.
      *
      * @param message the message.
      * @param last    should be {@code true} iff this is the last part of the message, {@code false} otherwise.
      */
     public void appendMessagePart(String message, boolean last) {
-        lock.lock();
-        try {
-            currentlyBuffered += message.length();
-            if (currentlyBuffered <= bufferSize) {
-                buffer.append(message);
-            } else {
-                if (buffering.get()) {
-                    buffering.set(false);
-                    final MessageTooBigException messageTooBigException = new MessageTooBigException(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
-                    LOGGER.log(Level.FINE, LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW(), messageTooBigException);
-                    receivedLast = true;
-                    throw messageTooBigException;
-                }
-            }
+        if (!buffering) {
+            return;
+        }
+
+        currentlyBuffered += message.length();
+        if (currentlyBuffered > bufferSize) {
+            overflow(LocalizationMessages.PARTIAL_MESSAGE_BUFFER_OVERFLOW());
+        }
 
-            this.receivedLast = last;
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        BufferedStringReader current = reader;
+        if (current != null && current.getUnread() > MAX_UNREAD_SIZE) {
+            overflow(LocalizationMessages.PARTIAL_MESSAGE_UNREAD_OVERFLOW(MAX_UNREAD_SIZE));
         }
 
-        if (this.reader == null) {
-            this.reader = new BufferedStringReader(this);
+        if (current == null) {
+            current = new BufferedStringReader();
+            if (sessionClosed) {
+                current.onSessionClosed();
+            }
+            reader = current;
+
+            final BufferedStringReader toConsume = current;
+            final MessageHandler.Whole<Reader> handler = messageHandler;
             executorService.execute(new Runnable() {
                 @Override
                 public void run() {
-                    messageHandler.onMessage(reader);
+                    handler.onMessage(toConsume);
                 }
             });
         }
+
+        if (last) {
+            reader = null;
+        }
+
+        current.appendMessagePart(message, last);
     }
 
     /**
@@ -195,25 +154,34 @@ class ReaderBuffer {
      */
     public void resetBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
-        buffering.set(true);
+        buffering = true;
         currentlyBuffered = 0;
-        buffer.delete(0, buffer.length());
+        finishMessage();
     }
 
     void onSessionClosed() {
         sessionClosed = true;
-        lock.lock();
-        try {
+
+        final BufferedStringReader current = reader;
+        if (current != null) {
             // wake up blocked thread
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+            current.onSessionClosed();
         }
     }
 
-    private void checkClosedSession() throws IOException {
-        if (sessionClosed) {
-            throw new IOException("Websocket session has been closed.");
+    private void overflow(String message) {
+        buffering = false;
+        finishMessage();
+        final MessageTooBigException messageTooBigException = new MessageTooBigException(message);
+        LOGGER.log(Level.FINE, message, messageTooBigException);
+        throw messageTooBigException;
+    }
+
+    private void finishMessage() {
+        final BufferedStringReader current = reader;
+        if (current != null) {
+            reader = null;
+            current.finish();
         }
     }
-}
\ No newline at end of file
+}
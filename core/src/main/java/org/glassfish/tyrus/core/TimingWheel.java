@@ -0,0 +1,258 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel used for container-wide scheduling of session related timeouts (idle timeout, heartbeat).
+ * <p/>
+ * All timeouts are kept in {@value #WHEEL_SIZE} buckets, which are checked by one periodic task every
+ * {@value #TICK_DURATION} ms. Scheduling a timeout is only an insertion into a lock-free queue, so it is much cheaper
+ * than scheduling (and cancelling) a task directly on a {@link ScheduledExecutorService}. Cancelled timeouts are
+ * removed lazily when their bucket is processed.
+ * <p/>
+ * Tasks of expired timeouts are executed on the thread which is advancing the wheel, so they should only do
+ * a minimal amount of work (i.e. reschedule itself or dispatch the work to another executor).
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+class TimingWheel {
+
+    /**
+     * Duration of one tick of the wheel in milliseconds.
+     */
+    static final long TICK_DURATION = 10;
+
+    /**
+     * Number of buckets of the wheel.
+     */
+    static final int WHEEL_SIZE = 512;
+
+    private static final Logger LOGGER = Logger.getLogger(TimingWheel.class.getName());
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final List<List<Timeout>> wheel = new ArrayList<List<Timeout>>(WHEEL_SIZE);
+    private final Object lifecycleLock = new Object();
+
+    private volatile ScheduledFuture<?> tickerFuture = null;
+    private volatile boolean stopped = false;
+
+    // accessed only by the ticker
+    private long startTime;
+    private long tick = 0;
+
+    /**
+     * Create new timing wheel.
+     *
+     * @param scheduledExecutorService executor used for advancing the wheel. The wheel is started lazily when the first
+     *                                 timeout is scheduled.
+     */
+    TimingWheel(ScheduledExecutorService scheduledExecutorService) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<Timeout>());
+        }
+    }
+
+    /**
+     * Get current time in milliseconds as used by the wheel.
+     * <p/>
+     * The value is based on {@link System#nanoTime()}, so it can be used only for measuring elapsed time.
+     *
+     * @return current time in milliseconds.
+     */
+    static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Schedule a task.
+     *
+     * @param task  task to be executed after the delay. The task is executed on the thread advancing the wheel.
+     * @param delay delay in milliseconds.
+     * @return timeout handle, which can be used for cancelling the task.
+     */
+    Timeout schedule(Runnable task, long delay) {
+        final Timeout timeout = new Timeout(task, now() + Math.max(0, delay));
+
+        if (stopped) {
+            timeout.cancel();
+            return timeout;
+        }
+
+        pendingTimeouts.add(timeout);
+        start();
+
+        return timeout;
+    }
+
+    /**
+     * Stop the wheel. All scheduled timeouts are discarded and no new timeouts will be accepted.
+     */
+    void stop() {
+        synchronized (lifecycleLock) {
+            stopped = true;
+            if (tickerFuture != null) {
+                tickerFuture.cancel(false);
+                tickerFuture = null;
+            }
+            pendingTimeouts.clear();
+        }
+    }
+
+    private void start() {
+        if (tickerFuture == null) {
+            synchronized (lifecycleLock) {
+                if (tickerFuture == null && !stopped) {
+                    startTime = now();
+                    tickerFuture = scheduledExecutorService.scheduleAtFixedRate(new Ticker(), TICK_DURATION, TICK_DURATION, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            final long expirationTick = Math.max(tick, (timeout.deadline - startTime) / TICK_DURATION);
+            timeout.remainingRounds = (expirationTick - tick) / WHEEL_SIZE;
+            wheel.get((int) (expirationTick % WHEEL_SIZE)).add(timeout);
+        }
+    }
+
+    private void expireTimeouts(List<Timeout> bucket) {
+        int retained = 0;
+
+        for (int i = 0; i < bucket.size(); i++) {
+            final Timeout timeout = bucket.get(i);
+
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.set(retained++, timeout);
+                continue;
+            }
+
+            try {
+                timeout.task.run();
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Scheduled task threw an exception.", t);
+            }
+        }
+
+        for (int i = bucket.size() - 1; i >= retained; i--) {
+            bucket.remove(i);
+        }
+    }
+
+    /**
+     * Periodic task advancing the wheel.
+     */
+    private class Ticker implements Runnable {
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+
+            // ticks might be delayed; process all ticks which should have happened until now.
+            final long currentTick = (now() - startTime) / TICK_DURATION;
+
+            transferPendingTimeouts();
+
+            while (tick <= currentTick) {
+                expireTimeouts(wheel.get((int) (tick % WHEEL_SIZE)));
+                tick++;
+            }
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    static class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled = false;
+
+        // accessed only by the ticker
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the timeout. The task won't be executed if it has not been already.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Get information whether the timeout has been cancelled.
+         *
+         * @return {@code true} when the timeout has been cancelled, {@code false} otherwise.
+         */
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
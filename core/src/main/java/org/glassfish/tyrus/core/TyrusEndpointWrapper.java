@@ -57,14 +57,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -119,12 +123,11 @@ import org.glassfish.tyrus.spi.UpgradeResponse;
 public class TyrusEndpointWrapper {
 
     private final static Logger LOGGER = Logger.getLogger(TyrusEndpointWrapper.class.getName());
+    // stored in all positions of the per-session coder instance array when the session is closed.
+    private static final Object DESTROYED_CODER = new Object();
+    // maximal number of message classes with cached encoder; encoders for other classes are searched for every message.
+    private static final int ENCODER_CACHE_SIZE = 256;
 
-    /**
-     * Used as threshold for parallel broadcast. When the sessions are divided between threads, number of sessions
-     * per thread should not be lower than this constant.
-     */
-    private final static int MIN_SESSIONS_PER_THREAD = 16;
     /**
      * The container for this session.
      */
@@ -134,6 +137,14 @@ public class TyrusEndpointWrapper {
     private final String serverEndpointPath;
     private final List<CoderWrapper<Decoder>> decoders = new ArrayList<CoderWrapper<Decoder>>();
     private final List<CoderWrapper<Encoder>> encoders = new ArrayList<CoderWrapper<Encoder>>();
+    // decoders applicable to text/binary messages, in the order of decoders.
+    private final List<CoderWrapper<Decoder>> textDecoders = new ArrayList<CoderWrapper<Decoder>>();
+    private final List<CoderWrapper<Decoder>> binaryDecoders = new ArrayList<CoderWrapper<Decoder>>();
+    // encoders resolved for runtime classes of encoded messages, bounded by ENCODER_CACHE_SIZE.
+    private final ConcurrentMap<Class<?>, EncoderDispatch> encoderCache = new ConcurrentHashMap<Class<?>, EncoderDispatch>();
+    // positions of coders in per-session coder instance arrays (see TyrusSession#getCoderInstances()).
+    private final Map<CoderWrapper<?>, Integer> coderIndexes = new IdentityHashMap<CoderWrapper<?>, Integer>();
+    private final int coderCount;
     private final EndpointConfig configuration;
     private final Class<? extends Endpoint> endpointClass;
     private final Endpoint endpoint;
@@ -324,6 +335,25 @@ public class TyrusEndpointWrapper {
         encoders.add(new CoderWrapper<Encoder>(new NoOpByteArrayCoder(), byte[].class));
         encoders.add(new CoderWrapper<Encoder>(new ToStringEncoder(), Object.class));
 
+        // instances of classes which are both encoder and decoder are shared, so they use the same position.
+        final Map<Class<?>, Integer> classIndexes = new HashMap<Class<?>, Integer>();
+
+        for (CoderWrapper<Decoder> decoder : decoders) {
+            addCoderIndex(decoder, classIndexes);
+
+            final Class<? extends Decoder> decoderClass = decoder.getCoderClass();
+            if (Decoder.Text.class.isAssignableFrom(decoderClass) || Decoder.TextStream.class.isAssignableFrom(decoderClass)) {
+                textDecoders.add(decoder);
+            }
+            if (Decoder.Binary.class.isAssignableFrom(decoderClass) || Decoder.BinaryStream.class.isAssignableFrom(decoderClass)) {
+                binaryDecoders.add(decoder);
+            }
+        }
+        for (CoderWrapper<Encoder> encoder : encoders) {
+            addCoderIndex(encoder, classIndexes);
+        }
+        coderCount = classIndexes.size();
+
         // clustered mode
         if (clusterContext != null) {
             clusterContext.registerSessionListener(getEndpointPath(), new org.glassfish.tyrus.core.cluster.SessionListener() {
@@ -342,12 +372,12 @@ public class TyrusEndpointWrapper {
             clusterContext.registerBroadcastListener(getEndpointPath(), new BroadcastListener() {
                 @Override
                 public void onBroadcast(String text) {
-                    broadcast(text, true);
+                    broadcast(text, true, false);
                 }
 
                 @Override
                 public void onBroadcast(byte[] data) {
-                    broadcast(ByteBuffer.wrap(data), true);
+                    broadcast(ByteBuffer.wrap(data), true, false);
                 }
             });
 
@@ -377,21 +407,87 @@ public class TyrusEndpointWrapper {
         }
     }
 
+    /**
+     * Get number of encoders and decoders which can be instantiated per session.
+     *
+     * @return length of per-session coder instance array.
+     */
+    int getCoderCount() {
+        return coderCount;
+    }
+
+    private void addCoderIndex(CoderWrapper<?> wrapper, Map<Class<?>, Integer> classIndexes) {
+        // coders provided as instances are not instantiated per session.
+        if (wrapper.getCoder() != null) {
+            return;
+        }
+
+        Integer index = classIndexes.get(wrapper.getCoderClass());
+        if (index == null) {
+            index = classIndexes.size();
+            classIndexes.put(wrapper.getCoderClass(), index);
+        }
+        coderIndexes.put(wrapper, index);
+    }
+
     private <T> Object getCoderInstance(Session session, CoderWrapper<T> wrapper) {
         final Object coder = wrapper.getCoder();
-        if (coder == null) {
-            ErrorCollector collector = new ErrorCollector();
-            final Object coderInstance = this.componentProvider.getCoderInstance(wrapper.getCoderClass(), session, getEndpointConfig(), collector);
+        if (coder != null) {
+            return coder;
+        }
+
+        final Integer index = coderIndexes.get(wrapper);
+        if (index != null && session instanceof TyrusSession) {
+            // lock-free lookup in the session; instance is created when the coder is used for the first time.
+            final AtomicReferenceArray<Object> coderInstances = ((TyrusSession) session).getCoderInstances();
+            final Object coderInstance = coderInstances.get(index);
+            if (coderInstance == DESTROYED_CODER) {
+                throw new IllegalStateException(LocalizationMessages.CONNECTION_HAS_BEEN_CLOSED());
+            } else if (coderInstance != null) {
+                return coderInstance;
+            }
+
+            final ErrorCollector collector = new ErrorCollector();
+            final Object created = this.componentProvider.createCoderInstance(wrapper.getCoderClass(), getEndpointConfig(), collector);
             if (!collector.isEmpty()) {
                 final DeploymentException deploymentException = collector.composeComprehensiveException();
                 LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
                 return null;
             }
 
-            return coderInstance;
+            if (coderInstances.compareAndSet(index, null, created)) {
+                return created;
+            }
+
+            // other thread was faster or the session has been closed meanwhile.
+            this.componentProvider.destroyCoderInstance(created);
+            final Object current = coderInstances.get(index);
+            if (current == DESTROYED_CODER) {
+                throw new IllegalStateException(LocalizationMessages.CONNECTION_HAS_BEEN_CLOSED());
+            }
+            return current;
+        }
+
+        ErrorCollector collector = new ErrorCollector();
+        final Object coderInstance = this.componentProvider.getCoderInstance(wrapper.getCoderClass(), session, getEndpointConfig(), collector);
+        if (!collector.isEmpty()) {
+            final DeploymentException deploymentException = collector.composeComprehensiveException();
+            LOGGER.log(Level.WARNING, deploymentException.getMessage(), deploymentException);
+            return null;
         }
 
-        return coder;
+        return coderInstance;
+    }
+
+    private void destroyCoderInstances(TyrusSession session) {
+        final AtomicReferenceArray<Object> coderInstances = session.getCoderInstances();
+        for (int i = 0; i < coderInstances.length(); i++) {
+            // coders created after this point are destroyed right away by getCoderInstance(...).
+            final Object coderInstance = coderInstances.getAndSet(i, DESTROYED_CODER);
+            if (coderInstance != null && coderInstance != DESTROYED_CODER) {
+                componentProvider.destroyCoderInstance(coderInstance);
+            }
+        }
     }
 
     Object decodeCompleteMessage(TyrusSession session, Object message, Class<?> type, CoderWrapper<Decoder> selectedDecoder) throws DecodeException, IOException {
@@ -435,9 +531,10 @@ public class TyrusEndpointWrapper {
     }
 
     private ArrayList<CoderWrapper<Decoder>> findApplicableDecoders(TyrusSession session, Object message, boolean isString) {
-        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>();
+        final List<CoderWrapper<Decoder>> candidates = isString ? textDecoders : binaryDecoders;
+        ArrayList<CoderWrapper<Decoder>> result = new ArrayList<CoderWrapper<Decoder>>(candidates.size());
 
-        for (CoderWrapper<Decoder> dec : decoders) {
+        for (CoderWrapper<Decoder> dec : candidates) {
             if (isString && (Decoder.Text.class.isAssignableFrom(dec.getCoderClass()))) {
                 final Decoder.Text decoder = (Decoder.Text) getCoderInstance(session, dec);
 
@@ -450,9 +547,8 @@ public class TyrusEndpointWrapper {
                 if (decoder.willDecode((ByteBuffer) message)) {
                     result.add(dec);
                 }
-            } else if (isString && (Decoder.TextStream.class.isAssignableFrom(dec.getCoderClass()))) {
-                result.add(dec);
-            } else if (!isString && (Decoder.BinaryStream.class.isAssignableFrom(dec.getCoderClass()))) {
+            } else {
+                // stream decoders.
                 result.add(dec);
             }
         }
@@ -463,49 +559,79 @@ public class TyrusEndpointWrapper {
     }
 
     public Object doEncode(Session session, Object message) throws EncodeException, IOException {
-        for (CoderWrapper<Encoder> enc : encoders) {
-            final Class<? extends Encoder> encoderClass = enc.getCoderClass();
+        final EncoderDispatch dispatch = getEncoderDispatch(message.getClass());
+        final CoderWrapper<Encoder> enc = dispatch.encoder;
 
-            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
+        switch (dispatch.kind) {
+            case EncoderDispatch.BINARY: {
+                final Encoder.Binary encoder = (Encoder.Binary) getCoderInstance(session, enc);
 
-                    logUsedEncoder(enc, session);
+                logUsedEncoder(enc, session);
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
+                return encoder.encode(message);
+            }
+            case EncoderDispatch.TEXT: {
+                final Encoder.Text encoder = (Encoder.Text) getCoderInstance(session, enc);
 
-                    logUsedEncoder(enc, session);
+                logUsedEncoder(enc, session);
 
-                    return encoder.encode(message);
-                }
-            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                    final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
+                return encoder.encode(message);
+            }
+            case EncoderDispatch.BINARY_STREAM: {
+                final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                final Encoder.BinaryStream encoder = (Encoder.BinaryStream) getCoderInstance(session, enc);
 
-                    logUsedEncoder(enc, session);
+                logUsedEncoder(enc, session);
 
-                    encoder.encode(message, stream);
-                    return stream;
-                }
-            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
-                if (enc.getType().isAssignableFrom(message.getClass())) {
-                    final Writer writer = new StringWriter();
-                    final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
+                encoder.encode(message, stream);
+                return stream;
+            }
+            case EncoderDispatch.TEXT_STREAM: {
+                final Writer writer = new StringWriter();
+                final Encoder.TextStream encoder = (Encoder.TextStream) getCoderInstance(session, enc);
 
-                    logUsedEncoder(enc, session);
+                logUsedEncoder(enc, session);
 
-                    encoder.encode(message, writer);
-                    return writer;
-                }
+                encoder.encode(message, writer);
+                return writer;
+            }
+            default:
+                throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+        }
+    }
+
+    /**
+     * Get encoder used for messages of given class.
+     * <p/>
+     * The first encoder which can encode the class is used; the result is cached for up to {@value
+     * #ENCODER_CACHE_SIZE} classes, so the encoders are usually searched only once for each class of encoded messages.
+     * The limit keeps the cache from growing with every class (and class loader) of encoded messages.
+     *
+     * @param messageClass runtime class of the message.
+     * @return encoder dispatch, never {@code null}.
+     */
+    private EncoderDispatch getEncoderDispatch(Class<?> messageClass) {
+        EncoderDispatch dispatch = encoderCache.get(messageClass);
+        if (dispatch != null) {
+            return dispatch;
+        }
+
+        dispatch = EncoderDispatch.NONE;
+        for (CoderWrapper<Encoder> enc : encoders) {
+            final int kind = EncoderDispatch.getKind(enc.getCoderClass());
+            if (kind != EncoderDispatch.UNKNOWN && enc.getType().isAssignableFrom(messageClass)) {
+                dispatch = new EncoderDispatch(enc, kind);
+                break;
             }
         }
 
-        throw new EncodeException(message, LocalizationMessages.ENCODING_FAILED());
+        if (encoderCache.size() < ENCODER_CACHE_SIZE) {
+            final EncoderDispatch cached = encoderCache.putIfAbsent(messageClass, dispatch);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return dispatch;
     }
 
     private void logUsedEncoder(CoderWrapper<Encoder> encoder, Session session) {
@@ -781,7 +907,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received binary message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
@@ -835,7 +961,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received text message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             final TyrusSession.State state = session.getState();
             if (state == TyrusSession.State.RECEIVING_BINARY || state == TyrusSession.State.RECEIVING_TEXT) {
                 session.setState(TyrusSession.State.RUNNING);
@@ -893,7 +1019,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received partial text message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             final TyrusSession.State state = session.getState();
             if (session.isPartialTextHandlerPresent()) {
                 session.notifyMessageHandlers(partialString, last);
@@ -994,7 +1120,7 @@ public class TyrusEndpointWrapper {
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received partial binary message");
 
         try {
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             final TyrusSession.State state = session.getState();
             if (session.isPartialBinaryHandlerPresent()) {
                 session.notifyMessageHandlers(partialBytes, last);
@@ -1115,7 +1241,7 @@ public class TyrusEndpointWrapper {
 
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received pong message");
 
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivityTime();
 
         if (session.isPongHandlerPresent()) {
             try {
@@ -1177,7 +1303,7 @@ public class TyrusEndpointWrapper {
 
         session.getDebugContext().appendLogMessage(LOGGER, Level.FINEST, DebugContext.Type.MESSAGE_IN, "Received ping message");
 
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivityTime();
         try {
             session.getBasicRemote().sendPong(bytes);
         } catch (IOException e) {
@@ -1247,6 +1373,7 @@ public class TyrusEndpointWrapper {
             webSocketToSession.remove(socket);
             endpointEventListener.onSessionClosed(session.getId());
             componentProvider.removeSession(session);
+            destroyCoderInstances(session);
             sessionListener.onClose(session, closeReason);
         }
     }
@@ -1262,224 +1389,156 @@ public class TyrusEndpointWrapper {
 
     /**
      * Broadcasts text message to all connected clients.
+     * <p/>
+     * When the cluster context uses {@link ClusterContext#isLocalFirstBroadcast() local-first broadcast}, the returned
+     * map contains also the remote sessions, their futures are completed when the message was delivered to all
+     * the other nodes.
      *
      * @param message message to be broadcasted.
      * @return map of sessions and futures for user to get the information about status of the message. Messages send
      * from other cluster nodes are not included.
      */
     Map<Session, Future<?>> broadcast(final String message) {
-        return broadcast(message, false);
+        if (isLocalFirstBroadcast()) {
+            final BroadcastTask broadcastTask = broadcastFrame(new TextFrame(message, false, true), true);
+            return getSessionFutures(broadcastTask, clusterContext.broadcastTextToOtherNodes(getEndpointPath(), message));
+        }
+
+        return getSessionFutures(broadcast(message, false, true));
+    }
+
+    /**
+     * Broadcasts text message to all connected clients without creating per-session futures.
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message was sent to all local sessions (and delivered to all the other
+     * nodes in case of {@link ClusterContext#isLocalFirstBroadcast() local-first broadcast}). Messages send from
+     * other cluster nodes are not included.
+     */
+    Future<Void> broadcastAsync(final String message) {
+        if (isLocalFirstBroadcast()) {
+            final BroadcastTask broadcastTask = broadcastFrame(new TextFrame(message, false, true), false);
+            return new ClusterBroadcastFuture(broadcastTask.getFuture(),
+                    clusterContext.broadcastTextToOtherNodes(getEndpointPath(), message));
+        }
+
+        return getFuture(broadcast(message, false, false));
     }
 
-    private Map<Session, Future<?>> broadcast(final String message, boolean local) {
+    private BroadcastTask broadcast(final String message, boolean local, boolean createSessionFutures) {
 
         if (!local && clusterContext != null) {
             clusterContext.broadcastText(getEndpointPath(), message);
-            return new HashMap<Session, Future<?>>();
+            return null;
         } else {
-
-            if (webSocketToSession.isEmpty()) {
-                return new HashMap<Session, Future<?>>();
-            }
-
-            TyrusWebSocket webSocket = webSocketToSession.keySet().iterator().next();
-            final Frame dataFrame = new TextFrame(message, false, true);
-            final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-            final byte[] frame = new byte[byteBuffer.remaining()];
-            byteBuffer.get(frame);
-            final long payloadLength = dataFrame.getPayloadLength();
-
-            SessionCallable broadcastCallable = new SessionCallable() {
-
-                @Override
-                public Future<?> call(TyrusWebSocket webSocket, TyrusSession session) {
-                    final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
-
-                    // we need to let protocol handler execute extensions if there are any
-                    if (protocolHandler.hasExtensions()) {
-                        byte[] tempFrame;
-
-                        final Frame dataFrame = new TextFrame(message, false, true);
-                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                        tempFrame = new byte[byteBuffer.remaining()];
-                        byteBuffer.get(tempFrame);
-
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.TEXT, dataFrame.getPayloadLength());
-                        return frameFuture;
-                    } else {
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.TEXT, payloadLength);
-                        return frameFuture;
-                    }
-                }
-            };
-
-            if (parallelBroadcastEnabled) {
-                return executeInParallel(broadcastCallable);
-            }
-
-            Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-
-            for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-                if (e.getValue().isOpen()) {
-                    Future<?> future = broadcastCallable.call(e.getKey(), e.getValue());
-                    futures.put(e.getValue(), future);
-                }
-            }
-
-            return futures;
+            return broadcastFrame(new TextFrame(message, false, true), createSessionFutures);
         }
     }
 
     /**
      * Broadcasts binary message to all connected clients.
+     * <p/>
+     * When the cluster context uses {@link ClusterContext#isLocalFirstBroadcast() local-first broadcast}, the returned
+     * map contains also the remote sessions, their futures are completed when the message was delivered to all
+     * the other nodes.
      *
      * @param message message to be broadcasted.
      * @return map of sessions and futures for user to get the information about status of the message. Messages send
      * from other cluster nodes are not included.
      */
     Map<Session, Future<?>> broadcast(final ByteBuffer message) {
-        return broadcast(message, false);
+        if (isLocalFirstBroadcast()) {
+            final byte[] byteArrayMessage = Utils.getRemainingArray(message);
+            final BroadcastTask broadcastTask = broadcastFrame(new BinaryFrame(byteArrayMessage, false, true), true);
+            return getSessionFutures(broadcastTask,
+                    clusterContext.broadcastBinaryToOtherNodes(getEndpointPath(), byteArrayMessage));
+        }
+
+        return getSessionFutures(broadcast(message, false, true));
     }
 
-    private Map<Session, Future<?>> broadcast(final ByteBuffer message, boolean local) {
+    /**
+     * Broadcasts binary message to all connected clients without creating per-session futures.
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message was sent to all local sessions (and delivered to all the other
+     * nodes in case of {@link ClusterContext#isLocalFirstBroadcast() local-first broadcast}). Messages send from
+     * other cluster nodes are not included.
+     */
+    Future<Void> broadcastAsync(final ByteBuffer message) {
+        if (isLocalFirstBroadcast()) {
+            final byte[] byteArrayMessage = Utils.getRemainingArray(message);
+            final BroadcastTask broadcastTask = broadcastFrame(new BinaryFrame(byteArrayMessage, false, true), false);
+            return new ClusterBroadcastFuture(broadcastTask.getFuture(),
+                    clusterContext.broadcastBinaryToOtherNodes(getEndpointPath(), byteArrayMessage));
+        }
+
+        return getFuture(broadcast(message, false, false));
+    }
+
+    private BroadcastTask broadcast(final ByteBuffer message, boolean local, boolean createSessionFutures) {
 
         final byte[] byteArrayMessage = Utils.getRemainingArray(message);
 
         if (!local && clusterContext != null) {
             clusterContext.broadcastBinary(getEndpointPath(), byteArrayMessage);
             // TODO: fix for cluster case
-            return new HashMap<Session, Future<?>>();
+            return null;
         } else {
-
-            if (webSocketToSession.isEmpty()) {
-                return new HashMap<Session, Future<?>>();
-            }
-
-            TyrusWebSocket webSocket = webSocketToSession.keySet().iterator().next();
-            final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-            final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-            final byte[] frame = new byte[byteBuffer.remaining()];
-            byteBuffer.get(frame);
-            final long payloadLength = dataFrame.getPayloadLength();
-
-            SessionCallable broadcastCallable = new SessionCallable() {
-
-                @Override
-                public Future<?> call(TyrusWebSocket webSocket, TyrusSession session) {
-                    final ProtocolHandler protocolHandler = webSocket.getProtocolHandler();
-
-                    // we need to let protocol handler execute extensions if there are any
-                    if (protocolHandler.hasExtensions()) {
-                        byte[] tempFrame;
-
-                        final Frame dataFrame = new BinaryFrame(byteArrayMessage, false, true);
-                        final ByteBuffer byteBuffer = webSocket.getProtocolHandler().frame(dataFrame);
-                        tempFrame = new byte[byteBuffer.remaining()];
-                        byteBuffer.get(tempFrame);
-
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(tempFrame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.BINARY, dataFrame.getPayloadLength());
-                        return frameFuture;
-                    } else {
-                        final Future<Frame> frameFuture = webSocket.sendRawFrame(ByteBuffer.wrap(frame));
-                        webSocket.getMessageEventListener().onFrameSent(TyrusFrame.FrameType.BINARY, payloadLength);
-                        return frameFuture;
-                    }
-                }
-            };
-
-            if (parallelBroadcastEnabled) {
-                return executeInParallel(broadcastCallable);
-            }
-
-            Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-
-            for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-                if (e.getValue().isOpen()) {
-                    Future<?> future = broadcastCallable.call(e.getKey(), e.getValue());
-                    futures.put(e.getValue(), future);
-                }
-            }
-
-            return futures;
+            return broadcastFrame(new BinaryFrame(byteArrayMessage, false, true), createSessionFutures);
         }
     }
 
+    private boolean isLocalFirstBroadcast() {
+        return clusterContext != null && clusterContext.isLocalFirstBroadcast();
+    }
+
     /**
-     * Divides open sessions into subsets on which an operation passed as {@code broadcastCallable} will be executed in parallel.
+     * Sends data frame to all open sessions.
+     * <p/>
+     * The frame is framed (and processed by extensions) once per group of sessions with the same outgoing processing,
+     * see {@link BroadcastFrames}. When parallel broadcast is enabled, sending is done by the container executor and
+     * this method does not wait for it.
      *
-     * @param broadcastCallable operation to be executed on open sessions.
-     * @return futures of the operations executed on each session.
+     * @param dataFrame            frame to be broadcasted.
+     * @param createSessionFutures {@code true} if future for each session should be created.
+     * @return started broadcast.
      */
-    private Map<Session, Future<?>> executeInParallel(final SessionCallable broadcastCallable) {
-        final List<Map.Entry<TyrusWebSocket, TyrusSession>> sessions = new ArrayList<Map.Entry<TyrusWebSocket, TyrusSession>>();
-
-        for (Map.Entry<TyrusWebSocket, TyrusSession> e : webSocketToSession.entrySet()) {
-            if (e.getValue().isOpen()) {
-                sessions.add(e);
-            }
-        }
+    private BroadcastTask broadcastFrame(final TyrusFrame dataFrame, boolean createSessionFutures) {
+        final BroadcastTask broadcastTask = new BroadcastTask(webSocketToSession, dataFrame, createSessionFutures);
 
-        if (sessions.isEmpty()) {
-            return new HashMap<Session, Future<?>>();
+        ExecutorService executor = null;
+        if (parallelBroadcastEnabled && container instanceof BaseContainer) {
+            executor = ((BaseContainer) container).getExecutorService();
         }
 
-        ExecutorService executor = ((BaseContainer) sessions.get(0).getValue().getContainer()).getExecutorService();
-        Map<Future<Map<Session, Future<?>>>, int[]> submitFutures = new HashMap<Future<Map<Session, Future<?>>>, int[]>();
-
-        int sessionCount = sessions.size();
-        int maxThreadCount = sessionCount / MIN_SESSIONS_PER_THREAD == 0 ? 1 : sessionCount / MIN_SESSIONS_PER_THREAD;
-        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), maxThreadCount);
-
-        for (int i = 0; i < threadCount; i++) {
-
-            final int lowerBound = (sessionCount + threadCount - 1) / threadCount * i;
-            final int upperBound = Math.min((sessionCount + threadCount - 1) / threadCount * (i + 1), sessionCount);
-
-            Future<Map<Session, Future<?>>> submitFuture = executor.submit(new Callable<Map<Session, Future<?>>>() {
-
-                @Override
-                public Map<Session, Future<?>> call() throws Exception {
-                    Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
-
-                    for (int j = lowerBound; j < upperBound; j++) {
-                        Map.Entry<TyrusWebSocket, TyrusSession> e = sessions.get(j);
-                        Future<?> future = broadcastCallable.call(e.getKey(), e.getValue());
-                        futures.put(e.getValue(), future);
-                    }
-                    return futures;
-                }
-            });
-
-            submitFutures.put(submitFuture, new int[]{lowerBound, upperBound});
-        }
+        broadcastTask.execute(executor);
+        return broadcastTask;
+    }
 
-        final Map<Session, Future<?>> futures = new HashMap<Session, Future<?>>();
+    private static Map<Session, Future<?>> getSessionFutures(BroadcastTask broadcastTask) {
+        return broadcastTask == null ? new HashMap<Session, Future<?>>() : broadcastTask.getSessionFutures();
+    }
 
-        for (Future<Map<Session, Future<?>>> submitFuture : submitFutures.keySet()) {
-            try {
-                futures.putAll(submitFuture.get());
-            } catch (InterruptedException e) {
-                handleSubmitException(futures, sessions, submitFutures.get(submitFuture), e);
-            } catch (ExecutionException e) {
-                handleSubmitException(futures, sessions, submitFutures.get(submitFuture), e);
-            }
+    /**
+     * Get futures of local sessions, all remote sessions share the future of the cluster broadcast.
+     */
+    private Map<Session, Future<?>> getSessionFutures(BroadcastTask broadcastTask, Future<Void> clusterFuture) {
+        final Map<Session, Future<?>> result = broadcastTask.getSessionFutures();
+        for (RemoteSession remoteSession : clusteredSessions.values()) {
+            result.put(remoteSession, clusterFuture);
         }
-
-        return futures;
+        return result;
     }
 
-    private void handleSubmitException(Map<Session, Future<?>> futures,
-                                       List<Map.Entry<TyrusWebSocket, TyrusSession>> sessions,
-                                       int[] bounds, Exception e) {
-
-        for (int j = bounds[0]; j < bounds[1]; j++) {
-            TyrusFuture<Void> future = new TyrusFuture<Void>();
-            future.setFailure(e);
-            futures.put(sessions.get(j).getValue(), future);
+    private static Future<Void> getFuture(BroadcastTask broadcastTask) {
+        if (broadcastTask == null) {
+            final TyrusFuture<Void> future = new TyrusFuture<Void>();
+            future.setResult(null);
+            return future;
         }
+
+        return broadcastTask.getFuture();
     }
 
     /**
@@ -1839,8 +1898,84 @@ public class TyrusEndpointWrapper {
         }
     };
 
-    private static interface SessionCallable {
+    /**
+     * Future of a local-first broadcast, completed when both the local broadcast and the broadcast to other cluster
+     * nodes are completed.
+     */
+    private static final class ClusterBroadcastFuture implements Future<Void> {
+
+        private final Future<Void> localFuture;
+        private final Future<Void> clusterFuture;
+
+        private ClusterBroadcastFuture(Future<Void> localFuture, Future<Void> clusterFuture) {
+            this.localFuture = localFuture;
+            this.clusterFuture = clusterFuture;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return localFuture.isDone() && clusterFuture.isDone();
+        }
 
-        Future<?> call(TyrusWebSocket tyrusWebSocket, TyrusSession session);
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            localFuture.get();
+            clusterFuture.get();
+            return null;
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            localFuture.get(timeout, unit);
+            clusterFuture.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return null;
+        }
+    }
+
+    /**
+     * Encoder resolved for a class of encoded messages.
+     */
+    private static final class EncoderDispatch {
+
+        private static final int UNKNOWN = 0;
+        private static final int BINARY = 1;
+        private static final int TEXT = 2;
+        private static final int BINARY_STREAM = 3;
+        private static final int TEXT_STREAM = 4;
+
+        // no encoder found.
+        private static final EncoderDispatch NONE = new EncoderDispatch(null, UNKNOWN);
+
+        private final CoderWrapper<Encoder> encoder;
+        private final int kind;
+
+        private EncoderDispatch(CoderWrapper<Encoder> encoder, int kind) {
+            this.encoder = encoder;
+            this.kind = kind;
+        }
+
+        private static int getKind(Class<? extends Encoder> encoderClass) {
+            if (Encoder.Binary.class.isAssignableFrom(encoderClass)) {
+                return BINARY;
+            } else if (Encoder.Text.class.isAssignableFrom(encoderClass)) {
+                return TEXT;
+            } else if (Encoder.BinaryStream.class.isAssignableFrom(encoderClass)) {
+                return BINARY_STREAM;
+            } else if (Encoder.TextStream.class.isAssignableFrom(encoderClass)) {
+                return TEXT_STREAM;
+            }
+            return UNKNOWN;
+        }
     }
 }
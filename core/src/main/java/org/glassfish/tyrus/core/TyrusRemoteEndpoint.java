@@ -47,6 +47,7 @@ import java.io.Writer;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -99,7 +100,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivityTime();
             }
         }
 
@@ -113,7 +114,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivityTime();
             }
         }
 
@@ -127,7 +128,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivityTime();
             }
         }
 
@@ -141,20 +142,25 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
             try {
                 processFuture(future);
             } finally {
-                session.restartIdleTimeoutExecutor();
+                session.updateLastActivityTime();
             }
         }
 
         /**
          * Wait for the future to be completed.
          * <p/>
-         * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown).
+         * {@link java.util.concurrent.Future#get()} will be invoked and exception processed (if thrown). When batching is
+         * allowed, pending future is not awaited - message is guaranteed to be sent after {@link #flushBatch()}.
          *
          * @param future to be processed.
          * @throws IOException when {@link java.io.IOException} is the cause of thrown {@link java.util.concurrent.ExecutionException}
          *                     it will be extracted and rethrown. Otherwise whole ExecutionException will be rethrown wrapped in {@link java.io.IOException}.
          */
         private void processFuture(Future<?> future) throws IOException {
+            if (webSocket.getProtocolHandler().isBatchingAllowed() && !future.isDone()) {
+                return;
+            }
+
             try {
                 future.get();
             } catch (InterruptedException e) {
@@ -172,6 +178,11 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendObject(Object data) throws IOException, EncodeException {
             checkNotNull(data, "data");
             final Future<?> future = sendSyncObject(data);
+            if (webSocket.getProtocolHandler().isBatchingAllowed() && !future.isDone()) {
+                // message was added to the batch; encoding failures are still reported (future is already done).
+                session.updateLastActivityTime();
+                return;
+            }
             try {
                 future.get();
             } catch (InterruptedException e) {
@@ -185,7 +196,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
                     throw new IOException(e.getCause());
                 }
             }
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
         }
 
         @Override
@@ -214,21 +225,21 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendText(String text, SendHandler handler) {
             checkNotNull(text, "text");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             sendAsync(text, handler, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendText(String text) {
             checkNotNull(text, "text");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             return sendAsync(text, AsyncMessageType.TEXT);
         }
 
         @Override
         public Future<Void> sendBinary(ByteBuffer data) {
             checkNotNull(data, "data");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             return sendAsync(data, AsyncMessageType.BINARY);
         }
 
@@ -236,7 +247,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendBinary(ByteBuffer data, SendHandler handler) {
             checkNotNull(data, "data");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             sendAsync(data, handler, AsyncMessageType.BINARY);
         }
 
@@ -244,14 +255,14 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         public void sendObject(Object data, SendHandler handler) {
             checkNotNull(data, "data");
             checkNotNull(handler, "handler");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             sendAsync(data, handler, AsyncMessageType.OBJECT);
         }
 
         @Override
         public Future<Void> sendObject(Object data) {
             checkNotNull(data, "data");
-            session.restartIdleTimeoutExecutor();
+            session.updateLastActivityTime();
             return sendAsync(data, AsyncMessageType.OBJECT);
         }
 
@@ -444,7 +455,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Ping"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivityTime();
         webSocket.sendPing(Utils.getRemainingArray(applicationData));
     }
 
@@ -453,7 +464,7 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         if (applicationData != null && applicationData.remaining() > 125) {
             throw new IllegalArgumentException(LocalizationMessages.APPLICATION_DATA_TOO_LONG("Pong"));
         }
-        session.restartIdleTimeoutExecutor();
+        session.updateLastActivityTime();
         webSocket.sendPong(Utils.getRemainingArray(applicationData));
     }
 
@@ -462,19 +473,31 @@ public abstract class TyrusRemoteEndpoint implements javax.websocket.RemoteEndpo
         return "Wrapped: " + getClass().getSimpleName();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Batching is enabled per connection, i.e. the setting is shared by {@link javax.websocket.RemoteEndpoint.Basic}
+     * and {@link javax.websocket.RemoteEndpoint.Async} instances of the same {@link javax.websocket.Session}, so the
+     * order of sent messages is preserved. Batched messages are written together when the batch grows over a size
+     * threshold, after a short delay, when a control frame is sent or when {@link #flushBatch()} is called.
+     */
     @Override
     public void setBatchingAllowed(boolean allowed) {
-        // TODO: Implement.
+        ScheduledExecutorService flushService = null;
+        if (session.getContainer() instanceof ExecutorServiceProvider) {
+            flushService = ((ExecutorServiceProvider) session.getContainer()).getScheduledExecutorService();
+        }
+        webSocket.getProtocolHandler().setBatchingAllowed(allowed, flushService);
     }
 
     @Override
     public boolean getBatchingAllowed() {
-        return false;  // TODO: Implement.
+        return webSocket.getProtocolHandler().isBatchingAllowed();
     }
 
     @Override
     public void flushBatch() {
-        // TODO: Implement.
+        webSocket.getProtocolHandler().flushBatch();
     }
 
     public void close(CloseReason cr) {
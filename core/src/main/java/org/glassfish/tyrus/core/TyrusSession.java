@@ -56,9 +56,8 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -103,10 +102,15 @@ public class TyrusSession implements Session, DistributedSession {
     private final Principal userPrincipal;
     private final Map<String, List<String>> requestParameterMap;
     private final Object idleTimeoutLock = new Object();
+    private final TimingWheel timingWheel;
+    // true when the wheel was created for this session only and has to be stopped when the session is closed.
+    private final boolean ownsTimingWheel;
     private final String id;
     private final String connectionId;
     private final Map<String, Object> userProperties;
     private final MessageHandlerManager handlerManager;
+    // encoder and decoder instances of this session, indexed by position assigned by the endpoint wrapper.
+    private final AtomicReferenceArray<Object> coderInstances;
     private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
     private final TextBuffer textBuffer = new TextBuffer();
     private final BinaryBuffer binaryBuffer = new BinaryBuffer();
@@ -126,7 +130,8 @@ public class TyrusSession implements Session, DistributedSession {
     private final Map<String, Object> distributedUserProperties;
 
     private volatile long maxIdleTimeout = 0;
-    private volatile ScheduledFuture<?> idleTimeoutFuture = null;
+    private volatile long lastActivityTime = TimingWheel.now();
+    private volatile IdleTimeoutCommand idleTimeoutCommand = null;
     private volatile int maxBinaryMessageBufferSize = Integer.MAX_VALUE;
     private volatile int maxTextMessageBufferSize = Integer.MAX_VALUE;
 
@@ -134,7 +139,9 @@ public class TyrusSession implements Session, DistributedSession {
     private InputStreamBuffer inputStreamBuffer;
 
     private volatile long heartbeatInterval;
-    private volatile ScheduledFuture<?> heartbeatTask;
+    private volatile HeartbeatCommand heartbeatTask;
+
+    private final ProtocolHandler protocolHandler;
 
     TyrusSession(WebSocketContainer container, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper,
                  String subprotocol, List<Extension> extensions, boolean isSecure, URI requestURI, String queryString, Map<String,
@@ -150,9 +157,11 @@ public class TyrusSession implements Session, DistributedSession {
         this.requestURI = requestURI;
         this.queryString = queryString;
         this.pathParameters = pathParameters == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new HashMap<String, String>(pathParameters));
+        this.protocolHandler = socket.getProtocolHandler();
         this.basicRemote = new TyrusRemoteEndpoint.Basic(this, socket, endpointWrapper);
         this.asyncRemote = new TyrusRemoteEndpoint.Async(this, socket, endpointWrapper);
         this.handlerManager = MessageHandlerManager.fromDecoderInstances(endpointWrapper.getDecoders());
+        this.coderInstances = new AtomicReferenceArray<Object>(endpointWrapper.getCoderCount());
         this.userPrincipal = principal;
         this.requestParameterMap = requestParameterMap == null ? Collections.<String, List<String>>emptyMap() : Collections.unmodifiableMap(new HashMap<String, List<String>>(requestParameterMap));
         this.connectionId = connectionId;
@@ -189,6 +198,13 @@ public class TyrusSession implements Session, DistributedSession {
         maxTextMessageBufferSize = container.getDefaultMaxTextMessageBufferSize();
         maxBinaryMessageBufferSize = container.getDefaultMaxBinaryMessageBufferSize();
         service = ((ExecutorServiceProvider) container).getScheduledExecutorService();
+        if (container instanceof BaseContainer) {
+            timingWheel = ((BaseContainer) container).getTimingWheel();
+            ownsTimingWheel = false;
+        } else {
+            timingWheel = new TimingWheel(service);
+            ownsTimingWheel = true;
+        }
         setMaxIdleTimeout(container.getDefaultMaxSessionIdleTimeout());
 
         // cluster context is always null on client side
@@ -343,7 +359,7 @@ public class TyrusSession implements Session, DistributedSession {
     public void setMaxIdleTimeout(long maxIdleTimeout) {
         checkConnectionState(State.CLOSED);
         this.maxIdleTimeout = maxIdleTimeout;
-        restartIdleTimeoutExecutor();
+        restartIdleTimeout();
         if (distributedPropertyMap != null) {
             distributedPropertyMap.put(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, maxIdleTimeout);
         }
@@ -483,7 +499,9 @@ public class TyrusSession implements Session, DistributedSession {
      * {@link org.glassfish.tyrus.core.TyrusWebSocketEngine#PARALLEL_BROADCAST_ENABLED} to {@code false} in server properties
      *
      * @param message message to be broadcasted.
-     * @return map of local sessions and futures for user to get the information about status of the message.
+     * @return map of local sessions and futures for user to get the information about status of the message. Remote
+     * sessions are included when {@link org.glassfish.tyrus.core.cluster.ClusterContext#isLocalFirstBroadcast()
+     * local-first cluster broadcast} is used.
      */
     public Map<Session, Future<?>> broadcast(String message) {
         return endpointWrapper.broadcast(message);
@@ -496,12 +514,45 @@ public class TyrusSession implements Session, DistributedSession {
      * {@link org.glassfish.tyrus.core.TyrusWebSocketEngine#PARALLEL_BROADCAST_ENABLED} to {@code false} in server properties.
      *
      * @param message message to be broadcasted.
-     * @return map of local sessions and futures for user to get the information about status of the message.
+     * @return map of local sessions and futures for user to get the information about status of the message. Remote
+     * sessions are included when {@link org.glassfish.tyrus.core.cluster.ClusterContext#isLocalFirstBroadcast()
+     * local-first cluster broadcast} is used.
      */
     public Map<Session, Future<?>> broadcast(ByteBuffer message) {
         return endpointWrapper.broadcast(message);
     }
 
+    /**
+     * Broadcasts text message to all connected clients without waiting for the sending to finish.
+     * <p/>
+     * Unlike {@link #broadcast(String)}, no per-session futures are created. The calling thread is not blocked when the
+     * broadcast is executed in parallel (see {@link org.glassfish.tyrus.core.TyrusWebSocketEngine#PARALLEL_BROADCAST_ENABLED}).
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message was sent to all local sessions (and delivered to other cluster nodes
+     * when {@link org.glassfish.tyrus.core.cluster.ClusterContext#isLocalFirstBroadcast() local-first cluster broadcast}
+     * is used). If sending to any of the sessions fails, the future fails with the first encountered exception.
+     */
+    public Future<Void> broadcastAsync(String message) {
+        return endpointWrapper.broadcastAsync(message);
+    }
+
+    /**
+     * Broadcasts binary message to all connected clients without waiting for the sending to finish.
+     * <p/>
+     * Unlike {@link #broadcast(java.nio.ByteBuffer)}, no per-session futures are created. The calling thread is not
+     * blocked when the broadcast is executed in parallel (see
+     * {@link org.glassfish.tyrus.core.TyrusWebSocketEngine#PARALLEL_BROADCAST_ENABLED}).
+     *
+     * @param message message to be broadcasted.
+     * @return future completed when the message was sent to all local sessions (and delivered to other cluster nodes
+     * when {@link org.glassfish.tyrus.core.cluster.ClusterContext#isLocalFirstBroadcast() local-first cluster broadcast}
+     * is used). If sending to any of the sessions fails, the future fails with the first encountered exception.
+     */
+    public Future<Void> broadcastAsync(ByteBuffer message) {
+        return endpointWrapper.broadcastAsync(message);
+    }
+
     /**
      * Return an interval in milliseconds between scheduled periodic Pong messages.
      * A negative value or 0 means that sending of periodic Pong messages is not turned on.
@@ -527,25 +578,71 @@ public class TyrusSession implements Session, DistributedSession {
             return;
         }
 
-        heartbeatTask = service.scheduleAtFixedRate(new HeartbeatCommand(), heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        final HeartbeatCommand heartbeatCommand = new HeartbeatCommand(heartbeatInterval);
+        heartbeatTask = heartbeatCommand;
+        heartbeatCommand.schedule();
     }
 
-    void restartIdleTimeoutExecutor() {
-        if (this.maxIdleTimeout < 1) {
-            synchronized (idleTimeoutLock) {
-                if (idleTimeoutFuture != null) {
-                    idleTimeoutFuture.cancel(true);
-                }
-                return;
-            }
-        }
+    /**
+     * Set limits of the write queue of this session.
+     * <p/>
+     * The write queue contains outgoing messages passed to the transport and not yet written to the network, for
+     * instance because the remote endpoint does not read fast enough. When its size reaches {@code highWatermark}
+     * bytes, messages sent as a whole are handled according to {@code policy} until the size drops to
+     * {@code lowWatermark} bytes. Control frames and parts of fragmented messages are always sent.
+     * <p/>
+     * The write queue is not limited by default.
+     *
+     * @param highWatermark size of the write queue in bytes which triggers the overflow policy.
+     * @param lowWatermark  size of the write queue in bytes when messages are sent normally again. Has to be smaller
+     *                      than or equal to {@code highWatermark}.
+     * @param policy        what to do with messages sent while the write queue is over its limit.
+     */
+    public void setWriteQueueLimits(long highWatermark, long lowWatermark, WriteQueueOverflowPolicy policy) {
+        protocolHandler.setWriteQueueLimits(highWatermark, lowWatermark, policy);
+    }
 
+    /**
+     * Get the size of the write queue of this session.
+     *
+     * @return number of bytes of outgoing messages which have not been written to the network yet.
+     * @see #setWriteQueueLimits(long, long, WriteQueueOverflowPolicy)
+     */
+    public long getWriteQueueSize() {
+        return protocolHandler.getWriteQueueSize();
+    }
+
+    /**
+     * Record activity on this session.
+     * <p/>
+     * Called for every incoming and outgoing message. Only the time of the last activity is recorded; scheduled idle
+     * timeout checks it lazily when it expires and postpones the session closing if needed.
+     */
+    void updateLastActivityTime() {
+        lastActivityTime = TimingWheel.now();
+    }
+
+    /**
+     * Cancel currently scheduled idle timeout and schedule new one based on current {@link #getMaxIdleTimeout()}.
+     */
+    private void restartIdleTimeout() {
         synchronized (idleTimeoutLock) {
-            if (idleTimeoutFuture != null) {
-                idleTimeoutFuture.cancel(false);
+            cancelIdleTimeout();
+            updateLastActivityTime();
+
+            if (maxIdleTimeout > 0) {
+                final IdleTimeoutCommand command = new IdleTimeoutCommand();
+                idleTimeoutCommand = command;
+                command.schedule(maxIdleTimeout);
             }
+        }
+    }
 
-            idleTimeoutFuture = service.schedule(new IdleTimeoutCommand(), this.getMaxIdleTimeout(), TimeUnit.MILLISECONDS);
+    private void cancelIdleTimeout() {
+        final IdleTimeoutCommand command = idleTimeoutCommand;
+        if (command != null) {
+            command.cancel();
+            idleTimeoutCommand = null;
         }
     }
 
@@ -700,6 +797,15 @@ public class TyrusSession implements Session, DistributedSession {
         return connectionId;
     }
 
+    /**
+     * Get encoder and decoder instances of this session.
+     *
+     * @return array of coder instances; position of a coder is determined by {@link TyrusEndpointWrapper}.
+     */
+    AtomicReferenceArray<Object> getCoderInstances() {
+        return coderInstances;
+    }
+
     DebugContext getDebugContext() {
         return debugContext;
     }
@@ -762,8 +868,9 @@ public class TyrusSession implements Session, DistributedSession {
     }
 
     private void cancelHeartBeatTask() {
-        if (heartbeatTask != null && !heartbeatTask.isCancelled()) {
-            heartbeatTask.cancel(true);
+        final HeartbeatCommand command = heartbeatTask;
+        if (command != null) {
+            command.cancel();
         }
     }
 
@@ -777,6 +884,11 @@ public class TyrusSession implements Session, DistributedSession {
         }
 
         cancelHeartBeatTask();
+        cancelIdleTimeout();
+
+        if (ownsTimingWheel) {
+            timingWheel.stop();
+        }
     }
 
     /**
@@ -877,37 +989,107 @@ public class TyrusSession implements Session, DistributedSession {
         CLOSED
     }
 
+    /**
+     * Idle timeout check executed by the {@link TimingWheel}.
+     * <p/>
+     * When the session was active since the command had been scheduled, the command reschedules itself to the time
+     * when the session would become idle; otherwise it closes the session.
+     */
     private class IdleTimeoutCommand implements Runnable {
 
+        private volatile boolean cancelled = false;
+        private volatile TimingWheel.Timeout timeout;
+
+        void schedule(long delay) {
+            timeout = timingWheel.schedule(this, delay);
+        }
+
+        void cancel() {
+            cancelled = true;
+            final TimingWheel.Timeout localTimeout = timeout;
+            if (localTimeout != null) {
+                localTimeout.cancel();
+            }
+        }
+
         @Override
         public void run() {
-            TyrusSession session = TyrusSession.this;
-
-            // condition is required because scheduled task can be (for some reason) run even when it is cancelled.
-            if (session.getMaxIdleTimeout() > 0 && session.isOpen()) {
-                try {
-                    session.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, LocalizationMessages.SESSION_CLOSED_IDLE_TIMEOUT()));
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Session could not been closed. " + e.getMessage());
-                }
+            final TyrusSession session = TyrusSession.this;
+            final long localMaxIdleTimeout = session.getMaxIdleTimeout();
+
+            if (cancelled || localMaxIdleTimeout < 1 || !session.isOpen()) {
+                return;
             }
+
+            final long remaining = lastActivityTime + localMaxIdleTimeout - TimingWheel.now();
+            if (remaining > 0) {
+                schedule(remaining);
+                return;
+            }
+
+            service.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // condition is required because the timeout could have been changed in the meantime.
+                    if (!cancelled && session.getMaxIdleTimeout() > 0 && session.isOpen()) {
+                        try {
+                            session.close(new CloseReason(CloseReason.CloseCodes.CLOSED_ABNORMALLY, LocalizationMessages.SESSION_CLOSED_IDLE_TIMEOUT()));
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Session could not been closed. " + e.getMessage());
+                        }
+                    }
+                }
+            });
         }
     }
 
+    /**
+     * Periodic heartbeat executed by the {@link TimingWheel}. Sending of the Pong message is dispatched to the
+     * scheduled executor service.
+     */
     private class HeartbeatCommand implements Runnable {
 
+        private final long interval;
+        private volatile boolean cancelled = false;
+        private volatile TimingWheel.Timeout timeout;
+
+        HeartbeatCommand(long interval) {
+            this.interval = interval;
+        }
+
+        void schedule() {
+            timeout = timingWheel.schedule(this, interval);
+        }
+
+        void cancel() {
+            cancelled = true;
+            final TimingWheel.Timeout localTimeout = timeout;
+            if (localTimeout != null) {
+                localTimeout.cancel();
+            }
+        }
+
         @Override
         public void run() {
-            TyrusSession session = TyrusSession.this;
-            if (session.isOpen() && session.getHeartbeatInterval() > 0) {
-                try {
-                    session.getBasicRemote().sendPong(null);
-                } catch (IOException e) {
-                    LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
-                }
-            } else {
-                cancelHeartBeatTask();
+            final TyrusSession session = TyrusSession.this;
+            if (cancelled || !session.isOpen() || session.getHeartbeatInterval() < 1) {
+                return;
             }
+
+            service.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled && session.isOpen()) {
+                        try {
+                            session.getBasicRemote().sendPong(null);
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Pong could not have been sent " + e.getMessage());
+                        }
+                    }
+                }
+            });
+
+            schedule();
         }
     }
 }
\ No newline at end of file
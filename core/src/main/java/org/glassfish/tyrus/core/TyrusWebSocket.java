@@ -61,6 +61,7 @@ import org.glassfish.tyrus.core.frame.TextFrame;
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.l10n.LocalizationMessages;
 import org.glassfish.tyrus.core.monitoring.MessageEventListener;
+import org.glassfish.tyrus.spi.CompletionHandler;
 import org.glassfish.tyrus.spi.Connection;
 import org.glassfish.tyrus.spi.UpgradeRequest;
 
@@ -78,6 +79,8 @@ public class TyrusWebSocket {
     //TODO try refactoring to make immutable.
     private final AtomicReference<State> state = new AtomicReference<State>(State.NEW);
     private volatile MessageEventListener messageEventListener = MessageEventListener.NO_OP;
+    // reason of the close initiated by this side, set before the close frame is sent.
+    private volatile CloseReason localCloseReason = null;
 
     /**
      * Create new instance, set {@link ProtocolHandler} and register {@link TyrusEndpointWrapper}.
@@ -120,7 +123,10 @@ public class TyrusWebSocket {
         final CloseReason closeReason = frame.getCloseReason();
 
         if (endpointWrapper != null) {
-            endpointWrapper.onClose(this, closeReason);
+            // close frame echoed by the remote endpoint might be processed before the local close notifies the
+            // endpoint; the endpoint has to be notified with the reason of the local close in that case.
+            final CloseReason localReason = localCloseReason;
+            endpointWrapper.onClose(this, localReason != null ? localReason : closeReason);
         }
         if (state.compareAndSet(State.CONNECTED, State.CLOSING)) {
             protocolHandler.close(closeReason.getCloseCode().getCode(), closeReason.getReasonPhrase());
@@ -253,6 +259,7 @@ public class TyrusWebSocket {
      */
     public void close(int code, String reason) {
         if (state.compareAndSet(State.CONNECTED, State.CLOSING)) {
+            localCloseReason = new CloseReason(CloseReason.CloseCodes.getCloseCode(code), reason);
             protocolHandler.close(code, reason);
         }
     }
@@ -321,6 +328,18 @@ public class TyrusWebSocket {
         return protocolHandler.sendRawFrame(data);
     }
 
+    /**
+     * Send a frame to the remote endpoint.
+     *
+     * @param data              complete data frame.
+     * @param completionHandler completion handler notified when the frame is sent or sending fails.
+     * @return {@link Future} which could be used to control/check the sending completion state.
+     */
+    Future<Frame> sendRawFrame(ByteBuffer data, CompletionHandler<Frame> completionHandler) {
+        checkConnectedState();
+        return protocolHandler.send(data, completionHandler, true);
+    }
+
     /**
      * Sends a <code>ping</code> frame with the specified payload (if any).
      *
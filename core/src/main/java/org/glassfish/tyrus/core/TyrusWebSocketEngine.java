@@ -69,6 +69,7 @@ import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
 import org.glassfish.tyrus.core.monitoring.MessageEventListener;
 import org.glassfish.tyrus.core.uri.Match;
+import org.glassfish.tyrus.core.uri.PathTrie;
 import org.glassfish.tyrus.core.wsadl.model.Application;
 import org.glassfish.tyrus.spi.Connection;
 import org.glassfish.tyrus.spi.ReadHandler;
@@ -164,7 +165,6 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public static final String PARALLEL_BROADCAST_ENABLED = "org.glassfish.tyrus.server.parallelBroadcastEnabled";
 
-    private static final int BUFFER_STEP_SIZE = 256;
     private static final Logger LOGGER = Logger.getLogger(TyrusWebSocketEngine.class.getName());
 
     private static final UpgradeInfo NOT_APPLICABLE_UPGRADE_INFO = new NoConnectionUpgradeInfo(UpgradeStatus.NOT_APPLICABLE);
@@ -173,7 +173,9 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
     };
 
     private final Set<TyrusEndpointWrapper> endpointWrappers = Collections.newSetFromMap(new ConcurrentHashMap<TyrusEndpointWrapper, Boolean>());
+    private final PathTrie pathTrie = new PathTrie();
     private final ComponentProviderService componentProviderService = ComponentProviderService.create();
+    private final ByteBufferPool bufferPool = new ByteBufferPool();
     private final WebSocketContainer webSocketContainer;
 
     private int incomingBufferSize = 4194315; // 4M (payload) + 11 (frame overhead)
@@ -229,6 +231,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             LOGGER.config("Application event listener " + applicationEventListener.getClass().getName() + " registered");
             this.applicationEventListener = applicationEventListener;
         }
+        this.applicationEventListener.onBufferPoolCreated(bufferPool);
 
         LOGGER.config("Incoming buffer size: " + this.incomingBufferSize);
         LOGGER.config("Max sessions per app: " + maxSessionsPerApp);
@@ -321,7 +324,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
         final String requestPath = request.getRequestUri();
 
-        for (Match m : Match.getAllMatches(requestPath, endpointWrappers, debugContext)) {
+        for (Match m : pathTrie.getAllMatches(requestPath, debugContext)) {
             final TyrusEndpointWrapper endpointWrapper = m.getEndpointWrapper();
 
             for (String name : m.getParameterNames()) {
@@ -400,7 +403,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             }
 
             response.getHeaders().putAll(debugContext.getTracingHeaders());
-            return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, request, response, extensionContext, debugContext);
+            return new SuccessfulUpgradeInfo(endpointWrapper, protocolHandler, incomingBufferSize, bufferPool, request, response, extensionContext, debugContext);
         }
 
         response.setStatus(500);
@@ -469,18 +472,22 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final TyrusWebSocket socket;
         private final TyrusEndpointWrapper endpointWrapper;
         private final int incomingBufferSize;
+        private final ByteBufferPool bufferPool;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final DebugContext debugContext;
 
         private volatile ByteBuffer buffer;
 
-        private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, int incomingBufferSize, ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
+        private TyrusReadHandler(ProtocolHandler protocolHandler, TyrusWebSocket socket, TyrusEndpointWrapper endpointWrapper, int incomingBufferSize, ByteBufferPool bufferPool, ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
             this.extensionContext = extensionContext;
             this.protocolHandler = protocolHandler;
             this.socket = socket;
             this.endpointWrapper = endpointWrapper;
             this.incomingBufferSize = incomingBufferSize;
+            this.bufferPool = bufferPool;
             this.debugContext = debugContext;
+
+            protocolHandler.setIncomingBufferSize(incomingBufferSize);
         }
 
         @Override
@@ -488,25 +495,36 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
             try {
                 if (data != null && data.hasRemaining()) {
 
-                    if (buffer != null) {
-                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                    } else {
-                        int newSize = data.remaining();
-                        if (newSize > incomingBufferSize) {
-                            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
-                        } else {
-                            final int roundedSize = (newSize % BUFFER_STEP_SIZE) > 0 ? ((newSize / BUFFER_STEP_SIZE) + 1) * BUFFER_STEP_SIZE : newSize;
-                            final ByteBuffer result = ByteBuffer.allocate(roundedSize > incomingBufferSize ? newSize : roundedSize);
-                            result.flip();
-                            data = Utils.appendBuffers(result, data, incomingBufferSize, BUFFER_STEP_SIZE);
-                        }
+                    // incoming data are parsed directly; only unprocessed rest (incomplete frame) is copied.
+                    final boolean buffered = (buffer != null);
+                    if (buffered) {
+                        data = Utils.appendBuffers(buffer, data, incomingBufferSize, bufferPool);
+                        // data is the only reference to the buffer now (original one might have been released).
+                        buffer = null;
                     }
 
                     do {
                         final Frame incomingFrame = protocolHandler.unframe(data);
 
                         if (incomingFrame == null) {
-                            buffer = data;
+                            if (!data.hasRemaining()) {
+                                // no incomplete frame, no buffer is held.
+                                if (buffered) {
+                                    bufferPool.release(data);
+                                }
+                            } else if (buffered) {
+                                buffer = data;
+                            } else {
+                                int newSize = data.remaining();
+                                if (newSize > incomingBufferSize) {
+                                    throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
+                                } else {
+                                    final ByteBuffer result = bufferPool.acquire(newSize);
+                                    result.put(data);
+                                    result.flip();
+                                    buffer = result;
+                                }
+                            }
                             break;
                         } else {
                             Frame frame = incomingFrame;
@@ -563,6 +581,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         checkPath(endpointWrapper);
         LOGGER.log(Level.FINER, "Registered endpoint: " + endpointWrapper);
         endpointWrappers.add(endpointWrapper);
+        pathTrie.add(endpointWrapper);
     }
 
     @Override
@@ -647,6 +666,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
      */
     public void unregister(TyrusEndpointWrapper endpointWrapper) {
         endpointWrappers.remove(endpointWrapper);
+        pathTrie.remove(endpointWrapper);
         applicationEventListener.onEndpointUnregistered(endpointWrapper.getEndpointPath());
     }
 
@@ -673,16 +693,18 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final TyrusEndpointWrapper endpointWrapper;
         private final ProtocolHandler protocolHandler;
         private final int incomingBufferSize;
+        private final ByteBufferPool bufferPool;
         private final UpgradeRequest upgradeRequest;
         private final UpgradeResponse upgradeResponse;
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final DebugContext debugContext;
 
-        SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize,
+        SuccessfulUpgradeInfo(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize, ByteBufferPool bufferPool,
                               UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse, ExtendedExtension.ExtensionContext extensionContext, DebugContext debugContext) {
             this.endpointWrapper = endpointWrapper;
             this.protocolHandler = protocolHandler;
             this.incomingBufferSize = incomingBufferSize;
+            this.bufferPool = bufferPool;
             this.upgradeRequest = upgradeRequest;
             this.upgradeResponse = upgradeResponse;
             this.extensionContext = extensionContext;
@@ -699,7 +721,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
             Utils.validateConnectionProperties(connectionProperties);
 
-            TyrusConnection tyrusConnection = new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, writer, closeListener,
+            TyrusConnection tyrusConnection = new TyrusConnection(endpointWrapper, protocolHandler, incomingBufferSize, bufferPool, writer, closeListener,
                     upgradeRequest, upgradeResponse, extensionContext, connectionProperties, debugContext);
             debugContext.flush();
             return tyrusConnection;
@@ -742,7 +764,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
         private final ExtendedExtension.ExtensionContext extensionContext;
         private final List<Extension> extensions;
 
-        TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize, Writer writer,
+        TyrusConnection(TyrusEndpointWrapper endpointWrapper, ProtocolHandler protocolHandler, int incomingBufferSize, ByteBufferPool bufferPool, Writer writer,
                         CloseListener closeListener, UpgradeRequest upgradeRequest, UpgradeResponse upgradeResponse,
                         ExtendedExtension.ExtensionContext extensionContext, Map<ConnectionProperties, Object> connectionProperties, DebugContext debugContext) {
             protocolHandler.setWriter(writer);
@@ -760,7 +782,7 @@ public class TyrusWebSocketEngine implements WebSocketEngine {
 
             this.socket.onConnect(upgradeRequest, protocolHandler.getSubProtocol(), extensions, connectionId, connectionProperties, debugContext);
 
-            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, extensionContext, debugContext);
+            this.readHandler = new TyrusReadHandler(protocolHandler, socket, endpointWrapper, incomingBufferSize, bufferPool, extensionContext, debugContext);
             this.writer = writer;
             this.closeListener = closeListener;
             this.extensionContext = extensionContext;
@@ -353,6 +353,44 @@ public class Utils {
         }
     }
 
+    /**
+     * Concatenates two buffers into one. If buffer given as first argument has enough space for putting
+     * the other one, it will be done and the original buffer will be returned. Otherwise a new buffer will
+     * be obtained from the pool and the original buffer will be released to it.
+     * <p/>
+     * Capacity of the new buffer is at least twice the capacity of the original one (but not more than
+     * {@code incomingBufferSize} unless the pool rounds it up), so appending many small chunks does not copy
+     * the buffered data over and over.
+     *
+     * @param buffer             first buffer.
+     * @param buffer1            second buffer.
+     * @param incomingBufferSize maximal size of the concatenation.
+     * @param bufferPool         pool used for obtaining new buffer and releasing the original one.
+     * @return concatenation.
+     * @throws IllegalArgumentException when the concatenation would be bigger than {@code incomingBufferSize}.
+     */
+    public static ByteBuffer appendBuffers(ByteBuffer buffer, ByteBuffer buffer1, int incomingBufferSize, ByteBufferPool bufferPool) {
+        final int capacity = buffer.capacity();
+        final int remaining = buffer.remaining();
+        final int len = buffer1.remaining();
+
+        if (remaining + len < capacity) {
+            return appendBuffers(buffer, buffer1, incomingBufferSize, 1);
+        }
+
+        final int newSize = remaining + len;
+        if (newSize > incomingBufferSize) {
+            throw new IllegalArgumentException(LocalizationMessages.BUFFER_OVERFLOW());
+        }
+
+        final ByteBuffer result = bufferPool.acquire(Math.max(newSize, (int) Math.min(2L * capacity, incomingBufferSize)));
+        result.put(buffer);
+        result.put(buffer1);
+        result.flip();
+        bufferPool.release(buffer);
+        return result;
+    }
+
     /**
      * Get typed property from generic property map.
      *
@@ -167,6 +167,51 @@ public abstract class ClusterContext {
      */
     public abstract void broadcastBinary(String endpointPath, byte[] data);
 
+    /**
+     * Determine whether broadcasts are delivered to the local sessions first.
+     * <p/>
+     * When {@code true} is returned, the node where the broadcast originates sends the message to its own sessions
+     * directly and publishes it to the other nodes using {@link #broadcastTextToOtherNodes(String, String)} or
+     * {@link #broadcastBinaryToOtherNodes(String, byte[])}. Otherwise the message is passed to
+     * {@link #broadcastText(String, String)} or {@link #broadcastBinary(String, byte[])} and the local sessions get
+     * it from the registered {@link BroadcastListener}.
+     *
+     * @return {@code true} if local-first broadcast is used, {@code false} by default.
+     */
+    public boolean isLocalFirstBroadcast() {
+        return false;
+    }
+
+    /**
+     * Broadcast text message to all the nodes except the local one.
+     * <p/>
+     * The message must not be delivered back to the {@link BroadcastListener} of the local node, so it has to be
+     * tagged with its origin if the cluster delivers published messages to the publisher as well.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @param text         message to be broadcasted.
+     * @return future completed when the message was delivered to all the other nodes.
+     * @throws UnsupportedOperationException when {@link #isLocalFirstBroadcast()} returns {@code false}.
+     */
+    public Future<Void> broadcastTextToOtherNodes(String endpointPath, String text) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Broadcast binary message to all the nodes except the local one.
+     * <p/>
+     * The message must not be delivered back to the {@link BroadcastListener} of the local node, so it has to be
+     * tagged with its origin if the cluster delivers published messages to the publisher as well.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @param data         data to be broadcasted.
+     * @return future completed when the message was delivered to all the other nodes.
+     * @throws UnsupportedOperationException when {@link #isLocalFirstBroadcast()} returns {@code false}.
+     */
+    public Future<Void> broadcastBinaryToOtherNodes(String endpointPath, byte[] data) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Get information about session state.
      *
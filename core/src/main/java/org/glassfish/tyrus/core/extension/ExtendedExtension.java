@@ -117,10 +117,14 @@ public interface ExtendedExtension extends Extension {
     /**
      * Parameter negotiation. Executed before handshake response is sent to the client (server only). Returned
      * list of parameters will be present in handshake response headers.
+     * <p/>
+     * Extension can decline the offer (for example when requested parameters are not supported) by returning
+     * {@code null}; the extension won't be used for the connection and won't be present in handshake response. When
+     * the offer is declined, the context should not be modified.
      *
      * @param context             extension context.
      * @param requestedParameters requested parameters (from handshake request).
-     * @return parameters to be present in handshake response.
+     * @return parameters to be present in handshake response or {@code null} when the offer is declined.
      */
     List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters);
 
@@ -0,0 +1,85 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.extension;
+
+import org.glassfish.tyrus.core.Beta;
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * {@link ExtendedExtension} which can declare that outgoing frame processing does not depend on per-connection state.
+ * <p/>
+ * Used when broadcasting: sessions with negotiated extensions are grouped by the keys returned from
+ * {@link #getOutgoingProcessingKey(ExtendedExtension.ExtensionContext)} and each message is processed (and framed)
+ * only once per group. Resulting bytes are then sent to all sessions in the group; other sessions in the group are
+ * notified by {@link #onSharedOutgoing(ExtendedExtension.ExtensionContext, Frame, Frame)}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@Beta
+public interface SharedProcessingExtension extends ExtendedExtension {
+
+    /**
+     * Get key identifying outgoing processing of given context.
+     * <p/>
+     * Two contexts with {@link Object#equals(Object) equal} keys must produce identical output from
+     * {@link #processOutgoing(ExtendedExtension.ExtensionContext, org.glassfish.tyrus.core.frame.Frame)} for the same
+     * input frame, regardless of previously processed frames. Typically a value object representing negotiated
+     * parameters.
+     *
+     * @param context per-connection/session context.
+     * @return key representing outgoing processing or {@code null} when the output depends on state of the connection
+     * (frame has to be processed separately for this connection).
+     */
+    Object getOutgoingProcessingKey(ExtensionContext context);
+
+    /**
+     * Called instead of {@link #processOutgoing(ExtendedExtension.ExtensionContext, Frame)} when the frame was
+     * processed for another context with equal {@link #getOutgoingProcessingKey(ExtendedExtension.ExtensionContext)
+     * outgoing processing key} and the result is sent also to this context.
+     * <p/>
+     * Lets the extension update per-connection data (statistics, listeners) as if it processed the frame itself.
+     *
+     * @param context   per-connection/session context.
+     * @param frame     frame passed to the extension.
+     * @param processed frame returned by the extension.
+     */
+    void onSharedOutgoing(ExtensionContext context, Frame frame, Frame processed);
+}
@@ -40,6 +40,8 @@
 
 package org.glassfish.tyrus.core.frame;
 
+import java.nio.ByteBuffer;
+
 /**
  * WebSocket frame representation.
  * <p/>
@@ -52,6 +54,8 @@ package org.glassfish.tyrus.core.frame;
  */
 public class Frame {
 
+    private static final ByteBuffer EMPTY_PAYLOAD = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
     private final boolean fin;
     private final boolean rsv1;
     private final boolean rsv2;
@@ -173,6 +177,23 @@ public class Frame {
         return maskingKey;
     }
 
+    /**
+     * Get payload data as a read-only {@link ByteBuffer}.
+     * <p/>
+     * Unlike {@link #getPayloadData()}, the payload is not copied; returned buffer is a read-only view of the payload
+     * of current {@link Frame} instance. {@link ByteBuffer#remaining()} of returned buffer will be always same as
+     * {@link #getPayloadLength()}.
+     *
+     * @return payload data.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        if (payloadData == null) {
+            return EMPTY_PAYLOAD.duplicate();
+        }
+
+        return ByteBuffer.wrap(payloadData, 0, (int) payloadLength).asReadOnlyBuffer();
+    }
+
     /**
      * Get payload data.
      * <p/>
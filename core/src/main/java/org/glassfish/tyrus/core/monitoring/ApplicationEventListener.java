@@ -94,6 +94,13 @@ public interface ApplicationEventListener {
      */
     void onEndpointUnregistered(String endpointPath);
 
+    /**
+     * Called when the pool of buffers used for incoming data of the application has been created.
+     *
+     * @param bufferPoolStatistics statistics of the created buffer pool.
+     */
+    void onBufferPoolCreated(BufferPoolStatistics bufferPoolStatistics);
+
     /**
      * An instance of @ApplicationEventListener that does not do anything.
      */
@@ -118,5 +125,10 @@ public interface ApplicationEventListener {
         public void onEndpointUnregistered(String endpointPath) {
             // do nothing
         }
+
+        @Override
+        public void onBufferPoolCreated(BufferPoolStatistics bufferPoolStatistics) {
+            // do nothing
+        }
     };
 }
@@ -50,6 +50,12 @@ import org.glassfish.tyrus.core.frame.TyrusFrame;
 @Beta
 public interface MessageEventListener {
 
+    /**
+     * Name of {@link org.glassfish.tyrus.core.extension.ExtendedExtension.ExtensionContext} property holding
+     * {@link MessageEventListener} of the session, so extensions can report compression statistics.
+     */
+    String EXTENSION_CONTEXT_PROPERTY = MessageEventListener.class.getName();
+
     /**
      * Called when a frame has been sent.
      *
@@ -66,6 +72,38 @@ public interface MessageEventListener {
      */
     void onFrameReceived(TyrusFrame.FrameType frameType, long payloadLength);
 
+    /**
+     * Called when payload of an outgoing frame has been compressed by an extension.
+     *
+     * @param uncompressedLength length of the payload before compression.
+     * @param compressedLength   length of the compressed payload.
+     */
+    void onFrameCompressed(long uncompressedLength, long compressedLength);
+
+    /**
+     * Called when payload of an incoming frame has been decompressed by an extension.
+     *
+     * @param compressedLength   length of the received compressed payload.
+     * @param uncompressedLength length of the payload after decompression.
+     */
+    void onFrameDecompressed(long compressedLength, long uncompressedLength);
+
+    /**
+     * Called when the size of the write queue of the session has changed.
+     *
+     * @param queuedBytes number of bytes of outgoing frames which have not been written to the network yet.
+     * @see org.glassfish.tyrus.core.TyrusSession#getWriteQueueSize()
+     */
+    void onWriteQueueSizeChanged(long queuedBytes);
+
+    /**
+     * Called when an outgoing message has not been sent because the write queue of the session was over its limit.
+     *
+     * @param length length of the framed message.
+     * @see org.glassfish.tyrus.core.WriteQueueOverflowPolicy
+     */
+    void onMessageDropped(long length);
+
     /**
      * An instance of @MessageEventListener that does not do anything.
      */
@@ -81,5 +119,25 @@ public interface MessageEventListener {
         public void onFrameReceived(TyrusFrame.FrameType frameType, long payloadLength) {
             //do nothing
         }
+
+        @Override
+        public void onFrameCompressed(long uncompressedLength, long compressedLength) {
+            //do nothing
+        }
+
+        @Override
+        public void onFrameDecompressed(long compressedLength, long uncompressedLength) {
+            //do nothing
+        }
+
+        @Override
+        public void onWriteQueueSizeChanged(long queuedBytes) {
+            //do nothing
+        }
+
+        @Override
+        public void onMessageDropped(long length) {
+            //do nothing
+        }
     };
 }
@@ -0,0 +1,228 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+import org.glassfish.tyrus.core.uri.internal.PathSegment;
+import org.glassfish.tyrus.core.uri.internal.UriComponent;
+
+/**
+ * Registered endpoints organized in a trie of their path segments.
+ * <p/>
+ * Provides the same matches as {@link Match#getAllMatches(String, java.util.Set, DebugContext)}, but the cost of
+ * matching depends on the request path length and number of templates sharing its prefix, not on the number of
+ * registered endpoints. Results for request paths matched by an exact (non-templated) endpoint are cached.
+ * <p/>
+ * Trie is rebuilt on every change ({@link #add(TyrusEndpointWrapper)}, {@link #remove(TyrusEndpointWrapper)}), which
+ * is expected to happen only when the application is deployed. Matching does not need any locking.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class PathTrie {
+
+    private static final Logger LOGGER = Logger.getLogger(PathTrie.class.getName());
+
+    /**
+     * Maximal number of request paths with cached matches. Once reached, no more paths are cached until the trie is
+     * rebuilt; the limit only guards against differently encoded forms of the same exact path.
+     */
+    static final int CACHE_SIZE = 512;
+
+    private final Set<TyrusEndpointWrapper> endpointWrappers = new HashSet<TyrusEndpointWrapper>();
+    private volatile Snapshot snapshot = new Snapshot(new Node());
+
+    /**
+     * Add endpoint.
+     *
+     * @param endpointWrapper endpoint to be added.
+     */
+    public synchronized void add(TyrusEndpointWrapper endpointWrapper) {
+        endpointWrappers.add(endpointWrapper);
+        rebuild();
+    }
+
+    /**
+     * Remove endpoint.
+     *
+     * @param endpointWrapper endpoint to be removed.
+     */
+    public synchronized void remove(TyrusEndpointWrapper endpointWrapper) {
+        endpointWrappers.remove(endpointWrapper);
+        rebuild();
+    }
+
+    /**
+     * Return a list of all endpoints with path matching the request path. The endpoints are in order of match
+     * preference, best match first.
+     *
+     * @param incoming     request path.
+     * @param debugContext debug context.
+     * @return a list of all endpoints with path matching the request path. Returned list must not be modified.
+     */
+    public List<Match> getAllMatches(String incoming, DebugContext debugContext) {
+        final Snapshot currentSnapshot = snapshot;
+
+        List<Match> matches = currentSnapshot.cache.get(incoming);
+        if (matches != null) {
+            debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, "Endpoints matched to the request URI (cached): ", matches);
+            return matches;
+        }
+
+        final List<PathSegment> segments = UriComponent.decodePath(incoming, true);
+        final String[] incomingSegments = new String[segments.size()];
+        for (int i = 0; i < incomingSegments.length; i++) {
+            incomingSegments[i] = segments.get(i).getPath();
+        }
+
+        matches = new ArrayList<Match>();
+        if (incomingSegments.length > 0) {
+            final int length = incomingSegments.length;
+            collect(currentSnapshot.root, incomingSegments, 0, new String[length], new String[length], new int[length], 0, matches);
+        }
+
+        // literal segments are visited before templates, so the matches are already sorted; the comparator only
+        // guarantees the order is exactly the same as Match#getAllMatches.
+        Collections.sort(matches, new MatchComparator(debugContext));
+        matches = Collections.unmodifiableList(matches);
+        debugContext.appendTraceMessage(LOGGER, Level.FINE, DebugContext.Type.MESSAGE_IN, "Endpoints matched to the request URI: ", matches);
+
+        // only paths of exact endpoints are cached; paths matched by templates carry parameter values, so each of them
+        // could be unique and would only replace entries which are going to be requested again.
+        if (!matches.isEmpty() && matches.get(0).isExact() && currentSnapshot.cache.size() < CACHE_SIZE) {
+            currentSnapshot.cache.putIfAbsent(incoming, matches);
+        }
+
+        return matches;
+    }
+
+    private void rebuild() {
+        final Node root = new Node();
+
+        for (TyrusEndpointWrapper endpointWrapper : endpointWrappers) {
+            Node node = root;
+            for (PathSegment pathSegment : UriComponent.decodePath(endpointWrapper.getEndpointPath(), true)) {
+                final String segment = pathSegment.getPath();
+                final Map<String, Node> children = Match.isVariable(segment) ? node.templates : node.literals;
+
+                Node child = children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    children.put(segment, child);
+                }
+                node = child;
+            }
+            node.endpointWrappers.add(endpointWrapper);
+        }
+
+        snapshot = new Snapshot(root);
+    }
+
+    private static void collect(Node node, String[] incoming, int index,
+                                String[] names, String[] values, int[] indices, int variableCount, List<Match> matches) {
+        if (index == incoming.length) {
+            for (TyrusEndpointWrapper endpointWrapper : node.endpointWrappers) {
+                final Match match = new Match(endpointWrapper);
+                for (int i = 0; i < variableCount; i++) {
+                    match.addParameter(names[i], values[i], indices[i]);
+                }
+                matches.add(match);
+            }
+            return;
+        }
+
+        final String segment = incoming[index];
+
+        final Node literal = node.literals.get(segment);
+        if (literal != null) {
+            collect(literal, incoming, index + 1, names, values, indices, variableCount, matches);
+        }
+
+        for (Map.Entry<String, Node> template : node.templates.entrySet()) {
+            if (template.getKey().equals(segment)) {
+                // segment equal to the template itself is matched as literal.
+                collect(template.getValue(), incoming, index + 1, names, values, indices, variableCount, matches);
+            } else {
+                names[variableCount] = Match.getVariableName(template.getKey());
+                values[variableCount] = segment;
+                indices[variableCount] = index;
+                collect(template.getValue(), incoming, index + 1, names, values, indices, variableCount + 1, matches);
+            }
+        }
+    }
+
+    /**
+     * Trie node; represents a path prefix.
+     */
+    private static class Node {
+
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private final Map<String, Node> templates = new LinkedHashMap<String, Node>();
+        private final List<TyrusEndpointWrapper> endpointWrappers = new ArrayList<TyrusEndpointWrapper>(1);
+    }
+
+    /**
+     * Trie with its cache of matches. Replaced as a whole when the trie is changed, so the cache never contains
+     * matches computed from an older trie.
+     */
+    private static class Snapshot {
+
+        private final Node root;
+        private final ConcurrentMap<String, List<Match>> cache = new ConcurrentHashMap<String, List<Match>>();
+
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.PathParam;
+import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests invocation of annotated endpoint callbacks by {@link AnnotatedEndpoint}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class AnnotatedEndpointTest {
+
+    @Test
+    public void testPassThroughInvocation() {
+        final TestEndpoint endpoint = new TestEndpoint();
+        final List<MessageHandler> handlers = open(endpoint);
+
+        getHandler(handlers, String.class).onMessage("hello");
+        getHandler(handlers, String.class).onMessage("world");
+
+        assertEquals(2, endpoint.texts.size());
+        assertEquals("hello", endpoint.texts.get(0));
+        assertEquals("world", endpoint.texts.get(1));
+    }
+
+    @Test
+    public void testExtractorInvocation() {
+        final TestEndpoint endpoint = new TestEndpoint();
+        final List<MessageHandler> handlers = open(endpoint);
+
+        // parameters of the callbacks do not match the passed values, so they are provided by extractors.
+        assertEquals(1, endpoint.opened.size());
+        assertTrue(endpoint.opened.get(0) instanceof Session);
+
+        final byte[] data = {1, 2, 3};
+        getHandler(handlers, byte[].class).onMessage(data);
+
+        assertEquals(1, endpoint.binaries.size());
+        assertArrayEquals(data, (byte[]) endpoint.binaries.get(0)[0]);
+        assertSame(endpoint.opened.get(0), endpoint.binaries.get(0)[1]);
+        assertEquals("tyrus", endpoint.binaries.get(0)[2]);
+    }
+
+    @Test
+    public void testExceptionPassedToOnError() {
+        final TestEndpoint endpoint = new TestEndpoint();
+        final List<MessageHandler> handlers = open(endpoint);
+
+        getHandler(handlers, String.class).onMessage(TestEndpoint.FAIL);
+
+        // exception thrown by the callback is unwrapped from InvocationTargetException.
+        assertEquals(1, endpoint.errors.size());
+        assertSame(TestEndpoint.EXCEPTION, endpoint.errors.get(0));
+    }
+
+    private static List<MessageHandler> open(TestEndpoint endpoint) {
+        final ErrorCollector collector = new ErrorCollector();
+        final AnnotatedEndpoint annotatedEndpoint = AnnotatedEndpoint.fromInstance(endpoint, ComponentProviderService.create(), true, Integer.MAX_VALUE, collector);
+        assertTrue(collector.isEmpty());
+
+        final List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+        annotatedEndpoint.onOpen(createSession(handlers), annotatedEndpoint.getEndpointConfig());
+        return handlers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MessageHandler.Whole<Object> getHandler(List<MessageHandler> handlers, Class<?> type) {
+        for (MessageHandler handler : handlers) {
+            if (handler instanceof BasicMessageHandler && ((BasicMessageHandler) handler).getType() == type) {
+                return (MessageHandler.Whole<Object>) handler;
+            }
+        }
+        throw new AssertionError("No handler for " + type);
+    }
+
+    /**
+     * Create a {@link Session} which collects added message handlers and has a path parameter "name" with value
+     * "tyrus".
+     */
+    private static Session createSession(final List<MessageHandler> handlers) {
+        return (Session) Proxy.newProxyInstance(AnnotatedEndpointTest.class.getClassLoader(), new Class<?>[]{Session.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("addMessageHandler")) {
+                    handlers.add((MessageHandler) args[0]);
+                } else if (method.getName().equals("getPathParameters")) {
+                    return Collections.singletonMap("name", "tyrus");
+                } else if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Prevents lookup of the container default configurator, which is not available in core.
+     */
+    public static class TestConfigurator extends ServerEndpointConfig.Configurator {
+    }
+
+    @ServerEndpoint(value = "/test/{name}", configurator = TestConfigurator.class)
+    public static class TestEndpoint {
+
+        private static final String FAIL = "fail";
+        private static final RuntimeException EXCEPTION = new IllegalStateException(FAIL);
+
+        private final List<Object> opened = new ArrayList<Object>();
+        private final List<String> texts = new ArrayList<String>();
+        private final List<Object[]> binaries = new ArrayList<Object[]>();
+        private final List<Throwable> errors = new ArrayList<Throwable>();
+
+        @OnOpen
+        public void onOpen(EndpointConfig config, Session session) {
+            opened.add(session);
+        }
+
+        @OnMessage
+        public void onText(String message) {
+            if (FAIL.equals(message)) {
+                throw EXCEPTION;
+            }
+            texts.add(message);
+        }
+
+        @OnMessage
+        public void onBinary(Session session, byte[] data, @PathParam("name") String name) {
+            binaries.add(new Object[]{data, session, name});
+        }
+
+        @OnError
+        public void onError(Throwable t) {
+            errors.add(t);
+        }
+    }
+}
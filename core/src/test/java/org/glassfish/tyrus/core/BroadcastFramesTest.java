@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.SharedProcessingExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link BroadcastFrames}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class BroadcastFramesTest {
+
+    @Test
+    public void testNoExtensions() {
+        final BroadcastFrames broadcastFrames = new BroadcastFrames(new TextFrame("Hello", false, true));
+
+        final ByteBuffer frame1 = broadcastFrames.getFrame(new ProtocolHandler(false, null));
+        final ByteBuffer frame2 = broadcastFrames.getFrame(new ProtocolHandler(false, null));
+
+        assertSame(frame1.array(), frame2.array());
+        assertEquals(1, broadcastFrames.getSharedFrameCount());
+
+        // positions are independent.
+        frame1.get();
+        assertEquals(frame1.limit() - 1, frame1.remaining());
+        assertEquals(frame2.limit(), frame2.remaining());
+    }
+
+    @Test
+    public void testClient() {
+        final BroadcastFrames broadcastFrames = new BroadcastFrames(new TextFrame("Hello", false, true));
+
+        final ByteBuffer frame1 = broadcastFrames.getFrame(new ProtocolHandler(true, null));
+        final ByteBuffer frame2 = broadcastFrames.getFrame(new ProtocolHandler(true, null));
+
+        assertNotSame(frame1.array(), frame2.array());
+        assertEquals(0, broadcastFrames.getSharedFrameCount());
+    }
+
+    @Test
+    public void testSharedProcessingExtension() {
+        final CountingExtension extension = new CountingExtension();
+        final BroadcastFrames broadcastFrames = new BroadcastFrames(new TextFrame("Hello", false, true));
+
+        final ByteBuffer frame1 = broadcastFrames.getFrame(createProtocolHandler(extension, "a"));
+        final ByteBuffer frame2 = broadcastFrames.getFrame(createProtocolHandler(extension, "a"));
+        final ByteBuffer frame3 = broadcastFrames.getFrame(createProtocolHandler(extension, "b"));
+        final ByteBuffer frame4 = broadcastFrames.getFrame(createProtocolHandler(extension, null));
+
+        assertSame(frame1.array(), frame2.array());
+        assertNotSame(frame1.array(), frame3.array());
+        assertNotSame(frame1.array(), frame4.array());
+        assertEquals(2, broadcastFrames.getSharedFrameCount());
+        assertEquals(3, extension.processed);
+        assertEquals(1, extension.shared);
+
+        // rsv1 set by the extension.
+        assertEquals(0xC1, frame1.get(0) & 0xFF);
+    }
+
+    @Test
+    public void testExtendedExtension() {
+        final BroadcastFrames broadcastFrames = new BroadcastFrames(new TextFrame("Hello", false, true));
+
+        final ProtocolHandler protocolHandler1 = new ProtocolHandler(false, null);
+        protocolHandler1.setExtensions(Collections.<Extension>singletonList(new StatefulExtension()));
+        final ProtocolHandler protocolHandler2 = new ProtocolHandler(false, null);
+        protocolHandler2.setExtensions(Collections.<Extension>singletonList(new StatefulExtension()));
+
+        final ByteBuffer frame1 = broadcastFrames.getFrame(protocolHandler1);
+        final ByteBuffer frame2 = broadcastFrames.getFrame(protocolHandler2);
+
+        assertNotSame(frame1.array(), frame2.array());
+        assertEquals(0, broadcastFrames.getSharedFrameCount());
+    }
+
+    private static ProtocolHandler createProtocolHandler(Extension extension, final String key) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setExtensions(Collections.singletonList(extension));
+
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(CountingExtension.KEY, key);
+        protocolHandler.setExtensionContext(new ExtendedExtension.ExtensionContext() {
+            @Override
+            public Map<String, Object> getProperties() {
+                return properties;
+            }
+        });
+
+        return protocolHandler;
+    }
+
+    private static class StatefulExtension implements ExtendedExtension {
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            return frame;
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            return frame;
+        }
+
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return null;
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+        }
+
+        @Override
+        public String getName() {
+            return "stateful";
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class CountingExtension extends StatefulExtension implements SharedProcessingExtension {
+
+        static final String KEY = "key";
+
+        int processed = 0;
+        int shared = 0;
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            processed++;
+            return Frame.builder(frame).rsv1(true).build();
+        }
+
+        @Override
+        public Object getOutgoingProcessingKey(ExtensionContext context) {
+            return context.getProperties().get(KEY);
+        }
+
+        @Override
+        public void onSharedOutgoing(ExtensionContext context, Frame frame, Frame processed) {
+            assertFalse(frame.isRsv1());
+            assertTrue(processed.isRsv1());
+            shared++;
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class ByteBufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        final ByteBufferPool pool = new ByteBufferPool();
+
+        assertEquals(ByteBufferPool.MIN_BUFFER_SIZE, pool.acquire(1).capacity());
+        assertEquals(ByteBufferPool.MIN_BUFFER_SIZE, pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE).capacity());
+        assertEquals(2 * ByteBufferPool.MIN_BUFFER_SIZE, pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE + 1).capacity());
+        assertEquals(ByteBufferPool.MAX_POOLED_BUFFER_SIZE, pool.acquire(ByteBufferPool.MAX_POOLED_BUFFER_SIZE).capacity());
+        assertEquals(ByteBufferPool.MAX_POOLED_BUFFER_SIZE + 1, pool.acquire(ByteBufferPool.MAX_POOLED_BUFFER_SIZE + 1).capacity());
+
+        assertEquals(0, pool.getHitCount());
+        assertEquals(5, pool.getMissCount());
+    }
+
+    @Test
+    public void testReuse() {
+        final ByteBufferPool pool = new ByteBufferPool();
+
+        final ByteBuffer buffer = pool.acquire(1000);
+        buffer.put((byte) 1).flip();
+        pool.release(buffer);
+        assertEquals(1024, pool.getRetainedBytes());
+
+        // different size class
+        assertFalse(buffer == pool.acquire(100));
+
+        final ByteBuffer reused = pool.acquire(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testRetainedBytesLimit() {
+        final ByteBufferPool pool = new ByteBufferPool(1024);
+
+        pool.release(pool.acquire(1024));
+        pool.release(pool.acquire(1024));
+        assertEquals(1024, pool.getRetainedBytes());
+
+        // not acquired from the pool
+        pool.release(ByteBuffer.allocate(100));
+        pool.release(ByteBuffer.allocate(ByteBufferPool.MAX_POOLED_BUFFER_SIZE * 2));
+        assertEquals(1024, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testAppendBuffers() {
+        final ByteBufferPool pool = new ByteBufferPool();
+
+        ByteBuffer buffer = pool.acquire(10);
+        buffer.flip();
+
+        final byte[] chunk = new byte[100];
+        for (int i = 0; i < 100; i++) {
+            buffer = Utils.appendBuffers(buffer, ByteBuffer.wrap(chunk), 1000000, pool);
+        }
+
+        assertEquals(10000, buffer.remaining());
+        assertEquals(16384, buffer.capacity());
+        assertTrue(pool.getRetainedBytes() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendBuffersOverflow() {
+        final ByteBufferPool pool = new ByteBufferPool();
+
+        final ByteBuffer buffer = pool.acquire(10);
+        buffer.flip();
+
+        Utils.appendBuffers(buffer, ByteBuffer.allocate(1001), 1000, pool);
+    }
+}
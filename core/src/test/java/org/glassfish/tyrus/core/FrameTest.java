@@ -40,12 +40,19 @@
 
 package org.glassfish.tyrus.core;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.frame.BinaryFrame;
 import org.glassfish.tyrus.core.frame.Frame;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +102,124 @@ public class FrameTest {
 
     }
 
+    @Test
+    public void testPayloadBuffer() throws Exception {
+        byte[] payload = {'0', '1', '2'};
+
+        final Frame frame = new Frame.Builder().payloadData(payload).build();
+        final ByteBuffer payloadBuffer = frame.getPayloadBuffer();
+
+        assertTrue(payloadBuffer.isReadOnly());
+        assertEquals(payload.length, payloadBuffer.remaining());
+        assertEquals(0, new Frame.Builder().build().getPayloadBuffer().remaining());
+    }
+
+    @Test
+    public void testFrameUnframe() throws Exception {
+        final int[] lengths = {0, 1, 125, 126, 127, 0xFFFF, 0x10000, 100003};
+
+        for (boolean client : new boolean[]{true, false}) {
+            for (int length : lengths) {
+                final byte[] payload = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    payload[i] = (byte) (i * 31);
+                }
+
+                final ProtocolHandler sender = new ProtocolHandler(client, null);
+                final ProtocolHandler receiver = new ProtocolHandler(!client, null);
+
+                final ByteBuffer framed = sender.frame(new BinaryFrame(payload, false, true));
+                final int headerLength = 2 + (length <= 125 ? 0 : (length <= 0xFFFF ? 2 : 8)) + (client ? 4 : 0);
+                assertEquals(headerLength + length, framed.remaining());
+                assertEquals(client, (framed.get(1) & 0x80) != 0);
+
+                final Frame frame = receiver.unframe(framed);
+                assertTrue(frame.isFin());
+                assertEquals(2, frame.getOpcode());
+                assertEquals(length, frame.getPayloadLength());
+                assertArrayEquals(payload, frame.getPayloadData());
+                assertFalse(framed.hasRemaining());
+            }
+        }
+    }
+
+    @Test
+    public void testUnframeStreamed() throws Exception {
+        final int length = 3 * ProtocolHandler.STREAMING_THRESHOLD + 7;
+        final int[] chunkSizes = {1, 3, 1000, ProtocolHandler.STREAMING_THRESHOLD};
+
+        for (int chunkSize : chunkSizes) {
+            final byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++) {
+                payload[i] = (byte) (i * 31);
+            }
+
+            final ProtocolHandler sender = new ProtocolHandler(true, null);
+            final ProtocolHandler receiver = new ProtocolHandler(false, null);
+
+            final ByteBuffer framed = sender.frame(new BinaryFrame(payload, false, true));
+            final ByteBuffer received = ByteBuffer.allocate(length);
+
+            final int total = framed.limit();
+            boolean first = true;
+            boolean fin = false;
+            int frames = 0;
+            int end = 0;
+            while (end < total) {
+                // data are received in chunks, unprocessed bytes stay in the buffer.
+                end = Math.min(end + chunkSize, total);
+                framed.limit(end);
+
+                Frame frame;
+                while ((frame = receiver.unframe(framed)) != null) {
+                    assertFalse(fin);
+                    assertEquals(first ? 2 : 0, frame.getOpcode());
+                    received.put(frame.getPayloadData());
+                    fin = frame.isFin();
+                    first = false;
+                    frames++;
+
+                    // small reads are accumulated, only the last part can be shorter.
+                    assertTrue(fin || frame.getPayloadLength() >= ProtocolHandler.STREAMED_PART_MIN_LENGTH);
+                }
+            }
+
+            assertTrue(fin);
+            assertFalse(framed.hasRemaining());
+            assertTrue(chunkSize >= length || frames > 1);
+            assertArrayEquals(payload, received.array());
+        }
+    }
+
+    @Test
+    public void testUnframeNotStreamedWithExtensions() {
+        final int length = 3 * ProtocolHandler.STREAMING_THRESHOLD;
+        final ProtocolHandler sender = new ProtocolHandler(true, null);
+        final ProtocolHandler receiver = new ProtocolHandler(false, null);
+        receiver.setExtensions(Arrays.<Extension>asList(new TyrusExtension("test")));
+
+        final ByteBuffer framed = sender.frame(new BinaryFrame(new byte[length], false, true));
+        final int total = framed.limit();
+        framed.limit(total - 1);
+        assertNull(receiver.unframe(framed));
+
+        framed.limit(total);
+        final Frame frame = receiver.unframe(framed);
+        assertTrue(frame.isFin());
+        assertEquals(length, frame.getPayloadLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnframeTooLong() {
+        final ProtocolHandler sender = new ProtocolHandler(false, null);
+        final ProtocolHandler receiver = new ProtocolHandler(true, null);
+        receiver.setIncomingBufferSize(100);
+
+        final ByteBuffer framed = sender.frame(new BinaryFrame(new byte[101], false, true));
+        framed.limit(4);
+        receiver.unframe(framed);
+    }
+
     /**
      * TODO: test validation when added to Frame.
      */
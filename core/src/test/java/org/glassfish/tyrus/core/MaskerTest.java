@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class MaskerTest {
+
+    private static final int MASKING_KEY = 0x37fa213d;
+
+    @Test
+    public void testMask() {
+        for (int length = 0; length < 40; length++) {
+            final byte[] data = createData(length);
+            final byte[] target = new byte[length + 3];
+
+            final ByteBuffer source = ByteBuffer.wrap(data);
+            Masker.mask(MASKING_KEY, source, target, 3, length);
+
+            assertEquals(length, source.position());
+            assertArrayEquals(referenceMask(data, 0), Arrays.copyOfRange(target, 3, length + 3));
+        }
+    }
+
+    @Test
+    public void testMaskByteOrderAndDirectBuffers() {
+        for (int length = 1020; length < 1030; length++) {
+            testMaskByteOrderAndDirectBuffers(length);
+        }
+    }
+
+    private void testMaskByteOrderAndDirectBuffers(int length) {
+        final byte[] data = createData(length);
+        final byte[] expected = referenceMask(data, 0);
+
+        for (boolean direct : new boolean[]{true, false}) {
+            for (ByteOrder sourceOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                for (ByteOrder targetOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                    final ByteBuffer source = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+                    source.put(data).flip();
+                    source.order(sourceOrder);
+
+                    final ByteBuffer target = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+                    target.order(targetOrder);
+
+                    Masker.mask(MASKING_KEY, source, target, length);
+                    target.flip();
+
+                    final byte[] result = new byte[length];
+                    target.get(result);
+                    assertArrayEquals(expected, result);
+
+                    source.position(0);
+                    final byte[] targetArray = new byte[length];
+                    Masker.mask(MASKING_KEY, source, targetArray, 0, length);
+                    assertArrayEquals(expected, targetArray);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMaskWithOffset() {
+        final int length = 29;
+        final byte[] data = createData(length);
+
+        for (int maskOffset = 0; maskOffset < ProtocolHandler.MASK_SIZE; maskOffset++) {
+            final byte[] target = new byte[length];
+            Masker.mask(MASKING_KEY, maskOffset, ByteBuffer.wrap(data), target, 0, length);
+
+            assertArrayEquals(referenceMask(data, maskOffset), target);
+        }
+    }
+
+    private static byte[] createData(int length) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 13 + 7);
+        }
+        return data;
+    }
+
+    private static byte[] referenceMask(byte[] data, int maskOffset) {
+        final byte[] mask = ByteBuffer.allocate(ProtocolHandler.MASK_SIZE).putInt(MASKING_KEY).array();
+        final byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (byte) (data[i] ^ mask[(i + maskOffset) % ProtocolHandler.MASK_SIZE]);
+        }
+        return result;
+    }
+}
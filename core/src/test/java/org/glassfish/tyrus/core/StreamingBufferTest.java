@@ -0,0 +1,304 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.MessageHandler;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link ReaderBuffer} and {@link InputStreamBuffer}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class StreamingBufferTest {
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testReaderManyParts() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> received = new AtomicReference<String>();
+
+        final ReaderBuffer buffer = new ReaderBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+            @Override
+            public void onMessage(Reader reader) {
+                received.set(readAll(reader));
+                latch.countDown();
+            }
+        });
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            final String part = "part" + i + ";";
+            expected.append(part);
+            buffer.appendMessagePart(part, i == 999);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(expected.toString(), received.get());
+    }
+
+    @Test
+    public void testReaderMessagesDoNotMix() throws Exception {
+        final CountDownLatch firstRead = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final StringBuffer received = new StringBuffer();
+
+        final ReaderBuffer buffer = new ReaderBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+            @Override
+            public void onMessage(Reader reader) {
+                final String message = readAll(reader);
+                received.append(message).append('|');
+                if (message.equals("first")) {
+                    firstRead.countDown();
+                }
+                latch.countDown();
+            }
+        });
+
+        buffer.appendMessagePart("fir", false);
+        buffer.appendMessagePart("st", true);
+        assertTrue(firstRead.await(5, TimeUnit.SECONDS));
+
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.appendMessagePart("sec", false);
+        buffer.appendMessagePart("ond", true);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("first|second|", received.toString());
+    }
+
+    @Test(timeout = 5000)
+    public void testInputStreamAppendDoesNotBlock() throws Exception {
+        final CountDownLatch consume = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<byte[]> received = new AtomicReference<byte[]>();
+
+        final InputStreamBuffer buffer = new InputStreamBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<InputStream>() {
+            @Override
+            public void onMessage(InputStream inputStream) {
+                try {
+                    consume.await();
+                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    final byte[] chunk = new byte[3];
+                    int read;
+                    while ((read = inputStream.read(chunk)) != -1) {
+                        baos.write(chunk, 0, read);
+                    }
+                    received.set(baos.toByteArray());
+                    latch.countDown();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        // the thread delivering message parts must not wait for the consumer.
+        buffer.appendMessagePart(ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4, 5}), false);
+        buffer.appendMessagePart(ByteBuffer.wrap(new byte[]{6, 7, 8, 9, 10, 11}), true);
+
+        consume.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, received.get());
+    }
+
+    @Test
+    public void testReadInterruptible() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Thread> consumer = new AtomicReference<Thread>();
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+        final ReaderBuffer buffer = new ReaderBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+            @Override
+            public void onMessage(Reader reader) {
+                consumer.set(Thread.currentThread());
+                try {
+                    assertEquals('a', reader.read());
+                    reading.countDown();
+                    // blocks, no other part was received.
+                    reader.read();
+                } catch (Exception e) {
+                    failure.set(e);
+                    latch.countDown();
+                }
+            }
+        });
+
+        buffer.appendMessagePart("a", false);
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        consumer.get().interrupt();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof InterruptedIOException);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOnClosedSession() throws Exception {
+        final AtomicReference<Reader> reader = new AtomicReference<Reader>();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final ReaderBuffer buffer = new ReaderBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+            @Override
+            public void onMessage(Reader r) {
+                reader.set(r);
+                latch.countDown();
+            }
+        });
+
+        buffer.appendMessagePart("a", false);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals('a', reader.get().read());
+
+        buffer.onSessionClosed();
+        reader.get().read();
+    }
+
+    @Test
+    public void testInputStreamUnreadLimit() throws Exception {
+        final CountDownLatch read = new CountDownLatch(1);
+        final CountDownLatch consume = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Integer> received = new AtomicReference<Integer>();
+
+        final InputStreamBuffer buffer = new InputStreamBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<InputStream>() {
+            @Override
+            public void onMessage(InputStream inputStream) {
+                try {
+                    final byte[] chunk = new byte[InputStreamBuffer.MAX_UNREAD_SIZE];
+                    int total = inputStream.read(chunk);
+                    read.countDown();
+                    consume.await();
+
+                    int count;
+                    while ((count = inputStream.read(chunk)) != -1) {
+                        total += count;
+                    }
+                    received.set(total);
+                    latch.countDown();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        // consumer keeps up, so the message can be longer than the limit.
+        buffer.appendMessagePart(ByteBuffer.allocate(InputStreamBuffer.MAX_UNREAD_SIZE), false);
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+
+        buffer.appendMessagePart(ByteBuffer.allocate(InputStreamBuffer.MAX_UNREAD_SIZE + 1), false);
+        try {
+            buffer.appendMessagePart(ByteBuffer.allocate(1), false);
+            fail();
+        } catch (MessageTooBigException e) {
+            // consumer fell behind.
+        }
+
+        // data received before the failure can still be read.
+        consume.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(2 * InputStreamBuffer.MAX_UNREAD_SIZE + 1, (int) received.get());
+    }
+
+    @Test(expected = MessageTooBigException.class)
+    public void testReaderUnreadLimit() throws Exception {
+        final ReaderBuffer buffer = new ReaderBuffer(executorService);
+        buffer.resetBuffer(Integer.MAX_VALUE);
+        buffer.setMessageHandler(new MessageHandler.Whole<Reader>() {
+            @Override
+            public void onMessage(Reader reader) {
+                // does not read anything.
+            }
+        });
+
+        buffer.appendMessagePart(new String(new char[ReaderBuffer.MAX_UNREAD_SIZE + 1]), false);
+        buffer.appendMessagePart("a", true);
+    }
+
+    private static String readAll(Reader reader) {
+        try {
+            final StringBuilder sb = new StringBuilder();
+            final char[] chunk = new char[7];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                sb.append(chunk, 0, read);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
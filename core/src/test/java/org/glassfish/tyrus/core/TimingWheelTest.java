@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TimingWheel}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class TimingWheelTest {
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private TimingWheel timingWheel;
+
+    @Before
+    public void before() {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        timingWheel = new TimingWheel(scheduledExecutorService);
+    }
+
+    @After
+    public void after() {
+        timingWheel.stop();
+        scheduledExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long start = TimingWheel.now();
+        final long[] executed = new long[1];
+
+        timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                executed[0] = TimingWheel.now();
+                latch.countDown();
+            }
+        }, 100);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(executed[0] - start >= 100 - TimingWheel.TICK_DURATION);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        final TimingWheel.Timeout timeout = timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                counter.incrementAndGet();
+            }
+        }, 50);
+        timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 100);
+
+        timeout.cancel();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void testReschedule() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+                if (latch.getCount() > 0) {
+                    timingWheel.schedule(this, 20);
+                }
+            }
+        }, 20);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        timingWheel.stop();
+        final TimingWheel.Timeout timeout = timingWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10);
+
+        assertTrue(timeout.isCancelled());
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+    }
+}
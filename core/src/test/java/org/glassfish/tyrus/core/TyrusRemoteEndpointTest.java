@@ -51,6 +51,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
@@ -72,6 +73,7 @@ import javax.websocket.WebSocketContainer;
 import javax.websocket.server.ServerEndpoint;
 
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.spi.CompletionHandler;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -329,6 +331,154 @@ public class TyrusRemoteEndpointTest {
         rew.sendObject(null);
     }
 
+    @Test
+    public void testBatching() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusWebSocket webSocket = createBatchingTestWebSocket(written);
+        TyrusSession testSession = createTestSession(new TestContainer(), webSocket, endpointWrapper);
+        TyrusRemoteEndpoint.Async rew = new TyrusRemoteEndpoint.Async(testSession, webSocket, endpointWrapper);
+
+        Assert.assertFalse(rew.getBatchingAllowed());
+        rew.setBatchingAllowed(true);
+        Assert.assertTrue(rew.getBatchingAllowed());
+
+        final Future<Void> first = rew.sendText("abc");
+        final Future<Void> second = rew.sendBinary(ByteBuffer.wrap(sentBytes));
+
+        Assert.assertEquals(0, written.size());
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        rew.flushBatch();
+
+        // two frames, each with 2 bytes header and 3 bytes payload, written at once.
+        Assert.assertEquals(1, written.size());
+        Assert.assertEquals(10, written.get(0).remaining());
+        Assert.assertTrue(first.isDone());
+        Assert.assertTrue(second.isDone());
+
+        rew.flushBatch();
+        Assert.assertEquals(1, written.size());
+
+        rew.sendText("abc");
+        rew.setBatchingAllowed(false);
+        Assert.assertEquals(2, written.size());
+
+        rew.sendText("abc");
+        Assert.assertEquals(3, written.size());
+    }
+
+    @Test
+    public void testBatchingFlushedOnThresholdAndControlFrame() throws Exception {
+        final List<ByteBuffer> written = new ArrayList<ByteBuffer>();
+        final TyrusWebSocket webSocket = createBatchingTestWebSocket(written);
+        TyrusSession testSession = createTestSession(new TestContainer(), webSocket, endpointWrapper);
+        TyrusRemoteEndpoint.Async rew = new TyrusRemoteEndpoint.Async(testSession, webSocket, endpointWrapper);
+
+        rew.setBatchingAllowed(true);
+        rew.sendText("abc");
+        rew.sendPing(null);
+
+        Assert.assertEquals(2, written.size());
+
+        rew.sendBinary(ByteBuffer.allocate(ProtocolHandler.BATCH_FLUSH_THRESHOLD));
+        Assert.assertEquals(3, written.size());
+    }
+
+    @Test
+    public void testBatchingFlushedByTimer() throws Exception {
+        final List<ByteBuffer> written = Collections.synchronizedList(new ArrayList<ByteBuffer>());
+        final TyrusWebSocket webSocket = createBatchingTestWebSocket(written);
+        TyrusSession testSession = createTestSession(container, webSocket, endpointWrapper);
+        TyrusRemoteEndpoint.Async rew = new TyrusRemoteEndpoint.Async(testSession, webSocket, endpointWrapper);
+
+        rew.setBatchingAllowed(true);
+        final Future<Void> future = rew.sendText("abc");
+
+        future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, written.size());
+    }
+
+    @Test
+    public void testBatchWrittenOutsideOfLockInOrder() throws Exception {
+        final List<ByteBuffer> written = Collections.synchronizedList(new ArrayList<ByteBuffer>());
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(new org.glassfish.tyrus.spi.Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                written.add(buffer);
+                if (written.size() == 1) {
+                    writing.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                completionHandler.completed(buffer);
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        });
+        new TyrusWebSocket(protocolHandler, null);
+
+        protocolHandler.setBatchingAllowed(true, null);
+        final Future<Frame> first = protocolHandler.send("abc");
+
+        final Thread flusher = new Thread() {
+            @Override
+            public void run() {
+                protocolHandler.flushBatch();
+            }
+        };
+        flusher.start();
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // the batch is being written, but the batch lock is not held.
+        protocolHandler.setBatchingAllowed(false, null);
+        final Future<Frame> second = protocolHandler.send("def");
+
+        // the second frame must not overtake the batch; it is written by the thread writing the batch.
+        Assert.assertEquals(1, written.size());
+        Assert.assertFalse(second.isDone());
+
+        release.countDown();
+        flusher.join(5000);
+
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals('a', written.get(0).get(2));
+        Assert.assertEquals('d', written.get(1).get(2));
+        Assert.assertTrue(first.isDone());
+        Assert.assertTrue(second.isDone());
+    }
+
+    private TyrusWebSocket createBatchingTestWebSocket(final List<ByteBuffer> written) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(new org.glassfish.tyrus.spi.Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                written.add(buffer);
+                completionHandler.completed(buffer);
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        });
+
+        return new TyrusWebSocket(protocolHandler, null) {
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        };
+    }
+
     private TyrusSession createTestSession(WebSocketContainer container, TyrusWebSocket webSocket, TyrusEndpointWrapper endpointWrapper) {
         return new TyrusSession(container, webSocket, endpointWrapper, null, null, true, null, null, Collections.<String, String>emptyMap(),
                 null, new HashMap<String, List<String>>(), null, null, null, null, null, -1, null, null, null, -1, new DebugContext());
@@ -44,13 +44,24 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.Decoder;
 import javax.websocket.DeploymentException;
+import javax.websocket.Encoder;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
 import javax.websocket.Extension;
@@ -60,14 +71,24 @@ import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.core.coder.CoderAdapter;
+import org.glassfish.tyrus.core.coder.CoderWrapper;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.Writer;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Pavel Bucek (pavel.bucek at oracle.com)
@@ -490,6 +511,372 @@ public class TyrusSessionTest {
         assertNotNull(session2.getUserProperties().get(test2));
     }
 
+    @Test
+    public void broadcastTest() throws Exception {
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(EchoEndpoint.class, null, ComponentProviderService.create(), container, "/", null, null, null, null, null);
+        final List<DeferredWriter> writers = createConnectedSessions(wrapper, 100);
+
+        final Map<Session, Future<?>> futures = wrapper.broadcast("Hello");
+        assertEquals(100, futures.size());
+
+        for (DeferredWriter writer : writers) {
+            writer.complete(null);
+        }
+
+        for (Future<?> future : futures.values()) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void broadcastAsyncTest() throws Exception {
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(EchoEndpoint.class, null, ComponentProviderService.create(), container, "/", null, null, null, null, null);
+        final List<DeferredWriter> writers = createConnectedSessions(wrapper, 100);
+
+        final Future<Void> future = wrapper.broadcastAsync(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+
+        for (DeferredWriter writer : writers) {
+            assertTrue(writer.writeLatch.await(5, TimeUnit.SECONDS));
+        }
+        assertFalse(future.isDone());
+
+        for (int i = 0; i < writers.size() - 1; i++) {
+            writers.get(i).complete(null);
+        }
+        assertFalse(future.isDone());
+
+        writers.get(writers.size() - 1).complete(null);
+        assertNull(future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void broadcastAsyncFailureTest() throws Exception {
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(EchoEndpoint.class, null, ComponentProviderService.create(), container, "/", null, null, null, null, false);
+        final List<DeferredWriter> writers = createConnectedSessions(wrapper, 20);
+
+        final Future<Void> future = wrapper.broadcastAsync("Hello");
+
+        final IOException failure = new IOException();
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).complete(i == 7 ? failure : null);
+        }
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void coderInstancesInitializedAndDestroyedOnce() throws Exception {
+        CountingEncoder.reset();
+        DualCoder.reset();
+
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(CoderEndpoint.class, "/")
+                .encoders(Arrays.<Class<? extends Encoder>>asList(CountingEncoder.class, DualCoder.class))
+                .decoders(Arrays.<Class<? extends Decoder>>asList(DualCoder.class))
+                .configurator(new ServerEndpointConfig.Configurator()).build();
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(CoderEndpoint.class, config, ComponentProviderService.create(), container, "/", null,
+                new TyrusEndpointWrapper.SessionListener() {
+                }, null, null, null);
+
+        final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+        connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 0);
+        connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 0);
+        final TyrusWebSocket webSocket = new TyrusWebSocket(new ProtocolHandler(false, null), wrapper);
+        final TyrusSession session = wrapper.createSessionForRemoteEndpoint(webSocket, null, Collections.<Extension>emptyList(), connectionProperties, new DebugContext());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("counted", wrapper.doEncode(session, new Counted()));
+            assertEquals("dual", wrapper.doEncode(session, new Dual()));
+        }
+
+        CoderWrapper<Decoder> dualDecoder = null;
+        for (Decoder decoder : wrapper.getDecoders()) {
+            if (((CoderWrapper<?>) decoder).getCoderClass() == DualCoder.class) {
+                //noinspection unchecked
+                dualDecoder = (CoderWrapper<Decoder>) decoder;
+            }
+        }
+        assertNotNull(dualDecoder);
+        assertTrue(wrapper.decodeCompleteMessage(session, "dual", Dual.class, dualDecoder) instanceof Dual);
+
+        // encoder and decoder of the same class share the instance.
+        assertEquals(1, CountingEncoder.INIT.get());
+        assertEquals(1, DualCoder.INIT.get());
+        assertEquals(0, CountingEncoder.DESTROY.get());
+        assertEquals(0, DualCoder.DESTROY.get());
+
+        wrapper.onClose(webSocket, new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+        assertEquals(1, CountingEncoder.DESTROY.get());
+        assertEquals(1, DualCoder.DESTROY.get());
+
+        // no coder is created for a closed session.
+        try {
+            wrapper.doEncode(session, new Counted());
+            fail("IllegalStateException expected.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, CountingEncoder.INIT.get());
+        assertEquals(1, CountingEncoder.DESTROY.get());
+    }
+
+    @Test
+    public void encoderResolution() throws Exception {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(CoderEndpoint.class, "/")
+                .encoders(Arrays.<Class<? extends Encoder>>asList(DogEncoder.class, AnimalEncoder.class))
+                .configurator(new ServerEndpointConfig.Configurator()).build();
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(CoderEndpoint.class, config, ComponentProviderService.create(), container, "/", null,
+                new TyrusEndpointWrapper.SessionListener() {
+                }, null, null, null);
+
+        final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+        connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 0);
+        connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 0);
+        final TyrusWebSocket webSocket = new TyrusWebSocket(new ProtocolHandler(false, null), wrapper);
+        final TyrusSession session = wrapper.createSessionForRemoteEndpoint(webSocket, null, Collections.<Extension>emptyList(), connectionProperties, new DebugContext());
+
+        // resolved encoders are cached, so each message is encoded twice to check the cached resolution too.
+        for (int i = 0; i < 2; i++) {
+            assertEquals("dog", wrapper.doEncode(session, new Dog()));
+            assertEquals("animal", wrapper.doEncode(session, new Animal()));
+            // user encoder for a supertype takes precedence over the Object#toString() fallback.
+            assertEquals("animal", wrapper.doEncode(session, new Cat()));
+            assertEquals("text", wrapper.doEncode(session, "text"));
+            assertEquals("other", wrapper.doEncode(session, new Other()));
+        }
+    }
+
+    @Test
+    public void decoderSplit() throws Exception {
+        final ServerEndpointConfig config = ServerEndpointConfig.Builder.create(CoderEndpoint.class, "/")
+                .decoders(Arrays.<Class<? extends Decoder>>asList(BinaryAnimalDecoder.class, TextAnimalDecoder.class))
+                .configurator(new ServerEndpointConfig.Configurator()).build();
+        final TyrusEndpointWrapper wrapper = new TyrusEndpointWrapper(CoderEndpoint.class, config, ComponentProviderService.create(), container, "/", null,
+                new TyrusEndpointWrapper.SessionListener() {
+                }, null, null, null);
+
+        final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+        connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 0);
+        connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 0);
+        final TyrusWebSocket webSocket = new TyrusWebSocket(new ProtocolHandler(false, null), wrapper);
+        final TyrusSession session = wrapper.createSessionForRemoteEndpoint(webSocket, null, Collections.<Extension>emptyList(), connectionProperties, new DebugContext());
+
+        final List<String> received = new ArrayList<String>();
+        session.addMessageHandler(new MessageHandler.Whole<Animal>() {
+            @Override
+            public void onMessage(Animal message) {
+                received.add(message.name);
+            }
+        });
+
+        wrapper.onMessage(webSocket, "cat");
+        wrapper.onMessage(webSocket, ByteBuffer.wrap("dog".getBytes("UTF-8")));
+        wrapper.onMessage(webSocket, "dog");
+
+        assertEquals(Arrays.asList("text:cat", "binary:dog", "text:dog"), received);
+    }
+
+    private List<DeferredWriter> createConnectedSessions(TyrusEndpointWrapper wrapper, int count) {
+        final List<DeferredWriter> writers = new ArrayList<DeferredWriter>();
+        final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+        connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 0);
+        connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 0);
+
+        for (int i = 0; i < count; i++) {
+            final DeferredWriter writer = new DeferredWriter();
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+            protocolHandler.setWriter(writer);
+
+            final TyrusWebSocket webSocket = new TyrusWebSocket(protocolHandler, wrapper) {
+                @Override
+                public boolean isConnected() {
+                    return true;
+                }
+            };
+
+            wrapper.createSessionForRemoteEndpoint(webSocket, null, Collections.<Extension>emptyList(), connectionProperties, new DebugContext());
+            writers.add(writer);
+        }
+
+        return writers;
+    }
+
+    /**
+     * Writer which completes the write when {@link #complete(Throwable)} is called.
+     */
+    private static class DeferredWriter extends Writer {
+
+        private final CountDownLatch writeLatch = new CountDownLatch(1);
+        private volatile CompletionHandler<ByteBuffer> completionHandler;
+        private volatile ByteBuffer buffer;
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            this.buffer = buffer;
+            this.completionHandler = completionHandler;
+            writeLatch.countDown();
+        }
+
+        void complete(Throwable failure) throws InterruptedException {
+            assertTrue(writeLatch.await(5, TimeUnit.SECONDS));
+            if (failure == null) {
+                completionHandler.completed(buffer);
+            } else {
+                completionHandler.failed(failure);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    public static class CoderEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    public static class Counted {
+    }
+
+    public static class Dual {
+    }
+
+    public static class CountingEncoder implements Encoder.Text<Counted> {
+
+        private static final AtomicInteger INIT = new AtomicInteger();
+        private static final AtomicInteger DESTROY = new AtomicInteger();
+
+        static void reset() {
+            INIT.set(0);
+            DESTROY.set(0);
+        }
+
+        @Override
+        public String encode(Counted object) {
+            return "counted";
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+            INIT.incrementAndGet();
+        }
+
+        @Override
+        public void destroy() {
+            DESTROY.incrementAndGet();
+        }
+    }
+
+    public static class DualCoder implements Encoder.Text<Dual>, Decoder.Text<Dual> {
+
+        private static final AtomicInteger INIT = new AtomicInteger();
+        private static final AtomicInteger DESTROY = new AtomicInteger();
+
+        static void reset() {
+            INIT.set(0);
+            DESTROY.set(0);
+        }
+
+        @Override
+        public String encode(Dual object) {
+            return "dual";
+        }
+
+        @Override
+        public Dual decode(String s) {
+            return new Dual();
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return true;
+        }
+
+        @Override
+        public void init(EndpointConfig config) {
+            INIT.incrementAndGet();
+        }
+
+        @Override
+        public void destroy() {
+            DESTROY.incrementAndGet();
+        }
+    }
+
+    public static class Animal {
+        final String name;
+
+        public Animal() {
+            this(null);
+        }
+
+        Animal(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Dog extends Animal {
+    }
+
+    public static class Cat extends Animal {
+    }
+
+    public static class Other {
+        @Override
+        public String toString() {
+            return "other";
+        }
+    }
+
+    public static class DogEncoder extends CoderAdapter implements Encoder.Text<Dog> {
+
+        @Override
+        public String encode(Dog object) {
+            return "dog";
+        }
+    }
+
+    public static class AnimalEncoder extends CoderAdapter implements Encoder.Text<Animal> {
+
+        @Override
+        public String encode(Animal object) {
+            return "animal";
+        }
+    }
+
+    public static class TextAnimalDecoder extends CoderAdapter implements Decoder.Text<Animal> {
+
+        @Override
+        public Animal decode(String s) {
+            return new Animal("text:" + s);
+        }
+
+        @Override
+        public boolean willDecode(String s) {
+            return true;
+        }
+    }
+
+    public static class BinaryAnimalDecoder extends CoderAdapter implements Decoder.Binary<Animal> {
+
+        @Override
+        public Animal decode(ByteBuffer bytes) {
+            return new Animal("binary:" + new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+        }
+
+        @Override
+        public boolean willDecode(ByteBuffer bytes) {
+            return true;
+        }
+    }
+
     private TyrusSession createSession(WebSocketContainer container, TyrusEndpointWrapper endpointWrapper) {
         return new TyrusSession(container, new TestRemoteEndpoint(), endpointWrapper, null, null, false, null, null, null,
                 null, new HashMap<String, List<String>>(), null, null, null, null, null, -1, null, null, null, -1, new DebugContext());
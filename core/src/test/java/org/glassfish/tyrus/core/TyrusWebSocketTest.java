@@ -0,0 +1,146 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.frame.CloseFrame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.UpgradeRequest;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests close handling of {@link TyrusWebSocket}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class TyrusWebSocketTest {
+
+    /**
+     * The close frame echoed by the remote endpoint is processed on another thread while the local close is still
+     * writing its close frame; the endpoint has to be notified with the local close reason and neither thread can
+     * block the other.
+     */
+    @Test
+    public void testEchoedCloseFrameProcessedDuringLocalClose() throws Exception {
+        final RecordingEndpointWrapper endpointWrapper = new RecordingEndpointWrapper();
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        final TyrusWebSocket webSocket = new TyrusWebSocket(protocolHandler, endpointWrapper);
+        final CloseReason remoteReason = new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "remote");
+        final CountDownLatch echoProcessed = new CountDownLatch(1);
+
+        protocolHandler.setWriter(new Writer() {
+            @Override
+            public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+                // simulates the transport thread receiving the echoed close frame.
+                new Thread() {
+                    @Override
+                    public void run() {
+                        webSocket.onClose(new CloseFrame(remoteReason));
+                        echoProcessed.countDown();
+                    }
+                }.start();
+
+                try {
+                    assertTrue(echoProcessed.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                completionHandler.completed(buffer);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        webSocket.onConnect(null, null, Collections.<Extension>emptyList(), null, null, null);
+        webSocket.close(CloseReason.CloseCodes.GOING_AWAY.getCode(), "local");
+
+        assertEquals(CloseReason.CloseCodes.GOING_AWAY, endpointWrapper.closeReason.getCloseCode());
+        assertEquals("local", endpointWrapper.closeReason.getReasonPhrase());
+    }
+
+    /**
+     * Endpoint wrapper recording the first close reason it was notified with.
+     */
+    private static class RecordingEndpointWrapper extends TyrusEndpointWrapper {
+
+        private volatile CloseReason closeReason = null;
+
+        RecordingEndpointWrapper() throws DeploymentException {
+            super(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                }
+            }, null, ComponentProviderService.create(), null, null, null, null, null, null, null);
+        }
+
+        @Override
+        Session onConnect(TyrusWebSocket socket, UpgradeRequest upgradeRequest, String subProtocol, List<Extension> extensions,
+                          String connectionId, Map<Connection.ConnectionProperties, Object> connectionProperties, DebugContext debugContext) {
+            return null;
+        }
+
+        @Override
+        synchronized void onClose(TyrusWebSocket socket, CloseReason closeReason) {
+            if (this.closeReason == null) {
+                this.closeReason = closeReason;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.PingFrame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the write queue limits of {@link ProtocolHandler}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class WriteQueueTest {
+
+    // 10 bytes of payload + 2 bytes of server frame header.
+    private static final String MESSAGE = "0123456789";
+    private static final int FRAME_LENGTH = 12;
+
+    @Test
+    public void testUnlimited() {
+        final DelayingWriter writer = new DelayingWriter();
+        final ProtocolHandler protocolHandler = createProtocolHandler(writer);
+
+        for (int i = 0; i < 10; i++) {
+            protocolHandler.send(MESSAGE);
+        }
+
+        assertEquals(10, writer.pending.size());
+        assertEquals(10 * FRAME_LENGTH, protocolHandler.getWriteQueueSize());
+
+        writer.completeAll();
+        assertEquals(0, protocolHandler.getWriteQueueSize());
+    }
+
+    @Test
+    public void testFail() throws InterruptedException {
+        final DelayingWriter writer = new DelayingWriter();
+        final ProtocolHandler protocolHandler = createProtocolHandler(writer);
+        protocolHandler.setWriteQueueLimits(2 * FRAME_LENGTH, FRAME_LENGTH, WriteQueueOverflowPolicy.FAIL);
+
+        protocolHandler.send(MESSAGE);
+        protocolHandler.send(MESSAGE);
+        final Future<Frame> rejected = protocolHandler.send(MESSAGE);
+
+        assertEquals(2, writer.pending.size());
+        assertEquals(2 * FRAME_LENGTH, protocolHandler.getWriteQueueSize());
+        assertOverflow(rejected);
+
+        // control frames are always written.
+        protocolHandler.send(new PingFrame(new byte[0]));
+        assertEquals(3, writer.pending.size());
+
+        // the queue is still over the low watermark.
+        writer.complete(0);
+        assertOverflow(protocolHandler.send(MESSAGE));
+
+        writer.complete(0);
+        final Future<Frame> accepted = protocolHandler.send(MESSAGE);
+        assertFalse(accepted.isDone());
+        writer.completeAll();
+        assertTrue(accepted.isDone());
+        assertEquals(0, protocolHandler.getWriteQueueSize());
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException, ExecutionException {
+        final DelayingWriter writer = new DelayingWriter();
+        final ProtocolHandler protocolHandler = createProtocolHandler(writer);
+        protocolHandler.setWriteQueueLimits(2 * FRAME_LENGTH, 0, WriteQueueOverflowPolicy.DROP_OLDEST);
+
+        protocolHandler.send(MESSAGE);
+        protocolHandler.send(MESSAGE);
+        final List<Future<Frame>> held = new ArrayList<Future<Frame>>();
+        for (int i = 0; i < 4; i++) {
+            held.add(protocolHandler.send(MESSAGE));
+        }
+
+        // two messages are written, two are held and the two oldest held messages are dropped.
+        assertEquals(2, writer.pending.size());
+        assertEquals(4 * FRAME_LENGTH, protocolHandler.getWriteQueueSize());
+        assertOverflow(held.get(0));
+        assertOverflow(held.get(1));
+        assertFalse(held.get(2).isDone());
+        assertFalse(held.get(3).isDone());
+
+        // held messages are written when the queue drops to the low watermark.
+        writer.complete(0);
+        assertEquals(1, writer.pending.size());
+        writer.complete(0);
+        assertEquals(2, writer.pending.size());
+
+        writer.completeAll();
+        held.get(2).get();
+        held.get(3).get();
+        assertEquals(0, protocolHandler.getWriteQueueSize());
+    }
+
+    @Test
+    public void testHeldWritesDiscardedOnClose() throws InterruptedException {
+        final DelayingWriter writer = new DelayingWriter();
+        final ProtocolHandler protocolHandler = createProtocolHandler(writer);
+        protocolHandler.setWriteQueueLimits(FRAME_LENGTH, 0, WriteQueueOverflowPolicy.DROP_OLDEST);
+
+        protocolHandler.send(MESSAGE);
+        final Future<Frame> held = protocolHandler.send(MESSAGE);
+        assertFalse(held.isDone());
+
+        protocolHandler.close(1000, null);
+
+        try {
+            held.get();
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertFalse(e.getCause() instanceof WriteQueueOverflowException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimits() {
+        createProtocolHandler(new DelayingWriter()).setWriteQueueLimits(10, 20, WriteQueueOverflowPolicy.FAIL);
+    }
+
+    private static ProtocolHandler createProtocolHandler(Writer writer) {
+        final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+        protocolHandler.setWriter(writer);
+        new TyrusWebSocket(protocolHandler, null);
+        return protocolHandler;
+    }
+
+    private static void assertOverflow(Future<Frame> future) throws InterruptedException {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("ExecutionException expected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof WriteQueueOverflowException);
+        }
+    }
+
+    /**
+     * Writer which completes writes only when asked to.
+     */
+    private static class DelayingWriter extends Writer {
+
+        private final List<CompletionHandler<ByteBuffer>> pending = new ArrayList<CompletionHandler<ByteBuffer>>();
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            pending.add(completionHandler);
+        }
+
+        private void complete(int index) {
+            pending.remove(index).completed(null);
+        }
+
+        private void completeAll() {
+            while (!pending.isEmpty()) {
+                complete(0);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
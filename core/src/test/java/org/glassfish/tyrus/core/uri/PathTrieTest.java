@@ -0,0 +1,166 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PathTrie}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class PathTrieTest {
+
+    private static final String[] ENDPOINT_PATHS = {
+            "/a", "/a/b", "/a/{x}", "/{x}/b", "/{x}/{y}", "/a/b/c", "/a/{x}/c", "/{x}/b/{y}", "/{x}/{y}/{z}",
+            "/{tenant}/feed/{id}", "/{tenant}/feed/latest", "/echo", "/{var}"
+    };
+
+    private static final String[] REQUEST_PATHS = {
+            "/a", "/b", "/a/b", "/a/c", "/c/b", "/c/d", "/a/b/c", "/a/d/c", "/d/b/e", "/d/e/f", "/t1/feed/42",
+            "/t1/feed/latest", "/echo", "/echo/x", "/", "/a/b/c/d", "/a/{x}", "/{x}/b"
+    };
+
+    @Test
+    public void testSameMatchesAsMatch() throws Exception {
+        final Set<TyrusEndpointWrapper> endpoints = new HashSet<TyrusEndpointWrapper>();
+        final PathTrie pathTrie = new PathTrie();
+        for (String path : ENDPOINT_PATHS) {
+            final TestWebSocketEndpoint endpoint = new TestWebSocketEndpoint(path);
+            endpoints.add(endpoint);
+            pathTrie.add(endpoint);
+        }
+
+        // second round is served from the cache.
+        for (int round = 0; round < 2; round++) {
+            for (String requestPath : REQUEST_PATHS) {
+                final List<Match> expected = Match.getAllMatches(requestPath, endpoints, new DebugContext());
+                final List<Match> actual = pathTrie.getAllMatches(requestPath, new DebugContext());
+
+                assertEquals(requestPath, expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    final Match expectedMatch = expected.get(i);
+                    final Match actualMatch = actual.get(i);
+
+                    // matches of the same quality can be in any order.
+                    if (new MatchComparator(new DebugContext()).compare(expectedMatch, actualMatch) == 0
+                            && expectedMatch.getEndpointWrapper() != actualMatch.getEndpointWrapper()) {
+                        continue;
+                    }
+
+                    assertSame(requestPath, expectedMatch.getEndpointWrapper(), actualMatch.getEndpointWrapper());
+                    assertEquals(requestPath, expectedMatch.getVariableSegmentIndices(), actualMatch.getVariableSegmentIndices());
+                    for (String name : expectedMatch.getParameterNames()) {
+                        assertEquals(requestPath, expectedMatch.getParameterValue(name), actualMatch.getParameterValue(name));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTemplateParameters() throws Exception {
+        final PathTrie pathTrie = new PathTrie();
+        pathTrie.add(new TestWebSocketEndpoint("/{tenant}/feed/{id}"));
+        pathTrie.add(new TestWebSocketEndpoint("/{tenant}/feed/latest"));
+
+        List<Match> matches = pathTrie.getAllMatches("/acme/feed/latest", new DebugContext());
+        assertEquals(2, matches.size());
+        assertEquals("/{tenant}/feed/latest", matches.get(0).getPath());
+        assertEquals("acme", matches.get(0).getParameterValue("tenant"));
+        assertEquals("/{tenant}/feed/{id}", matches.get(1).getPath());
+        assertEquals("latest", matches.get(1).getParameterValue("id"));
+
+        matches = pathTrie.getAllMatches("/acme/feed/42", new DebugContext());
+        assertEquals(1, matches.size());
+        assertEquals("acme", matches.get(0).getParameterValue("tenant"));
+        assertEquals("42", matches.get(0).getParameterValue("id"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final PathTrie pathTrie = new PathTrie();
+        final TestWebSocketEndpoint exact = new TestWebSocketEndpoint("/a/b");
+        pathTrie.add(exact);
+        pathTrie.add(new TestWebSocketEndpoint("/a/{x}"));
+
+        assertEquals(2, pathTrie.getAllMatches("/a/b", new DebugContext()).size());
+
+        pathTrie.remove(exact);
+        final List<Match> matches = pathTrie.getAllMatches("/a/b", new DebugContext());
+        assertEquals(1, matches.size());
+        assertEquals("/a/{x}", matches.get(0).getPath());
+    }
+
+    @Test
+    public void testCacheSize() throws Exception {
+        final PathTrie pathTrie = new PathTrie();
+        pathTrie.add(new TestWebSocketEndpoint("/echo"));
+        pathTrie.add(new TestWebSocketEndpoint("/{x}"));
+
+        final List<Match> cached = pathTrie.getAllMatches("/echo", new DebugContext());
+        assertEquals(2, cached.size());
+        assertSame(cached, pathTrie.getAllMatches("/echo", new DebugContext()));
+
+        // templated matches are not cached, so unique request paths do not evict the exact one.
+        for (int i = 0; i < PathTrie.CACHE_SIZE * 3; i++) {
+            final String path = "/" + i;
+            final List<Match> matches = pathTrie.getAllMatches(path, new DebugContext());
+            assertEquals(1, matches.size());
+            assertEquals(Integer.toString(i), matches.get(0).getParameterValue("x"));
+            assertNotSame(matches, pathTrie.getAllMatches(path, new DebugContext()));
+        }
+
+        assertSame(cached, pathTrie.getAllMatches("/echo", new DebugContext()));
+        assertTrue(pathTrie.getAllMatches("/a/b", new DebugContext()).isEmpty());
+    }
+}
@@ -45,6 +45,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import javax.websocket.CloseReason;
 import javax.websocket.DeploymentException;
@@ -133,7 +134,12 @@ public class ClientCli {
         }
     }
 
-    public static void main(String[] args) throws IOException, DeploymentException, InterruptedException {
+    public static void main(String[] args) throws Exception {
+
+        if (args.length > 0 && args[0].equals(LoadGenerator.LOAD_OPTION)) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         final ClientManager clientManager = new ClientManager();
 
@@ -166,6 +172,7 @@ public class ClientCli {
 
                         String help = "\n"
                                 + "\nUsage: cmd [--proxy proxyUrl] [ws uri]"
+                                + "\n       cmd " + LoadGenerator.LOAD_OPTION + " [load options] [ws uri]"
                                 + "\n"
                                 + "\nruntime commands:"
                                 + "\n\topen uri : open a connection to the web socket uri"
@@ -176,7 +183,7 @@ public class ClientCli {
                                 + "\n\tquit | exit : exit this tool"
                                 + "\n\thelp : display this message";
 
-                        ClientCli.print(console, null, help, false);
+                        ClientCli.print(console, null, help + LoadGenerator.USAGE, false);
                         return;
                     }
                 }
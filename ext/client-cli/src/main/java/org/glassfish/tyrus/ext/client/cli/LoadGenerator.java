@@ -0,0 +1,462 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyClientContainer;
+import org.glassfish.tyrus.container.jdk.client.JdkClientContainer;
+import org.glassfish.tyrus.server.Server;
+
+/**
+ * Scripted load mode of the CLI client.
+ * <p/>
+ * Opens given number of connections at a target rate, sends text or binary messages of configured size and rate on
+ * each of them and measures the time until the message is echoed back. When the run is over, throughput, latency
+ * percentiles and error counts are printed.
+ * <p/>
+ * The endpoint under load has to send every received message back. When no URI is given, such endpoint is deployed
+ * on an in-process Tyrus server listening on the loopback interface.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+class LoadGenerator {
+
+    /**
+     * Command line option which switches {@link ClientCli} to the load mode.
+     */
+    static final String LOAD_OPTION = "--load";
+
+    static final String USAGE = "\n"
+            + "\nUsage: cmd " + LOAD_OPTION + " [options] [ws uri]"
+            + "\n"
+            + "\nload options:"
+            + "\n\t--connections n : number of connections to open (default 100)"
+            + "\n\t--connect-rate n : connections opened per second (default 100)"
+            + "\n\t--container jdk|grizzly : client container (default grizzly)"
+            + "\n\t--binary : send binary messages instead of text messages"
+            + "\n\t--message-size n : message size in bytes (default 64)"
+            + "\n\t--message-rate n : messages sent per second on each connection (default 10)"
+            + "\n\t--duration n : length of the run in seconds (default 10)"
+            + "\n"
+            + "\nWhen no uri is given, an echo endpoint on an in-process server on the loopback interface is used.";
+
+    private static final String LOOPBACK_HOST = "localhost";
+    private static final String ECHO_PATH = "/echo";
+    private static final String JDK_CONTAINER = "jdk";
+    private static final String GRIZZLY_CONTAINER = "grizzly";
+
+    // options set by parseArguments(String[]).
+    int connections = 100;
+    double connectRate = 100;
+    String container = GRIZZLY_CONTAINER;
+    boolean binary = false;
+    int messageSize = 64;
+    double messageRate = 10;
+    int duration = 10;
+    URI uri = null;
+
+    private final AtomicLong openedConnections = new AtomicLong(0);
+    private final AtomicLong failedConnections = new AtomicLong(0);
+    private final AtomicLong connectionErrors = new AtomicLong(0);
+    private final AtomicLong sentMessages = new AtomicLong(0);
+    private final AtomicLong receivedMessages = new AtomicLong(0);
+    // messages which failed to be sent or were not echoed back before their connection failed or was closed.
+    private final AtomicLong failedMessages = new AtomicLong(0);
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final Queue<LoadConnection> loadConnections = new ConcurrentLinkedQueue<LoadConnection>();
+
+    private ScheduledExecutorService sendScheduler;
+    private String textMessage;
+    private ByteBuffer binaryMessage;
+
+    /**
+     * Run the load generator.
+     *
+     * @param args command line arguments following {@value #LOAD_OPTION}.
+     * @throws Exception when the run cannot be started.
+     */
+    static void main(String[] args) throws Exception {
+        final LoadGenerator loadGenerator = new LoadGenerator();
+        if (loadGenerator.parseArguments(args)) {
+            loadGenerator.run();
+        } else {
+            System.out.println(USAGE);
+        }
+    }
+
+    /**
+     * Parse load options and the optional uri.
+     *
+     * @param args command line arguments following {@value #LOAD_OPTION}.
+     * @return {@code true} if the arguments are valid, {@code false} otherwise (the reason is printed).
+     */
+    boolean parseArguments(String[] args) {
+        int i = 0;
+        try {
+            while (i < args.length && args[i].startsWith("--")) {
+                final String arg = args[i++];
+
+                if (arg.equals("--binary")) {
+                    binary = true;
+                } else if (i == args.length) {
+                    print(String.format("%s requires an argument", arg));
+                    return false;
+                } else if (arg.equals("--connections")) {
+                    connections = Integer.parseInt(args[i++]);
+                } else if (arg.equals("--connect-rate")) {
+                    connectRate = Double.parseDouble(args[i++]);
+                } else if (arg.equals("--container")) {
+                    container = args[i++];
+                } else if (arg.equals("--message-size")) {
+                    messageSize = Integer.parseInt(args[i++]);
+                } else if (arg.equals("--message-rate")) {
+                    messageRate = Double.parseDouble(args[i++]);
+                } else if (arg.equals("--duration")) {
+                    duration = Integer.parseInt(args[i++]);
+                } else {
+                    print(String.format("Unknown option %s", arg));
+                    return false;
+                }
+            }
+
+            if (i == args.length - 1) {
+                uri = new URI(args[i++]);
+            }
+        } catch (Exception e) {
+            print(String.format("Invalid argument: %s", e.getMessage()));
+            return false;
+        }
+
+        if (i != args.length) {
+            print("Invalid argument count");
+            return false;
+        }
+        if (connections < 1 || connectRate <= 0 || messageSize < 0 || messageRate <= 0 || duration < 1) {
+            print("Numeric options have to be positive");
+            return false;
+        }
+        if (!JDK_CONTAINER.equals(container) && !GRIZZLY_CONTAINER.equals(container)) {
+            print(String.format("Unknown container %s", container));
+            return false;
+        }
+
+        return true;
+    }
+
+    private void run() throws IOException, DeploymentException, InterruptedException {
+        final char[] chars = new char[messageSize];
+        Arrays.fill(chars, 'x');
+        textMessage = new String(chars);
+        binaryMessage = ByteBuffer.wrap(new byte[messageSize]);
+
+        Server server = null;
+        if (uri == null) {
+            final int port = getFreePort();
+            server = new Server(LOOPBACK_HOST, port, null, null, EchoEndpoint.class);
+            server.start();
+            uri = URI.create("ws://" + LOOPBACK_HOST + ":" + port + ECHO_PATH);
+        }
+
+        final ClientManager client = ClientManager.createClient(JDK_CONTAINER.equals(container)
+                ? JdkClientContainer.class.getName() : GrizzlyClientContainer.class.getName());
+        sendScheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            print(String.format("Opening %d connections to %s at %.1f connections/s using %s container",
+                    connections, uri, connectRate, container));
+
+            final long start = System.nanoTime();
+            final long end = start + TimeUnit.SECONDS.toNanos(duration);
+
+            // connections are opened without waiting for the handshake response; opening stops when the run is over,
+            // so the number of attempted connections is reported too.
+            final List<Future<Session>> connectFutures = new ArrayList<Future<Session>>(connections);
+            for (int i = 0; i < connections && System.nanoTime() < end; i++) {
+                sleepUntil(start + (long) (i * TimeUnit.SECONDS.toNanos(1) / connectRate));
+                connectFutures.add(client.asyncConnectToServer(new LoadConnection(),
+                        ClientEndpointConfig.Builder.create().build(), uri));
+            }
+
+            sleepUntil(end);
+            final long measuredNanos = System.nanoTime() - start;
+
+            for (LoadConnection loadConnection : loadConnections) {
+                loadConnection.stopSending();
+            }
+            awaitResponses();
+
+            for (Future<Session> connectFuture : connectFutures) {
+                try {
+                    connectFuture.get(0, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    failedConnections.incrementAndGet();
+                } catch (TimeoutException e) {
+                    failedConnections.incrementAndGet();
+                    connectFuture.cancel(true);
+                }
+            }
+            for (LoadConnection loadConnection : loadConnections) {
+                loadConnection.close();
+            }
+
+            printReport(measuredNanos, connectFutures.size());
+        } finally {
+            sendScheduler.shutdownNow();
+            client.shutdown();
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private void awaitResponses() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (receivedMessages.get() + failedMessages.get() < sentMessages.get() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void printReport(long measuredNanos, int attemptedConnections) {
+        final double seconds = measuredNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        print(String.format("connections: %d of %d attempted, %d opened, %d failed, %d errors", attemptedConnections,
+                connections, openedConnections.get(), failedConnections.get(), connectionErrors.get()));
+        print(String.format("messages: %d sent, %d received, %d failed",
+                sentMessages.get(), receivedMessages.get(), failedMessages.get()));
+        print(String.format(Locale.ENGLISH, "throughput: %.1f messages/s", receivedMessages.get() / seconds));
+        print(String.format(Locale.ENGLISH, "latency (us): mean %.1f, p50 %d, p90 %d, p99 %d, p99.9 %d, max %d",
+                latencies.getMean(), latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(90),
+                latencies.getValueAtPercentile(99), latencies.getValueAtPercentile(99.9), latencies.getMax()));
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        final long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private static int getFreePort() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            return serverSocket.getLocalPort();
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static void print(String message) {
+        System.out.println(String.format("# %s", message));
+    }
+
+    /**
+     * One connection under load.
+     * <p/>
+     * Messages are echoed in the order they were sent, so send times are kept in a queue and matched with responses
+     * in the same order. Send times of messages which failed to be sent are removed from the queue; when the connection
+     * fails or is closed, messages still waiting for a response are counted as failed.
+     */
+    private class LoadConnection extends Endpoint {
+
+        private final Queue<Long> sendTimes = new ConcurrentLinkedQueue<Long>();
+        private volatile Session session;
+        private volatile ScheduledFuture<?> sendTask;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            this.session = session;
+            openedConnections.incrementAndGet();
+            loadConnections.add(this);
+
+            if (binary) {
+                session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+                    @Override
+                    public void onMessage(ByteBuffer message) {
+                        onResponse();
+                    }
+                });
+            } else {
+                session.addMessageHandler(new MessageHandler.Whole<String>() {
+                    @Override
+                    public void onMessage(String message) {
+                        onResponse();
+                    }
+                });
+            }
+
+            final long period = (long) (TimeUnit.SECONDS.toNanos(1) / messageRate);
+            // spread messages of connections opened at the same time.
+            final long initialDelay = (long) (Math.random() * period);
+            sendTask = sendScheduler.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    send();
+                }
+            }, initialDelay, period, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            stopSending();
+            failPending();
+        }
+
+        @Override
+        public void onError(Session session, Throwable thr) {
+            connectionErrors.incrementAndGet();
+            failPending();
+        }
+
+        private void send() {
+            final Session localSession = session;
+            if (!localSession.isOpen()) {
+                stopSending();
+                return;
+            }
+
+            final Long sendTime = System.nanoTime();
+            final SendHandler sendHandler = new SendHandler() {
+                @Override
+                public void onResult(SendResult result) {
+                    if (!result.isOK()) {
+                        onSendFailed(sendTime);
+                    }
+                }
+            };
+
+            sendTimes.add(sendTime);
+            sentMessages.incrementAndGet();
+            try {
+                if (binary) {
+                    localSession.getAsyncRemote().sendBinary(binaryMessage.duplicate(), sendHandler);
+                } else {
+                    localSession.getAsyncRemote().sendText(textMessage, sendHandler);
+                }
+            } catch (Exception e) {
+                onSendFailed(sendTime);
+            }
+        }
+
+        private void onSendFailed(Long sendTime) {
+            // no response will come, the send time must not be matched with a response to a later message.
+            if (sendTimes.remove(sendTime)) {
+                failedMessages.incrementAndGet();
+            }
+            stopSending();
+        }
+
+        private void failPending() {
+            while (sendTimes.poll() != null) {
+                failedMessages.incrementAndGet();
+            }
+        }
+
+        private void onResponse() {
+            final Long sendTime = sendTimes.poll();
+            if (sendTime != null) {
+                latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendTime));
+                receivedMessages.incrementAndGet();
+            }
+        }
+
+        private void stopSending() {
+            final ScheduledFuture<?> localSendTask = sendTask;
+            if (localSendTask != null) {
+                localSendTask.cancel(false);
+            }
+        }
+
+        private void close() {
+            try {
+                session.close();
+            } catch (IOException e) {
+                connectionErrors.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Endpoint deployed on the in-process server, sends every received message back.
+     */
+    @ServerEndpoint(ECHO_PATH)
+    public static class EchoEndpoint {
+
+        @OnMessage
+        public String onMessage(String message) {
+            return message;
+        }
+
+        @OnMessage
+        public ByteBuffer onMessage(ByteBuffer message) {
+            return message;
+        }
+    }
+}
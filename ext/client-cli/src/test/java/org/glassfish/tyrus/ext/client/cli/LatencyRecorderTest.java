@@ -0,0 +1,180 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void testEmpty() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+
+        assertEquals(0, recorder.getCount());
+        assertEquals(0, recorder.getMax());
+        assertEquals(0, recorder.getMean(), 0);
+        assertEquals(0, recorder.getValueAtPercentile(50));
+        assertEquals(0, recorder.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValuesExact() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < 128; i++) {
+            recorder.record(i);
+        }
+
+        assertEquals(128, recorder.getCount());
+        assertEquals(127, recorder.getMax());
+        assertEquals(63.5, recorder.getMean(), 0.0001);
+        assertEquals(0, recorder.getValueAtPercentile(0));
+        assertEquals(63, recorder.getValueAtPercentile(50));
+        assertEquals(115, recorder.getValueAtPercentile(90));
+        assertEquals(127, recorder.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testNegativeRecordedAsZero() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(-10);
+
+        assertEquals(1, recorder.getCount());
+        assertEquals(0, recorder.getMax());
+        assertEquals(0, recorder.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBucketRelativeError() {
+        for (long value = 100; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 7) {
+            final LatencyRecorder recorder = new LatencyRecorder();
+            recorder.record(value);
+            // larger value, so that the reported percentile is not capped by the maximum.
+            recorder.record(Long.MAX_VALUE);
+
+            final long reported = recorder.getValueAtPercentile(50);
+            assertTrue(value + " reported as " + reported, reported >= value);
+            assertTrue(value + " reported as " + reported, (reported - value) * 64 <= value);
+        }
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        // the first value of each range with the same highest bit and the last value of the previous one.
+        for (int bit = 7; bit < 62; bit++) {
+            final long first = 1L << bit;
+            final LatencyRecorder recorder = new LatencyRecorder();
+            recorder.record(first - 1);
+            recorder.record(first);
+            recorder.record(Long.MAX_VALUE);
+
+            assertTrue(recorder.getValueAtPercentile(100.0 / 3) < first);
+            final long reported = recorder.getValueAtPercentile(200.0 / 3);
+            assertTrue(reported >= first);
+            assertTrue((reported - first) * 64 <= first);
+        }
+    }
+
+    @Test
+    public void testLargestValue() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        recorder.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, recorder.getMax());
+        assertEquals(Long.MAX_VALUE, recorder.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 10000; i++) {
+            recorder.record(i);
+        }
+
+        assertEquals(5000.5, recorder.getMean(), 0.0001);
+        assertEquals(10000, recorder.getMax());
+        assertWithinError(5000, recorder.getValueAtPercentile(50));
+        assertWithinError(9000, recorder.getValueAtPercentile(90));
+        assertWithinError(9900, recorder.getValueAtPercentile(99));
+        assertEquals(10000, recorder.getValueAtPercentile(100));
+        // percentiles above 100 are treated as 100.
+        assertEquals(10000, recorder.getValueAtPercentile(150));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final int threads = 4;
+        final int values = 10000;
+
+        final List<Thread> recordingThreads = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            recordingThreads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 1; j <= values; j++) {
+                        recorder.record(j);
+                    }
+                }
+            });
+        }
+        for (Thread thread : recordingThreads) {
+            thread.start();
+        }
+        for (Thread thread : recordingThreads) {
+            thread.join();
+        }
+
+        assertEquals(threads * values, recorder.getCount());
+        assertEquals(values, recorder.getMax());
+        assertEquals((values + 1) / 2.0, recorder.getMean(), 0.0001);
+    }
+
+    private static void assertWithinError(long expected, long reported) {
+        assertTrue(expected + " reported as " + reported, reported >= expected && (reported - expected) * 64 <= expected);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.client.cli;
+
+import java.net.URI;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parsing of load options.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void testDefaults() {
+        final LoadGenerator loadGenerator = new LoadGenerator();
+
+        assertTrue(loadGenerator.parseArguments(new String[0]));
+        assertEquals(100, loadGenerator.connections);
+        assertEquals(100, loadGenerator.connectRate, 0);
+        assertEquals("grizzly", loadGenerator.container);
+        assertFalse(loadGenerator.binary);
+        assertEquals(64, loadGenerator.messageSize);
+        assertEquals(10, loadGenerator.messageRate, 0);
+        assertEquals(10, loadGenerator.duration);
+        assertNull(loadGenerator.uri);
+    }
+
+    @Test
+    public void testAllOptions() {
+        final LoadGenerator loadGenerator = new LoadGenerator();
+
+        assertTrue(loadGenerator.parseArguments(new String[]{"--connections", "5", "--connect-rate", "2.5",
+                "--container", "jdk", "--binary", "--message-size", "0", "--message-rate", "0.5", "--duration", "3",
+                "ws://localhost:8025/echo"}));
+        assertEquals(5, loadGenerator.connections);
+        assertEquals(2.5, loadGenerator.connectRate, 0);
+        assertEquals("jdk", loadGenerator.container);
+        assertTrue(loadGenerator.binary);
+        assertEquals(0, loadGenerator.messageSize);
+        assertEquals(0.5, loadGenerator.messageRate, 0);
+        assertEquals(3, loadGenerator.duration);
+        assertEquals(URI.create("ws://localhost:8025/echo"), loadGenerator.uri);
+    }
+
+    @Test
+    public void testFlagAsLastOption() {
+        final LoadGenerator loadGenerator = new LoadGenerator();
+
+        assertTrue(loadGenerator.parseArguments(new String[]{"--duration", "1", "--binary"}));
+        assertTrue(loadGenerator.binary);
+        assertNull(loadGenerator.uri);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertInvalid("--connections");
+        assertInvalid("--unknown", "1");
+        assertInvalid("--connections", "many");
+        assertInvalid("--connections", "0");
+        assertInvalid("--connect-rate", "-1");
+        assertInvalid("--message-size", "-1");
+        assertInvalid("--message-rate", "0");
+        assertInvalid("--duration", "0");
+        assertInvalid("--container", "netty");
+        assertInvalid("ws://localhost/a", "ws://localhost/b");
+        assertInvalid("--duration", "1", "ws://localhost/a", "--binary");
+        assertInvalid("ws://local host/");
+    }
+
+    private static void assertInvalid(String... args) {
+        assertFalse(new LoadGenerator().parseArguments(args));
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Encoding of the records exchanged between cluster nodes.
+ * <p/>
+ * Every record starts with its type followed by type specific fields. Records are concatenated into batches, see
+ * {@link #decode(byte[], Handler)}. Property values are serialized using Java serialization, values which are not
+ * serializable are not replicated.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+final class ClusterMessages {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterMessages.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte SESSION_OPENED = 1;
+    private static final byte SESSION_CLOSED = 2;
+    private static final byte SESSION_PROPERTY = 3;
+    private static final byte USER_PROPERTIES = 4;
+    private static final byte USER_PROPERTY = 5;
+    private static final byte USER_PROPERTIES_DESTROYED = 6;
+    private static final byte SEND = 7;
+    private static final byte CLOSE = 8;
+    private static final byte ACK = 9;
+    static final byte BROADCAST = 10;
+
+    /**
+     * Kinds of messages sent to a session, see {@link #send(long, String, byte, boolean, byte[])}.
+     */
+    static final byte TEXT = 1;
+    static final byte BINARY = 2;
+    static final byte TEXT_PARTIAL = 3;
+    static final byte BINARY_PARTIAL = 4;
+    static final byte PING = 5;
+    static final byte PONG = 6;
+
+    /**
+     * Prevents instantiation.
+     */
+    private ClusterMessages() {
+    }
+
+    static byte[] sessionOpened(String sessionId, String endpointPath, Map<?, ?> properties) {
+        final Output out = new Output(SESSION_OPENED);
+        out.writeString(sessionId);
+        out.writeString(endpointPath);
+        out.writeMap(properties);
+        return out.toByteArray();
+    }
+
+    static byte[] sessionClosed(String sessionId) {
+        final Output out = new Output(SESSION_CLOSED);
+        out.writeString(sessionId);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return encoded record or {@code null} when the value cannot be serialized.
+     */
+    static byte[] sessionProperty(String sessionId, Object key, Object value) {
+        final byte[] serializedValue = serialize(key, value);
+        if (serializedValue == null && value != null) {
+            return null;
+        }
+
+        final Output out = new Output(SESSION_PROPERTY);
+        out.writeString(sessionId);
+        out.writeString(key.toString());
+        out.writeBytes(serializedValue);
+        return out.toByteArray();
+    }
+
+    static byte[] userProperties(String connectionId, Map<?, ?> properties) {
+        final Output out = new Output(USER_PROPERTIES);
+        out.writeString(connectionId);
+        out.writeMap(properties);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param removed {@code true} when the property was removed.
+     * @return encoded record or {@code null} when the value cannot be serialized.
+     */
+    static byte[] userProperty(String connectionId, Object key, Object value, boolean removed) {
+        final byte[] serializedValue = serialize(key, value);
+        if (serializedValue == null && value != null) {
+            return null;
+        }
+
+        final Output out = new Output(USER_PROPERTY);
+        out.writeString(connectionId);
+        out.writeString(key.toString());
+        out.writeBoolean(removed);
+        out.writeBytes(serializedValue);
+        return out.toByteArray();
+    }
+
+    static byte[] userPropertiesDestroyed(String connectionId) {
+        final Output out = new Output(USER_PROPERTIES_DESTROYED);
+        out.writeString(connectionId);
+        return out.toByteArray();
+    }
+
+    static byte[] send(long requestId, String sessionId, byte kind, boolean isLast, byte[] payload) {
+        final Output out = new Output(SEND);
+        out.writeLong(requestId);
+        out.writeString(sessionId);
+        out.writeByte(kind);
+        out.writeBoolean(isLast);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param closeCode    close code or {@code -1} when the session should be closed without close reason.
+     * @param reasonPhrase reason phrase, ignored when close code is {@code -1}.
+     */
+    static byte[] close(long requestId, String sessionId, int closeCode, String reasonPhrase) {
+        final Output out = new Output(CLOSE);
+        out.writeLong(requestId);
+        out.writeString(sessionId);
+        out.writeInt(closeCode);
+        out.writeString(reasonPhrase == null ? "" : reasonPhrase);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param error error message or {@code null} when the request succeeded.
+     */
+    static byte[] ack(long requestId, String error) {
+        final Output out = new Output(ACK);
+        out.writeLong(requestId);
+        out.writeBoolean(error != null);
+        if (error != null) {
+            out.writeString(error);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Broadcast record header. Messages follow the header, each encoded by
+     * {@link #writeBroadcastMessage(DataOutputStream, boolean, long, byte[])}.
+     */
+    static void writeBroadcastHeader(DataOutputStream out, String endpointPath, int count) throws IOException {
+        out.writeByte(BROADCAST);
+        writeString(out, endpointPath);
+        out.writeInt(count);
+    }
+
+    /**
+     * @param requestId id of the request to be acknowledged after the message was delivered or {@code 0} when no
+     *                  acknowledgement is requested.
+     */
+    static void writeBroadcastMessage(DataOutputStream out, boolean text, long requestId, byte[] payload)
+            throws IOException {
+        out.writeBoolean(text);
+        out.writeLong(requestId);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    static byte[] toBytes(String text) {
+        return text.getBytes(UTF_8);
+    }
+
+    /**
+     * Decode a batch of records.
+     *
+     * @param batch   encoded records.
+     * @param handler handler the decoded records are passed to.
+     * @throws IOException when the batch is malformed.
+     */
+    static void decode(byte[] batch, Handler handler) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+
+        while (in.available() > 0) {
+            final byte type = in.readByte();
+            switch (type) {
+                case SESSION_OPENED:
+                    handler.onSessionOpened(readString(in), readString(in), readMap(in));
+                    break;
+                case SESSION_CLOSED:
+                    handler.onSessionClosed(readString(in));
+                    break;
+                case SESSION_PROPERTY:
+                    handler.onSessionProperty(readString(in), readString(in), deserialize(readBytes(in)));
+                    break;
+                case USER_PROPERTIES:
+                    handler.onUserProperties(readString(in), readMap(in));
+                    break;
+                case USER_PROPERTY: {
+                    final String connectionId = readString(in);
+                    final String key = readString(in);
+                    final boolean removed = in.readBoolean();
+                    handler.onUserProperty(connectionId, key, deserialize(readBytes(in)), removed);
+                    break;
+                }
+                case USER_PROPERTIES_DESTROYED:
+                    handler.onUserPropertiesDestroyed(readString(in));
+                    break;
+                case SEND: {
+                    final long requestId = in.readLong();
+                    final String sessionId = readString(in);
+                    final byte kind = in.readByte();
+                    final boolean isLast = in.readBoolean();
+                    handler.onSend(requestId, sessionId, kind, isLast, readBytes(in));
+                    break;
+                }
+                case CLOSE:
+                    handler.onClose(in.readLong(), readString(in), in.readInt(), readString(in));
+                    break;
+                case ACK: {
+                    final long requestId = in.readLong();
+                    handler.onAck(requestId, in.readBoolean() ? readString(in) : null);
+                    break;
+                }
+                case BROADCAST: {
+                    final String endpointPath = readString(in);
+                    final int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        final boolean text = in.readBoolean();
+                        final long requestId = in.readLong();
+                        final byte[] payload = readBytes(in);
+                        if (text) {
+                            handler.onBroadcast(endpointPath, new String(payload, UTF_8), requestId);
+                        } else {
+                            handler.onBroadcast(endpointPath, payload, requestId);
+                        }
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException(String.format("Unknown cluster record type: %d.", type));
+            }
+        }
+    }
+
+    private static byte[] serialize(Object key, Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, String.format("Property %s cannot be replicated.", key), e);
+            return null;
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return null;
+        }
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), UTF_8);
+    }
+
+    /**
+     * @return read bytes, {@code null} when {@code null} was written.
+     */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static Map<String, Object> readMap(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final Map<String, Object> map = new HashMap<String, Object>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), deserialize(readBytes(in)));
+        }
+        return map;
+    }
+
+    /**
+     * Record being encoded. {@link ByteArrayOutputStream} does not throw {@link IOException}, so the methods do not
+     * declare it either.
+     */
+    private static class Output {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Output(byte type) {
+            writeByte(type);
+        }
+
+        void writeByte(byte value) {
+            try {
+                out.writeByte(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeBoolean(boolean value) {
+            try {
+                out.writeBoolean(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeInt(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeLong(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeString(String value) {
+            try {
+                ClusterMessages.writeString(out, value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeBytes(byte[] value) {
+            try {
+                if (value == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Write map entries, entries with values which cannot be serialized are skipped.
+         */
+        void writeMap(Map<?, ?> map) {
+            final Map<String, byte[]> serialized = new HashMap<String, byte[]>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                final byte[] value = serialize(entry.getKey(), entry.getValue());
+                if (value != null || entry.getValue() == null) {
+                    serialized.put(entry.getKey().toString(), value);
+                }
+            }
+
+            writeInt(serialized.size());
+            for (Map.Entry<String, byte[]> entry : serialized.entrySet()) {
+                writeString(entry.getKey());
+                writeBytes(entry.getValue());
+            }
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Handler of decoded records.
+     */
+    interface Handler {
+
+        void onSessionOpened(String sessionId, String endpointPath, Map<String, Object> properties);
+
+        void onSessionClosed(String sessionId);
+
+        void onSessionProperty(String sessionId, String key, Object value);
+
+        void onUserProperties(String connectionId, Map<String, Object> properties);
+
+        void onUserProperty(String connectionId, String key, Object value, boolean removed);
+
+        void onUserPropertiesDestroyed(String connectionId);
+
+        void onSend(long requestId, String sessionId, byte kind, boolean isLast, byte[] payload);
+
+        void onClose(long requestId, String sessionId, int closeCode, String reasonPhrase);
+
+        void onAck(long requestId, String error);
+
+        void onBroadcast(String endpointPath, String text, long requestId);
+
+        void onBroadcast(String endpointPath, byte[] data, long requestId);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.IOException;
+
+import org.glassfish.tyrus.core.Beta;
+
+/**
+ * Transport connecting nodes of a cluster.
+ * <p/>
+ * Transport is responsible for node discovery and for delivering opaque batches of data between nodes. Batches sent
+ * to one node must be delivered in the same order as they were sent and reported by
+ * {@link Receiver#onReceived(String, byte[])} from a single thread at a time.
+ * <p/>
+ * One transport instance serves exactly one node, see {@link TransportClusterContext}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ * @see InMemoryClusterTransport
+ * @see TcpClusterTransport
+ */
+@Beta
+public abstract class ClusterTransport {
+
+    /**
+     * Start the transport and join the cluster.
+     *
+     * @param nodeId   unique identifier of the local node.
+     * @param receiver receiver notified about membership changes and received data.
+     * @throws IOException when the transport cannot be started.
+     */
+    public abstract void start(String nodeId, Receiver receiver) throws IOException;
+
+    /**
+     * Send a batch of data to other node.
+     * <p/>
+     * The method must not block on the network. Data sent to a node which is not (or no more) member of the
+     * cluster are discarded.
+     *
+     * @param nodeId identifier of the target node.
+     * @param data   data to be sent. The array must not be modified after the method is called.
+     */
+    public abstract void send(String nodeId, byte[] data);
+
+    /**
+     * Leave the cluster and release all resources.
+     */
+    public abstract void shutdown();
+
+    /**
+     * Receiver of the events produced by the transport.
+     */
+    public interface Receiver {
+
+        /**
+         * Other node joined the cluster and can receive data.
+         *
+         * @param nodeId identifier of the joined node.
+         */
+        void onNodeJoined(String nodeId);
+
+        /**
+         * Other node left the cluster or became unreachable.
+         *
+         * @param nodeId identifier of the node which left.
+         */
+        void onNodeLeft(String nodeId);
+
+        /**
+         * Batch of data was received from other node.
+         *
+         * @param nodeId identifier of the sending node.
+         * @param data   received data.
+         */
+        void onReceived(String nodeId, byte[] data);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.glassfish.tyrus.core.Beta;
+
+/**
+ * {@link ClusterTransport} connecting nodes running in the same JVM.
+ * <p/>
+ * Nodes created with the same {@link Group} form a cluster. Every node delivers the received data from its own
+ * thread, so the sender is never blocked by the receiving node, same as with a network transport.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@Beta
+public class InMemoryClusterTransport extends ClusterTransport {
+
+    private final Group group;
+
+    private volatile String nodeId;
+    private volatile Receiver receiver;
+    private volatile ExecutorService deliveryExecutor;
+
+    /**
+     * Create new transport.
+     *
+     * @param group group of nodes the transport will join.
+     */
+    public InMemoryClusterTransport(Group group) {
+        this.group = group;
+    }
+
+    @Override
+    public void start(final String nodeId, Receiver receiver) {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+        this.deliveryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "tyrus-cluster-in-memory-" + nodeId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        synchronized (group) {
+            if (group.members.putIfAbsent(nodeId, this) != null) {
+                throw new IllegalStateException(String.format("Node %s is already a member of the group.", nodeId));
+            }
+
+            for (final InMemoryClusterTransport member : group.members.values()) {
+                if (member != this) {
+                    member.deliverNodeJoined(nodeId);
+                    deliverNodeJoined(member.nodeId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void send(String nodeId, byte[] data) {
+        final InMemoryClusterTransport member = group.members.get(nodeId);
+        if (member != null) {
+            member.deliverData(this.nodeId, data);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (group) {
+            if (group.members.remove(nodeId, this)) {
+                for (final InMemoryClusterTransport member : group.members.values()) {
+                    member.deliverNodeLeft(nodeId);
+                }
+            }
+        }
+
+        deliveryExecutor.shutdown();
+    }
+
+    private void deliverNodeJoined(final String joinedNodeId) {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onNodeJoined(joinedNodeId);
+            }
+        });
+    }
+
+    private void deliverNodeLeft(final String leftNodeId) {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onNodeLeft(leftNodeId);
+            }
+        });
+    }
+
+    private void deliverData(final String senderNodeId, final byte[] data) {
+        deliver(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onReceived(senderNodeId, data);
+            }
+        });
+    }
+
+    private void deliver(Runnable task) {
+        try {
+            deliveryExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // node is shutting down, data are discarded same as on a closed network connection.
+        }
+    }
+
+    /**
+     * Group of nodes forming one in-memory cluster.
+     */
+    public static class Group {
+
+        private final ConcurrentMap<String, InMemoryClusterTransport> members =
+                new ConcurrentHashMap<String, InMemoryClusterTransport>();
+    }
+}
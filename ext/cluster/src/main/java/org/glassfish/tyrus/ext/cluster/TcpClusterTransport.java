@@ -0,0 +1,531 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.tyrus.core.Beta;
+
+/**
+ * {@link ClusterTransport} connecting nodes over TCP.
+ * <p/>
+ * Every node listens on its own address and opens one outgoing connection to every other node, which is used for
+ * sending data to that node. A node has to know at least one other node (seed) to join the cluster. Nodes exchange
+ * identifiers and addresses of the nodes they are connected to (when a connection is opened and when a new node is
+ * connected), so every node eventually connects to all the others. Nodes which connect to a node are connected back
+ * automatically. Seeds which cannot be reached are retried periodically, other nodes are connected again when they
+ * are announced by another node or when they connect again.
+ * <p/>
+ * Nodes are identified by their node id, not by address; a node reachable by more addresses (seed address differs from
+ * the address the node listens on) is connected only once.
+ * <p/>
+ * Batches are sent as length-prefixed frames. Each connection is served by its own thread, which makes the
+ * transport suitable for small clusters, typically several nodes running on one machine.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@Beta
+public class TcpClusterTransport extends ClusterTransport {
+
+    private static final Logger LOGGER = Logger.getLogger(TcpClusterTransport.class.getName());
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final long RECONNECT_DELAY = 1000;
+    private static final byte[] CLOSE_MARKER = new byte[0];
+
+    // length of a frame announcing members of the cluster.
+    private static final int MEMBERS_FRAME = -1;
+
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> seeds;
+    private final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<String, Connection>();
+    private final ConcurrentMap<InetSocketAddress, String> seedNodeIds = new ConcurrentHashMap<InetSocketAddress, String>();
+    private final ConcurrentMap<String, Socket> incomingConnections = new ConcurrentHashMap<String, Socket>();
+    private final Set<Socket> incomingSockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private volatile String nodeId;
+    private volatile Receiver receiver;
+    private volatile boolean running;
+    private volatile ServerSocket serverSocket;
+    private volatile InetSocketAddress advertisedAddress;
+    private volatile ScheduledExecutorService connector;
+
+    /**
+     * Create new transport.
+     *
+     * @param bindAddress address the node will listen on. Port {@code 0} means any free port, see
+     *                    {@link #getLocalAddress()}.
+     * @param seeds       addresses of other nodes to be connected to.
+     */
+    public TcpClusterTransport(InetSocketAddress bindAddress, List<InetSocketAddress> seeds) {
+        this.bindAddress = bindAddress;
+        this.seeds = new ArrayList<InetSocketAddress>(seeds);
+    }
+
+    /**
+     * Get the address the node is listening on.
+     *
+     * @return local address or {@code null} when the transport was not started.
+     */
+    public InetSocketAddress getLocalAddress() {
+        return advertisedAddress;
+    }
+
+    @Override
+    public void start(String nodeId, Receiver receiver) throws IOException {
+        this.nodeId = nodeId;
+        this.receiver = receiver;
+
+        serverSocket = new ServerSocket();
+        serverSocket.bind(bindAddress);
+        final InetAddress address = serverSocket.getInetAddress();
+        advertisedAddress = new InetSocketAddress(address.isAnyLocalAddress() ? InetAddress.getByName(null) : address,
+                serverSocket.getLocalPort());
+
+        running = true;
+        connector = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return newDaemonThread(r, "connector");
+            }
+        });
+
+        newDaemonThread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "acceptor").start();
+
+        connector.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (InetSocketAddress seed : seeds) {
+                    if (!isConnected(seed)) {
+                        connect(seed);
+                    }
+                }
+            }
+        }, 0, RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void send(String nodeId, byte[] data) {
+        final Connection connection = connections.get(nodeId);
+        if (connection != null) {
+            connection.queue.offer(data);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+
+        if (connector != null) {
+            connector.shutdownNow();
+        }
+
+        closeQuietly(serverSocket);
+        for (Socket socket : incomingSockets) {
+            closeQuietly(socket);
+        }
+        for (Connection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    /**
+     * Seed address is resolved to a node id by the first connection; the address the node advertises (and other nodes
+     * connect to) might be different.
+     */
+    private boolean isConnected(InetSocketAddress seed) {
+        final String seedNodeId = seedNodeIds.get(seed);
+        return seedNodeId != null && (seedNodeId.equals(nodeId) || connections.containsKey(seedNodeId));
+    }
+
+    /**
+     * Connect to a node, unless it is already connected. The connection is opened asynchronously from the connector
+     * thread.
+     */
+    private void connectIfUnknown(final String remoteNodeId, final InetSocketAddress address) {
+        if (remoteNodeId.equals(nodeId) || connections.containsKey(remoteNodeId)) {
+            return;
+        }
+
+        connector.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!connections.containsKey(remoteNodeId)) {
+                    connect(address);
+                }
+            }
+        });
+    }
+
+    /**
+     * Open the outgoing connection to a node. Called only from the connector thread.
+     * <p/>
+     * Handshake: the connecting node sends its id and address, the other node replies with its id, address and
+     * members it is connected to, and the connecting node confirms whether the connection will be used. Connection to
+     * an already connected node is not used, so the connection which is being used is never closed.
+     */
+    private void connect(InetSocketAddress address) {
+        if (!running) {
+            return;
+        }
+
+        final Socket socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeNode(out, nodeId, advertisedAddress);
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final String remoteNodeId = in.readUTF();
+            final InetSocketAddress remoteAddress = readAddress(in);
+            final Map<String, InetSocketAddress> members = readMembers(in);
+
+            if (seeds.contains(address)) {
+                seedNodeIds.put(address, remoteNodeId);
+            }
+
+            // only the connector thread adds connections.
+            final boolean duplicate = remoteNodeId.equals(nodeId) || connections.containsKey(remoteNodeId);
+            out.writeBoolean(!duplicate);
+            out.flush();
+            if (duplicate) {
+                closeQuietly(socket);
+            } else {
+                establish(remoteNodeId, remoteAddress, socket, out);
+            }
+
+            for (Map.Entry<String, InetSocketAddress> member : members.entrySet()) {
+                connectIfUnknown(member.getKey(), member.getValue());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, String.format("Cannot connect to cluster node %s.", address), e);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Start using new outgoing connection and announce the node to the other connected nodes.
+     */
+    private void establish(String remoteNodeId, InetSocketAddress remoteAddress, Socket socket, DataOutputStream out) {
+        final Connection connection = new Connection(remoteNodeId, remoteAddress, socket, out);
+        connections.put(remoteNodeId, connection);
+        newDaemonThread(new Runnable() {
+            @Override
+            public void run() {
+                connection.write();
+            }
+        }, "writer-" + remoteNodeId).start();
+
+        receiver.onNodeJoined(remoteNodeId);
+
+        // let the other nodes know about the new one.
+        final Map<String, InetSocketAddress> joined = Collections.singletonMap(remoteNodeId, remoteAddress);
+        for (Connection other : connections.values()) {
+            if (other != connection) {
+                other.queue.offer(new MembersFrame(joined));
+            }
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.WARNING, "Cluster transport stopped accepting connections.", e);
+                }
+                return;
+            }
+
+            incomingSockets.add(socket);
+            newDaemonThread(new Runnable() {
+                @Override
+                public void run() {
+                    read(socket);
+                }
+            }, "reader").start();
+        }
+    }
+
+    private void read(Socket socket) {
+        String remoteNodeId = null;
+        boolean established = false;
+        try {
+            socket.setTcpNoDelay(true);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            remoteNodeId = in.readUTF();
+            final InetSocketAddress remoteAddress = readAddress(in);
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeNode(out, nodeId, advertisedAddress);
+            writeMembers(out, getMembers());
+            out.flush();
+
+            if (!in.readBoolean()) {
+                // the other node is already connected.
+                return;
+            }
+
+            established = true;
+            incomingConnections.put(remoteNodeId, socket);
+
+            // connect back, so the node can be sent data to.
+            connectIfUnknown(remoteNodeId, remoteAddress);
+
+            while (running) {
+                final int length = in.readInt();
+                if (length == MEMBERS_FRAME) {
+                    for (Map.Entry<String, InetSocketAddress> member : readMembers(in).entrySet()) {
+                        connectIfUnknown(member.getKey(), member.getValue());
+                    }
+                    continue;
+                }
+
+                final byte[] data = new byte[length];
+                in.readFully(data);
+                receiver.onReceived(remoteNodeId, data);
+            }
+        } catch (EOFException e) {
+            // connection closed by the other node.
+        } catch (RejectedExecutionException e) {
+            // transport is shutting down.
+        } catch (IOException e) {
+            if (running) {
+                LOGGER.log(Level.FINE, String.format("Connection from cluster node %s failed.", remoteNodeId), e);
+            }
+        } finally {
+            incomingSockets.remove(socket);
+            closeQuietly(socket);
+            // a newer connection from the node might have replaced this one.
+            if (established && incomingConnections.remove(remoteNodeId, socket)) {
+                onConnectionFailed(remoteNodeId);
+            }
+        }
+    }
+
+    /**
+     * Both incoming and outgoing connection of a node are considered broken when one of them fails. The node will be
+     * reconnected, when it is a seed, when it is announced by other node or when it connects again.
+     */
+    private void onConnectionFailed(String remoteNodeId) {
+        final Connection connection = connections.remove(remoteNodeId);
+        if (connection != null) {
+            connection.close();
+            if (running) {
+                receiver.onNodeLeft(remoteNodeId);
+            }
+        }
+    }
+
+    /**
+     * Get nodes this node is connected to.
+     *
+     * @return map of node ids to the addresses the nodes listen on.
+     */
+    private Map<String, InetSocketAddress> getMembers() {
+        final Map<String, InetSocketAddress> members = new HashMap<String, InetSocketAddress>();
+        for (Connection connection : connections.values()) {
+            members.put(connection.remoteNodeId, connection.address);
+        }
+        return members;
+    }
+
+    private Thread newDaemonThread(Runnable runnable, String name) {
+        final Thread thread = new Thread(runnable, "tyrus-cluster-tcp-" + nodeId + "-" + name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void writeNode(DataOutputStream out, String nodeId, InetSocketAddress address) throws IOException {
+        out.writeUTF(nodeId);
+        out.writeUTF(address.getAddress().getHostAddress());
+        out.writeInt(address.getPort());
+    }
+
+    private static InetSocketAddress readAddress(DataInputStream in) throws IOException {
+        return new InetSocketAddress(in.readUTF(), in.readInt());
+    }
+
+    private static void writeMembers(DataOutputStream out, Map<String, InetSocketAddress> members) throws IOException {
+        out.writeInt(members.size());
+        for (Map.Entry<String, InetSocketAddress> member : members.entrySet()) {
+            writeNode(out, member.getKey(), member.getValue());
+        }
+    }
+
+    private static Map<String, InetSocketAddress> readMembers(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final Map<String, InetSocketAddress> members = new HashMap<String, InetSocketAddress>();
+        for (int i = 0; i < count; i++) {
+            members.put(in.readUTF(), readAddress(in));
+        }
+        return members;
+    }
+
+    private static void closeQuietly(ServerSocket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // do nothing.
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // do nothing.
+        }
+    }
+
+    /**
+     * Announcement of cluster members queued to a {@link Connection}.
+     */
+    private static class MembersFrame {
+
+        private final Map<String, InetSocketAddress> members;
+
+        MembersFrame(Map<String, InetSocketAddress> members) {
+            this.members = members;
+        }
+    }
+
+    /**
+     * Outgoing connection to a node.
+     */
+    private class Connection {
+
+        private final String remoteNodeId;
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final DataOutputStream out;
+        // batches (byte[]) and member announcements (MembersFrame).
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+        Connection(String remoteNodeId, InetSocketAddress address, Socket socket, DataOutputStream out) {
+            this.remoteNodeId = remoteNodeId;
+            this.address = address;
+            this.socket = socket;
+            this.out = out;
+        }
+
+        /**
+         * Write queued batches, flush only when there is nothing more to be written.
+         */
+        void write() {
+            try {
+                while (true) {
+                    Object frame = queue.poll();
+                    if (frame == null) {
+                        out.flush();
+                        frame = queue.take();
+                    }
+
+                    if (frame == CLOSE_MARKER) {
+                        return;
+                    }
+
+                    if (frame instanceof MembersFrame) {
+                        out.writeInt(MEMBERS_FRAME);
+                        writeMembers(out, ((MembersFrame) frame).members);
+                    } else {
+                        final byte[] data = (byte[]) frame;
+                        out.writeInt(data.length);
+                        out.write(data);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.FINE, String.format("Connection to cluster node %s failed.", remoteNodeId), e);
+                }
+            } finally {
+                closeQuietly(socket);
+                if (connections.remove(remoteNodeId, this) && running) {
+                    receiver.onNodeLeft(remoteNodeId);
+                }
+            }
+        }
+
+        void close() {
+            queue.offer(CLOSE_MARKER);
+            closeQuietly(socket);
+        }
+    }
+}
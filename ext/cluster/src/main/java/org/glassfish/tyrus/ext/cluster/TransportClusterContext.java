@@ -0,0 +1,1138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.glassfish.tyrus.core.Beta;
+import org.glassfish.tyrus.core.TyrusFuture;
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+
+/**
+ * {@link ClusterContext} replicating sessions, their properties and broadcasts over a {@link ClusterTransport}.
+ * <p/>
+ * Every node keeps a local cache of sessions opened on other nodes together with the node owning the session, so
+ * a message for a remote session is sent directly to the owning node, which acknowledges it once the message was
+ * sent to the session. Session properties and user properties are replicated to all nodes.
+ * <p/>
+ * Records sent to a node are batched: a batch is handed over to the transport when it exceeds
+ * {@link #BATCH_SIZE_THRESHOLD} or when the flushing thread gets to it, so the batches grow only under load.
+ * Consecutive broadcasts to the same endpoint are coalesced into one record.
+ * <p/>
+ * {@link #isLocalFirstBroadcast() Local-first broadcast} is used by default: the originating node sends a broadcasted
+ * message to its own sessions itself and the message is sent only to the other nodes, which acknowledge it once it was
+ * passed to their sessions.
+ * <p/>
+ * Usage (all the nodes use the same in-memory group):
+ * <pre>
+ * final InMemoryClusterTransport.Group group = new InMemoryClusterTransport.Group();
+ * final Map&lt;String, Object&gt; properties = new HashMap&lt;String, Object&gt;();
+ * properties.put(ClusterContext.CLUSTER_CONTEXT, new TransportClusterContext(new InMemoryClusterTransport(group)));
+ * final Server server = new Server("localhost", 8025, "/", properties, MyEndpoint.class);
+ * </pre>
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@Beta
+public class TransportClusterContext extends ClusterContext {
+
+    /**
+     * Size of a batch in bytes, which causes the batch to be sent immediately.
+     */
+    public static final int BATCH_SIZE_THRESHOLD = 32 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(TransportClusterContext.class.getName());
+    private static final Map<String, RemoteSession.DistributedMapKey> SESSION_PROPERTY_KEYS =
+            new HashMap<String, RemoteSession.DistributedMapKey>();
+
+    static {
+        for (RemoteSession.DistributedMapKey key : RemoteSession.DistributedMapKey.values()) {
+            SESSION_PROPERTY_KEYS.put(key.toString(), key);
+        }
+    }
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ClusterTransport transport;
+    private final ExecutorService flusher;
+    private final AtomicLong requestIds = new AtomicLong();
+
+    private final ConcurrentMap<String, Batch> nodes = new ConcurrentHashMap<String, Batch>();
+    private final ConcurrentMap<String, LocalSession> localSessions = new ConcurrentHashMap<String, LocalSession>();
+    private final ConcurrentMap<String, OwnedSession> remoteSessions = new ConcurrentHashMap<String, OwnedSession>();
+    private final ConcurrentMap<String, SessionProperties> sessionProperties =
+            new ConcurrentHashMap<String, SessionProperties>();
+    private final ConcurrentMap<String, UserProperties> userProperties = new ConcurrentHashMap<String, UserProperties>();
+    private final ConcurrentMap<String, List<SessionListener>> sessionListeners =
+            new ConcurrentHashMap<String, List<SessionListener>>();
+    private final ConcurrentMap<String, List<BroadcastListener>> broadcastListeners =
+            new ConcurrentHashMap<String, List<BroadcastListener>>();
+    private final ConcurrentMap<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<Long, PendingRequest>();
+    private final ConcurrentMap<Long, PendingBroadcast> pendingBroadcasts =
+            new ConcurrentHashMap<Long, PendingBroadcast>();
+    private final boolean localFirstBroadcast;
+
+    /**
+     * Create new cluster context using local-first broadcast and join the cluster.
+     *
+     * @param transport transport connecting the node to other nodes. The transport is used exclusively by the
+     *                  created context.
+     * @throws IOException when the transport cannot be started.
+     */
+    public TransportClusterContext(ClusterTransport transport) throws IOException {
+        this(transport, true);
+    }
+
+    /**
+     * Create new cluster context and join the cluster.
+     *
+     * @param transport           transport connecting the node to other nodes. The transport is used exclusively by
+     *                            the created context.
+     * @param localFirstBroadcast {@code true} if local-first broadcast should be used, see
+     *                            {@link #isLocalFirstBroadcast()}.
+     * @throws IOException when the transport cannot be started.
+     */
+    public TransportClusterContext(ClusterTransport transport, boolean localFirstBroadcast) throws IOException {
+        this.transport = transport;
+        this.localFirstBroadcast = localFirstBroadcast;
+        this.flusher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "tyrus-cluster-flusher-" + nodeId);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        transport.start(nodeId, new TransportReceiver());
+    }
+
+    /**
+     * Get identifier of the local node.
+     *
+     * @return node identifier.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text) {
+        return send(sessionId, ClusterMessages.TEXT, true, ClusterMessages.toBytes(text), null);
+    }
+
+    @Override
+    public Future<Void> sendText(String sessionId, String text, boolean isLast) {
+        return send(sessionId, ClusterMessages.TEXT_PARTIAL, isLast, ClusterMessages.toBytes(text), null);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data) {
+        return send(sessionId, ClusterMessages.BINARY, true, data, null);
+    }
+
+    @Override
+    public Future<Void> sendBinary(String sessionId, byte[] data, boolean isLast) {
+        return send(sessionId, ClusterMessages.BINARY_PARTIAL, isLast, data, null);
+    }
+
+    @Override
+    public Future<Void> sendPing(String sessionId, byte[] data) {
+        return send(sessionId, ClusterMessages.PING, true, data, null);
+    }
+
+    @Override
+    public Future<Void> sendPong(String sessionId, byte[] data) {
+        return send(sessionId, ClusterMessages.PONG, true, data, null);
+    }
+
+    @Override
+    public void sendText(String sessionId, String text, SendHandler sendHandler) {
+        send(sessionId, ClusterMessages.TEXT, true, ClusterMessages.toBytes(text), sendHandler);
+    }
+
+    @Override
+    public void sendBinary(String sessionId, byte[] data, SendHandler sendHandler) {
+        send(sessionId, ClusterMessages.BINARY, true, data, sendHandler);
+    }
+
+    @Override
+    public void broadcastText(String endpointPath, String text) {
+        final byte[] payload = ClusterMessages.toBytes(text);
+        for (Batch batch : nodes.values()) {
+            batch.addBroadcast(endpointPath, true, 0, payload);
+        }
+
+        for (BroadcastListener listener : getListeners(broadcastListeners, endpointPath)) {
+            try {
+                listener.onBroadcast(text);
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Broadcast listener failed.", t);
+            }
+        }
+    }
+
+    @Override
+    public void broadcastBinary(String endpointPath, byte[] data) {
+        for (Batch batch : nodes.values()) {
+            batch.addBroadcast(endpointPath, false, 0, data);
+        }
+
+        for (BroadcastListener listener : getListeners(broadcastListeners, endpointPath)) {
+            try {
+                listener.onBroadcast(data);
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Broadcast listener failed.", t);
+            }
+        }
+    }
+
+    @Override
+    public boolean isLocalFirstBroadcast() {
+        return localFirstBroadcast;
+    }
+
+    @Override
+    public Future<Void> broadcastTextToOtherNodes(String endpointPath, String text) {
+        return broadcastToOtherNodes(endpointPath, true, ClusterMessages.toBytes(text));
+    }
+
+    @Override
+    public Future<Void> broadcastBinaryToOtherNodes(String endpointPath, byte[] data) {
+        return broadcastToOtherNodes(endpointPath, false, data);
+    }
+
+    @Override
+    public boolean isSessionOpen(String sessionId, String endpointPath) {
+        final LocalSession localSession = localSessions.get(sessionId);
+        if (localSession != null) {
+            return localSession.endpointPath.equals(endpointPath);
+        }
+
+        final OwnedSession remoteSession = remoteSessions.get(sessionId);
+        return remoteSession != null && remoteSession.endpointPath.equals(endpointPath);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId) {
+        return close(sessionId, -1, null);
+    }
+
+    @Override
+    public Future<Void> close(String sessionId, CloseReason closeReason) {
+        return close(sessionId, closeReason.getCloseCode().getCode(), closeReason.getReasonPhrase());
+    }
+
+    /**
+     * Get ids of sessions opened on other nodes.
+     *
+     * @param endpointPath endpoint path identifying sessions alignment to the endpoint.
+     * @return set of ids of sessions opened on other nodes.
+     */
+    @Override
+    public Set<String> getRemoteSessionIds(String endpointPath) {
+        final Set<String> result = new HashSet<String>();
+        for (Map.Entry<String, OwnedSession> entry : remoteSessions.entrySet()) {
+            if (entry.getValue().endpointPath.equals(endpointPath)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String createSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String createConnectionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public void registerSession(String sessionId, String endpointPath, SessionEventListener listener) {
+        localSessions.put(sessionId, new LocalSession(endpointPath, listener));
+        getSessionProperties(sessionId).publish(endpointPath);
+    }
+
+    @Override
+    public void registerSessionListener(String endpointPath, SessionListener listener) {
+        getListeners(sessionListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public void registerBroadcastListener(String endpointPath, BroadcastListener listener) {
+        getListeners(broadcastListeners, endpointPath).add(listener);
+    }
+
+    @Override
+    public Map<RemoteSession.DistributedMapKey, Object> getDistributedSessionProperties(String sessionId) {
+        return getSessionProperties(sessionId);
+    }
+
+    @Override
+    public Map<String, Object> getDistributedUserProperties(String connectionId) {
+        return getUserProperties(connectionId);
+    }
+
+    @Override
+    public void destroyDistributedUserProperties(String connectionId) {
+        if (userProperties.remove(connectionId) != null) {
+            sendToAll(ClusterMessages.userPropertiesDestroyed(connectionId));
+        }
+    }
+
+    @Override
+    public void removeSession(String sessionId, String endpointPath) {
+        if (localSessions.remove(sessionId) != null) {
+            sessionProperties.remove(sessionId);
+            sendToAll(ClusterMessages.sessionClosed(sessionId));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Batch batch : nodes.values()) {
+            batch.flush();
+        }
+
+        transport.shutdown();
+        flusher.shutdown();
+
+        for (Long requestId : pendingRequests.keySet()) {
+            completeRequest(requestId, "Cluster context has been shut down.");
+        }
+        for (PendingBroadcast broadcast : pendingBroadcasts.values()) {
+            broadcast.fail("Cluster context has been shut down.");
+        }
+    }
+
+    /**
+     * Send broadcast to the nodes which are currently members of the cluster. The returned future is completed when
+     * all of them acknowledge it or leave the cluster.
+     */
+    private Future<Void> broadcastToOtherNodes(String endpointPath, boolean text, byte[] payload) {
+        final long requestId = requestIds.incrementAndGet();
+        final Map<String, Batch> targets = new HashMap<String, Batch>(nodes);
+        final PendingBroadcast broadcast = new PendingBroadcast(requestId, targets.keySet());
+        if (targets.isEmpty()) {
+            return broadcast.future;
+        }
+
+        pendingBroadcasts.put(requestId, broadcast);
+        for (Batch batch : targets.values()) {
+            batch.addBroadcast(endpointPath, text, requestId, payload);
+        }
+
+        // nodes might have left in the meantime.
+        for (String nodeId : targets.keySet()) {
+            if (!nodes.containsKey(nodeId)) {
+                broadcast.acknowledge(nodeId, null);
+            }
+        }
+        return broadcast.future;
+    }
+
+    private Future<Void> send(String sessionId, byte kind, boolean isLast, byte[] payload, SendHandler sendHandler) {
+        final LocalSession localSession = localSessions.get(sessionId);
+        if (localSession != null) {
+            return completeLocally(deliver(localSession.listener, kind, isLast, payload), sendHandler);
+        }
+
+        final long requestId = requestIds.incrementAndGet();
+        return sendRequest(sessionId, requestId, ClusterMessages.send(requestId, sessionId, kind, isLast, payload),
+                sendHandler);
+    }
+
+    private Future<Void> close(String sessionId, int closeCode, String reasonPhrase) {
+        final LocalSession localSession = localSessions.get(sessionId);
+        if (localSession != null) {
+            return completeLocally(close(localSession.listener, closeCode, reasonPhrase), null);
+        }
+
+        final long requestId = requestIds.incrementAndGet();
+        return sendRequest(sessionId, requestId, ClusterMessages.close(requestId, sessionId, closeCode, reasonPhrase),
+                null);
+    }
+
+    /**
+     * Send a request to the node owning the session. The returned future is completed when the owning node
+     * acknowledges the request.
+     */
+    private Future<Void> sendRequest(String sessionId, long requestId, byte[] record, SendHandler sendHandler) {
+        final OwnedSession remoteSession = remoteSessions.get(sessionId);
+        final Batch batch = remoteSession == null ? null : nodes.get(remoteSession.nodeId);
+        if (batch == null) {
+            return completeLocally(new IllegalStateException(String.format("Session %s is not open.", sessionId)),
+                    sendHandler);
+        }
+
+        final PendingRequest request = new PendingRequest(remoteSession.nodeId, sendHandler);
+        pendingRequests.put(requestId, request);
+        batch.add(record);
+
+        // node might have left in the meantime.
+        if (!nodes.containsKey(remoteSession.nodeId)) {
+            completeRequest(requestId, String.format("Cluster node %s has left.", remoteSession.nodeId));
+        }
+        return request.future;
+    }
+
+    private void completeRequest(long requestId, String error) {
+        final PendingRequest request = pendingRequests.remove(requestId);
+        if (request != null) {
+            request.complete(error == null ? null : new IOException(error));
+        }
+    }
+
+    private static Future<Void> completeLocally(Throwable error, SendHandler sendHandler) {
+        final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        if (error == null) {
+            future.setResult(null);
+        } else {
+            future.setFailure(error);
+        }
+
+        if (sendHandler != null) {
+            sendHandler.onResult(error == null ? new SendResult() : new SendResult(error));
+        }
+        return future;
+    }
+
+    /**
+     * @return error which occurred or {@code null} when the message was sent.
+     */
+    private static Throwable deliver(SessionEventListener listener, byte kind, boolean isLast, byte[] payload) {
+        try {
+            switch (kind) {
+                case ClusterMessages.TEXT:
+                    listener.onSendText(new String(payload, "UTF-8"));
+                    break;
+                case ClusterMessages.TEXT_PARTIAL:
+                    listener.onSendText(new String(payload, "UTF-8"), isLast);
+                    break;
+                case ClusterMessages.BINARY:
+                    listener.onSendBinary(payload);
+                    break;
+                case ClusterMessages.BINARY_PARTIAL:
+                    listener.onSendBinary(payload, isLast);
+                    break;
+                case ClusterMessages.PING:
+                    listener.onSendPing(payload);
+                    break;
+                case ClusterMessages.PONG:
+                    listener.onSendPong(payload);
+                    break;
+                default:
+                    return new IllegalArgumentException(String.format("Unknown message kind: %d.", kind));
+            }
+            return null;
+        } catch (Throwable t) {
+            return t;
+        }
+    }
+
+    /**
+     * @return error which occurred or {@code null} when the session was closed.
+     */
+    private static Throwable close(SessionEventListener listener, int closeCode, String reasonPhrase) {
+        try {
+            if (closeCode == -1) {
+                listener.onClose();
+            } else {
+                listener.onClose(new CloseReason(CloseReason.CloseCodes.getCloseCode(closeCode), reasonPhrase));
+            }
+            return null;
+        } catch (Throwable t) {
+            return t;
+        }
+    }
+
+    private SessionProperties getSessionProperties(String sessionId) {
+        SessionProperties properties = sessionProperties.get(sessionId);
+        if (properties == null) {
+            final SessionProperties newProperties = new SessionProperties(sessionId);
+            properties = sessionProperties.putIfAbsent(sessionId, newProperties);
+            if (properties == null) {
+                properties = newProperties;
+            }
+        }
+        return properties;
+    }
+
+    private UserProperties getUserProperties(String connectionId) {
+        UserProperties properties = userProperties.get(connectionId);
+        if (properties == null) {
+            final UserProperties newProperties = new UserProperties(connectionId);
+            properties = userProperties.putIfAbsent(connectionId, newProperties);
+            if (properties == null) {
+                properties = newProperties;
+            }
+        }
+        return properties;
+    }
+
+    private static <T> List<T> getListeners(ConcurrentMap<String, List<T>> listeners, String endpointPath) {
+        List<T> result = listeners.get(endpointPath);
+        if (result == null) {
+            final List<T> newList = new CopyOnWriteArrayList<T>();
+            result = listeners.putIfAbsent(endpointPath, newList);
+            if (result == null) {
+                result = newList;
+            }
+        }
+        return result;
+    }
+
+    private void sendToAll(byte[] record) {
+        for (Batch batch : nodes.values()) {
+            batch.add(record);
+        }
+    }
+
+    /**
+     * Send the state owned by the local node to a node which has just joined the cluster.
+     */
+    private void sendState(Batch batch) {
+        final Set<Object> connectionIds = new HashSet<Object>();
+        for (Map.Entry<String, LocalSession> entry : localSessions.entrySet()) {
+            final SessionProperties properties = sessionProperties.get(entry.getKey());
+            if (properties != null) {
+                properties.sendSnapshot(batch, entry.getValue().endpointPath);
+                connectionIds.add(properties.get(RemoteSession.DistributedMapKey.CONNECTION_ID));
+            }
+        }
+
+        for (Object connectionId : connectionIds) {
+            final UserProperties properties = userProperties.get(connectionId);
+            if (properties != null) {
+                properties.sendSnapshot(batch);
+            }
+        }
+    }
+
+    private void onRemoteSessionClosed(String sessionId, OwnedSession remoteSession) {
+        sessionProperties.remove(sessionId);
+        for (SessionListener listener : getListeners(sessionListeners, remoteSession.endpointPath)) {
+            try {
+                listener.onSessionClosed(sessionId);
+            } catch (Throwable t) {
+                LOGGER.log(Level.WARNING, "Session listener failed.", t);
+            }
+        }
+    }
+
+    /**
+     * Receives the data from the transport and applies them.
+     */
+    private class TransportReceiver implements ClusterTransport.Receiver {
+
+        @Override
+        public void onNodeJoined(String nodeId) {
+            final Batch batch = new Batch(nodeId);
+            nodes.put(nodeId, batch);
+            sendState(batch);
+        }
+
+        @Override
+        public void onNodeLeft(String nodeId) {
+            nodes.remove(nodeId);
+
+            for (Iterator<Map.Entry<String, OwnedSession>> it = remoteSessions.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, OwnedSession> entry = it.next();
+                if (entry.getValue().nodeId.equals(nodeId)) {
+                    it.remove();
+                    onRemoteSessionClosed(entry.getKey(), entry.getValue());
+                }
+            }
+
+            for (Map.Entry<Long, PendingRequest> entry : pendingRequests.entrySet()) {
+                if (entry.getValue().nodeId.equals(nodeId)) {
+                    completeRequest(entry.getKey(), String.format("Cluster node %s has left.", nodeId));
+                }
+            }
+
+            // sessions of the node are gone, so there is nobody to deliver the broadcast to.
+            for (PendingBroadcast broadcast : pendingBroadcasts.values()) {
+                broadcast.acknowledge(nodeId, null);
+            }
+        }
+
+        @Override
+        public void onReceived(final String nodeId, byte[] data) {
+            try {
+                ClusterMessages.decode(data, new RecordHandler(nodeId));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Malformed data received from cluster node %s.", nodeId), e);
+            }
+        }
+    }
+
+    /**
+     * Applies records received from one node.
+     */
+    private class RecordHandler implements ClusterMessages.Handler {
+
+        private final String nodeId;
+
+        RecordHandler(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public void onSessionOpened(String sessionId, String endpointPath, Map<String, Object> properties) {
+            final SessionProperties sessionProperties = getSessionProperties(sessionId);
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                final RemoteSession.DistributedMapKey key = SESSION_PROPERTY_KEYS.get(entry.getKey());
+                if (key != null) {
+                    sessionProperties.apply(key, entry.getValue(), false);
+                }
+            }
+
+            // session might have been already announced, when the node joined again.
+            if (remoteSessions.put(sessionId, new OwnedSession(nodeId, endpointPath)) == null) {
+                for (SessionListener listener : getListeners(sessionListeners, endpointPath)) {
+                    try {
+                        listener.onSessionOpened(sessionId);
+                    } catch (Throwable t) {
+                        LOGGER.log(Level.WARNING, "Session listener failed.", t);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onSessionClosed(String sessionId) {
+            final OwnedSession remoteSession = remoteSessions.remove(sessionId);
+            if (remoteSession != null) {
+                onRemoteSessionClosed(sessionId, remoteSession);
+            }
+        }
+
+        @Override
+        public void onSessionProperty(String sessionId, String key, Object value) {
+            final SessionProperties properties = sessionProperties.get(sessionId);
+            final RemoteSession.DistributedMapKey mapKey = SESSION_PROPERTY_KEYS.get(key);
+            if (properties != null && mapKey != null) {
+                properties.apply(mapKey, value, false);
+            }
+        }
+
+        @Override
+        public void onUserProperties(String connectionId, Map<String, Object> properties) {
+            final UserProperties userProperties = getUserProperties(connectionId);
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                userProperties.apply(entry.getKey(), entry.getValue(), false);
+            }
+        }
+
+        @Override
+        public void onUserProperty(String connectionId, String key, Object value, boolean removed) {
+            getUserProperties(connectionId).apply(key, value, removed);
+        }
+
+        @Override
+        public void onUserPropertiesDestroyed(String connectionId) {
+            userProperties.remove(connectionId);
+        }
+
+        @Override
+        public void onSend(long requestId, String sessionId, byte kind, boolean isLast, byte[] payload) {
+            final LocalSession localSession = localSessions.get(sessionId);
+            final Throwable error = localSession == null
+                    ? new IllegalStateException(String.format("Session %s is not open.", sessionId))
+                    : deliver(localSession.listener, kind, isLast, payload);
+            acknowledge(requestId, error);
+        }
+
+        @Override
+        public void onClose(long requestId, String sessionId, int closeCode, String reasonPhrase) {
+            final LocalSession localSession = localSessions.get(sessionId);
+            final Throwable error = localSession == null
+                    ? new IllegalStateException(String.format("Session %s is not open.", sessionId))
+                    : close(localSession.listener, closeCode, reasonPhrase);
+            acknowledge(requestId, error);
+        }
+
+        @Override
+        public void onAck(long requestId, String error) {
+            if (pendingRequests.containsKey(requestId)) {
+                completeRequest(requestId, error);
+            } else {
+                final PendingBroadcast broadcast = pendingBroadcasts.get(requestId);
+                if (broadcast != null) {
+                    broadcast.acknowledge(nodeId, error);
+                }
+            }
+        }
+
+        @Override
+        public void onBroadcast(String endpointPath, String text, long requestId) {
+            Throwable error = null;
+            for (BroadcastListener listener : getListeners(broadcastListeners, endpointPath)) {
+                try {
+                    listener.onBroadcast(text);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "Broadcast listener failed.", t);
+                    error = t;
+                }
+            }
+
+            if (requestId != 0) {
+                acknowledge(requestId, error);
+            }
+        }
+
+        @Override
+        public void onBroadcast(String endpointPath, byte[] data, long requestId) {
+            Throwable error = null;
+            for (BroadcastListener listener : getListeners(broadcastListeners, endpointPath)) {
+                try {
+                    listener.onBroadcast(data);
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "Broadcast listener failed.", t);
+                    error = t;
+                }
+            }
+
+            if (requestId != 0) {
+                acknowledge(requestId, error);
+            }
+        }
+
+        private void acknowledge(long requestId, Throwable error) {
+            final Batch batch = nodes.get(nodeId);
+            if (batch != null) {
+                batch.add(ClusterMessages.ack(requestId, error == null ? null : String.valueOf(error.getMessage())));
+            }
+        }
+    }
+
+    /**
+     * Records waiting to be sent to one node.
+     * <p/>
+     * The batch is handed over to the transport while holding the lock, so batches are never reordered.
+     */
+    private class Batch {
+
+        private final String nodeId;
+        private final List<Object> records = new ArrayList<Object>();
+        private final Map<String, BroadcastGroup> broadcasts = new HashMap<String, BroadcastGroup>();
+        private final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+
+        private int size = 0;
+        private boolean flushScheduled = false;
+
+        Batch(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        synchronized void add(byte[] record) {
+            records.add(record);
+            // broadcasts must not overtake records added before them.
+            broadcasts.clear();
+            added(record.length);
+        }
+
+        /**
+         * Add broadcast to the batch; it is merged with the previous broadcast to the same endpoint, unless other
+         * record was added in between.
+         */
+        synchronized void addBroadcast(String endpointPath, boolean text, long requestId, byte[] payload) {
+            BroadcastGroup group = broadcasts.get(endpointPath);
+            if (group == null) {
+                group = new BroadcastGroup(endpointPath);
+                broadcasts.put(endpointPath, group);
+                records.add(group);
+            }
+            group.texts.add(text);
+            group.requestIds.add(requestId);
+            group.payloads.add(payload);
+            added(payload.length);
+        }
+
+        synchronized void flush() {
+            flushScheduled = false;
+            if (records.isEmpty()) {
+                return;
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + 64);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                for (Object record : records) {
+                    if (record instanceof byte[]) {
+                        out.write((byte[]) record);
+                    } else {
+                        final BroadcastGroup group = (BroadcastGroup) record;
+                        ClusterMessages.writeBroadcastHeader(out, group.endpointPath, group.payloads.size());
+                        for (int i = 0; i < group.payloads.size(); i++) {
+                            ClusterMessages.writeBroadcastMessage(out, group.texts.get(i), group.requestIds.get(i),
+                                    group.payloads.get(i));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // ByteArrayOutputStream does not throw IOException.
+                throw new IllegalStateException(e);
+            }
+
+            records.clear();
+            broadcasts.clear();
+            size = 0;
+            transport.send(nodeId, bytes.toByteArray());
+        }
+
+        private void added(int length) {
+            size += length;
+            if (size >= BATCH_SIZE_THRESHOLD) {
+                flush();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                try {
+                    flusher.execute(flushTask);
+                } catch (RuntimeException e) {
+                    // context is shutting down.
+                    flushScheduled = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Broadcasts to one endpoint coalesced into one record.
+     */
+    private static class BroadcastGroup {
+
+        private final String endpointPath;
+        private final List<Boolean> texts = new ArrayList<Boolean>();
+        private final List<Long> requestIds = new ArrayList<Long>();
+        private final List<byte[]> payloads = new ArrayList<byte[]>();
+
+        BroadcastGroup(String endpointPath) {
+            this.endpointPath = endpointPath;
+        }
+    }
+
+    private static class LocalSession {
+
+        private final String endpointPath;
+        private final SessionEventListener listener;
+
+        LocalSession(String endpointPath, SessionEventListener listener) {
+            this.endpointPath = endpointPath;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Entry of the session routing cache.
+     */
+    private static class OwnedSession {
+
+        private final String nodeId;
+        private final String endpointPath;
+
+        OwnedSession(String nodeId, String endpointPath) {
+            this.nodeId = nodeId;
+            this.endpointPath = endpointPath;
+        }
+    }
+
+    private static class PendingRequest {
+
+        private final String nodeId;
+        private final SendHandler sendHandler;
+        private final TyrusFuture<Void> future = new TyrusFuture<Void>();
+
+        PendingRequest(String nodeId, SendHandler sendHandler) {
+            this.nodeId = nodeId;
+            this.sendHandler = sendHandler;
+        }
+
+        void complete(Throwable error) {
+            if (error == null) {
+                future.setResult(null);
+            } else {
+                future.setFailure(error);
+            }
+
+            if (sendHandler != null) {
+                sendHandler.onResult(error == null ? new SendResult() : new SendResult(error));
+            }
+        }
+    }
+
+    /**
+     * Broadcast waiting for acknowledgements of the nodes it was sent to.
+     */
+    private class PendingBroadcast {
+
+        private final long requestId;
+        private final Set<String> nodeIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final TyrusFuture<Void> future = new TyrusFuture<Void>();
+        private volatile String error = null;
+
+        PendingBroadcast(long requestId, Set<String> nodeIds) {
+            this.requestId = requestId;
+            this.nodeIds.addAll(nodeIds);
+            if (nodeIds.isEmpty()) {
+                future.setResult(null);
+            }
+        }
+
+        void acknowledge(String nodeId, String error) {
+            if (error != null) {
+                this.error = error;
+            }
+
+            if (nodeIds.remove(nodeId) && nodeIds.isEmpty()) {
+                pendingBroadcasts.remove(requestId);
+                if (this.error == null) {
+                    future.setResult(null);
+                } else {
+                    future.setFailure(new IOException(this.error));
+                }
+            }
+        }
+
+        void fail(String error) {
+            pendingBroadcasts.remove(requestId);
+            future.setFailure(new IOException(error));
+        }
+    }
+
+    /**
+     * Map replicating its modifications to other nodes.
+     * <p/>
+     * Modifications are replicated while holding the lock of the map, so the replicated changes are ordered same as
+     * the local ones. Collection views are read-only snapshots.
+     */
+    private abstract static class ReplicatedMap<K> implements Map<K, Object> {
+
+        private final Map<K, Object> map = new HashMap<K, Object>();
+
+        /**
+         * Called with the map lock held, when the map was modified locally.
+         */
+        abstract void replicate(K key, Object value, boolean removed);
+
+        /**
+         * Apply modification received from other node.
+         */
+        synchronized void apply(K key, Object value, boolean removed) {
+            if (removed) {
+                map.remove(key);
+            } else {
+                map.put(key, value);
+            }
+        }
+
+        synchronized Map<K, Object> snapshot() {
+            return new HashMap<K, Object>(map);
+        }
+
+        @Override
+        public synchronized int size() {
+            return map.size();
+        }
+
+        @Override
+        public synchronized boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public synchronized boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public synchronized boolean containsValue(Object value) {
+            return map.containsValue(value);
+        }
+
+        @Override
+        public synchronized Object get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public synchronized Object put(K key, Object value) {
+            final Object previous = map.put(key, value);
+            replicate(key, value, false);
+            return previous;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public synchronized Object remove(Object key) {
+            if (!map.containsKey(key)) {
+                return null;
+            }
+
+            final Object previous = map.remove(key);
+            replicate((K) key, null, true);
+            return previous;
+        }
+
+        @Override
+        public synchronized void putAll(Map<? extends K, ?> m) {
+            for (Map.Entry<? extends K, ?> entry : m.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public synchronized void clear() {
+            for (K key : new ArrayList<K>(map.keySet())) {
+                remove(key);
+            }
+        }
+
+        @Override
+        public synchronized Set<K> keySet() {
+            return Collections.unmodifiableSet(new HashSet<K>(map.keySet()));
+        }
+
+        @Override
+        public synchronized Collection<Object> values() {
+            return Collections.unmodifiableList(new ArrayList<Object>(map.values()));
+        }
+
+        @Override
+        public synchronized Set<Entry<K, Object>> entrySet() {
+            return Collections.unmodifiableMap(new HashMap<K, Object>(map)).entrySet();
+        }
+    }
+
+    /**
+     * Distributed session properties. Properties of a local session are replicated since the session is registered,
+     * see {@link #publish(String)}.
+     */
+    private class SessionProperties extends ReplicatedMap<RemoteSession.DistributedMapKey> {
+
+        private final String sessionId;
+        private boolean published = false;
+
+        SessionProperties(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        void replicate(RemoteSession.DistributedMapKey key, Object value, boolean removed) {
+            if (published) {
+                final byte[] record = ClusterMessages.sessionProperty(sessionId, key, value);
+                if (record != null) {
+                    sendToAll(record);
+                }
+            }
+        }
+
+        synchronized void publish(String endpointPath) {
+            published = true;
+            sendToAll(ClusterMessages.sessionOpened(sessionId, endpointPath, snapshot()));
+        }
+
+        synchronized void sendSnapshot(Batch batch, String endpointPath) {
+            batch.add(ClusterMessages.sessionOpened(sessionId, endpointPath, snapshot()));
+        }
+    }
+
+    /**
+     * Distributed user properties of a connection.
+     */
+    private class UserProperties extends ReplicatedMap<String> {
+
+        private final String connectionId;
+
+        UserProperties(String connectionId) {
+            this.connectionId = connectionId;
+        }
+
+        @Override
+        void replicate(String key, Object value, boolean removed) {
+            final byte[] record = ClusterMessages.userProperty(connectionId, key, value, removed);
+            if (record != null) {
+                sendToAll(record);
+            }
+        }
+
+        synchronized void sendSnapshot(Batch batch) {
+            batch.add(ClusterMessages.userProperties(connectionId, snapshot()));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.core.TyrusSession;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.DistributedSession;
+import org.glassfish.tyrus.server.Server;
+import org.glassfish.tyrus.test.tools.TestContainer;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests two servers sharing {@link TransportClusterContext}s connected by {@link InMemoryClusterTransport}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class ClusteredServersTest extends TestContainer {
+
+    @ServerEndpoint("/clusteredEndpoint")
+    public static class ClusteredEndpoint {
+
+        @OnMessage
+        public String onMessage(String message, Session session) throws Exception {
+            if (message.startsWith("broadcast:")) {
+                ((TyrusSession) session).broadcast(message.substring("broadcast:".length()));
+            } else if (message.startsWith("all:")) {
+                for (DistributedSession distributedSession : ((TyrusSession) session).getAllSessions()) {
+                    distributedSession.getBasicRemote().sendText(message.substring("all:".length()));
+                }
+            } else if (message.startsWith("futures:")) {
+                final Map<Session, Future<?>> futures =
+                        ((TyrusSession) session).broadcast(message.substring("futures:".length()));
+                for (Future<?> future : futures.values()) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+                ((TyrusSession) session).broadcastAsync("async").get(5, TimeUnit.SECONDS);
+                return "futures:" + futures.size();
+            } else if (message.equals("count")) {
+                return "count:" + ((TyrusSession) session).getAllSessions().size();
+            }
+            return null;
+        }
+    }
+
+    @ClientEndpoint
+    public static class RecordingClientEndpoint {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+        @OnMessage
+        public void onMessage(String message) {
+            messages.add(message);
+        }
+    }
+
+    @Test
+    public void testLocalFirstBroadcast() throws Exception {
+        test(true);
+    }
+
+    @Test
+    public void testBroadcastThroughCluster() throws Exception {
+        test(false);
+    }
+
+    private void test(boolean localFirstBroadcast) throws Exception {
+        final InMemoryClusterTransport.Group group = new InMemoryClusterTransport.Group();
+        final ClusterContext context1 =
+                new TransportClusterContext(new InMemoryClusterTransport(group), localFirstBroadcast);
+        final ClusterContext context2 =
+                new TransportClusterContext(new InMemoryClusterTransport(group), localFirstBroadcast);
+        final Server server1 = startServer(getPort(), context1);
+        Server server2 = null;
+
+        try {
+            server2 = startServer(getPort() + 1, context2);
+
+            final ClientManager client = createClient();
+            final RecordingClientEndpoint endpoint1 = new RecordingClientEndpoint();
+            final RecordingClientEndpoint endpoint2 = new RecordingClientEndpoint();
+            final Session session1 = client.connectToServer(endpoint1, getURI(ClusteredEndpoint.class));
+            setDefaultPort(getPort() + 1);
+            client.connectToServer(endpoint2, getURI(ClusteredEndpoint.class));
+
+            // wait until the session opened on the other server is replicated.
+            for (int i = 0; i < 100; i++) {
+                session1.getBasicRemote().sendText("count");
+                if ("count:2".equals(endpoint1.messages.poll(5, TimeUnit.SECONDS))) {
+                    break;
+                }
+                Thread.sleep(50);
+            }
+
+            session1.getBasicRemote().sendText("broadcast:broadcasted");
+            assertEquals("broadcasted", endpoint1.messages.poll(5, TimeUnit.SECONDS));
+            assertEquals("broadcasted", endpoint2.messages.poll(5, TimeUnit.SECONDS));
+
+            session1.getBasicRemote().sendText("all:sent");
+            assertEquals("sent", endpoint1.messages.poll(5, TimeUnit.SECONDS));
+            assertEquals("sent", endpoint2.messages.poll(5, TimeUnit.SECONDS));
+
+            // with local-first broadcast, futures of the remote sessions are returned as well and the futures are
+            // completed after the local sessions were sent the message.
+            session1.getBasicRemote().sendText("futures:broadcasted");
+            final List<String> received = new ArrayList<String>();
+            for (int i = 0; i < 3; i++) {
+                received.add(endpoint1.messages.poll(5, TimeUnit.SECONDS));
+            }
+            if (localFirstBroadcast) {
+                assertEquals(Arrays.asList("broadcasted", "async", "futures:2"), received);
+            } else {
+                assertEquals(new HashSet<String>(Arrays.asList("broadcasted", "async", "futures:0")),
+                        new HashSet<String>(received));
+            }
+            assertEquals("broadcasted", endpoint2.messages.poll(5, TimeUnit.SECONDS));
+            assertEquals("async", endpoint2.messages.poll(5, TimeUnit.SECONDS));
+        } finally {
+            stopServer(server2);
+            stopServer(server1);
+            context1.shutdown();
+            context2.shutdown();
+        }
+    }
+
+    private Server startServer(int port, ClusterContext clusterContext) throws Exception {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(ClusterContext.CLUSTER_CONTEXT, clusterContext);
+        final Server server = new Server(getHost(), port, "/e2e-test", properties, ClusteredEndpoint.class);
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TcpClusterTransport} on the loopback interface.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class TcpClusterTransportTest {
+
+    @Test
+    public void testSendAndLeave() throws Exception {
+        final TcpClusterTransport seed = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.<InetSocketAddress>emptyList());
+        final RecordingReceiver seedReceiver = new RecordingReceiver();
+        seed.start("seed", seedReceiver);
+
+        final TcpClusterTransport node = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.singletonList(seed.getLocalAddress()));
+        final RecordingReceiver nodeReceiver = new RecordingReceiver();
+
+        try {
+            node.start("node", nodeReceiver);
+
+            // the seed connects back to the node.
+            assertEquals("seed", nodeReceiver.joined.poll(5, TimeUnit.SECONDS));
+            assertEquals("node", seedReceiver.joined.poll(5, TimeUnit.SECONDS));
+
+            final int count = 1000;
+            for (int i = 0; i < count; i++) {
+                node.send("seed", new byte[]{(byte) i, 1});
+                seed.send("node", new byte[]{(byte) i, 2});
+            }
+            for (int i = 0; i < count; i++) {
+                assertArrayEquals(new byte[]{(byte) i, 1}, seedReceiver.received.poll(5, TimeUnit.SECONDS));
+                assertArrayEquals(new byte[]{(byte) i, 2}, nodeReceiver.received.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            node.shutdown();
+        }
+
+        try {
+            assertEquals("node", seedReceiver.left.poll(5, TimeUnit.SECONDS));
+        } finally {
+            seed.shutdown();
+        }
+    }
+
+    @Test
+    public void testClusterContext() throws Exception {
+        final TcpClusterTransport seedTransport = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.<InetSocketAddress>emptyList());
+        final TransportClusterContext seed = new TransportClusterContext(seedTransport);
+        final TransportClusterContext node = new TransportClusterContext(new TcpClusterTransport(
+                new InetSocketAddress("localhost", 0), Collections.singletonList(seedTransport.getLocalAddress())));
+
+        try {
+            final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+            final CountDownLatch joined = new CountDownLatch(1);
+            seed.registerBroadcastListener("/echo", new BroadcastListener() {
+                @Override
+                public void onBroadcast(String text) {
+                    messages.add(text);
+                }
+
+                @Override
+                public void onBroadcast(byte[] data) {
+                    if (data.length == 0) {
+                        joined.countDown();
+                    }
+                }
+            });
+
+            // broadcasts sent before the nodes know about each other are not delivered.
+            while (!joined.await(10, TimeUnit.MILLISECONDS)) {
+                node.broadcastBinary("/echo", new byte[0]);
+            }
+
+            for (int i = 0; i < 100; i++) {
+                node.broadcastText("/echo", "message " + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals("message " + i, messages.poll(5, TimeUnit.SECONDS));
+            }
+            assertTrue(messages.isEmpty());
+        } finally {
+            node.shutdown();
+            seed.shutdown();
+        }
+    }
+
+    @Test
+    public void testDiscovery() throws Exception {
+        final TcpClusterTransport seed = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.<InetSocketAddress>emptyList());
+        seed.start("seed", new RecordingReceiver());
+
+        final TcpClusterTransport node1 = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.singletonList(seed.getLocalAddress()));
+        final TcpClusterTransport node2 = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.singletonList(seed.getLocalAddress()));
+        final RecordingReceiver receiver1 = new RecordingReceiver();
+        final RecordingReceiver receiver2 = new RecordingReceiver();
+
+        try {
+            node1.start("node1", receiver1);
+            assertEquals("seed", receiver1.joined.poll(5, TimeUnit.SECONDS));
+            node2.start("node2", receiver2);
+
+            // nodes which are not seeds of each other find each other.
+            assertEquals("node2", receiver1.joined.poll(5, TimeUnit.SECONDS));
+            assertEquals(new HashSet<String>(Arrays.asList("seed", "node1")), poll(receiver2.joined, 2));
+
+            node1.send("node2", new byte[]{1});
+            node2.send("node1", new byte[]{2});
+            assertArrayEquals(new byte[]{1}, receiver2.received.poll(5, TimeUnit.SECONDS));
+            assertArrayEquals(new byte[]{2}, receiver1.received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            node2.shutdown();
+            node1.shutdown();
+            seed.shutdown();
+        }
+    }
+
+    @Test
+    public void testSeedAddresses() throws Exception {
+        // listens on all interfaces, advertises the loopback address.
+        final TcpClusterTransport seed = new TcpClusterTransport(new InetSocketAddress(0),
+                Collections.<InetSocketAddress>emptyList());
+        final RecordingReceiver seedReceiver = new RecordingReceiver();
+        seed.start("seed", seedReceiver);
+
+        final int port = seed.getLocalAddress().getPort();
+        final TcpClusterTransport node = new TcpClusterTransport(new InetSocketAddress("localhost", 0), Arrays.asList(
+                seed.getLocalAddress(), new InetSocketAddress("127.0.0.2", port)));
+        final RecordingReceiver nodeReceiver = new RecordingReceiver();
+
+        try {
+            node.start("node", nodeReceiver);
+            assertEquals("seed", nodeReceiver.joined.poll(5, TimeUnit.SECONDS));
+            assertEquals("node", seedReceiver.joined.poll(5, TimeUnit.SECONDS));
+
+            // seeds are retried every second; the node is connected only once and the connection is kept.
+            Thread.sleep(2500);
+            assertTrue(nodeReceiver.joined.isEmpty());
+            assertTrue(seedReceiver.joined.isEmpty());
+            assertTrue(nodeReceiver.left.isEmpty());
+            assertTrue(seedReceiver.left.isEmpty());
+
+            node.send("seed", new byte[]{1});
+            assertArrayEquals(new byte[]{1}, seedReceiver.received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            node.shutdown();
+            seed.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testBroadcastFromOtherThanSeed() throws Exception {
+        final TcpClusterTransport seedTransport = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                Collections.<InetSocketAddress>emptyList());
+        final TransportClusterContext seed = new TransportClusterContext(seedTransport);
+        final TransportClusterContext node1 = new TransportClusterContext(new TcpClusterTransport(
+                new InetSocketAddress("localhost", 0), Collections.singletonList(seedTransport.getLocalAddress())));
+        final TransportClusterContext node2 = new TransportClusterContext(new TcpClusterTransport(
+                new InetSocketAddress("localhost", 0), Collections.singletonList(seedTransport.getLocalAddress())));
+
+        try {
+            final BlockingQueue<String> seedMessages = new LinkedBlockingQueue<String>();
+            final BlockingQueue<String> node2Messages = new LinkedBlockingQueue<String>();
+            final CountDownLatch joined = new CountDownLatch(2);
+            seed.registerBroadcastListener("/echo", new RecordingListener(seedMessages, joined));
+            node2.registerBroadcastListener("/echo", new RecordingListener(node2Messages, joined));
+
+            // broadcasts sent before the nodes know about each other are not delivered.
+            while (!joined.await(10, TimeUnit.MILLISECONDS)) {
+                node1.broadcastBinary("/echo", new byte[0]);
+            }
+
+            for (int i = 0; i < 100; i++) {
+                node1.broadcastText("/echo", "message " + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals("message " + i, seedMessages.poll(5, TimeUnit.SECONDS));
+                assertEquals("message " + i, node2Messages.poll(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            node2.shutdown();
+            node1.shutdown();
+            seed.shutdown();
+        }
+    }
+
+    private static Set<String> poll(BlockingQueue<String> queue, int count) throws InterruptedException {
+        final Set<String> result = new HashSet<String>();
+        for (int i = 0; i < count; i++) {
+            final String element = queue.poll(5, TimeUnit.SECONDS);
+            if (element != null) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records received text broadcasts, counts down the latch when the first empty binary broadcast is received.
+     */
+    private static class RecordingListener implements BroadcastListener {
+
+        private final BlockingQueue<String> messages;
+        private final CountDownLatch joined;
+        private boolean reachable = false;
+
+        RecordingListener(BlockingQueue<String> messages, CountDownLatch joined) {
+            this.messages = messages;
+            this.joined = joined;
+        }
+
+        @Override
+        public void onBroadcast(String text) {
+            messages.add(text);
+        }
+
+        @Override
+        public void onBroadcast(byte[] data) {
+            if (data.length == 0 && !reachable) {
+                reachable = true;
+                joined.countDown();
+            }
+        }
+    }
+
+    private static class RecordingReceiver implements ClusterTransport.Receiver {
+
+        private final BlockingQueue<String> joined = new LinkedBlockingQueue<String>();
+        private final BlockingQueue<String> left = new LinkedBlockingQueue<String>();
+        private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<byte[]>();
+
+        @Override
+        public void onNodeJoined(String nodeId) {
+            joined.add(nodeId);
+        }
+
+        @Override
+        public void onNodeLeft(String nodeId) {
+            left.add(nodeId);
+        }
+
+        @Override
+        public void onReceived(String nodeId, byte[] data) {
+            received.add(data);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.core.cluster.ClusterContext;
+import org.glassfish.tyrus.core.cluster.RemoteSession;
+import org.glassfish.tyrus.core.cluster.SessionEventListener;
+import org.glassfish.tyrus.core.cluster.SessionListener;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link TransportClusterContext} with nodes connected by {@link InMemoryClusterTransport}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class TransportClusterContextTest {
+
+    private static final String ENDPOINT_PATH = "/echo";
+
+    private final InMemoryClusterTransport.Group group = new InMemoryClusterTransport.Group();
+    private final List<ClusterContext> contexts = new ArrayList<ClusterContext>();
+
+    @After
+    public void tearDown() {
+        for (ClusterContext context : contexts) {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void testSessionReplication() throws Exception {
+        final ClusterContext node1 = createNode();
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node2.registerSessionListener(ENDPOINT_PATH, sessionListener);
+
+        final String sessionId = registerSession(node1, "connection", new RecordingSessionEventListener());
+        assertEquals(sessionId, sessionListener.opened.poll(5, TimeUnit.SECONDS));
+
+        assertEquals(Collections.singleton(sessionId), node2.getRemoteSessionIds(ENDPOINT_PATH));
+        assertTrue(node1.getRemoteSessionIds(ENDPOINT_PATH).isEmpty());
+        assertTrue(node2.isSessionOpen(sessionId, ENDPOINT_PATH));
+        assertFalse(node2.isSessionOpen(sessionId, "/other"));
+
+        final Map<RemoteSession.DistributedMapKey, Object> replicated = node2.getDistributedSessionProperties(sessionId);
+        assertEquals("connection", replicated.get(RemoteSession.DistributedMapKey.CONNECTION_ID));
+        assertEquals(10L, replicated.get(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT));
+        assertTrue(replicated.containsKey(RemoteSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL));
+        assertNull(replicated.get(RemoteSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL));
+
+        node1.getDistributedSessionProperties(sessionId).put(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 20L);
+        node1.getDistributedUserProperties("connection").put("user", "value");
+        waitFor(replicated, RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 20L);
+        waitFor(node2.getDistributedUserProperties("connection"), "user", "value");
+
+        node1.removeSession(sessionId, ENDPOINT_PATH);
+        assertEquals(sessionId, sessionListener.closed.poll(5, TimeUnit.SECONDS));
+        assertTrue(node2.getRemoteSessionIds(ENDPOINT_PATH).isEmpty());
+    }
+
+    @Test
+    public void testSendRoutedToOwner() throws Exception {
+        final ClusterContext node1 = createNode();
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node2.registerSessionListener(ENDPOINT_PATH, sessionListener);
+
+        final RecordingSessionEventListener session = new RecordingSessionEventListener();
+        final String sessionId = registerSession(node1, "connection", session);
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        node2.sendText(sessionId, "text").get(5, TimeUnit.SECONDS);
+        node2.sendText(sessionId, "partial", false).get(5, TimeUnit.SECONDS);
+        node2.sendBinary(sessionId, new byte[]{1, 2}).get(5, TimeUnit.SECONDS);
+        node2.sendPing(sessionId, new byte[]{3}).get(5, TimeUnit.SECONDS);
+
+        final CountDownLatch handlerLatch = new CountDownLatch(1);
+        node2.sendText(sessionId, "handler", new SendHandler() {
+            @Override
+            public void onResult(SendResult result) {
+                if (result.isOK()) {
+                    handlerLatch.countDown();
+                }
+            }
+        });
+        assertTrue(handlerLatch.await(5, TimeUnit.SECONDS));
+
+        node2.close(sessionId, new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "bye")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("text:text", "text:partial:false", "binary:2", "ping:1", "text:handler", "close:1000:bye"),
+                session.events);
+    }
+
+    @Test
+    public void testSendFailure() throws Exception {
+        final ClusterContext node1 = createNode();
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node2.registerSessionListener(ENDPOINT_PATH, sessionListener);
+
+        final String sessionId = registerSession(node1, "connection", new RecordingSessionEventListener() {
+            @Override
+            public void onSendText(String message) throws IOException {
+                throw new IOException("Failed: " + message);
+            }
+        });
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        try {
+            node2.sendText(sessionId, "text").get(5, TimeUnit.SECONDS);
+            fail("Sending should have failed.");
+        } catch (ExecutionException e) {
+            assertEquals("Failed: text", e.getCause().getMessage());
+        }
+
+        try {
+            node2.sendText("unknown", "text").get(5, TimeUnit.SECONDS);
+            fail("Sending should have failed.");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        final ClusterContext node1 = createNode();
+        final ClusterContext node2 = createNode();
+        final ClusterContext node3 = createNode();
+        final RecordingBroadcastListener listener1 = new RecordingBroadcastListener();
+        final RecordingBroadcastListener listener2 = new RecordingBroadcastListener();
+        final RecordingBroadcastListener listener3 = new RecordingBroadcastListener();
+        final RecordingBroadcastListener otherEndpointListener = new RecordingBroadcastListener();
+        node1.registerBroadcastListener(ENDPOINT_PATH, listener1);
+        node2.registerBroadcastListener(ENDPOINT_PATH, listener2);
+        node3.registerBroadcastListener(ENDPOINT_PATH, listener3);
+        node3.registerBroadcastListener("/other", otherEndpointListener);
+
+        // wait until all nodes see each other.
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node3.registerSessionListener(ENDPOINT_PATH, sessionListener);
+        registerSession(node1, "connection1", new RecordingSessionEventListener());
+        registerSession(node2, "connection2", new RecordingSessionEventListener());
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        final int count = 1000;
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                node1.broadcastText(ENDPOINT_PATH, "message " + i);
+            } else {
+                node1.broadcastBinary(ENDPOINT_PATH, new byte[]{(byte) i});
+            }
+        }
+        node1.broadcastText("/other", "other");
+
+        // local listener is notified immediately.
+        assertEquals(count, listener1.messages.size());
+        for (RecordingBroadcastListener listener : Arrays.asList(listener2, listener3)) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 2 == 0 ? "message " + i : "binary " + (byte) i, listener.messages.poll(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals("other", otherEndpointListener.messages.poll(5, TimeUnit.SECONDS));
+        assertTrue(listener3.messages.isEmpty());
+    }
+
+    @Test
+    public void testLocalFirstBroadcast() throws Exception {
+        final TransportClusterContext node1 = (TransportClusterContext) createNode();
+        assertTrue(node1.isLocalFirstBroadcast());
+        assertTrue(node1.broadcastTextToOtherNodes(ENDPOINT_PATH, "alone").isDone());
+
+        final ClusterContext node2 = createNode();
+        final ClusterContext node3 = createNode();
+        final RecordingBroadcastListener listener1 = new RecordingBroadcastListener();
+        final RecordingBroadcastListener listener2 = new RecordingBroadcastListener();
+        final RecordingBroadcastListener listener3 = new RecordingBroadcastListener();
+        node1.registerBroadcastListener(ENDPOINT_PATH, listener1);
+        node2.registerBroadcastListener(ENDPOINT_PATH, listener2);
+        node3.registerBroadcastListener(ENDPOINT_PATH, listener3);
+
+        // wait until all nodes see each other.
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(ENDPOINT_PATH, sessionListener);
+        registerSession(node2, "connection2", new RecordingSessionEventListener());
+        registerSession(node3, "connection3", new RecordingSessionEventListener());
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        node1.broadcastTextToOtherNodes(ENDPOINT_PATH, "text").get(5, TimeUnit.SECONDS);
+        node1.broadcastBinaryToOtherNodes(ENDPOINT_PATH, new byte[]{1}).get(5, TimeUnit.SECONDS);
+
+        // delivered before the acknowledgement, not delivered back to the origin.
+        for (RecordingBroadcastListener listener : Arrays.asList(listener2, listener3)) {
+            assertEquals(Arrays.asList("text", "binary 1"), new ArrayList<String>(listener.messages));
+        }
+        assertTrue(listener1.messages.isEmpty());
+    }
+
+    @Test
+    public void testLocalFirstBroadcastNodeLeft() throws Exception {
+        final TransportClusterContext node1 = (TransportClusterContext) createNode();
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node1.registerSessionListener(ENDPOINT_PATH, sessionListener);
+        registerSession(node2, "connection", new RecordingSessionEventListener());
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        final CountDownLatch broadcastStarted = new CountDownLatch(1);
+        final CountDownLatch broadcastBlocked = new CountDownLatch(1);
+        node2.registerBroadcastListener(ENDPOINT_PATH, new RecordingBroadcastListener() {
+            @Override
+            public void onBroadcast(String text) {
+                broadcastStarted.countDown();
+                try {
+                    broadcastBlocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final Future<Void> future = node1.broadcastTextToOtherNodes(ENDPOINT_PATH, "text");
+        assertTrue(broadcastStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+
+        node2.shutdown();
+        contexts.remove(node2);
+        future.get(5, TimeUnit.SECONDS);
+        broadcastBlocked.countDown();
+    }
+
+    @Test
+    public void testNodeJoinedLater() throws Exception {
+        final ClusterContext node1 = createNode();
+        final String sessionId = registerSession(node1, "connection", new RecordingSessionEventListener());
+        node1.getDistributedUserProperties("connection").put("user", "value");
+
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node2.registerSessionListener(ENDPOINT_PATH, sessionListener);
+
+        assertEquals(sessionId, sessionListener.opened.poll(5, TimeUnit.SECONDS));
+        assertEquals(10L, node2.getDistributedSessionProperties(sessionId).get(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT));
+        waitFor(node2.getDistributedUserProperties("connection"), "user", "value");
+    }
+
+    @Test
+    public void testNodeLeft() throws Exception {
+        final ClusterContext node1 = createNode();
+        final ClusterContext node2 = createNode();
+        final RecordingSessionListener sessionListener = new RecordingSessionListener();
+        node2.registerSessionListener(ENDPOINT_PATH, sessionListener);
+
+        final CountDownLatch sendStarted = new CountDownLatch(1);
+        final CountDownLatch sendBlocked = new CountDownLatch(1);
+        final String sessionId = registerSession(node1, "connection", new RecordingSessionEventListener() {
+            @Override
+            public void onSendText(String message) throws IOException {
+                sendStarted.countDown();
+                try {
+                    sendBlocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        sessionListener.opened.poll(5, TimeUnit.SECONDS);
+
+        final AtomicReference<SendResult> result = new AtomicReference<SendResult>();
+        final CountDownLatch resultLatch = new CountDownLatch(1);
+        node2.sendText(sessionId, "text", new SendHandler() {
+            @Override
+            public void onResult(SendResult sendResult) {
+                result.set(sendResult);
+                resultLatch.countDown();
+            }
+        });
+        assertTrue(sendStarted.await(5, TimeUnit.SECONDS));
+
+        node1.shutdown();
+        contexts.remove(node1);
+
+        assertEquals(sessionId, sessionListener.closed.poll(5, TimeUnit.SECONDS));
+        assertTrue(node2.getRemoteSessionIds(ENDPOINT_PATH).isEmpty());
+        assertTrue(resultLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(result.get().isOK());
+        sendBlocked.countDown();
+    }
+
+    private ClusterContext createNode() throws IOException {
+        final ClusterContext context = new TransportClusterContext(new InMemoryClusterTransport(group));
+        contexts.add(context);
+        return context;
+    }
+
+    private static String registerSession(ClusterContext node, String connectionId, SessionEventListener listener) {
+        final String sessionId = node.createSessionId();
+        final Map<RemoteSession.DistributedMapKey, Object> properties = node.getDistributedSessionProperties(sessionId);
+        properties.put(RemoteSession.DistributedMapKey.NEGOTIATED_SUBPROTOCOL, null);
+        properties.put(RemoteSession.DistributedMapKey.MAX_IDLE_TIMEOUT, 10L);
+        properties.put(RemoteSession.DistributedMapKey.CONNECTION_ID, connectionId);
+        node.getDistributedUserProperties(connectionId);
+        node.registerSession(sessionId, ENDPOINT_PATH, listener);
+        return sessionId;
+    }
+
+    private static void waitFor(Map<?, Object> map, Object key, Object value) throws InterruptedException {
+        for (int i = 0; i < 500 && !value.equals(map.get(key)); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(value, map.get(key));
+    }
+
+    private static class RecordingSessionListener implements SessionListener {
+
+        private final BlockingQueue<String> opened = new LinkedBlockingQueue<String>();
+        private final BlockingQueue<String> closed = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onSessionOpened(String sessionId) {
+            opened.add(sessionId);
+        }
+
+        @Override
+        public void onSessionClosed(String sessionId) {
+            closed.add(sessionId);
+        }
+    }
+
+    private static class RecordingBroadcastListener implements BroadcastListener {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void onBroadcast(String text) {
+            messages.add(text);
+        }
+
+        @Override
+        public void onBroadcast(byte[] data) {
+            messages.add("binary " + data[0]);
+        }
+    }
+
+    private static class RecordingSessionEventListener extends SessionEventListener {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        RecordingSessionEventListener() {
+            super(null);
+        }
+
+        @Override
+        public void onSendText(String message) throws IOException {
+            events.add("text:" + message);
+        }
+
+        @Override
+        public void onSendText(String message, boolean isLast) throws IOException {
+            events.add("text:" + message + ":" + isLast);
+        }
+
+        @Override
+        public void onSendBinary(byte[] message) throws IOException {
+            events.add("binary:" + message.length);
+        }
+
+        @Override
+        public void onSendPing(byte[] payload) throws IOException {
+            events.add("ping:" + payload.length);
+        }
+
+        @Override
+        public void onClose(CloseReason closeReason) throws IOException {
+            events.add("close:" + closeReason.getCloseCode().getCode() + ":" + closeReason.getReasonPhrase());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * {@link CompressionPolicy} which skips small messages and stops compressing connections sending incompressible data.
+ * <p/>
+ * Messages with payload shorter than {@code minSize} are not compressed. After {@code sampleSize} bytes have been
+ * compressed for a connection, the compression is disabled for the rest of the connection when the achieved ratio
+ * of compressed and uncompressed length is higher than {@code maxCompressionRatio} (already compressed images,
+ * encrypted data and similar).
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class AdaptiveCompressionPolicy implements CompressionPolicy {
+
+    /**
+     * Default minimal payload length of compressed messages.
+     */
+    public static final int DEFAULT_MIN_SIZE = 64;
+
+    /**
+     * Default maximal compression ratio.
+     */
+    public static final double DEFAULT_MAX_COMPRESSION_RATIO = 0.9;
+
+    /**
+     * Default number of bytes compressed before the compression ratio is evaluated.
+     */
+    public static final long DEFAULT_SAMPLE_SIZE = 16 * 1024;
+
+    private final int minSize;
+    private final double maxCompressionRatio;
+    private final long sampleSize;
+
+    /**
+     * Create policy with default values.
+     */
+    public AdaptiveCompressionPolicy() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_COMPRESSION_RATIO, DEFAULT_SAMPLE_SIZE);
+    }
+
+    /**
+     * Create policy.
+     *
+     * @param minSize             minimal payload length of compressed messages. Shorter messages are sent
+     *                            uncompressed.
+     * @param maxCompressionRatio maximal ratio of compressed and uncompressed length. Compression is disabled for
+     *                            connections with higher ratio.
+     * @param sampleSize          number of bytes compressed before the compression ratio is evaluated.
+     */
+    public AdaptiveCompressionPolicy(int minSize, double maxCompressionRatio, long sampleSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Invalid minimal size: " + minSize);
+        }
+        if (maxCompressionRatio <= 0) {
+            throw new IllegalArgumentException("Invalid compression ratio: " + maxCompressionRatio);
+        }
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Invalid sample size: " + sampleSize);
+        }
+
+        this.minSize = minSize;
+        this.maxCompressionRatio = maxCompressionRatio;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public boolean isCompressionEnabled(CompressionStatistics statistics) {
+        return statistics.getUncompressedBytes() < sampleSize
+                || statistics.getCompressionRatio() <= maxCompressionRatio;
+    }
+
+    @Override
+    public boolean shouldCompress(Frame frame) {
+        return frame.getPayloadLength() >= minSize;
+    }
+}
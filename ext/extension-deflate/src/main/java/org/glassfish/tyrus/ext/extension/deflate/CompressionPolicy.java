@@ -0,0 +1,75 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import org.glassfish.tyrus.core.frame.Frame;
+
+/**
+ * Decides which outgoing messages are compressed by {@link PerMessageDeflateExtension}.
+ * <p/>
+ * Messages which are not compressed are sent with RSV1 bit cleared, as allowed by RFC 7692. The decision is made once
+ * per message (for its first frame); continuation frames follow the decision.
+ * <p/>
+ * The decision is split into a per-connection part ({@link #isCompressionEnabled(CompressionStatistics)}) and
+ * a per-message part ({@link #shouldCompress(Frame)}), so connections for which the first one returns the same value
+ * can share compressed broadcast messages.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ * @see AdaptiveCompressionPolicy
+ */
+public interface CompressionPolicy {
+
+    /**
+     * Decide whether messages sent over a connection should be compressed.
+     *
+     * @param statistics compression statistics of outgoing messages of the connection.
+     * @return {@code true} if messages can be compressed.
+     */
+    boolean isCompressionEnabled(CompressionStatistics statistics);
+
+    /**
+     * Decide whether a message should be compressed. Must depend only on the passed frame.
+     *
+     * @param frame first frame of the message.
+     * @return {@code true} if the message should be compressed.
+     */
+    boolean shouldCompress(Frame frame);
+}
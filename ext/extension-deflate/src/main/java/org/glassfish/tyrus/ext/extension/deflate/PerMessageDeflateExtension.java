@@ -40,211 +40,553 @@
 
 package org.glassfish.tyrus.ext.extension.deflate;
 
-import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 
-import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.core.extension.SharedProcessingExtension;
 import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.monitoring.MessageEventListener;
 
 /**
  * Compression Extensions for WebSocket
- * draft-ietf-hybi-permessage-compression-15
+ * RFC 7692
  * <p/>
- * http://tools.ietf.org/html/draft-ietf-hybi-permessage-compression-15
+ * http://tools.ietf.org/html/rfc7692
  * <p/>
+ * Supports negotiation of {@code server_no_context_takeover}, {@code client_no_context_takeover},
+ * {@code server_max_window_bits} and {@code client_max_window_bits} parameters. Compression parameters and server
+ * policy can be configured using {@link Builder}:
+ * <pre>
+ * PerMessageDeflateExtension.builder()
+ *         .compressionLevel(Deflater.BEST_SPEED)
+ *         .serverNoContextTakeover(true)
+ *         .build();
+ * </pre>
+ * <p/>
+ * When no context takeover is used for a direction, {@link Deflater}/{@link Inflater} instance is borrowed from a
+ * bounded pool only for the time needed to process one message, so idle connections don't hold compression state.
+ * Messages sent with no context takeover don't depend on connection state, so broadcasted message is compressed only
+ * once (see {@link SharedProcessingExtension}); statistics and listeners of all the sessions sharing the compressed
+ * frame are updated.
+ * <p/>
+ * Messages which are compressed are chosen by {@link CompressionPolicy}; by default {@link AdaptiveCompressionPolicy}
+ * is used, so small messages and connections sending incompressible data are not compressed. Compressed and
+ * uncompressed lengths are reported to {@link MessageEventListener} of the session (when present).
+ * <p/>
+ * Payloads are compressed and decompressed in chunks directly to a growable output array, which is then used as the
+ * payload of the resulting frame. Decompressed length of a message is limited by the incoming buffer size of the
+ * connection ({@link TyrusWebSocketEngine#INCOMING_BUFFER_SIZE}); frames exceeding the limit are not decompressed and
+ * the connection is closed.
+ * <p/>
+ * {@code java.util.zip} does not allow to limit the size of LZ77 window used by {@link Deflater}, so offers containing
+ * {@code server_max_window_bits} lower than 15 are declined.
  * <p/>
  * <pre>TODO:
- * - parameters (window sizes, context takeovers).
  * - context (some utility methods to get the typed params - T getParam(Class<T>))
  * </pre>
  *
  * @author Pavel Bucek (pavel.bucek at oracle.com)
  */
-public class PerMessageDeflateExtension implements ExtendedExtension {
+public class PerMessageDeflateExtension implements SharedProcessingExtension {
+
+    static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+    private static final int MIN_WINDOW_BITS = 8;
+    private static final int MAX_WINDOW_BITS = 15;
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_POOLED_OUTPUT_LENGTH = 256 * 1024;
 
-    private static final Pool<byte[]> BYTE_ARRAY_POOL = new Pool<byte[]>() {
+    // frame payloads are read-only buffers, compressor input is copied to per-thread chunk.
+    private static final ThreadLocal<byte[]> INPUT_CHUNK = new ThreadLocal<byte[]>() {
         @Override
-        byte[] create() {
-            return new byte[8192];
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
         }
     };
 
-    private static final String INFLATER = PerMessageDeflateExtension.class.getName() + ".INFLATER";
-    private static final String DEFLATER = PerMessageDeflateExtension.class.getName() + ".DEFLATER";
+    // per-thread output buffer, kept only when it is not longer than MAX_POOLED_OUTPUT_LENGTH.
+    private static final ThreadLocal<byte[]> OUTPUT_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    private static final String STATE = PerMessageDeflateExtension.class.getName() + ".STATE";
 
     private static final Logger LOGGER = Logger.getLogger(PerMessageDeflateExtension.class.getName());
     private static final boolean DEBUG = LOGGER.isLoggable(Level.FINE);
 
     private static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
 
+    private final int compressionLevel;
+    private final int compressionStrategy;
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final int clientMaxWindowBits;
+    private final CompressionPolicy compressionPolicy;
+    private final CoderPool<Deflater> deflaterPool;
+    private final CoderPool<Inflater> inflaterPool;
+
+    /**
+     * Create extension with default configuration.
+     * <p/>
+     * Uses the best compression, {@link AdaptiveCompressionPolicy} with default values and context takeover in both
+     * directions (unless the peer requests otherwise).
+     */
+    public PerMessageDeflateExtension() {
+        this(new Builder());
+    }
+
+    private PerMessageDeflateExtension(Builder builder) {
+        this.compressionLevel = builder.compressionLevel;
+        this.compressionStrategy = builder.compressionStrategy;
+        this.serverNoContextTakeover = builder.serverNoContextTakeover;
+        this.clientNoContextTakeover = builder.clientNoContextTakeover;
+        this.clientMaxWindowBits = builder.clientMaxWindowBits;
+        this.compressionPolicy = builder.compressionPolicy;
+
+        this.deflaterPool = new CoderPool<Deflater>(builder.coderPoolSize) {
+            @Override
+            Deflater create() {
+                return createDeflater();
+            }
+
+            @Override
+            void reset(Deflater deflater) {
+                deflater.reset();
+            }
+
+            @Override
+            void end(Deflater deflater) {
+                deflater.end();
+            }
+        };
+
+        this.inflaterPool = new CoderPool<Inflater>(builder.coderPoolSize) {
+            @Override
+            Inflater create() {
+                return new Inflater(true);
+            }
+
+            @Override
+            void reset(Inflater inflater) {
+                inflater.reset();
+            }
+
+            @Override
+            void end(Inflater inflater) {
+                inflater.end();
+            }
+        };
+    }
+
+    /**
+     * Get new {@link Builder} instance.
+     *
+     * @return new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     @Override
     public Frame processIncoming(ExtensionContext context, Frame frame) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
+        final State state = (State) context.getProperties().get(STATE);
 
         if (DEBUG) {
             LOGGER.fine("Incoming frame: " + frame);
         }
 
-        if (frame.isRsv1() && !frame.isControlFrame()) {
-            // Decompress the bytes
-            final int payloadLength = (int) frame.getPayloadLength();
+        if (state == null || !frame.isRsv1() || frame.isControlFrame()) {
+            return frame;
+        }
 
-            List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
-            int wholeResultLength = 0;
+        final Frame result = decompress(state, frame, getIncomingBufferSize(context));
 
-            int tmp = processCompressed(decompresser, frame.getPayloadData(), payloadLength, wholeResult);
-            if (tmp == -1) {
-                return frame;
-            } else {
-                wholeResultLength += tmp;
+        if (result != frame) {
+            final MessageEventListener messageEventListener = getMessageEventListener(context);
+            if (messageEventListener != null) {
+                messageEventListener.onFrameDecompressed(frame.getPayloadLength(), result.getPayloadLength());
             }
+        }
+
+        return result;
+    }
+
+    private Frame decompress(State state, Frame frame, int maxLength) {
+        if (!state.incomingNoContextTakeover) {
+            return inflate(state.inflater, frame, state, maxLength);
+        }
 
-            tmp = processCompressed(decompresser, TAIL, 4, wholeResult);
-            if (tmp == -1) {
-                return frame;
+        final boolean messageStart = frame.getOpcode() != 0;
+        Inflater inflater = state.inflater;
+        if (messageStart && inflater != null) {
+            // previous message was not finished.
+            inflaterPool.recycle(inflater);
+            inflater = null;
+        }
+
+        if (inflater == null) {
+            inflater = inflaterPool.take();
+        }
+
+        try {
+            return inflate(inflater, frame, state, maxLength);
+        } finally {
+            if (frame.isFin()) {
+                state.inflater = null;
+                inflaterPool.recycle(inflater);
             } else {
-                wholeResultLength += tmp;
+                // fragmented message, keep the inflater until the last frame.
+                state.inflater = inflater;
             }
+        }
+    }
 
-            byte[] completeResult = new byte[wholeResultLength];
-            wholeResultLength = 0;
-            for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
-                tmp = partialResult.getLength();
-                final byte[] result = partialResult.getResult();
-                System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
-                BYTE_ARRAY_POOL.recycle(result);
-                wholeResultLength += tmp;
+    private Frame inflate(Inflater decompresser, Frame frame, State state, int maxLength) {
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        final int messageLength = frame.getOpcode() != 0 ? 0 : state.inflatedMessageLength;
+        final OutputBuffer output = new OutputBuffer(maxLength - messageLength);
+
+        try {
+            final byte[] chunk = INPUT_CHUNK.get();
+            while (payload.hasRemaining()) {
+                final int length = Math.min(chunk.length, payload.remaining());
+                payload.get(chunk, 0, length);
+                inflate(decompresser, chunk, length, output);
             }
 
-            return Frame.builder(frame).payloadData(completeResult).rsv1(false).build();
-        } else {
+            inflate(decompresser, TAIL, TAIL.length, output);
+        } catch (DataFormatException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
             return frame;
         }
+
+        state.inflatedMessageLength = messageLength + output.length;
+        return Frame.builder(frame).payloadData(output.toByteArray(output.length)).rsv1(false).build();
     }
 
-    private int processCompressed(Inflater decompresser, byte[] compressed, int length, List<PartialResultWithLength<byte[]>> partialResults) {
+    private static void inflate(Inflater decompresser, byte[] compressed, int length, OutputBuffer output)
+            throws DataFormatException {
         decompresser.setInput(compressed, 0, length);
-        int decompressedLength = 0;
-        do {
-            byte[] result = BYTE_ARRAY_POOL.take();
-            int partialResultLength;
-            try {
-                partialResultLength = decompresser.inflate(result);
-            } catch (DataFormatException e) {
-                LOGGER.log(Level.INFO, e.getMessage(), e);
-                return -1;
-            }
 
-            if (partialResultLength != 0) {
-                partialResults.add(new PartialResultWithLength<byte[]>(partialResultLength, result));
-                decompressedLength += partialResultLength;
-            } else {
-                BYTE_ARRAY_POOL.recycle(result);
+        while (true) {
+            output.ensureSpace();
+            final int inflated = decompresser.inflate(output.data, output.length, output.data.length - output.length);
+            output.length += inflated;
+            output.checkLength();
+
+            if (output.length < output.data.length && (decompresser.needsInput() || decompresser.finished())) {
+                // all input processed and no output is pending.
+                return;
             }
-        } while (decompresser.getRemaining() > 0);
 
-        return decompressedLength;
+            if (inflated == 0 && output.length < output.data.length) {
+                throw new DataFormatException("Inflater does not make progress (preset dictionary is not supported).");
+            }
+        }
     }
 
     @Override
     public Frame processOutgoing(ExtensionContext context, Frame frame) {
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+        final State state = (State) context.getProperties().get(STATE);
 
         if (DEBUG) {
             LOGGER.fine("Outgoing frame: " + frame);
         }
 
-        if (!frame.isControlFrame()) {
+        if (state == null || frame.isControlFrame()) {
+            return frame;
+        }
 
-            List<PartialResultWithLength<byte[]>> wholeResult = new ArrayList<PartialResultWithLength<byte[]>>();
-            int wholeResultLength = 0;
+        final boolean messageStart = frame.getOpcode() != 0;
+        final boolean compress;
+        if (messageStart) {
+            compress = compressionPolicy.isCompressionEnabled(state.statistics) && compressionPolicy.shouldCompress(frame);
+            if (!frame.isFin()) {
+                // continuation frames have to follow the decision.
+                state.compressMessage = compress;
+            }
+        } else {
+            compress = state.compressMessage;
+        }
 
-            // Compress the bytes
-            final int payloadLength = (int) frame.getPayloadLength();
-            compresser.setInput(frame.getPayloadData(), 0, payloadLength);
+        if (!compress) {
+            return frame;
+        }
 
-            int compressedDataLength;
-            do {
-                byte[] output = BYTE_ARRAY_POOL.take();
-                compressedDataLength = compresser.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+        final Frame result = compress(state, frame, messageStart);
+        onFrameCompressed(context, state, frame, result);
 
-                if (compressedDataLength > 0) {
-                    wholeResult.add(new PartialResultWithLength<byte[]>(compressedDataLength, output));
-                    wholeResultLength += compressedDataLength;
-                } else {
-                    BYTE_ARRAY_POOL.recycle(output);
-                }
-            } while (compressedDataLength > 0);
-
-            byte[] completeResult = new byte[wholeResultLength];
-            wholeResultLength = 0;
-            for (PartialResultWithLength<byte[]> partialResult : wholeResult) {
-                int tmp = partialResult.getLength();
-                final byte[] result = partialResult.getResult();
-                System.arraycopy(result, 0, completeResult, wholeResultLength, tmp);
-                BYTE_ARRAY_POOL.recycle(result);
-                wholeResultLength += tmp;
+        return result;
+    }
+
+    @Override
+    public void onSharedOutgoing(ExtensionContext context, Frame frame, Frame processed) {
+        final State state = (State) context.getProperties().get(STATE);
+
+        // frame is returned unchanged when it is not compressed.
+        if (state != null && frame != processed) {
+            onFrameCompressed(context, state, frame, processed);
+        }
+    }
+
+    private static void onFrameCompressed(ExtensionContext context, State state, Frame frame, Frame result) {
+        state.statistics.update(frame.getPayloadLength(), result.getPayloadLength());
+        final MessageEventListener messageEventListener = getMessageEventListener(context);
+        if (messageEventListener != null) {
+            messageEventListener.onFrameCompressed(frame.getPayloadLength(), result.getPayloadLength());
+        }
+    }
+
+    private Frame compress(State state, Frame frame, boolean messageStart) {
+        if (!state.outgoingNoContextTakeover) {
+            return deflate(state.deflater, frame);
+        }
+
+        if (messageStart && frame.isFin()) {
+            // whole message; context is not modified, so more threads (broadcast) can process messages at once.
+            final Deflater deflater = deflaterPool.take();
+            try {
+                return deflate(deflater, frame);
+            } finally {
+                deflaterPool.recycle(deflater);
             }
+        }
+
+        Deflater deflater = state.deflater;
+        if (messageStart && deflater != null) {
+            // previous message was not finished.
+            deflaterPool.recycle(deflater);
+            deflater = null;
+        }
 
-            boolean strip = false;
-            if (completeResult[completeResult.length - 4] == TAIL[0] &&
-                    completeResult[completeResult.length - 3] == TAIL[1] &&
-                    completeResult[completeResult.length - 2] == TAIL[2] &&
-                    completeResult[completeResult.length - 1] == TAIL[3]
-                    ) {
-                strip = true;
+        if (deflater == null) {
+            deflater = deflaterPool.take();
+        }
+
+        try {
+            return deflate(deflater, frame);
+        } finally {
+            if (frame.isFin()) {
+                state.deflater = null;
+                deflaterPool.recycle(deflater);
+            } else {
+                // fragmented message, keep the deflater until the last frame.
+                state.deflater = deflater;
             }
+        }
+    }
 
-            return Frame.builder(frame).payloadData(completeResult).payloadLength(strip ? completeResult.length - 4 : completeResult.length).rsv1(true).build();
-        } else {
-            return frame;
+    private Frame deflate(Deflater compresser, Frame frame) {
+        final ByteBuffer payload = frame.getPayloadBuffer();
+        final OutputBuffer output = new OutputBuffer(Integer.MAX_VALUE);
+
+        final byte[] chunk = INPUT_CHUNK.get();
+        while (payload.hasRemaining()) {
+            final int length = Math.min(chunk.length, payload.remaining());
+            payload.get(chunk, 0, length);
+            compresser.setInput(chunk, 0, length);
+
+            while (!compresser.needsInput()) {
+                output.ensureSpace();
+                output.length += compresser.deflate(output.data, output.length, output.data.length - output.length, Deflater.NO_FLUSH);
+            }
         }
+
+        // flush; output buffer not filled completely means that all pending data were written.
+        do {
+            output.ensureSpace();
+            output.length += compresser.deflate(output.data, output.length, output.data.length - output.length, Deflater.SYNC_FLUSH);
+        } while (output.length == output.data.length);
+
+        final byte[] data = output.data;
+        int length = output.length;
+        if (length >= 4 &&
+                data[length - 4] == TAIL[0] &&
+                data[length - 3] == TAIL[1] &&
+                data[length - 2] == TAIL[2] &&
+                data[length - 1] == TAIL[3]
+                ) {
+            length -= 4;
+        }
+
+        return Frame.builder(frame).payloadData(output.toByteArray(length)).rsv1(true).build();
     }
 
-    private void init(ExtensionContext context) {
-        // TODO: configurable compression level
-        Deflater compresser = new Deflater(9, true);
-        Inflater decompresser = new Inflater(true);
+    private Deflater createDeflater() {
+        Deflater compresser = new Deflater(compressionLevel, true);
+        compresser.setStrategy(compressionStrategy);
+        return compresser;
+    }
+
+    private void init(ExtensionContext context, boolean outgoingNoContextTakeover, boolean incomingNoContextTakeover) {
+        final State state = new State(outgoingNoContextTakeover, incomingNoContextTakeover);
 
-        compresser.setStrategy(Deflater.DEFAULT_STRATEGY);
+        // coders for directions with context takeover are kept for the whole lifetime of the connection.
+        if (!outgoingNoContextTakeover) {
+            state.deflater = createDeflater();
+        }
+        if (!incomingNoContextTakeover) {
+            state.inflater = new Inflater(true);
+        }
 
-        context.getProperties().put(INFLATER, decompresser);
-        context.getProperties().put(DEFLATER, compresser);
+        context.getProperties().put(STATE, state);
     }
 
+    /**
+     * Negotiate parameters offered by the client.
+     * <p/>
+     * The offer is declined when it contains unknown, duplicate or invalid parameters or when it limits the window
+     * size used for compressing messages sent by the server ({@code server_max_window_bits} lower than 15).
+     *
+     * @param context             extension context.
+     * @param requestedParameters parameters offered by the client.
+     * @return parameters to be present in handshake response or {@code null} when the offer is declined.
+     */
     @Override
     public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-        init(context);
-        return Collections.<Parameter>emptyList();
+        boolean serverNoContextTakeover = this.serverNoContextTakeover;
+        boolean clientNoContextTakeover = this.clientNoContextTakeover;
+        // client supports client_max_window_bits; value is the upper bound client will use.
+        int clientWindowBits = -1;
+
+        if (requestedParameters != null) {
+            final Set<String> names = new HashSet<String>();
+            for (Parameter parameter : requestedParameters) {
+                final String name = parameter.getName();
+                if (!names.add(name)) {
+                    return decline("duplicate parameter " + name);
+                }
+
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    serverNoContextTakeover = true;
+                } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    // client won't use context takeover, confirming it allows to release the inflater between messages.
+                    clientNoContextTakeover = true;
+                } else if (SERVER_MAX_WINDOW_BITS.equals(name)) {
+                    final int windowBits = parseWindowBits(parameter.getValue());
+                    if (windowBits == -1) {
+                        return decline("invalid value of " + name + ": " + parameter.getValue());
+                    }
+                    if (windowBits < MAX_WINDOW_BITS) {
+                        return decline(name + "=" + windowBits + " is not supported");
+                    }
+                } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                    if (parameter.getValue() == null) {
+                        clientWindowBits = MAX_WINDOW_BITS;
+                    } else {
+                        clientWindowBits = parseWindowBits(parameter.getValue());
+                        if (clientWindowBits == -1) {
+                            return decline("invalid value of " + name + ": " + parameter.getValue());
+                        }
+                    }
+                } else {
+                    return decline("unknown parameter " + name);
+                }
+            }
+        }
+
+        final List<Parameter> responseParameters = new ArrayList<Parameter>();
+        if (serverNoContextTakeover) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientWindowBits != -1 && clientMaxWindowBits < clientWindowBits) {
+            responseParameters.add(new TyrusExtension.TyrusParameter(CLIENT_MAX_WINDOW_BITS, String.valueOf(clientMaxWindowBits)));
+        }
+
+        init(context, serverNoContextTakeover, clientNoContextTakeover);
+        return responseParameters;
     }
 
     @Override
     public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-        init(context);
+        boolean outgoingNoContextTakeover = clientNoContextTakeover;
+        boolean incomingNoContextTakeover = false;
+
+        if (responseParameters != null) {
+            for (Parameter parameter : responseParameters) {
+                final String name = parameter.getName();
+                if (SERVER_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    incomingNoContextTakeover = true;
+                } else if (CLIENT_NO_CONTEXT_TAKEOVER.equals(name)) {
+                    outgoingNoContextTakeover = true;
+                } else if (CLIENT_MAX_WINDOW_BITS.equals(name)) {
+                    // not offered; Deflater window cannot be limited.
+                    LOGGER.warning("Unsupported parameter in handshake response: " + name + "=" + parameter.getValue());
+                }
+                // server_max_window_bits - inflater can process data compressed with any window size.
+            }
+        }
+
+        init(context, outgoingNoContextTakeover, incomingNoContextTakeover);
+    }
+
+    @Override
+    public Object getOutgoingProcessingKey(ExtensionContext context) {
+        final State state = (State) context.getProperties().get(STATE);
+        if (state != null && state.outgoingNoContextTakeover) {
+            return Arrays.<Object>asList(compressionLevel, compressionStrategy,
+                    compressionPolicy.isCompressionEnabled(state.statistics));
+        }
+
+        return null;
+    }
+
+    private static int getIncomingBufferSize(ExtensionContext context) {
+        final Object incomingBufferSize = context.getProperties().get(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE);
+        return incomingBufferSize instanceof Integer ? (Integer) incomingBufferSize : Integer.MAX_VALUE;
+    }
+
+    private static MessageEventListener getMessageEventListener(ExtensionContext context) {
+        return (MessageEventListener) context.getProperties().get(MessageEventListener.EXTENSION_CONTEXT_PROPERTY);
     }
 
     @Override
     public void destroy(ExtensionContext context) {
-        final Inflater decompresser = (Inflater) context.getProperties().get(INFLATER);
-        final Deflater compresser = (Deflater) context.getProperties().get(DEFLATER);
+        final State state = (State) context.getProperties().remove(STATE);
+        if (state == null) {
+            return;
+        }
 
-        context.getProperties().remove(DEFLATER);
-        context.getProperties().remove(INFLATER);
+        final Inflater decompresser = state.inflater;
+        final Deflater compresser = state.deflater;
 
         if (decompresser != null) {
-            decompresser.end();
+            if (state.incomingNoContextTakeover) {
+                inflaterPool.recycle(decompresser);
+            } else {
+                decompresser.end();
+            }
         }
 
         if (compresser != null) {
-            compresser.end();
+            if (state.outgoingNoContextTakeover) {
+                deflaterPool.recycle(compresser);
+            } else {
+                compresser.end();
+            }
         }
     }
 
@@ -253,82 +595,292 @@ public class PerMessageDeflateExtension implements ExtendedExtension {
         return "permessage-deflate";
     }
 
+    /**
+     * Parameters offered by the client.
+     *
+     * @return list of parameters requested by client side configuration.
+     */
     @Override
     public List<Parameter> getParameters() {
-        return Collections.<Parameter>emptyList();
+        final List<Parameter> parameters = new ArrayList<Parameter>();
+        if (serverNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (clientNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        return parameters;
     }
 
+    private static List<Parameter> decline(String reason) {
+        if (DEBUG) {
+            LOGGER.fine("Declining permessage-deflate offer: " + reason);
+        }
+        return null;
+    }
+
+    private static int parseWindowBits(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            final int windowBits = Integer.parseInt(value.trim());
+            return (windowBits >= MIN_WINDOW_BITS && windowBits <= MAX_WINDOW_BITS) ? windowBits : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
     /**
-     * Generic pool that instances of T which are expensive to create.
-     *
-     * @author Jitendra Kotamraju
-     * @author Pavel Bucek (pavel.bucek at oracle.com)
+     * {@link PerMessageDeflateExtension} builder.
      */
-    private static abstract class Pool<T> {
+    public static final class Builder {
 
-        // volatile since multiple threads may access queue reference
-        private volatile WeakReference<ConcurrentLinkedQueue<T>> queue;
+        private int compressionLevel = Deflater.BEST_COMPRESSION;
+        private int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+        private boolean serverNoContextTakeover = false;
+        private boolean clientNoContextTakeover = false;
+        private int clientMaxWindowBits = MAX_WINDOW_BITS;
+        private int coderPoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private CompressionPolicy compressionPolicy = new AdaptiveCompressionPolicy();
+
+        private Builder() {
+        }
 
         /**
-         * Gets a new object from the pool.
-         * <p/>
+         * Set compression level used for outgoing messages.
+         *
+         * @param compressionLevel compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}. Default value is
+         *                         {@link Deflater#BEST_COMPRESSION}.
+         * @return updated builder.
+         */
+        public Builder compressionLevel(int compressionLevel) {
+            if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+                    && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+            }
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        /**
+         * Set compression strategy used for outgoing messages.
+         *
+         * @param compressionStrategy one of {@link Deflater#DEFAULT_STRATEGY}, {@link Deflater#FILTERED} and
+         *                            {@link Deflater#HUFFMAN_ONLY}.
+         * @return updated builder.
+         */
+        public Builder compressionStrategy(int compressionStrategy) {
+            if (compressionStrategy != Deflater.DEFAULT_STRATEGY && compressionStrategy != Deflater.FILTERED
+                    && compressionStrategy != Deflater.HUFFMAN_ONLY) {
+                throw new IllegalArgumentException("Invalid compression strategy: " + compressionStrategy);
+            }
+            this.compressionStrategy = compressionStrategy;
+            return this;
+        }
+
+        /**
+         * Don't use context takeover for messages sent by the server.
          * <p/>
-         * If no object is available in the pool, this method creates a new one.
+         * Server side: {@code server_no_context_takeover} is always present in the handshake response. Client side:
+         * {@code server_no_context_takeover} is offered.
          *
-         * @return always non-null.
+         * @param serverNoContextTakeover {@code true} if server should not use context takeover.
+         * @return updated builder.
          */
-        public final T take() {
-            T t = getQueue().poll();
-            if (t == null)
-                return create();
-            return t;
+        public Builder serverNoContextTakeover(boolean serverNoContextTakeover) {
+            this.serverNoContextTakeover = serverNoContextTakeover;
+            return this;
         }
 
         /**
-         * Create new instance to be added into pool.
+         * Don't use context takeover for messages sent by the client.
+         * <p/>
+         * Server side: {@code client_no_context_takeover} is always present in the handshake response. Client side:
+         * {@code client_no_context_takeover} is offered.
          *
-         * @return new instance.
+         * @param clientNoContextTakeover {@code true} if client should not use context takeover.
+         * @return updated builder.
          */
-        abstract T create();
+        public Builder clientNoContextTakeover(boolean clientNoContextTakeover) {
+            this.clientNoContextTakeover = clientNoContextTakeover;
+            return this;
+        }
 
-        private ConcurrentLinkedQueue<T> getQueue() {
-            WeakReference<ConcurrentLinkedQueue<T>> q = queue;
-            if (q != null) {
-                ConcurrentLinkedQueue<T> d = q.get();
-                if (d != null)
-                    return d;
+        /**
+         * Set maximal LZ77 window size (base-2 logarithm) the client should use for compressing messages (server side
+         * only).
+         * <p/>
+         * {@code client_max_window_bits} is present in handshake response only when the client declared its support.
+         *
+         * @param clientMaxWindowBits window size, value from 8 to 15. Default value is 15.
+         * @return updated builder.
+         */
+        public Builder clientMaxWindowBits(int clientMaxWindowBits) {
+            if (clientMaxWindowBits < MIN_WINDOW_BITS || clientMaxWindowBits > MAX_WINDOW_BITS) {
+                throw new IllegalArgumentException("Invalid window bits: " + clientMaxWindowBits);
             }
+            this.clientMaxWindowBits = clientMaxWindowBits;
+            return this;
+        }
 
-            // overwrite the queue
-            ConcurrentLinkedQueue<T> d = new ConcurrentLinkedQueue<T>();
-            queue = new WeakReference<ConcurrentLinkedQueue<T>>(d);
+        /**
+         * Set maximal number of idle {@link Deflater} (and {@link Inflater}) instances kept for processing messages
+         * in directions without context takeover.
+         *
+         * @param coderPoolSize maximal number of pooled instances. Default value is twice the number of available
+         *                      processors.
+         * @return updated builder.
+         */
+        public Builder coderPoolSize(int coderPoolSize) {
+            if (coderPoolSize < 0) {
+                throw new IllegalArgumentException("Invalid pool size: " + coderPoolSize);
+            }
+            this.coderPoolSize = coderPoolSize;
+            return this;
+        }
 
-            return d;
+        /**
+         * Set policy choosing outgoing messages which are compressed.
+         *
+         * @param compressionPolicy compression policy. Default value is {@link AdaptiveCompressionPolicy} with
+         *                          default values.
+         * @return updated builder.
+         */
+        public Builder compressionPolicy(CompressionPolicy compressionPolicy) {
+            if (compressionPolicy == null) {
+                throw new IllegalArgumentException("Compression policy cannot be null.");
+            }
+            this.compressionPolicy = compressionPolicy;
+            return this;
         }
 
         /**
-         * Returns an object back to the pool.
+         * Build {@link PerMessageDeflateExtension}.
+         *
+         * @return new extension instance.
          */
-        public final void recycle(T t) {
-            getQueue().offer(t);
+        public PerMessageDeflateExtension build() {
+            return new PerMessageDeflateExtension(this);
         }
     }
 
-    private static class PartialResultWithLength<T> {
-        private final int length;
-        private final T result;
+    /**
+     * Per-connection state.
+     */
+    private static class State {
+
+        private final boolean outgoingNoContextTakeover;
+        private final boolean incomingNoContextTakeover;
+        private final CompressionStatistics statistics = new CompressionStatistics();
+
+        // whether fragmented outgoing message is compressed.
+        private volatile boolean compressMessage;
 
-        private PartialResultWithLength(int length, T result) {
-            this.length = length;
-            this.result = result;
+        // decompressed length of current incoming message, accessed only by the reading thread.
+        private int inflatedMessageLength;
+
+        // coder used for the whole connection (context takeover) or for one fragmented message (no context takeover).
+        private volatile Deflater deflater;
+        private volatile Inflater inflater;
+
+        private State(boolean outgoingNoContextTakeover, boolean incomingNoContextTakeover) {
+            this.outgoingNoContextTakeover = outgoingNoContextTakeover;
+            this.incomingNoContextTakeover = incomingNoContextTakeover;
+        }
+    }
+
+    /**
+     * Bounded pool of {@link Deflater}/{@link Inflater} instances.
+     * <p/>
+     * Recycled instances are reset; instances exceeding the pool size are ended, so native memory is released.
+     */
+    private static abstract class CoderPool<T> {
+
+        private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final int maxSize;
+
+        CoderPool(int maxSize) {
+            this.maxSize = maxSize;
         }
 
-        public int getLength() {
-            return length;
+        final T take() {
+            final T t = queue.poll();
+            if (t == null) {
+                return create();
+            }
+            size.decrementAndGet();
+            return t;
         }
 
-        public T getResult() {
+        final void recycle(T t) {
+            if (size.incrementAndGet() <= maxSize) {
+                reset(t);
+                queue.offer(t);
+            } else {
+                size.decrementAndGet();
+                end(t);
+            }
+        }
+
+        abstract T create();
+
+        abstract void reset(T t);
+
+        abstract void end(T t);
+    }
+
+    /**
+     * Growable output of the compressor/decompressor backed by per-thread buffer. Result is copied to an array of
+     * exact length.
+     */
+    private static class OutputBuffer {
+
+        private final int maxLength;
+        private byte[] data;
+        private int length;
+
+        private OutputBuffer(int maxLength) {
+            this.data = OUTPUT_BUFFER.get();
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Make sure there is space for at least one byte.
+         */
+        private void ensureSpace() {
+            if (length < data.length) {
+                return;
+            }
+
+            // one byte over the limit is enough to detect too long output.
+            final long limit = Math.min((long) maxLength + 1, Integer.MAX_VALUE - 8);
+            if (data.length >= limit) {
+                throw new IllegalStateException("Output is longer than " + maxLength + " bytes.");
+            }
+
+            data = Arrays.copyOf(data, (int) Math.min(limit, 2L * data.length));
+        }
+
+        private void checkLength() {
+            if (length > maxLength) {
+                throw new IllegalStateException("Decompressed message is longer than " + maxLength + " bytes.");
+            }
+        }
+
+        /**
+         * Get copy of the output and return the buffer to the current thread.
+         *
+         * @param resultLength length of the result (output can be truncated).
+         * @return output data.
+         */
+        private byte[] toByteArray(int resultLength) {
+            final byte[] result = Arrays.copyOf(data, resultLength);
+            if (data.length <= MAX_POOLED_OUTPUT_LENGTH) {
+                OUTPUT_BUFFER.set(data);
+            }
             return result;
         }
     }
@@ -0,0 +1,253 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TyrusFrame;
+import org.glassfish.tyrus.core.monitoring.MessageEventListener;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AdaptiveCompressionPolicy} applied by {@link PerMessageDeflateExtension}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class AdaptiveCompressionPolicyTest {
+
+    @Test
+    public void testMinSize() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .compressionPolicy(new AdaptiveCompressionPolicy(100, 0.9, 1024))
+                .build();
+        final ExtendedExtension.ExtensionContext context = negotiatedContext(extension);
+
+        final Frame small = dataFrame(new byte[99], 2, true);
+        assertSame(small, extension.processOutgoing(context, small));
+
+        final Frame compressed = extension.processOutgoing(context, dataFrame(new byte[100], 2, true));
+        assertTrue(compressed.isRsv1());
+        assertTrue(compressed.getPayloadLength() < 100);
+    }
+
+    @Test
+    public void testFragmentedMessage() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .compressionPolicy(new AdaptiveCompressionPolicy(100, 0.9, 1024))
+                .build();
+        final ExtendedExtension.ExtensionContext context = negotiatedContext(extension);
+
+        // decision made for the first frame applies to the whole message.
+        assertFalse(extension.processOutgoing(context, dataFrame(new byte[10], 2, false)).isRsv1());
+        assertFalse(extension.processOutgoing(context, dataFrame(new byte[1000], 0, true)).isRsv1());
+
+        assertTrue(extension.processOutgoing(context, dataFrame(new byte[1000], 2, false)).isRsv1());
+        assertTrue(extension.processOutgoing(context, dataFrame(new byte[10], 0, true)).isRsv1());
+    }
+
+    @Test
+    public void testIncompressibleData() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .compressionPolicy(new AdaptiveCompressionPolicy(0, 0.9, 1024))
+                .build();
+        final ExtendedExtension.ExtensionContext serverContext = negotiatedContext(extension);
+        final ExtendedExtension.ExtensionContext clientContext = new TestContext();
+        extension.onHandshakeResponse(clientContext, Collections.<Extension.Parameter>emptyList());
+
+        final byte[] random = new byte[2048];
+        new Random(42).nextBytes(random);
+
+        // sample.
+        final Frame first = extension.processOutgoing(serverContext, dataFrame(random, 2, true));
+        assertTrue(first.isRsv1());
+        assertArrayEquals(random, extension.processIncoming(clientContext, first).getPayloadData());
+
+        final Frame second = extension.processOutgoing(serverContext, dataFrame(random, 2, true));
+        assertFalse(second.isRsv1());
+        assertArrayEquals(random, extension.processIncoming(clientContext, second).getPayloadData());
+
+        // compressible data are not compressed any more either.
+        assertFalse(extension.processOutgoing(serverContext, dataFrame(new byte[2048], 2, true)).isRsv1());
+    }
+
+    @Test
+    public void testSharedProcessingKey() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .serverNoContextTakeover(true)
+                .compressionPolicy(new AdaptiveCompressionPolicy(0, 0.9, 1024))
+                .build();
+        final ExtendedExtension.ExtensionContext context1 = negotiatedContext(extension);
+        final ExtendedExtension.ExtensionContext context2 = negotiatedContext(extension);
+
+        final Object key = extension.getOutgoingProcessingKey(context1);
+        assertNotNull(key);
+        assertEquals(key, extension.getOutgoingProcessingKey(context2));
+
+        final byte[] random = new byte[2048];
+        new Random(42).nextBytes(random);
+        extension.processOutgoing(context1, dataFrame(random, 2, true));
+
+        // compression disabled for the first connection only.
+        assertNotSame(key, extension.getOutgoingProcessingKey(context1));
+        assertFalse(key.equals(extension.getOutgoingProcessingKey(context1)));
+    }
+
+    @Test
+    public void testSharedOutgoing() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .serverNoContextTakeover(true)
+                .compressionPolicy(new AdaptiveCompressionPolicy(0, 0.9, 1024))
+                .build();
+        final ExtendedExtension.ExtensionContext context1 = negotiatedContext(extension);
+        final ExtendedExtension.ExtensionContext context2 = negotiatedContext(extension);
+        final CountingListener listener = new CountingListener();
+        context2.getProperties().put(MessageEventListener.EXTENSION_CONTEXT_PROPERTY, listener);
+        final Object key = extension.getOutgoingProcessingKey(context2);
+
+        final byte[] random = new byte[2048];
+        new Random(42).nextBytes(random);
+        final Frame frame = dataFrame(random, 2, true);
+        final Frame compressed = extension.processOutgoing(context1, frame);
+
+        // second connection shares the frame compressed for the first one.
+        extension.onSharedOutgoing(context2, frame, compressed);
+        assertEquals(2048, listener.uncompressed);
+        assertEquals(compressed.getPayloadLength(), listener.compressed);
+        assertEquals(extension.getOutgoingProcessingKey(context1), extension.getOutgoingProcessingKey(context2));
+        assertFalse(key.equals(extension.getOutgoingProcessingKey(context2)));
+
+        // frame which was not compressed is not recorded.
+        final Frame uncompressed = extension.processOutgoing(context1, frame);
+        assertSame(frame, uncompressed);
+        extension.onSharedOutgoing(context2, frame, uncompressed);
+        assertEquals(2048, listener.uncompressed);
+    }
+
+    @Test
+    public void testMessageEventListener() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext serverContext = negotiatedContext(extension);
+        final ExtendedExtension.ExtensionContext clientContext = new TestContext();
+        extension.onHandshakeResponse(clientContext, Collections.<Extension.Parameter>emptyList());
+
+        final CountingListener serverListener = new CountingListener();
+        final CountingListener clientListener = new CountingListener();
+        serverContext.getProperties().put(MessageEventListener.EXTENSION_CONTEXT_PROPERTY, serverListener);
+        clientContext.getProperties().put(MessageEventListener.EXTENSION_CONTEXT_PROPERTY, clientListener);
+
+        final Frame compressed = extension.processOutgoing(serverContext, dataFrame(new byte[1000], 2, true));
+        extension.processIncoming(clientContext, compressed);
+
+        assertEquals(1000, serverListener.uncompressed);
+        assertEquals(compressed.getPayloadLength(), serverListener.compressed);
+        assertEquals(1000, clientListener.uncompressed);
+        assertEquals(compressed.getPayloadLength(), clientListener.compressed);
+    }
+
+    private static ExtendedExtension.ExtensionContext negotiatedContext(PerMessageDeflateExtension extension) {
+        final ExtendedExtension.ExtensionContext context = new TestContext();
+        extension.onExtensionNegotiation(context, Collections.<Extension.Parameter>emptyList());
+        return context;
+    }
+
+    private static Frame dataFrame(byte[] payload, int opcode, boolean fin) {
+        return Frame.builder().opcode((byte) opcode).fin(fin).payloadData(payload).build();
+    }
+
+    private static class TestContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+
+    private static class CountingListener implements MessageEventListener {
+
+        private long uncompressed;
+        private long compressed;
+
+        @Override
+        public void onFrameSent(TyrusFrame.FrameType frameType, long payloadLength) {
+        }
+
+        @Override
+        public void onFrameReceived(TyrusFrame.FrameType frameType, long payloadLength) {
+        }
+
+        @Override
+        public void onFrameCompressed(long uncompressedLength, long compressedLength) {
+            uncompressed += uncompressedLength;
+            compressed += compressedLength;
+        }
+
+        @Override
+        public void onFrameDecompressed(long compressedLength, long uncompressedLength) {
+            uncompressed += uncompressedLength;
+            compressed += compressedLength;
+        }
+
+        @Override
+        public void onWriteQueueSizeChanged(long queuedBytes) {
+        }
+
+        @Override
+        public void onMessageDropped(long length) {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.TyrusWebSocketEngine;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests compression and decompression done by {@link PerMessageDeflateExtension}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class PerMessageDeflateCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        final int[] lengths = {0, 1, 100, 8191, 8192, 8193, 100003, 1024 * 1024};
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .compressionPolicy(new AdaptiveCompressionPolicy(0, 100, 0))
+                .build();
+
+        for (boolean random : new boolean[]{true, false}) {
+            final ExtendedExtension.ExtensionContext serverContext = new TestContext();
+            final ExtendedExtension.ExtensionContext clientContext = new TestContext();
+            extension.onExtensionNegotiation(serverContext, Collections.<Extension.Parameter>emptyList());
+            extension.onHandshakeResponse(clientContext, Collections.<Extension.Parameter>emptyList());
+
+            for (int length : lengths) {
+                final byte[] payload = payload(length, random);
+
+                final Frame compressed = extension.processOutgoing(serverContext, dataFrame(payload, 2, true));
+                assertTrue(compressed.isRsv1());
+                if (!random && length > 100) {
+                    assertTrue(compressed.getPayloadLength() < length / 2);
+                }
+
+                assertArrayEquals(payload, extension.processIncoming(clientContext, compressed).getPayloadData());
+            }
+        }
+    }
+
+    @Test
+    public void testIncomingBufferSize() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+        final ExtendedExtension.ExtensionContext serverContext = new TestContext();
+        final ExtendedExtension.ExtensionContext clientContext = new TestContext();
+        extension.onExtensionNegotiation(serverContext, Collections.<Extension.Parameter>emptyList());
+        extension.onHandshakeResponse(clientContext, Collections.<Extension.Parameter>emptyList());
+        clientContext.getProperties().put(TyrusWebSocketEngine.INCOMING_BUFFER_SIZE, 10000);
+
+        final byte[] payload = payload(6000, false);
+        assertArrayEquals(payload, extension.processIncoming(clientContext,
+                extension.processOutgoing(serverContext, dataFrame(payload, 2, true))).getPayloadData());
+
+        // fragmented message; the limit applies to the whole message.
+        assertArrayEquals(payload, extension.processIncoming(clientContext,
+                extension.processOutgoing(serverContext, dataFrame(payload, 2, false))).getPayloadData());
+        final Frame last = extension.processOutgoing(serverContext, dataFrame(payload, 0, true));
+        try {
+            extension.processIncoming(clientContext, last);
+            assertTrue("Decompressed message exceeds incoming buffer size.", false);
+        } catch (IllegalStateException e) {
+            // expected.
+        }
+    }
+
+    private static byte[] payload(int length, boolean random) {
+        final byte[] payload = new byte[length];
+        if (random) {
+            new Random(length).nextBytes(payload);
+        } else {
+            for (int i = 0; i < length; i++) {
+                payload[i] = (byte) ('a' + (i % 7));
+            }
+        }
+        return payload;
+    }
+
+    private static Frame dataFrame(byte[] payload, int opcode, boolean fin) {
+        return Frame.builder().opcode((byte) opcode).fin(fin).payloadData(payload).build();
+    }
+
+    private static class TestContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.ext.extension.deflate;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.Extension;
+
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests parameter negotiation of {@link PerMessageDeflateExtension}.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+public class PerMessageDeflateNegotiationTest {
+
+    private static final byte[] MESSAGE = "Always pass on what you have learned. Always pass on what you have learned."
+            .getBytes(Charset.forName("UTF-8"));
+
+    @Test
+    public void testDefaultNegotiation() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+        final TestContext context = new TestContext();
+
+        final List<Extension.Parameter> response = extension.onExtensionNegotiation(context, Collections.<Extension.Parameter>emptyList());
+
+        assertNotNull(response);
+        assertTrue(response.isEmpty());
+        assertTrue(extension.getParameters().isEmpty());
+        // context takeover - output depends on previously sent messages.
+        assertNull(extension.getOutgoingProcessingKey(context));
+    }
+
+    @Test
+    public void testNoContextTakeoverOffer() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+        final TestContext context1 = new TestContext();
+        final TestContext context2 = new TestContext();
+
+        final List<Extension.Parameter> response = extension.onExtensionNegotiation(context1,
+                parameters(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, null,
+                        PerMessageDeflateExtension.CLIENT_NO_CONTEXT_TAKEOVER, null));
+        extension.onExtensionNegotiation(context2, parameters(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, null));
+
+        assertEquals(Arrays.asList(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER,
+                PerMessageDeflateExtension.CLIENT_NO_CONTEXT_TAKEOVER), names(response));
+        assertNotNull(extension.getOutgoingProcessingKey(context1));
+        assertEquals(extension.getOutgoingProcessingKey(context1), extension.getOutgoingProcessingKey(context2));
+    }
+
+    @Test
+    public void testServerPolicy() {
+        final PerMessageDeflateExtension extension = PerMessageDeflateExtension.builder()
+                .serverNoContextTakeover(true)
+                .clientMaxWindowBits(10)
+                .build();
+
+        List<Extension.Parameter> response = extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS, null));
+        assertEquals(Arrays.asList(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER,
+                PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS), names(response));
+        assertEquals("10", response.get(1).getValue());
+
+        // client already uses smaller window.
+        response = extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS, "9"));
+        assertEquals(Arrays.asList(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER), names(response));
+
+        // client_max_window_bits cannot be sent when not offered.
+        response = extension.onExtensionNegotiation(new TestContext(), Collections.<Extension.Parameter>emptyList());
+        assertEquals(Arrays.asList(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER), names(response));
+    }
+
+    @Test
+    public void testDeclinedOffers() {
+        final PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+
+        assertNull(extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.SERVER_MAX_WINDOW_BITS, "10")));
+        assertNull(extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.SERVER_MAX_WINDOW_BITS, null)));
+        assertNull(extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.CLIENT_MAX_WINDOW_BITS, "16")));
+        assertNull(extension.onExtensionNegotiation(new TestContext(),
+                parameters("unknown_parameter", null)));
+        assertNull(extension.onExtensionNegotiation(new TestContext(),
+                parameters(PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, null,
+                        PerMessageDeflateExtension.SERVER_NO_CONTEXT_TAKEOVER, null)));
+
+        final TestContext context = new TestContext();
+        assertNotNull(extension.onExtensionNegotiation(context,
+                parameters(PerMessageDeflateExtension.SERVER_MAX_WINDOW_BITS, "15")));
+        assertFalse(context.getProperties().isEmpty());
+    }
+
+    @Test
+    public void testNoContextTakeoverMessages() {
+        final PerMessageDeflateExtension server = new PerMessageDeflateExtension();
+        final PerMessageDeflateExtension client = PerMessageDeflateExtension.builder()
+                .serverNoContextTakeover(true)
+                .clientNoContextTakeover(true)
+                .build();
+
+        final TestContext serverContext = new TestContext();
+        final TestContext clientContext = new TestContext();
+
+        final List<Extension.Parameter> response = server.onExtensionNegotiation(serverContext, client.getParameters());
+        client.onHandshakeResponse(clientContext, response);
+
+        // the same message has to be compressed to the same bytes.
+        final Frame compressed1 = server.processOutgoing(serverContext, dataFrame(MESSAGE, 2, true));
+        final Frame compressed2 = server.processOutgoing(serverContext, dataFrame(MESSAGE, 2, true));
+        assertTrue(compressed1.isRsv1());
+        assertArrayEquals(compressed1.getPayloadData(), compressed2.getPayloadData());
+
+        assertArrayEquals(MESSAGE, client.processIncoming(clientContext, compressed1).getPayloadData());
+        assertArrayEquals(MESSAGE, client.processIncoming(clientContext, compressed2).getPayloadData());
+
+        // fragmented message.
+        final Frame first = client.processOutgoing(clientContext, dataFrame(MESSAGE, 2, false));
+        final Frame last = client.processOutgoing(clientContext, dataFrame(MESSAGE, 0, true));
+        assertArrayEquals(MESSAGE, server.processIncoming(serverContext, first).getPayloadData());
+        assertArrayEquals(MESSAGE, server.processIncoming(serverContext, last).getPayloadData());
+
+        client.destroy(clientContext);
+        server.destroy(serverContext);
+        assertTrue(clientContext.getProperties().isEmpty());
+        assertTrue(serverContext.getProperties().isEmpty());
+    }
+
+    private static Frame dataFrame(byte[] payload, int opcode, boolean fin) {
+        return Frame.builder().opcode((byte) opcode).fin(fin).payloadData(payload).build();
+    }
+
+    private static List<Extension.Parameter> parameters(String... namesAndValues) {
+        final List<Extension.Parameter> parameters = new ArrayList<Extension.Parameter>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            parameters.add(new TyrusExtension.TyrusParameter(namesAndValues[i], namesAndValues[i + 1]));
+        }
+        return parameters;
+    }
+
+    private static List<String> names(List<Extension.Parameter> parameters) {
+        final List<String> names = new ArrayList<String>();
+        for (Extension.Parameter parameter : parameters) {
+            names.add(parameter.getName());
+        }
+        return names;
+    }
+
+    private static class TestContext implements ExtendedExtension.ExtensionContext {
+
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+
+        @Override
+        public Map<String, Object> getProperties() {
+            return properties;
+        }
+    }
+}
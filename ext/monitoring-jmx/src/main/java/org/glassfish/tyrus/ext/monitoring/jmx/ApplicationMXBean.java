@@ -45,7 +45,7 @@ import org.glassfish.tyrus.core.Beta;
 
 /**
  * MXBean used for accessing monitored application properties - registered endpoints, number of currently open sessions,
- * maximal number of open sessions since the start of the monitoring and message statistics.
+ * maximal number of open sessions since the start of the monitoring, message statistics and buffer pool statistics.
  *
  * @author Petr Janouch (petr.janouch at oracle.com)
  */
@@ -85,4 +85,18 @@ public interface ApplicationMXBean extends BaseMXBean {
      * @return list of MXBeans representing registered endpoints.
      */
     public List<EndpointMXBean> getEndpointMXBeans();
+
+    /**
+     * Get the ratio of requests for a buffer for incoming data that have been served by a pooled buffer.
+     *
+     * @return hit rate of the buffer pool (between 0 and 1), 0 if no buffer has been requested yet.
+     */
+    public double getBufferPoolHitRate();
+
+    /**
+     * Get the total capacity of buffers currently retained in the buffer pool.
+     *
+     * @return number of bytes currently retained in the buffer pool.
+     */
+    public long getBufferPoolRetainedBytes();
 }
@@ -56,13 +56,17 @@ class ApplicationMXBeanImpl extends BaseMXBeanImpl implements ApplicationMXBean,
     private final ConcurrentHashMap<String, EndpointMXBean> endpointMXBeans = new ConcurrentHashMap<String, EndpointMXBean>();
     private final Callable<Integer> openSessionsCount;
     private final Callable<Integer> maxOpenSessionsCount;
+    private final Callable<Double> bufferPoolHitRate;
+    private final Callable<Long> bufferPoolRetainedBytes;
 
-    public ApplicationMXBeanImpl(MessageStatisticsSource sentMessageStatistics, MessageStatisticsSource receivedMessageStatistics, Callable<List<EndpointClassNamePathPair>> endpoints, Callable<List<String>> endpointPaths, Callable<Integer> openSessionsCount, Callable<Integer> maxOpenSessionsCount, Callable<List<ErrorCount>> errorCounts, MessageStatisticsMXBean textMessageStatisticsMXBean, MessageStatisticsMXBean binaryMessageStatisticsMXBean, MessageStatisticsMXBean controlMessageStatisticsMXBean) {
+    public ApplicationMXBeanImpl(MessageStatisticsSource sentMessageStatistics, MessageStatisticsSource receivedMessageStatistics, Callable<List<EndpointClassNamePathPair>> endpoints, Callable<List<String>> endpointPaths, Callable<Integer> openSessionsCount, Callable<Integer> maxOpenSessionsCount, Callable<Double> bufferPoolHitRate, Callable<Long> bufferPoolRetainedBytes, Callable<List<ErrorCount>> errorCounts, MessageStatisticsMXBean textMessageStatisticsMXBean, MessageStatisticsMXBean binaryMessageStatisticsMXBean, MessageStatisticsMXBean controlMessageStatisticsMXBean) {
         super(sentMessageStatistics, receivedMessageStatistics, errorCounts, textMessageStatisticsMXBean, binaryMessageStatisticsMXBean, controlMessageStatisticsMXBean);
         this.endpoints = endpoints;
         this.endpointPaths = endpointPaths;
         this.openSessionsCount = openSessionsCount;
         this.maxOpenSessionsCount = maxOpenSessionsCount;
+        this.bufferPoolHitRate = bufferPoolHitRate;
+        this.bufferPoolRetainedBytes = bufferPoolRetainedBytes;
     }
 
     @Override
@@ -90,6 +94,16 @@ class ApplicationMXBeanImpl extends BaseMXBeanImpl implements ApplicationMXBean,
         return maxOpenSessionsCount.call();
     }
 
+    @Override
+    public double getBufferPoolHitRate() {
+        return bufferPoolHitRate.call();
+    }
+
+    @Override
+    public long getBufferPoolRetainedBytes() {
+        return bufferPoolRetainedBytes.call();
+    }
+
     void putEndpointMXBean(String endpointPath, EndpointMXBean endpointMXBean) {
         endpointMXBeans.put(endpointPath, endpointMXBean);
     }
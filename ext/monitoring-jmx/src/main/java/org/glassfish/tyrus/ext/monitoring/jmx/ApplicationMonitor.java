@@ -46,6 +46,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
+import org.glassfish.tyrus.core.monitoring.BufferPoolStatistics;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
 
 /**
@@ -82,6 +83,7 @@ class ApplicationMonitor extends BaseMonitor implements ApplicationEventListener
     private volatile int maxOpenSessionCount = 0;
     private volatile String applicationName;
     private volatile ApplicationMXBeanImpl applicationMXBean;
+    private volatile BufferPoolStatistics bufferPoolStatistics;
 
     /**
      * Constructor.
@@ -105,7 +107,7 @@ class ApplicationMonitor extends BaseMonitor implements ApplicationEventListener
 
         MessageStatisticsAggregator sentTotalStatistics = new MessageStatisticsAggregator(sentTextMessageStatistics, sentBinaryMessageStatistics, sentControlMessageStatistics);
         MessageStatisticsAggregator receivedTotalStatistics = new MessageStatisticsAggregator(receivedTextMessageStatistics, receivedBinaryMessageStatistics, receivedControlMessageStatistics);
-        applicationMXBean = new ApplicationMXBeanImpl(sentTotalStatistics, receivedTotalStatistics, getEndpoints(), getEndpointPaths(), getOpenSessionsCount(), getMaxOpenSessionsCount(), getErrorCounts(), textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean);
+        applicationMXBean = new ApplicationMXBeanImpl(sentTotalStatistics, receivedTotalStatistics, getEndpoints(), getEndpointPaths(), getOpenSessionsCount(), getMaxOpenSessionsCount(), getBufferPoolHitRate(), getBufferPoolRetainedBytes(), getErrorCounts(), textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean);
 
         MBeanPublisher.registerApplicationMXBeans(applicationName, applicationMXBean, textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean);
     }
@@ -134,6 +136,11 @@ class ApplicationMonitor extends BaseMonitor implements ApplicationEventListener
         endpoint.unregister();
     }
 
+    @Override
+    public void onBufferPoolCreated(BufferPoolStatistics bufferPoolStatistics) {
+        this.bufferPoolStatistics = bufferPoolStatistics;
+    }
+
     /**
      * Get a {@link Callable} that will provide list of endpoint paths and endpoint
      * class names for currently registered endpoints.
@@ -195,6 +202,42 @@ class ApplicationMonitor extends BaseMonitor implements ApplicationEventListener
         };
     }
 
+    /**
+     * Get a {@link Callable} that will provide hit rate of the buffer pool used by the application.
+     *
+     * @return {@link Callable} returning hit rate of the buffer pool.
+     */
+    private Callable<Double> getBufferPoolHitRate() {
+        return new Callable<Double>() {
+            @Override
+            public Double call() {
+                final BufferPoolStatistics statistics = bufferPoolStatistics;
+                if (statistics == null) {
+                    return 0d;
+                }
+
+                final long hitCount = statistics.getHitCount();
+                final long requestCount = hitCount + statistics.getMissCount();
+                return requestCount == 0 ? 0d : (double) hitCount / requestCount;
+            }
+        };
+    }
+
+    /**
+     * Get a {@link Callable} that will provide number of bytes retained by the buffer pool used by the application.
+     *
+     * @return {@link Callable} returning number of bytes retained by the buffer pool.
+     */
+    private Callable<Long> getBufferPoolRetainedBytes() {
+        return new Callable<Long>() {
+            @Override
+            public Long call() {
+                final BufferPoolStatistics statistics = bufferPoolStatistics;
+                return statistics == null ? 0L : statistics.getRetainedBytes();
+            }
+        };
+    }
+
     void onSessionOpened() {
         openSessionsCount.incrementAndGet();
         if (openSessionsCount.get() > maxOpenSessionCount) {
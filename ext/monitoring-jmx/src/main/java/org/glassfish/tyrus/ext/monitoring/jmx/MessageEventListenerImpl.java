@@ -50,9 +50,22 @@ import org.glassfish.tyrus.core.monitoring.MessageEventListener;
 class MessageEventListenerImpl implements MessageEventListener {
 
     private final MessageListener messageListener;
+    private final SessionMonitor sessionMonitor;
 
     MessageEventListenerImpl(MessageListener messageListener) {
+        this(messageListener, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param messageListener listener notified about sent and received messages.
+     * @param sessionMonitor  monitor of the session notified about changes of the write queue, {@code null} when
+     *                        monitoring is not conducted on the session level.
+     */
+    MessageEventListenerImpl(MessageListener messageListener, SessionMonitor sessionMonitor) {
         this.messageListener = messageListener;
+        this.sessionMonitor = sessionMonitor;
     }
 
     @Override
@@ -80,4 +93,28 @@ class MessageEventListenerImpl implements MessageEventListener {
             messageListener.onControlMessageReceived(payloadLength);
         }
     }
+
+    @Override
+    public void onFrameCompressed(long uncompressedLength, long compressedLength) {
+        // compression statistics are not exposed via JMX.
+    }
+
+    @Override
+    public void onFrameDecompressed(long compressedLength, long uncompressedLength) {
+        // compression statistics are not exposed via JMX.
+    }
+
+    @Override
+    public void onWriteQueueSizeChanged(long queuedBytes) {
+        if (sessionMonitor != null) {
+            sessionMonitor.onWriteQueueSizeChanged(queuedBytes);
+        }
+    }
+
+    @Override
+    public void onMessageDropped(long length) {
+        if (sessionMonitor != null) {
+            sessionMonitor.onMessageDropped();
+        }
+    }
 }
@@ -73,7 +73,7 @@ class SessionAwareEndpointMonitor extends EndpointMonitor {
 
         applicationMonitor.onSessionOpened();
 
-        return new MessageEventListenerImpl(sessionMonitor);
+        return new MessageEventListenerImpl(sessionMonitor, sessionMonitor);
     }
 
     @Override
@@ -52,4 +52,19 @@ public interface SessionMXBean extends BaseMXBean {
      * @return the ID of the session.
      */
     public String getSessionId();
+
+    /**
+     * Get the size of the write queue of the session.
+     *
+     * @return number of bytes of outgoing messages which have not been written to the network yet.
+     */
+    public long getWriteQueueSize();
+
+    /**
+     * Get the number of outgoing messages dropped or rejected because the write queue of the session was over its
+     * limit.
+     *
+     * @return number of dropped messages.
+     */
+    public long getDroppedMessagesCount();
 }
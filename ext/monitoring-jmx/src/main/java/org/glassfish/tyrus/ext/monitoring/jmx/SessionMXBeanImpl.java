@@ -50,14 +50,28 @@ class SessionMXBeanImpl extends BaseMXBeanImpl implements SessionMXBean, Seriali
     private static final long serialVersionUID = -5996261566352502699L;
 
     private final String sessionId;
+    private final Callable<Long> writeQueueSize;
+    private final Callable<Long> droppedMessagesCount;
 
-    SessionMXBeanImpl(MessageStatisticsSource sentMessageStatistics, MessageStatisticsSource receivedMessageStatistics, Callable<List<ErrorCount>> errorCounts, MessageStatisticsMXBean textMessageStatisticsMXBean, MessageStatisticsMXBean binaryMessageStatisticsMXBean, MessageStatisticsMXBean controlMessageStatisticsMXBean, String sessionId) {
+    SessionMXBeanImpl(MessageStatisticsSource sentMessageStatistics, MessageStatisticsSource receivedMessageStatistics, Callable<List<ErrorCount>> errorCounts, MessageStatisticsMXBean textMessageStatisticsMXBean, MessageStatisticsMXBean binaryMessageStatisticsMXBean, MessageStatisticsMXBean controlMessageStatisticsMXBean, String sessionId, Callable<Long> writeQueueSize, Callable<Long> droppedMessagesCount) {
         super(sentMessageStatistics, receivedMessageStatistics, errorCounts, textMessageStatisticsMXBean, binaryMessageStatisticsMXBean, controlMessageStatisticsMXBean);
         this.sessionId = sessionId;
+        this.writeQueueSize = writeQueueSize;
+        this.droppedMessagesCount = droppedMessagesCount;
     }
 
     @Override
     public String getSessionId() {
         return sessionId;
     }
+
+    @Override
+    public long getWriteQueueSize() {
+        return writeQueueSize.call();
+    }
+
+    @Override
+    public long getDroppedMessagesCount() {
+        return droppedMessagesCount.call();
+    }
 }
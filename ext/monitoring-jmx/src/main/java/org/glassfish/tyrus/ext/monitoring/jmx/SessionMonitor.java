@@ -65,6 +65,9 @@ class SessionMonitor extends BaseMonitor implements MessageListener {
     private final MessageListener messageListener;
     private final EndpointMXBeanImpl endpointMXBean;
 
+    private final AtomicLong droppedMessagesCount = new AtomicLong(0);
+    private volatile long writeQueueSize = 0;
+
     SessionMonitor(String applicationName, String endpointPath, String sessionId, MessageListener messageListener, EndpointMXBeanImpl endpointMXBean) {
         this.applicationName = applicationName;
         this.endpointPath = endpointPath;
@@ -78,7 +81,7 @@ class SessionMonitor extends BaseMonitor implements MessageListener {
 
         MessageStatisticsAggregator sentMessagesTotal = new MessageStatisticsAggregator(sentTextMessageStatistics, sentBinaryMessageStatistics, sentControlMessageStatistics);
         MessageStatisticsAggregator receivedMessagesTotal = new MessageStatisticsAggregator(receivedTextMessageStatistics, receivedBinaryMessageStatistics, receivedControlMessageStatistics);
-        SessionMXBeanImpl sessionMXBean = new SessionMXBeanImpl(sentMessagesTotal, receivedMessagesTotal, getErrorCounts(), textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean, sessionId);
+        SessionMXBeanImpl sessionMXBean = new SessionMXBeanImpl(sentMessagesTotal, receivedMessagesTotal, getErrorCounts(), textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean, sessionId, getWriteQueueSize(), getDroppedMessagesCount());
 
         endpointMXBean.putSessionMXBean(sessionId, sessionMXBean);
         MBeanPublisher.registerSessionMXBeans(applicationName, endpointPath, sessionId, sessionMXBean, textMessagesMXBean, binaryMessagesMXBean, controlMessagesMXBean);
@@ -89,6 +92,40 @@ class SessionMonitor extends BaseMonitor implements MessageListener {
         endpointMXBean.removeSessionMXBean(sessionId);
     }
 
+    /**
+     * Called when the size of the write queue of the session changes.
+     *
+     * @param queuedBytes current size of the write queue in bytes.
+     */
+    void onWriteQueueSizeChanged(long queuedBytes) {
+        writeQueueSize = queuedBytes;
+    }
+
+    /**
+     * Called when an outgoing message has been dropped because the write queue of the session was over its limit.
+     */
+    void onMessageDropped() {
+        droppedMessagesCount.incrementAndGet();
+    }
+
+    private Callable<Long> getWriteQueueSize() {
+        return new Callable<Long>() {
+            @Override
+            public Long call() {
+                return writeQueueSize;
+            }
+        };
+    }
+
+    private Callable<Long> getDroppedMessagesCount() {
+        return new Callable<Long>() {
+            @Override
+            public Long call() {
+                return droppedMessagesCount.get();
+            }
+        };
+    }
+
     @Override
     public void onTextMessageSent(long length) {
         sentTextMessageStatistics.onMessage(length);
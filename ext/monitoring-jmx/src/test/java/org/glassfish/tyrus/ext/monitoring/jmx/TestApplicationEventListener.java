@@ -43,6 +43,7 @@ import java.util.concurrent.CountDownLatch;
 
 import org.glassfish.tyrus.core.frame.TyrusFrame;
 import org.glassfish.tyrus.core.monitoring.ApplicationEventListener;
+import org.glassfish.tyrus.core.monitoring.BufferPoolStatistics;
 import org.glassfish.tyrus.core.monitoring.EndpointEventListener;
 import org.glassfish.tyrus.core.monitoring.MessageEventListener;
 
@@ -100,6 +101,11 @@ class TestApplicationEventListener implements ApplicationEventListener {
         applicationEventListener.onEndpointUnregistered(endpointPath);
     }
 
+    @Override
+    public void onBufferPoolCreated(BufferPoolStatistics bufferPoolStatistics) {
+        applicationEventListener.onBufferPoolCreated(bufferPoolStatistics);
+    }
+
     private class TestEndpointEventListener implements EndpointEventListener {
 
         private final EndpointEventListener endpointEventListener;
@@ -171,5 +177,25 @@ class TestApplicationEventListener implements ApplicationEventListener {
                 messageReceivedLatch.countDown();
             }
         }
+
+        @Override
+        public void onFrameCompressed(long uncompressedLength, long compressedLength) {
+            messageEventListener.onFrameCompressed(uncompressedLength, compressedLength);
+        }
+
+        @Override
+        public void onFrameDecompressed(long compressedLength, long uncompressedLength) {
+            messageEventListener.onFrameDecompressed(compressedLength, uncompressedLength);
+        }
+
+        @Override
+        public void onWriteQueueSizeChanged(long queuedBytes) {
+            messageEventListener.onWriteQueueSizeChanged(queuedBytes);
+        }
+
+        @Override
+        public void onMessageDropped(long length) {
+            messageEventListener.onMessageDropped(length);
+        }
     }
 }
@@ -49,6 +49,7 @@ import javax.websocket.server.ServerEndpointConfig;
 
 import org.glassfish.tyrus.core.ComponentProviderService;
 import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.SharedProcessingExtension;
 import org.glassfish.tyrus.core.frame.Frame;
 
 /**
@@ -89,51 +90,10 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
                     final String name = extension.getName();
                     // exception have the same name = are equal. Params should not be taken into account.
                     if (name != null && name.equals(requestedExtension.getName())) {
-                        if (extension instanceof ExtendedExtension) {
-                            final ExtendedExtension extendedExtension = (ExtendedExtension) extension;
-                            result.add(new ExtendedExtension() {
-                                @Override
-                                public Frame processIncoming(ExtensionContext context, Frame frame) {
-                                    return extendedExtension.processIncoming(context, frame);
-                                }
-
-                                @Override
-                                public Frame processOutgoing(ExtensionContext context, Frame frame) {
-                                    return extendedExtension.processOutgoing(context, frame);
-                                }
-
-                                /**
-                                 * TODO.
-                                 *
-                                 * @param context TODO
-                                 * @param requestedParameters TODO
-                                 * @return TODO
-                                 */
-                                @Override
-                                public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
-                                    return extendedExtension.onExtensionNegotiation(context, requestedExtension.getParameters());
-                                }
-
-                                @Override
-                                public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
-                                    extendedExtension.onHandshakeResponse(context, responseParameters);
-                                }
-
-                                @Override
-                                public void destroy(ExtensionContext context) {
-                                    extendedExtension.destroy(context);
-                                }
-
-                                @Override
-                                public String getName() {
-                                    return name;
-                                }
-
-                                @Override
-                                public List<Parameter> getParameters() {
-                                    return extendedExtension.getParameters();
-                                }
-                            });
+                        if (extension instanceof SharedProcessingExtension) {
+                            result.add(new SharedProcessingExtensionWrapper((SharedProcessingExtension) extension, requestedExtension));
+                        } else if (extension instanceof ExtendedExtension) {
+                            result.add(new ExtendedExtensionWrapper((ExtendedExtension) extension, requestedExtension));
                         } else {
                             result.add(requestedExtension);
                         }
@@ -159,4 +119,83 @@ public class TyrusServerEndpointConfigurator extends ServerEndpointConfig.Config
         //noinspection unchecked
         return (T) componentProviderService.getEndpointInstance(endpointClass);
     }
+
+    /**
+     * Per-handshake view of installed {@link ExtendedExtension}; negotiates parameters of the requested extension.
+     */
+    private static class ExtendedExtensionWrapper implements ExtendedExtension {
+
+        private final ExtendedExtension extendedExtension;
+        private final Extension requestedExtension;
+
+        ExtendedExtensionWrapper(ExtendedExtension extendedExtension, Extension requestedExtension) {
+            this.extendedExtension = extendedExtension;
+            this.requestedExtension = requestedExtension;
+        }
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            return extendedExtension.processIncoming(context, frame);
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            return extendedExtension.processOutgoing(context, frame);
+        }
+
+        /**
+         * Negotiate parameters of requested extension.
+         *
+         * @param context             extension context.
+         * @param requestedParameters ignored, parameters of requested extension are used instead.
+         * @return parameters to be present in handshake response or {@code null} when the offer is declined.
+         */
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return extendedExtension.onExtensionNegotiation(context, requestedExtension.getParameters());
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+            extendedExtension.onHandshakeResponse(context, responseParameters);
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+            extendedExtension.destroy(context);
+        }
+
+        @Override
+        public String getName() {
+            return extendedExtension.getName();
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return extendedExtension.getParameters();
+        }
+    }
+
+    /**
+     * {@link ExtendedExtensionWrapper} which keeps the wrapped extension {@link SharedProcessingExtension}.
+     */
+    private static class SharedProcessingExtensionWrapper extends ExtendedExtensionWrapper implements SharedProcessingExtension {
+
+        private final SharedProcessingExtension sharedProcessingExtension;
+
+        SharedProcessingExtensionWrapper(SharedProcessingExtension sharedProcessingExtension, Extension requestedExtension) {
+            super(sharedProcessingExtension, requestedExtension);
+            this.sharedProcessingExtension = sharedProcessingExtension;
+        }
+
+        @Override
+        public Object getOutgoingProcessingKey(ExtensionContext context) {
+            return sharedProcessingExtension.getOutgoingProcessingKey(context);
+        }
+
+        @Override
+        public void onSharedOutgoing(ExtensionContext context, Frame frame, Frame processed) {
+            sharedProcessingExtension.onSharedOutgoing(context, frame, processed);
+        }
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.benchmarks.cluster;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.glassfish.tyrus.core.cluster.BroadcastListener;
+import org.glassfish.tyrus.ext.cluster.ClusterTransport;
+import org.glassfish.tyrus.ext.cluster.InMemoryClusterTransport;
+import org.glassfish.tyrus.ext.cluster.TcpClusterTransport;
+import org.glassfish.tyrus.ext.cluster.TransportClusterContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cross-node broadcast using {@link TransportClusterContext}.
+ * <p/>
+ * One node broadcasts text messages, one operation is a message received by all the other nodes. Messages are sent
+ * in bursts of {@link #BURST} messages, so the batching and broadcast coalescing is exercised.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterBroadcastBenchmark {
+
+    public static final String IN_MEMORY = "in-memory";
+    public static final String TCP = "tcp";
+
+    private static final int BURST = 100;
+    private static final String ENDPOINT_PATH = "/broadcast";
+
+    @Param({IN_MEMORY, TCP})
+    private String transport;
+
+    @Param({"2", "4"})
+    private int nodes;
+
+    @Param({"64", "16384"})
+    private int size;
+
+    private final List<TransportClusterContext> contexts = new ArrayList<TransportClusterContext>();
+    private final Semaphore received = new Semaphore(0);
+    private String message;
+
+    @Setup
+    public void setup() throws Exception {
+        final InMemoryClusterTransport.Group group = new InMemoryClusterTransport.Group();
+        InetSocketAddress seed = null;
+
+        for (int i = 0; i < nodes; i++) {
+            final ClusterTransport clusterTransport;
+            if (IN_MEMORY.equals(transport)) {
+                clusterTransport = new InMemoryClusterTransport(group);
+            } else {
+                clusterTransport = new TcpClusterTransport(new InetSocketAddress("localhost", 0),
+                        seed == null ? Collections.<InetSocketAddress>emptyList() : Collections.singletonList(seed));
+            }
+
+            final TransportClusterContext context = new TransportClusterContext(clusterTransport);
+            if (seed == null && clusterTransport instanceof TcpClusterTransport) {
+                seed = ((TcpClusterTransport) clusterTransport).getLocalAddress();
+            }
+
+            if (i > 0) {
+                context.registerBroadcastListener(ENDPOINT_PATH, new BroadcastListener() {
+                    @Override
+                    public void onBroadcast(String text) {
+                        received.release();
+                    }
+
+                    @Override
+                    public void onBroadcast(byte[] data) {
+                        received.release();
+                    }
+                });
+            }
+            contexts.add(context);
+        }
+
+        waitForMembership();
+
+        final char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        message = new String(chars);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (TransportClusterContext context : contexts) {
+            context.shutdown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void broadcast() throws Exception {
+        final TransportClusterContext sender = contexts.get(0);
+        for (int i = 0; i < BURST; i++) {
+            sender.broadcastText(ENDPOINT_PATH, message);
+        }
+
+        if (!received.tryAcquire(BURST * (nodes - 1), 10, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Broadcasted messages not received by all nodes.");
+        }
+    }
+
+    /**
+     * Broadcast probes until every other node receives one; broadcasts are delivered only to the nodes the sender
+     * knows about.
+     */
+    private void waitForMembership() throws InterruptedException, TimeoutException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            received.drainPermits();
+            contexts.get(0).broadcastBinary(ENDPOINT_PATH, new byte[0]);
+            if (received.tryAcquire(nodes - 1, 100, TimeUnit.MILLISECONDS)) {
+                Thread.sleep(100);
+                received.drainPermits();
+                return;
+            }
+        }
+        throw new TimeoutException("Cluster nodes did not join.");
+    }
+}
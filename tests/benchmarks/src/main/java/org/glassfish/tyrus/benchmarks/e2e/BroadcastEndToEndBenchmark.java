@@ -0,0 +1,158 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.benchmarks.e2e;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.MessageHandler;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+import org.glassfish.tyrus.core.TyrusSession;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Broadcast of a text message to all connected clients using {@link TyrusSession#broadcast(String)}.
+ * <p/>
+ * One operation is sending a message to the server and receiving the broadcasted message by all the clients.
+ * In-memory transport is not included, because it creates separate server for each client connection.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastEndToEndBenchmark {
+
+    @Param({Transports.GRIZZLY, Transports.JDK})
+    private String transport;
+
+    @Param({"100"})
+    private int clients;
+
+    @Param({"64", "16384"})
+    private int size;
+
+    private Transports transports;
+    private final List<Session> sessions = new ArrayList<Session>();
+    private final Semaphore received = new Semaphore(0);
+    private String message;
+
+    @Setup
+    public void setup() throws DeploymentException, IOException {
+        transports = new Transports(transport, BroadcastEndpoint.class);
+        final ClientEndpointConfig cec = transports.createClientEndpointConfig();
+
+        for (int i = 0; i < clients; i++) {
+            sessions.add(transports.getClient().connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(new MessageHandler.Whole<String>() {
+                        @Override
+                        public void onMessage(String message) {
+                            received.release();
+                        }
+                    });
+                }
+            }, cec, transports.getUri("/broadcast")));
+        }
+
+        final char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 26);
+        }
+        message = new String(chars);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Session session : sessions) {
+            session.close();
+        }
+        transports.stop();
+    }
+
+    @Benchmark
+    public void broadcast() throws Exception {
+        sessions.get(0).getBasicRemote().sendText(message);
+
+        if (!received.tryAcquire(clients, 10, TimeUnit.SECONDS)) {
+            throw new TimeoutException("Broadcasted message not received by all clients.");
+        }
+    }
+
+    /**
+     * Server endpoint broadcasting received messages to all connected clients.
+     */
+    @ServerEndpoint("/broadcast")
+    public static class BroadcastEndpoint {
+
+        @OnMessage
+        public void onMessage(String message, Session session) {
+            ((TyrusSession) session).broadcast(message);
+        }
+    }
+}
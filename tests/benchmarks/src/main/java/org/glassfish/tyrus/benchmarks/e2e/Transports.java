@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.benchmarks.e2e;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.container.grizzly.client.GrizzlyClientContainer;
+import org.glassfish.tyrus.container.inmemory.InMemoryClientContainer;
+import org.glassfish.tyrus.container.jdk.client.JdkClientContainer;
+import org.glassfish.tyrus.server.Server;
+import org.glassfish.tyrus.server.TyrusServerConfiguration;
+
+/**
+ * Client and server setup shared by end-to-end benchmarks.
+ * <p/>
+ * Supported transports are {@value #IN_MEMORY} (client and server connected directly, without network),
+ * {@value #GRIZZLY} and {@value #JDK} (Grizzly server on loopback interface, client using Grizzly or JDK client
+ * container).
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+final class Transports {
+
+    static final String IN_MEMORY = "inmemory";
+    static final String GRIZZLY = "grizzly";
+    static final String JDK = "jdk";
+
+    private static final String HOST = "localhost";
+    private static final String CONTEXT_PATH = "/benchmarks";
+
+    private final String transport;
+    private final Class<?> endpointClass;
+    private final ClientManager client;
+    private final Server server;
+    private final int port;
+
+    /**
+     * Start server (if needed) and create client for given transport.
+     *
+     * @param transport     one of {@value #IN_MEMORY}, {@value #GRIZZLY} and {@value #JDK}.
+     * @param endpointClass annotated server endpoint.
+     * @throws DeploymentException when the server cannot be started.
+     * @throws IOException         when there is no free port.
+     */
+    Transports(String transport, Class<?> endpointClass) throws DeploymentException, IOException {
+        this.transport = transport;
+        this.endpointClass = endpointClass;
+
+        if (IN_MEMORY.equals(transport)) {
+            client = ClientManager.createClient(InMemoryClientContainer.class.getName());
+            server = null;
+            port = 0;
+        } else {
+            if (GRIZZLY.equals(transport)) {
+                client = ClientManager.createClient(GrizzlyClientContainer.class.getName());
+            } else if (JDK.equals(transport)) {
+                client = ClientManager.createClient(JdkClientContainer.class.getName());
+            } else {
+                throw new IllegalArgumentException("Unknown transport: " + transport);
+            }
+
+            port = getFreePort();
+            server = new Server(HOST, port, CONTEXT_PATH, null, endpointClass);
+            server.start();
+        }
+    }
+
+    /**
+     * Get client used for connecting to the server.
+     *
+     * @return client.
+     */
+    ClientManager getClient() {
+        return client;
+    }
+
+    /**
+     * Get client endpoint configuration, which has to be used when connecting to the server.
+     *
+     * @return client endpoint configuration.
+     */
+    ClientEndpointConfig createClientEndpointConfig() {
+        final ClientEndpointConfig cec = ClientEndpointConfig.Builder.create().build();
+        if (server == null) {
+            cec.getUserProperties().put(InMemoryClientContainer.SERVER_CONFIG, new TyrusServerConfiguration(
+                    new HashSet<Class<?>>(Arrays.<Class<?>>asList(endpointClass)), Collections.<ServerEndpointConfig>emptySet()));
+        }
+        return cec;
+    }
+
+    /**
+     * Get URI of an endpoint deployed on the server.
+     *
+     * @param path endpoint path.
+     * @return endpoint URI.
+     */
+    URI getUri(String path) {
+        if (server == null) {
+            return URI.create("ws://" + IN_MEMORY + path);
+        }
+        return URI.create("ws://" + HOST + ":" + port + CONTEXT_PATH + path);
+    }
+
+    /**
+     * Stop client and server.
+     */
+    void stop() {
+        client.shutdown();
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return transport;
+    }
+
+    private static int getFreePort() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        try {
+            return serverSocket.getLocalPort();
+        } finally {
+            serverSocket.close();
+        }
+    }
+}
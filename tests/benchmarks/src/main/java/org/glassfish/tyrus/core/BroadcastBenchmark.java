@@ -0,0 +1,332 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.websocket.ClientEndpointConfig;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Extension;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.extension.SharedProcessingExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.spi.CompletionHandler;
+import org.glassfish.tyrus.spi.Connection;
+import org.glassfish.tyrus.spi.Writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Broadcast of one message to many sessions done by {@link TyrusEndpointWrapper}.
+ * <p/>
+ * Sessions are connected to a writer which completes every write immediately, so the benchmark measures framing and
+ * extension processing done by the broadcast. {@code extension} parameter selects negotiated extension:
+ * <ul>
+ * <li>{@code none} - no extension, message is framed once.</li>
+ * <li>{@code shared} - stateless compression extension, message is compressed and framed once for all sessions.</li>
+ * <li>{@code perSession} - the same compression extension, which does not allow sharing, so the message is
+ * compressed and framed for every session (baseline).</li>
+ * </ul>
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10000"})
+    private int sessions;
+
+    @Param({"64", "16384"})
+    private int size;
+
+    @Param({"none", "shared", "perSession"})
+    private String extension;
+
+    private BaseContainer container;
+    private TyrusEndpointWrapper endpointWrapper;
+    private String message;
+
+    @Setup
+    public void setup() throws DeploymentException {
+        container = new BenchmarkContainer();
+        endpointWrapper = new TyrusEndpointWrapper(NoOpEndpoint.class, null, ComponentProviderService.create(),
+                container, "/", null, null, null, null, false);
+
+        final List<Extension> extensions;
+        if ("none".equals(extension)) {
+            extensions = Collections.emptyList();
+        } else {
+            extensions = Collections.<Extension>singletonList(new CompressionExtension("shared".equals(extension)));
+        }
+
+        final Map<Connection.ConnectionProperties, Object> connectionProperties = new HashMap<Connection.ConnectionProperties, Object>();
+        connectionProperties.put(Connection.ConnectionProperties.REMOTE_PORT, 0);
+        connectionProperties.put(Connection.ConnectionProperties.LOCAL_PORT, 0);
+
+        for (int i = 0; i < sessions; i++) {
+            final ProtocolHandler protocolHandler = new ProtocolHandler(false, null);
+            protocolHandler.setWriter(new NoOpWriter());
+            protocolHandler.setExtensions(extensions);
+            protocolHandler.setExtensionContext(new ExtendedExtension.ExtensionContext() {
+
+                private final Map<String, Object> properties = new HashMap<String, Object>();
+
+                @Override
+                public Map<String, Object> getProperties() {
+                    return properties;
+                }
+            });
+
+            final TyrusWebSocket webSocket = new TyrusWebSocket(protocolHandler, endpointWrapper) {
+                @Override
+                public boolean isConnected() {
+                    return true;
+                }
+            };
+
+            endpointWrapper.createSessionForRemoteEndpoint(webSocket, null, extensions, connectionProperties, new DebugContext());
+        }
+
+        final char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + i % 7);
+        }
+        message = new String(chars);
+    }
+
+    @TearDown
+    public void tearDown() {
+        container.shutdown();
+    }
+
+    @Benchmark
+    public Map<Session, Future<?>> broadcast() {
+        return endpointWrapper.broadcast(message);
+    }
+
+    /**
+     * Endpoint which is never called.
+     */
+    public static class NoOpEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+
+    private static class BenchmarkContainer extends BaseContainer {
+
+        @Override
+        public Session connectToServer(Object annotatedEndpointInstance, URI path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Session connectToServer(Class<?> annotatedEndpointClass, URI path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Session connectToServer(Endpoint endpointInstance, ClientEndpointConfig cec, URI path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Session connectToServer(Class<? extends Endpoint> endpointClass, ClientEndpointConfig cec, URI path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getDefaultAsyncSendTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setAsyncSendTimeout(long timeoutmillis) {
+        }
+
+        @Override
+        public long getDefaultMaxSessionIdleTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setDefaultMaxSessionIdleTimeout(long timeout) {
+        }
+
+        @Override
+        public int getDefaultMaxBinaryMessageBufferSize() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setDefaultMaxBinaryMessageBufferSize(int max) {
+        }
+
+        @Override
+        public int getDefaultMaxTextMessageBufferSize() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setDefaultMaxTextMessageBufferSize(int max) {
+        }
+
+        @Override
+        public Set<Extension> getInstalledExtensions() {
+            return Collections.emptySet();
+        }
+    }
+
+    private static class NoOpWriter extends Writer {
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> completionHandler) {
+            completionHandler.completed(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * Compresses every outgoing message separately (no context takeover).
+     */
+    private static class CompressionExtension implements SharedProcessingExtension {
+
+        private static final Object PROCESSING_KEY = "no_context_takeover";
+
+        private final boolean shared;
+
+        CompressionExtension(boolean shared) {
+            this.shared = shared;
+        }
+
+        @Override
+        public Object getOutgoingProcessingKey(ExtensionContext context) {
+            return shared ? PROCESSING_KEY : null;
+        }
+
+        @Override
+        public void onSharedOutgoing(ExtensionContext context, Frame frame, Frame processed) {
+        }
+
+        @Override
+        public Frame processOutgoing(ExtensionContext context, Frame frame) {
+            final byte[] payload = frame.getPayloadData();
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(payload);
+            deflater.finish();
+
+            byte[] output = new byte[payload.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            deflater.end();
+
+            return Frame.builder(frame).rsv1(true).payloadData(Arrays.copyOf(output, length)).build();
+        }
+
+        @Override
+        public Frame processIncoming(ExtensionContext context, Frame frame) {
+            return frame;
+        }
+
+        @Override
+        public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        }
+
+        @Override
+        public void destroy(ExtensionContext context) {
+        }
+
+        @Override
+        public String getName() {
+            return "x-compression";
+        }
+
+        @Override
+        public List<Parameter> getParameters() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.tyrus.core.frame.Frame;
+import org.glassfish.tyrus.core.frame.TextFrame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of UTF-8 encoding and decoding done by {@link TextFrame} (using {@link StrictUtf8}).
+ * <p/>
+ * {@link #decode()} includes unframing of the received frame, which is what happens to every incoming text message.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFrameBenchmark {
+
+    private static final String ASCII = "Hello World! ";
+    // "Prilis zlutoucky kun" with Czech diacritics, euro sign and smiley (2 and 3 byte UTF-8 sequences).
+    private static final String NON_ASCII = "P\u0159\u00edli\u0161 \u017elu\u0165ou\u010dk\u00fd k\u016f\u0148 \u20ac\u263a ";
+
+    @Param({"16", "1024", "65536"})
+    private int length;
+
+    @Param({"true", "false"})
+    private boolean ascii;
+
+    private String message;
+    private ProtocolHandler receiver;
+    private ByteBuffer framed;
+
+    @Setup
+    public void setup() {
+        final String pattern = ascii ? ASCII : NON_ASCII;
+        final StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(pattern.charAt(sb.length() % pattern.length()));
+        }
+        message = sb.toString();
+
+        receiver = new ProtocolHandler(true, null);
+        framed = new ProtocolHandler(false, null).frame(new TextFrame(message, false, true));
+    }
+
+    @Benchmark
+    public TextFrame encode() {
+        return new TextFrame(message, false, true);
+    }
+
+    @Benchmark
+    public String decode() {
+        framed.rewind();
+        final Frame frame = receiver.unframe(framed);
+        return new TextFrame(frame, null).getTextPayload();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2014 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.tyrus.core.uri;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.core.ComponentProviderService;
+import org.glassfish.tyrus.core.DebugContext;
+import org.glassfish.tyrus.core.TyrusEndpointWrapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching of a request path against many templated endpoint paths.
+ * <p/>
+ * {@link #linear()} is {@link Match#getAllMatches(String, Set, DebugContext)}, which checks every endpoint,
+ * {@link #trie()} is {@link PathTrie} with a different request path in each invocation (so the cache is not hit
+ * most of the time), {@link #trieCached()} repeats the same request path.
+ *
+ * @author Petr Janouch (petr.janouch at oracle.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathMatchingBenchmark {
+
+    private static final int REQUEST_PATHS = 4096;
+
+    @Param({"10", "500"})
+    private int endpoints;
+
+    private final Set<TyrusEndpointWrapper> endpointWrappers = new HashSet<TyrusEndpointWrapper>();
+    private final PathTrie pathTrie = new PathTrie();
+    private final String[] requestPaths = new String[REQUEST_PATHS];
+    private int next = 0;
+
+    @Setup
+    public void setup() throws DeploymentException {
+        for (int i = 0; i < endpoints; i++) {
+            final TyrusEndpointWrapper endpointWrapper = new PathEndpointWrapper("/{tenant}/feed" + i + "/{id}");
+            endpointWrappers.add(endpointWrapper);
+            pathTrie.add(endpointWrapper);
+        }
+
+        for (int i = 0; i < REQUEST_PATHS; i++) {
+            requestPaths[i] = "/tenant" + i + "/feed" + (i % endpoints) + "/" + i;
+        }
+    }
+
+    @Benchmark
+    public List<Match> linear() {
+        return Match.getAllMatches(nextPath(), endpointWrappers, new DebugContext());
+    }
+
+    @Benchmark
+    public List<Match> trie() {
+        return pathTrie.getAllMatches(nextPath(), new DebugContext());
+    }
+
+    @Benchmark
+    public List<Match> trieCached() {
+        return pathTrie.getAllMatches(requestPaths[0], new DebugContext());
+    }
+
+    private String nextPath() {
+        next = (next + 1) % REQUEST_PATHS;
+        return requestPaths[next];
+    }
+
+    private static class PathEndpointWrapper extends TyrusEndpointWrapper {
+
+        private final String path;
+
+        PathEndpointWrapper(String path) throws DeploymentException {
+            super(NoOpEndpoint.class, null, ComponentProviderService.create(), null, "/", null, null, null, null, null);
+            this.path = path;
+        }
+
+        @Override
+        public String getEndpointPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Endpoint which is never called.
+     */
+    public static class NoOpEndpoint extends Endpoint {
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+        }
+    }
+}